@@ -0,0 +1,104 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.writers.additional;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.results.QueryResult;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Serialization of {@link QueryResult}s to Librato measurements, shared by the Librato writers.
+ */
+@ThreadSafe
+final class LibratoMeasurements {
+
+    @Nonnull private static final Logger logger = LoggerFactory.getLogger(LibratoMeasurements.class.getName());
+
+    private LibratoMeasurements() {
+    }
+
+    /**
+     * Librato only knows about counters and gauges, anything which is not explicitly a gauge is exported as a counter.
+     */
+    public static boolean isGauge(@Nonnull QueryResult result) {
+        if ("gauge".equals(result.getType())) return true;
+        if (result.getType() == null) {
+            logger.info(format("Unspecified type for result [%s], export it as counter", result));
+        } else if (!"counter".equals(result.getType())) {
+            logger.info(format("Unsupported metric type [%s] for result [%s], export it as counter", result.getType(), result));
+        }
+        return false;
+    }
+
+    public static void writeMeasurement(
+            @Nonnull JsonGenerator jsonGenerator,
+            @Nonnull QueryResult result,
+            @Nullable String source) throws IOException {
+        jsonGenerator.writeStartObject();
+
+        jsonGenerator.writeStringField("name", result.getName());
+
+        if (source != null && !source.isEmpty()) {
+            jsonGenerator.writeStringField("source", source);
+        }
+
+        jsonGenerator.writeNumberField("measure_time", result.getEpoch(SECONDS));
+
+        if (result.getValue() instanceof Number) {
+            writeNumberField(jsonGenerator, "value", (Number) result.getValue());
+        } else {
+            logger.info(format("Value for result [%s] is not a number, cannot send it to Librato", result));
+        }
+
+        jsonGenerator.writeEndObject();
+    }
+
+    private static void writeNumberField(JsonGenerator jsonGenerator, String name, Number value) throws IOException {
+        if (value instanceof Integer) {
+            jsonGenerator.writeNumberField(name, (Integer)value);
+        } else if (value instanceof Long) {
+            jsonGenerator.writeNumberField(name, (Long)value);
+        } else if (value instanceof Float) {
+            jsonGenerator.writeNumberField(name, (Float)value);
+        } else if (value instanceof Double) {
+            jsonGenerator.writeNumberField(name, (Double)value);
+        } else if (value instanceof AtomicInteger) {
+            jsonGenerator.writeNumberField(name, ((AtomicInteger)value).get());
+        } else if (value instanceof AtomicLong) {
+            jsonGenerator.writeNumberField(name, ((AtomicLong) value).get());
+        }
+    }
+}
@@ -31,20 +31,17 @@ import java.net.URL;
 import java.util.ArrayDeque;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 
-import org.jmxtrans.core.log.Logger;
-import org.jmxtrans.core.log.LoggerFactory;
 import org.jmxtrans.core.output.OutputWriterFactory;
 import org.jmxtrans.core.output.support.BatchingOutputWriter;
 import org.jmxtrans.core.output.support.HttpOutputWriter;
 import org.jmxtrans.core.output.support.OutputStreamBasedOutputWriter;
+import org.jmxtrans.core.output.support.RetryPolicy;
 import org.jmxtrans.core.results.QueryResult;
 import org.jmxtrans.utils.appinfo.AppInfo;
 
@@ -54,19 +51,18 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import static java.lang.String.format;
 import static java.net.Proxy.Type.HTTP;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static java.util.concurrent.TimeUnit.SECONDS;
 
 import static org.jmxtrans.core.output.support.HttpOutputWriter.builder;
 import static org.jmxtrans.utils.ConfigurationUtils.getInt;
 import static org.jmxtrans.utils.ConfigurationUtils.getString;
+import static org.jmxtrans.writers.additional.LibratoMeasurements.isGauge;
+import static org.jmxtrans.writers.additional.LibratoMeasurements.writeMeasurement;
 
 import static com.fasterxml.jackson.core.JsonEncoding.UTF8;
 
 @ThreadSafe
 public class LibratoWriter implements OutputStreamBasedOutputWriter {
 
-    @Nonnull private final Logger logger = LoggerFactory.getLogger(getClass().getName());
-
     @Nonnull private final ThreadLocal<ResultsClassifier> resultsClassifier = new ThreadLocal<ResultsClassifier>() {
         @Override
         protected ResultsClassifier initialValue() {
@@ -111,62 +107,22 @@ public class LibratoWriter implements OutputStreamBasedOutputWriter {
         int counter = 0;
         jsonGenerator.writeArrayFieldStart(name);
         for (QueryResult result : results) {
-            jsonGenerator.writeStartObject();
-            
-            jsonGenerator.writeStringField("name", result.getName());
-            
-            if (source != null && !source.isEmpty()) {
-                jsonGenerator.writeStringField("source", source);
-            }
-            
-            jsonGenerator.writeNumberField("measure_time", result.getEpoch(SECONDS));
-            
-            if (result.getValue() instanceof Number) {
-                writeNumberField(jsonGenerator, "value", (Number)result.getValue());
-            } else {
-                logger.info(format("Value for result [%s] is not a number, cannot send it to Librato", result));
-            }
-            
-            jsonGenerator.writeEndObject();
+            writeMeasurement(jsonGenerator, result, source);
             counter++;
         }
         jsonGenerator.writeEndArray();
         return counter;
     }
 
-    private void writeNumberField(JsonGenerator jsonGenerator, String name, Number value) throws IOException {
-        if (value instanceof Integer) {
-            jsonGenerator.writeNumberField(name, (Integer)value);
-        } else if (value instanceof Long) {
-            jsonGenerator.writeNumberField(name, (Long)value);
-        } else if (value instanceof Float) {
-            jsonGenerator.writeNumberField(name, (Float)value);
-        } else if (value instanceof Double) {
-            jsonGenerator.writeNumberField(name, (Double)value);
-        } else if (value instanceof AtomicInteger) {
-            jsonGenerator.writeNumberField(name, ((AtomicInteger)value).get());
-        } else if (value instanceof AtomicLong) {
-            jsonGenerator.writeNumberField(name, ((AtomicLong) value).get());
-        }
-    }
-
     @NotThreadSafe
     private static final class ResultsClassifier {
-        @Nonnull private final Logger logger = LoggerFactory.getLogger(getClass().getName());
-        
         @Nonnull private final Queue<QueryResult> counters = new ArrayDeque<>();
         @Nonnull private final Queue<QueryResult> gauges = new ArrayDeque<>();
 
         public void addResult(@Nonnull QueryResult result) {
-            if ("counter".equals(result.getType())) {
-                counters.add(result);
-            } else if ("gauge".equals(result.getType())) {
+            if (isGauge(result)) {
                 gauges.add(result);
-            } else if (result.getType() == null) {
-                logger.info(format("Unspecified type for result [%s], export it as counter", result));
-                counters.add(result);
             } else {
-                logger.info(format("Unsupported metric type [%s] for result [%s], export it as counter", result.getType(), result));
                 counters.add(result);
             }
         }
@@ -211,11 +167,11 @@ public class LibratoWriter implements OutputStreamBasedOutputWriter {
                 httpOutputWriter.withProxy(proxy);
             }
             
-            return new BatchingOutputWriter<>(batchSize, httpOutputWriter.build());
+            return new BatchingOutputWriter<>(batchSize, httpOutputWriter.build(), RetryPolicy.fromSettings(settings));
         }
 
         @Nullable
-        private Proxy getProxy(@Nonnull Map<String, String> settings) {
+        static Proxy getProxy(@Nonnull Map<String, String> settings) {
             String proxyHost = getString(settings, "proxyHost", null);
             Integer proxyPort = getInt(settings, "proxyPort", 0);
             
@@ -224,7 +180,8 @@ public class LibratoWriter implements OutputStreamBasedOutputWriter {
             return new Proxy(HTTP, new InetSocketAddress(proxyHost, proxyPort));
         }
 
-        private AppInfo loadAppInfo() {
+        @Nonnull
+        static AppInfo loadAppInfo() {
             try {
                 return AppInfo.load(LibratoWriter.class);
             } catch (IOException e) {
@@ -232,7 +189,8 @@ public class LibratoWriter implements OutputStreamBasedOutputWriter {
             }
         }
 
-        private URL parseUrl(String urlString) {
+        @Nonnull
+        static URL parseUrl(String urlString) {
             try {
                 return new URL(urlString);
             } catch (MalformedURLException e) {
@@ -0,0 +1,474 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.writers.additional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.output.OutputWriterFactory;
+import org.jmxtrans.core.output.support.BatchedOutputWriter;
+import org.jmxtrans.core.output.support.BatchingOutputWriter;
+import org.jmxtrans.core.output.support.ByteCountingOutputWriter;
+import org.jmxtrans.core.output.support.HttpOutputWriter;
+import org.jmxtrans.core.output.support.OutputStreamBasedOutputWriter;
+import org.jmxtrans.core.output.support.PartialBatchFailureException;
+import org.jmxtrans.core.output.support.RetryPolicy;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.VisibleForTesting;
+import org.jmxtrans.utils.appinfo.AppInfo;
+import org.jmxtrans.utils.concurrent.NamedThreadFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.jmxtrans.core.output.support.HttpOutputWriter.builder;
+import static org.jmxtrans.utils.ConfigurationUtils.getInt;
+import static org.jmxtrans.utils.ConfigurationUtils.getString;
+import static org.jmxtrans.utils.io.Charsets.US_ASCII;
+import static org.jmxtrans.writers.additional.LibratoMeasurements.isGauge;
+import static org.jmxtrans.writers.additional.LibratoMeasurements.writeMeasurement;
+
+import static com.fasterxml.jackson.core.JsonEncoding.UTF8;
+
+/**
+ * Streaming alternative to {@link LibratoWriter}.
+ *
+ * Results are serialized as soon as they are written, into one spill buffer for gauges and one for counters. When the
+ * number of measurements in the current request reaches {@code maxMeasurementsPerRequest}, the request is sealed and
+ * handed over to the sender executor, so a batch can be split in multiple requests that are sent concurrently. Memory
+ * used by a batch is bounded by the size of a single request instead of growing with the batch size.
+ *
+ * {@link #afterBatch()} waits for all the requests of the current batch to be sent and reports the number of
+ * measurements accepted by Librato. If some requests fail, it throws a {@link PartialBatchFailureException} listing
+ * the results of those requests only, so that requests already accepted are not sent again on retry. The sender
+ * executor is shut down when the writer is closed.
+ */
+@ThreadSafe
+public class StreamingLibratoWriter implements BatchedOutputWriter, ByteCountingOutputWriter, Closeable {
+
+    @Nonnull private static final byte[] COUNTERS_FIELD = "{\"counters\":".getBytes(US_ASCII);
+    @Nonnull private static final byte[] GAUGES_FIELD = ",\"gauges\":".getBytes(US_ASCII);
+    @Nonnull private static final byte[] END_OF_REQUEST = "}".getBytes(US_ASCII);
+    @Nonnull private static final byte[] EMPTY_ARRAY = "[]".getBytes(US_ASCII);
+
+    @Nonnull private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    @Nonnull private final ThreadLocal<Spill> spill = new ThreadLocal<Spill>() {
+        @Override
+        protected Spill initialValue() {
+            return new Spill();
+        }
+    };
+    @Nonnull private final JsonFactory jsonFactory;
+    @Nullable private final String source;
+    private final int maxMeasurementsPerRequest;
+    @Nonnull private final ExecutorService senderExecutor;
+    @Nonnull private final RequestSender requestSender;
+    @Nonnull private final AtomicLong bytesWritten = new AtomicLong();
+
+    public StreamingLibratoWriter(
+            @Nonnull JsonFactory jsonFactory,
+            @Nullable String source,
+            int maxMeasurementsPerRequest,
+            @Nonnull ExecutorService senderExecutor,
+            @Nonnull RequestSender requestSender) {
+        if (maxMeasurementsPerRequest < 1) {
+            throw new IllegalArgumentException("maxMeasurementsPerRequest must be positive but was " + maxMeasurementsPerRequest);
+        }
+        this.jsonFactory = jsonFactory;
+        this.source = source;
+        this.maxMeasurementsPerRequest = maxMeasurementsPerRequest;
+        this.senderExecutor = senderExecutor;
+        this.requestSender = requestSender;
+    }
+
+    @Override
+    public void beforeBatch() throws IOException {
+        spill.get().clear();
+    }
+
+    @Override
+    public int write(@Nonnull QueryResult result) throws IOException {
+        Spill currentSpill = spill.get();
+        currentSpill.append(result);
+        if (currentSpill.size() >= maxMeasurementsPerRequest) {
+            currentSpill.sealAndSend();
+        }
+        return 0;
+    }
+
+    @Override
+    public int afterBatch() throws IOException {
+        Spill currentSpill = spill.get();
+        try {
+            if (currentSpill.size() > 0) {
+                currentSpill.sealAndSend();
+            }
+            return currentSpill.awaitRequests();
+        } finally {
+            currentSpill.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        senderExecutor.shutdown();
+    }
+
+    /**
+     * A sealed Librato request, ready to be sent.
+     */
+    @ThreadSafe
+    public static final class Request implements OutputStreamBasedOutputWriter {
+        @Nonnull private final byte[] body;
+        private final int measurementCount;
+
+        private Request(@Nonnull byte[] body, int measurementCount) {
+            this.body = body;
+            this.measurementCount = measurementCount;
+        }
+
+        @Nonnull
+        public byte[] getBody() {
+            return body.clone();
+        }
+
+        public int getMeasurementCount() {
+            return measurementCount;
+        }
+
+        @Override
+        public void beforeBatch(@Nonnull OutputStream out) throws IOException {
+        }
+
+        @Override
+        public int write(@Nonnull OutputStream out, @Nonnull QueryResult result) throws IOException {
+            return 0;
+        }
+
+        @Override
+        public int afterBatch(@Nonnull OutputStream out) throws IOException {
+            out.write(body);
+            return measurementCount;
+        }
+    }
+
+    @ThreadSafe
+    public interface RequestSender {
+        /**
+         * @return the number of measurements accepted by Librato
+         */
+        int send(@Nonnull Request request) throws IOException;
+    }
+
+    /**
+     * Sends each {@link Request} over its own {@link HttpOutputWriter}, so that authentication, proxy, timeouts and
+     * response code handling are the same as for {@link LibratoWriter}.
+     */
+    @ThreadSafe
+    public static final class HttpRequestSender implements RequestSender {
+        @Nonnull private final URL url;
+        @Nonnull private final AppInfo<?> appInfo;
+        private final int timeoutInMillis;
+        @Nullable private final Proxy proxy;
+        @Nullable private final String username;
+        @Nullable private final String token;
+
+        public HttpRequestSender(
+                @Nonnull URL url,
+                @Nonnull AppInfo<?> appInfo,
+                int timeoutInMillis,
+                @Nullable Proxy proxy,
+                @Nullable String username,
+                @Nullable String token) {
+            this.url = url;
+            this.appInfo = appInfo;
+            this.timeoutInMillis = timeoutInMillis;
+            this.proxy = proxy;
+            this.username = username;
+            this.token = token;
+        }
+
+        @Override
+        public int send(@Nonnull Request request) throws IOException {
+            HttpOutputWriter.Builder<Request> httpOutputWriter = builder(url, appInfo, request)
+                    .withContentType("application/json; charset=utf-8")
+                    .withTimeout(timeoutInMillis, MILLISECONDS);
+            if (username != null && !username.isEmpty()) {
+                httpOutputWriter.withAuthentication(username, token);
+            }
+            if (proxy != null) {
+                httpOutputWriter.withProxy(proxy);
+            }
+            HttpOutputWriter<Request> writer = httpOutputWriter.build();
+            writer.beforeBatch();
+            return writer.afterBatch();
+        }
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    @NotThreadSafe
+    private final class Spill {
+        @Nonnull private final SpillBuffer counters = new SpillBuffer();
+        @Nonnull private final SpillBuffer gauges = new SpillBuffer();
+        @Nonnull private final List<PendingRequest> pendingRequests = new ArrayList<>();
+        @Nonnull private List<QueryResult> unsealedResults = new ArrayList<>();
+
+        public void append(@Nonnull QueryResult result) throws IOException {
+            if (isGauge(result)) {
+                gauges.append(result);
+            } else {
+                counters.append(result);
+            }
+            unsealedResults.add(result);
+        }
+
+        public int size() {
+            return counters.size() + gauges.size();
+        }
+
+        /**
+         * Submits the request to the sender executor. A rejected request is only reported in {@link #awaitRequests()},
+         * with the other failed requests of the batch.
+         */
+        public void sealAndSend() throws IOException {
+            final Request request = seal();
+            PendingRequest pendingRequest = new PendingRequest(unsealedResults);
+            unsealedResults = new ArrayList<>();
+            pendingRequests.add(pendingRequest);
+            try {
+                pendingRequest.future = senderExecutor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        int sent = requestSender.send(request);
+                        bytesWritten.addAndGet(request.body.length);
+                        return sent;
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pendingRequest.rejection = new IOException(format(
+                        "Could not send %d measurements to Librato, too many pending requests",
+                        request.measurementCount), e);
+            }
+        }
+
+        @Nonnull
+        private Request seal() throws IOException {
+            int measurementCount = size();
+            ByteArrayOutputStream body = new ByteArrayOutputStream(
+                    counters.byteSize() + gauges.byteSize() + COUNTERS_FIELD.length + GAUGES_FIELD.length + 2 * EMPTY_ARRAY.length + 1);
+            body.write(COUNTERS_FIELD);
+            counters.drainTo(body);
+            body.write(GAUGES_FIELD);
+            gauges.drainTo(body);
+            body.write(END_OF_REQUEST);
+            return new Request(body.toByteArray(), measurementCount);
+        }
+
+        /**
+         * @throws PartialBatchFailureException listing the results of the requests that were not accepted, so that
+         * only those are retried.
+         */
+        public int awaitRequests() throws IOException {
+            int measurementsSent = 0;
+            Throwable failure = null;
+            List<QueryResult> failedResults = new ArrayList<>();
+            for (PendingRequest pendingRequest : pendingRequests) {
+                Throwable requestFailure = pendingRequest.rejection;
+                if (pendingRequest.future != null) {
+                    try {
+                        measurementsSent += pendingRequest.future.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for Librato requests to be sent");
+                    } catch (ExecutionException e) {
+                        requestFailure = e.getCause();
+                    }
+                }
+                if (requestFailure == null) continue;
+                failedResults.addAll(pendingRequest.results);
+                if (failure == null) {
+                    failure = requestFailure;
+                } else {
+                    logger.warn("Could not send measurements to Librato", requestFailure);
+                }
+            }
+            if (failure != null) {
+                throw new PartialBatchFailureException(
+                        format("Could not send %d measurements to Librato", failedResults.size()),
+                        failure, measurementsSent, failedResults);
+            }
+            logger.debug(format("Sent [%d] measurements in [%d] requests", measurementsSent, pendingRequests.size()));
+            return measurementsSent;
+        }
+
+        public void clear() {
+            counters.clear();
+            gauges.clear();
+            pendingRequests.clear();
+            unsealedResults.clear();
+        }
+    }
+
+    private static final class PendingRequest {
+        @Nonnull private final List<QueryResult> results;
+        @Nullable private Future<Integer> future;
+        @Nullable private IOException rejection;
+
+        private PendingRequest(@Nonnull List<QueryResult> results) {
+            this.results = results;
+        }
+    }
+
+    /**
+     * JSON array of measurements, serialized as results arrive.
+     */
+    @NotThreadSafe
+    private final class SpillBuffer {
+        @Nonnull private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        @Nullable private JsonGenerator jsonGenerator;
+        private int size;
+
+        public void append(@Nonnull QueryResult result) throws IOException {
+            if (jsonGenerator == null) {
+                jsonGenerator = jsonFactory.createGenerator(buffer, UTF8);
+                jsonGenerator.writeStartArray();
+            }
+            writeMeasurement(jsonGenerator, result, source);
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int byteSize() {
+            return buffer.size();
+        }
+
+        public void drainTo(@Nonnull OutputStream out) throws IOException {
+            if (jsonGenerator == null) {
+                out.write(EMPTY_ARRAY);
+                return;
+            }
+            jsonGenerator.writeEndArray();
+            jsonGenerator.close();
+            buffer.writeTo(out);
+            clear();
+        }
+
+        public void clear() {
+            jsonGenerator = null;
+            buffer.reset();
+            size = 0;
+        }
+    }
+
+    @ThreadSafe
+    public static final class Factory implements OutputWriterFactory<BatchingOutputWriter<StreamingLibratoWriter>> {
+
+        @Nonnull
+        @Override
+        public BatchingOutputWriter<StreamingLibratoWriter> create(@Nonnull Map<String, String> settings) {
+            int batchSize = getInt(settings, "batchSize", 1000);
+            int maxMeasurementsPerRequest = getInt(settings, "maxMeasurementsPerRequest", 300);
+            int senderThreads = getInt(settings, "senderThreads", 2);
+            int maxPendingRequests = getInt(settings, "maxPendingRequests", 64);
+            URL url = LibratoWriter.Factory.parseUrl(getString(settings, "libratoUrl", "https://metrics-api.librato.com/v1/metrics"));
+            int timeoutInMillis = getInt(settings, "timeoutInMillis", 1000);
+            Proxy proxy = LibratoWriter.Factory.getProxy(settings);
+            String source = source(settings);
+            String username = getString(settings, "username", null);
+            String token = getString(settings, "token", null);
+
+            return new BatchingOutputWriter<>(
+                    batchSize,
+                    new StreamingLibratoWriter(
+                            new JsonFactory(),
+                            source,
+                            maxMeasurementsPerRequest,
+                            new ThreadPoolExecutor(
+                                    senderThreads, senderThreads,
+                                    0L, MILLISECONDS,
+                                    new ArrayBlockingQueue<Runnable>(maxPendingRequests),
+                                    new NamedThreadFactory("jmxtrans-librato-sender-", true),
+                                    new ThreadPoolExecutor.AbortPolicy()),
+                            new HttpRequestSender(
+                                    url,
+                                    LibratoWriter.Factory.loadAppInfo(),
+                                    timeoutInMillis,
+                                    proxy,
+                                    username,
+                                    token)),
+                    RetryPolicy.fromSettings(settings));
+        }
+
+        /**
+         * @return the {@code source} setting, the name of the local host if it is not set, or null if the local host
+         * name cannot be resolved: measurements are then sent without source.
+         */
+        @VisibleForTesting
+        @Nullable
+        static String source(@Nonnull Map<String, String> settings) {
+            String source = getString(settings, "source", null);
+            if (source != null) return source;
+            try {
+                return InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
+    }
+}
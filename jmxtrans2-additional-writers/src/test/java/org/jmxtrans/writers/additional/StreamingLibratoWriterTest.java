@@ -0,0 +1,265 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.writers.additional;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.annotation.Nonnull;
+
+import org.jmxtrans.core.output.support.PartialBatchFailureException;
+import org.jmxtrans.core.results.QueryResult;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+public class StreamingLibratoWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ExecutorService senderExecutor;
+    private RecordingRequestSender requestSender;
+
+    @BeforeClass
+    public void createSenderExecutor() {
+        senderExecutor = newFixedThreadPool(2);
+    }
+
+    @AfterClass
+    public void shutdownSenderExecutor() {
+        senderExecutor.shutdownNow();
+    }
+
+    @BeforeMethod
+    public void createRequestSender() {
+        requestSender = new RecordingRequestSender();
+    }
+
+    @Test
+    public void gaugesAndCountersAreWrittenInSeparateArrays() throws IOException {
+        StreamingLibratoWriter writer = createWriter(100);
+
+        writer.beforeBatch();
+        writer.write(new QueryResult("counter1", "counter", 1, 1000L));
+        writer.write(new QueryResult("gauge1", "gauge", 3.3, 3000L));
+        writer.write(new QueryResult("counter2", "counter", 2L, 2000L));
+        writer.afterBatch();
+
+        assertThat(requestSender.requests).hasSize(1);
+        JsonNode tree = objectMapper.readTree(requestSender.requests.get(0).getBody());
+
+        JsonNode counters = tree.get("counters");
+        assertThat(counters.size()).isEqualTo(2);
+        assertThat(counters.get(0).get("name").textValue()).isEqualTo("counter1");
+        assertThat(counters.get(0).get("source").textValue()).isEqualTo("myHost.test.net");
+        assertThat(counters.get(0).get("measure_time").intValue()).isEqualTo(1);
+        assertThat(counters.get(1).get("value").longValue()).isEqualTo(2L);
+
+        JsonNode gauges = tree.get("gauges");
+        assertThat(gauges.size()).isEqualTo(1);
+        assertThat(gauges.get(0).get("name").textValue()).isEqualTo("gauge1");
+        assertThat(gauges.get(0).get("value").doubleValue()).isEqualTo(3.3);
+    }
+
+    @Test
+    public void emptyArraysAreSentWhenNoResultsOfThatType() throws IOException {
+        StreamingLibratoWriter writer = createWriter(100);
+
+        writer.beforeBatch();
+        writer.write(new QueryResult("gauge1", "gauge", 3.3, 3000L));
+        writer.afterBatch();
+
+        JsonNode tree = objectMapper.readTree(requestSender.requests.get(0).getBody());
+        assertThat(tree.get("counters").isArray()).isTrue();
+        assertThat(tree.get("counters").size()).isEqualTo(0);
+        assertThat(tree.get("gauges").size()).isEqualTo(1);
+    }
+
+    @Test
+    public void batchIsSplitWhenMeasurementLimitIsReached() throws IOException {
+        StreamingLibratoWriter writer = createWriter(2);
+
+        writer.beforeBatch();
+        for (int i = 0; i < 5; i++) {
+            writer.write(new QueryResult("counter" + i, "counter", i, 1000L));
+        }
+        int sent = writer.afterBatch();
+
+        assertThat(sent).isEqualTo(5);
+        assertThat(requestSender.requests).hasSize(3);
+        int measurements = 0;
+        for (StreamingLibratoWriter.Request request : requestSender.requests) {
+            JsonNode tree = objectMapper.readTree(request.getBody());
+            assertThat(tree.get("counters").size()).isLessThanOrEqualTo(2);
+            measurements += tree.get("counters").size();
+        }
+        assertThat(measurements).isEqualTo(5);
+    }
+
+    @Test
+    public void nothingIsSentForEmptyBatch() throws IOException {
+        StreamingLibratoWriter writer = createWriter(2);
+
+        writer.beforeBatch();
+        int sent = writer.afterBatch();
+
+        assertThat(sent).isZero();
+        assertThat(requestSender.requests).isEmpty();
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void sendingFailuresAreReportedAfterBatch() throws IOException {
+        requestSender.failing = true;
+        StreamingLibratoWriter writer = createWriter(2);
+
+        writer.beforeBatch();
+        writer.write(new QueryResult("counter1", "counter", 1, 1000L));
+        writer.afterBatch();
+    }
+
+    @Test
+    public void onlyResultsOfFailedRequestsAreReported() throws IOException {
+        requestSender.failingMetric = "counter2";
+        StreamingLibratoWriter writer = createWriter(1);
+        QueryResult counter1 = new QueryResult("counter1", "counter", 1, 1000L);
+        QueryResult counter2 = new QueryResult("counter2", "counter", 2, 1000L);
+        QueryResult counter3 = new QueryResult("counter3", "counter", 3, 1000L);
+
+        writer.beforeBatch();
+        writer.write(counter1);
+        writer.write(counter2);
+        writer.write(counter3);
+        try {
+            writer.afterBatch();
+            fail("Failed request should be reported");
+        } catch (PartialBatchFailureException expected) {
+            assertThat(expected.getAcceptedCount()).isEqualTo(2);
+            assertThat(expected.getFailedResults()).containsExactly(counter2);
+        }
+        assertThat(requestSender.requests).hasSize(2);
+    }
+
+    @Test
+    public void requestsRejectedBySenderExecutorAreReportedAsFailures() throws IOException, InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor boundedExecutor = new ThreadPoolExecutor(
+                1, 1, 0L, MILLISECONDS, new ArrayBlockingQueue<Runnable>(1), new ThreadPoolExecutor.AbortPolicy());
+        try {
+            boundedExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            StreamingLibratoWriter writer = new StreamingLibratoWriter(
+                    new JsonFactory(), "myHost.test.net", 1, boundedExecutor, requestSender);
+
+            QueryResult counter2 = new QueryResult("counter2", "counter", 2, 1000L);
+
+            writer.beforeBatch();
+            writer.write(new QueryResult("counter1", "counter", 1, 1000L));
+            writer.write(counter2);
+            release.countDown();
+            try {
+                writer.afterBatch();
+                fail("Rejected request should be reported");
+            } catch (PartialBatchFailureException expected) {
+                assertThat(expected.getAcceptedCount()).isEqualTo(1);
+                assertThat(expected.getFailedResults()).containsExactly(counter2);
+            }
+        } finally {
+            release.countDown();
+            boundedExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void closingWriterShutsDownSenderExecutor() {
+        ExecutorService ownExecutor = newFixedThreadPool(1);
+        StreamingLibratoWriter writer = new StreamingLibratoWriter(
+                new JsonFactory(), "myHost.test.net", 1, ownExecutor, requestSender);
+
+        writer.close();
+
+        assertThat(ownExecutor.isShutdown()).isTrue();
+    }
+
+    @Test
+    public void sourceIsReadFromSettings() {
+        Map<String, String> settings = new HashMap<>();
+        assertThat(StreamingLibratoWriter.Factory.source(settings)).isNotEqualTo("hostname");
+
+        settings.put("source", "myHost.test.net");
+        assertThat(StreamingLibratoWriter.Factory.source(settings)).isEqualTo("myHost.test.net");
+    }
+
+    @Test
+    public void factoryCanCreateStreamingLibratoWriter() {
+        Map<String, String> settings = new HashMap<>();
+        assertThat(new StreamingLibratoWriter.Factory().create(settings)).isNotNull();
+    }
+
+    private StreamingLibratoWriter createWriter(int maxMeasurementsPerRequest) {
+        return new StreamingLibratoWriter(
+                new JsonFactory(), "myHost.test.net", maxMeasurementsPerRequest, senderExecutor, requestSender);
+    }
+
+    private static final class RecordingRequestSender implements StreamingLibratoWriter.RequestSender {
+        private final List<StreamingLibratoWriter.Request> requests = new ArrayList<>();
+        private volatile boolean failing = false;
+        private volatile String failingMetric;
+
+        @Override
+        public synchronized int send(@Nonnull StreamingLibratoWriter.Request request) throws IOException {
+            if (failing) throw new IOException("Librato is down");
+            if (failingMetric != null && new String(request.getBody(), UTF_8).contains(failingMetric)) {
+                throw new IOException("Librato rejected " + failingMetric);
+            }
+            requests.add(request);
+            return request.getMeasurementCount();
+        }
+    }
+}
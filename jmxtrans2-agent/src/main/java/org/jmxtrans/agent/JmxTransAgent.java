@@ -50,7 +50,8 @@ public class JmxTransAgent {
         }
 
         try {
-            new JmxTransBuilder(false, Collections.<Resource>singletonList(new StandardResource(configFile))).build().start();
+            // the agent delays the start of the application, the streaming parser avoids the cost of loading JAXB
+            new JmxTransBuilder(false, Collections.<Resource>singletonList(new StandardResource(configFile)), true).build().start();
             logger.info("JmxTransAgent started with configuration '" + configFile + "'");
         } catch (Exception e) {
             String msg = "Exception loading JmxTransExporter from '" + configFile + "'";
@@ -0,0 +1,126 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.jmxtrans.core.output.support.BatchedOutputWriter;
+import org.jmxtrans.core.output.support.BatchingOutputWriter;
+import org.jmxtrans.core.results.QueryResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Results written concurrently to a single {@link BatchingOutputWriter}, whose target discards them. This measures
+ * the synchronized enqueue, and the sort of each batch by the thread which fills it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BatchingOutputWriterBenchmark {
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private List<QueryResult> results;
+    private BatchingOutputWriter<DiscardingOutputWriter> batchingOutputWriter;
+
+    @Setup
+    public void createWriter() {
+        results = ResultCorpus.create(4096);
+        batchingOutputWriter = new BatchingOutputWriter<>(batchSize, new DiscardingOutputWriter());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int threads01(Cursor cursor) throws IOException {
+        return write(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int threads04(Cursor cursor) throws IOException {
+        return write(cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int threads16(Cursor cursor) throws IOException {
+        return write(cursor);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public int threads32(Cursor cursor) throws IOException {
+        return write(cursor);
+    }
+
+    private int write(Cursor cursor) throws IOException {
+        return batchingOutputWriter.write(results.get(cursor.next(results.size())));
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        int next(int size) {
+            if (++index == size) index = 0;
+            return index;
+        }
+    }
+
+    private static final class DiscardingOutputWriter implements BatchedOutputWriter {
+        @Override
+        public void beforeBatch() {
+        }
+
+        @Override
+        public int write(@Nonnull QueryResult result) {
+            return 1;
+        }
+
+        @Override
+        public int afterBatch() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks;
+
+import java.util.List;
+import java.util.Queue;
+
+import org.jmxtrans.core.output.support.EvictingQueue;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.concurrent.DiscardingBlockingQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Concurrent offers to a full bounded queue, each offer evicting the oldest element, as when writers cannot keep up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EvictingQueueBenchmark {
+
+    private static final int CAPACITY = 1000;
+
+    @Param({"EvictingQueue", "DiscardingBlockingQueue"})
+    private String implementation;
+
+    private List<QueryResult> results;
+    private Queue<QueryResult> queue;
+
+    @Setup
+    public void createQueue() {
+        results = ResultCorpus.create(4096);
+        if ("EvictingQueue".equals(implementation)) {
+            queue = new EvictingQueue<>(CAPACITY);
+        } else {
+            queue = new DiscardingBlockingQueue<>(CAPACITY);
+        }
+        for (int i = 0; i < CAPACITY; i++) {
+            queue.offer(results.get(i));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean threads01(BatchingOutputWriterBenchmark.Cursor cursor) {
+        return offer(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean threads04(BatchingOutputWriterBenchmark.Cursor cursor) {
+        return offer(cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean threads16(BatchingOutputWriterBenchmark.Cursor cursor) {
+        return offer(cursor);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public boolean threads32(BatchingOutputWriterBenchmark.Cursor cursor) {
+        return offer(cursor);
+    }
+
+    private boolean offer(BatchingOutputWriterBenchmark.Cursor cursor) {
+        return queue.offer(results.get(cursor.next(results.size())));
+    }
+}
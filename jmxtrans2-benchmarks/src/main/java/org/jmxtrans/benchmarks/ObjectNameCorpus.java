@@ -0,0 +1,120 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * ObjectNames as exposed by commonly monitored applications, with the result alias typically used to query them.
+ */
+public enum ObjectNameCorpus {
+
+    KAFKA("kafka.%type%.%name%") {
+        @Override
+        protected void addObjectNames(@Nonnull List<String> names) {
+            String[] metrics = {"MessagesInPerSec", "BytesInPerSec", "BytesOutPerSec", "FailedFetchRequestsPerSec"};
+            for (String metric : metrics) {
+                names.add("kafka.server:type=BrokerTopicMetrics,name=" + metric);
+                for (int topic = 0; topic < 8; topic++) {
+                    names.add("kafka.server:type=BrokerTopicMetrics,name=" + metric + ",topic=orders-" + topic);
+                }
+            }
+            for (int partition = 0; partition < 16; partition++) {
+                names.add("kafka.log:type=Log,name=LogEndOffset,topic=orders-" + (partition % 8) + ",partition=" + partition);
+            }
+            names.add("kafka.network:type=RequestMetrics,name=TotalTimeMs,request=Produce");
+            names.add("kafka.network:type=RequestMetrics,name=TotalTimeMs,request=FetchConsumer");
+        }
+    },
+
+    TOMCAT("tomcat.%type%.%name%") {
+        @Override
+        protected void addObjectNames(@Nonnull List<String> names) {
+            String[] connectors = {"\"http-nio-8080\"", "\"https-jsse-nio-8443\"", "\"ajp-nio-8009\""};
+            for (String connector : connectors) {
+                names.add("Catalina:type=GlobalRequestProcessor,name=" + connector);
+                names.add("Catalina:type=ThreadPool,name=" + connector);
+            }
+            String[] contexts = {"/", "/api", "/admin", "/static/assets"};
+            for (String context : contexts) {
+                names.add("Catalina:type=Manager,host=localhost,context=" + context);
+                names.add("Catalina:j2eeType=Servlet,WebModule=//localhost" + context + ",name=default,J2EEApplication=none,J2EEServer=none");
+            }
+            names.add("Catalina:type=DataSource,host=localhost,context=/api,class=javax.sql.DataSource,name=\"jdbc/orders\"");
+        }
+    },
+
+    CASSANDRA("cassandra.%keyspace%.%scope%.%name%") {
+        @Override
+        protected void addObjectNames(@Nonnull List<String> names) {
+            String[] metrics = {"ReadLatency", "WriteLatency", "LiveSSTableCount", "PendingCompactions", "TombstoneScannedHistogram"};
+            String[] tables = {"users", "orders", "order_items", "sessions"};
+            for (String table : tables) {
+                for (String metric : metrics) {
+                    names.add("org.apache.cassandra.metrics:type=Table,keyspace=shop,scope=" + table + ",name=" + metric);
+                }
+            }
+            names.add("org.apache.cassandra.metrics:type=ThreadPools,path=request,scope=ReadStage,name=PendingTasks");
+            names.add("org.apache.cassandra.metrics:type=ClientRequest,scope=Read,name=Latency");
+        }
+    };
+
+    @Nonnull private final String resultAlias;
+    @Nonnull private final List<ObjectName> objectNames;
+
+    ObjectNameCorpus(@Nonnull String resultAlias) {
+        this.resultAlias = resultAlias;
+        List<String> names = new ArrayList<>();
+        addObjectNames(names);
+        List<ObjectName> parsed = new ArrayList<>(names.size());
+        try {
+            for (String name : names) {
+                parsed.add(new ObjectName(name));
+            }
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("Invalid ObjectName in corpus " + name(), e);
+        }
+        this.objectNames = Collections.unmodifiableList(parsed);
+    }
+
+    protected abstract void addObjectNames(@Nonnull List<String> names);
+
+    /**
+     * @return result alias referencing the key properties of the ObjectNames of this corpus.
+     */
+    @Nonnull
+    public String getResultAlias() {
+        return resultAlias;
+    }
+
+    @Nonnull
+    public List<ObjectName> getObjectNames() {
+        return objectNames;
+    }
+}
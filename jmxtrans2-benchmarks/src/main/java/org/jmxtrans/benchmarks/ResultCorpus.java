@@ -0,0 +1,72 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.results.QueryResult;
+
+/**
+ * Results as collected from the ObjectNames of {@link ObjectNameCorpus}: mixed value types, counters and gauges, and
+ * timestamps spread over a few seconds as results from different queries are batched together.
+ */
+public final class ResultCorpus {
+
+    private static final long EPOCH = 1420070400000L;
+
+    private ResultCorpus() {
+    }
+
+    @Nonnull
+    public static List<QueryResult> create(int count) {
+        Random random = new Random(42);
+        List<ObjectName> objectNames = new ArrayList<>();
+        for (ObjectNameCorpus corpus : ObjectNameCorpus.values()) {
+            objectNames.addAll(corpus.getObjectNames());
+        }
+        List<QueryResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ObjectName objectName = objectNames.get(i % objectNames.size());
+            String name = objectName.getDomain() + "." + objectName.getKeyProperty("type") + "."
+                    + objectName.getKeyProperty("name") + ".Count";
+            long epoch = EPOCH + random.nextInt(5000);
+            switch (i % 3) {
+                case 0:
+                    results.add(new QueryResult(name, "counter", random.nextLong() & Long.MAX_VALUE, epoch));
+                    break;
+                case 1:
+                    results.add(new QueryResult(name, "gauge", random.nextDouble() * 1000, epoch));
+                    break;
+                default:
+                    results.add(new QueryResult(name, "gauge", random.nextInt(10000), epoch));
+                    break;
+            }
+        }
+        return results;
+    }
+}
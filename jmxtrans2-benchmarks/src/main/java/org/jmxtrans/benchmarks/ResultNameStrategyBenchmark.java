@@ -0,0 +1,98 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks;
+
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.QueryAttribute;
+import org.jmxtrans.core.query.ResultNameStrategy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Naming of a result, once per collected attribute: with the escaped ObjectName when the query has no alias, with
+ * the evaluated alias otherwise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ResultNameStrategyBenchmark {
+
+    @Param
+    private ObjectNameCorpus corpus;
+
+    private ResultNameStrategy resultNameStrategy;
+    private Query query;
+    private Query aliasedQuery;
+    private QueryAttribute attribute;
+    private List<ObjectName> objectNames;
+    private int index;
+
+    @Setup
+    public void createStrategy() {
+        resultNameStrategy = new ResultNameStrategy();
+        objectNames = corpus.getObjectNames();
+        ObjectName pattern = objectNames.get(0);
+        query = Query.builder().withObjectName(pattern).build();
+        aliasedQuery = Query.builder().withObjectName(pattern).withResultAlias(corpus.getResultAlias()).build();
+        attribute = QueryAttribute.builder("Count").build();
+    }
+
+    @Benchmark
+    public String escapedObjectName() {
+        return resultNameStrategy.getResultName(query, nextObjectName(), attribute);
+    }
+
+    @Benchmark
+    public String resultAlias() {
+        return resultNameStrategy.getResultName(aliasedQuery, nextObjectName(), attribute);
+    }
+
+    @Benchmark
+    public String resultAliasWithKey() {
+        return resultNameStrategy.getResultName(aliasedQuery, nextObjectName(), attribute, "used");
+    }
+
+    private ObjectName nextObjectName() {
+        if (++index == objectNames.size()) index = 0;
+        return objectNames.get(index);
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks;
+
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.template.KeepAlphaNumeric;
+import org.jmxtrans.core.template.KeepAlphaNumericAndDots;
+import org.jmxtrans.core.template.StringEscape;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Escaping of ObjectName values, applied to every key property when building result names.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StringEscapeBenchmark {
+
+    @Param
+    private ObjectNameCorpus corpus;
+
+    @Param({"KeepAlphaNumeric", "KeepAlphaNumericAndDots"})
+    private String escape;
+
+    private StringEscape stringEscape;
+    private String[] values;
+    private final StringBuilder result = new StringBuilder();
+    private int index;
+
+    @Setup
+    public void createEscape() {
+        stringEscape = "KeepAlphaNumeric".equals(escape) ? new KeepAlphaNumeric() : new KeepAlphaNumericAndDots();
+        List<ObjectName> objectNames = corpus.getObjectNames();
+        values = new String[objectNames.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = objectNames.get(i).getCanonicalKeyPropertyListString();
+        }
+    }
+
+    @Benchmark
+    public int escape() {
+        if (++index == values.length) index = 0;
+        result.setLength(0);
+        stringEscape.escape(values[index], result);
+        return result.length();
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.template.ExpressionEvaluator;
+import org.jmxtrans.core.template.TemplateEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Evaluation of result aliases. {@link org.jmxtrans.core.query.ResultNameStrategy} builds a new engine for each
+ * ObjectName, so both the evaluation alone and the construction followed by the evaluation are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TemplateEngineBenchmark {
+
+    @Param
+    private ObjectNameCorpus corpus;
+
+    private String expression;
+    private List<ObjectName> objectNames;
+    private List<TemplateEngine> engines;
+    private int index;
+
+    @Setup
+    public void createEngines() {
+        expression = corpus.getResultAlias() + ".#hostname#";
+        objectNames = corpus.getObjectNames();
+        engines = new ArrayList<>(objectNames.size());
+        for (ObjectName objectName : objectNames) {
+            engines.add(createEngine(objectName));
+        }
+    }
+
+    @Benchmark
+    public String evaluate() {
+        next();
+        return engines.get(index).evaluate(expression);
+    }
+
+    @Benchmark
+    public String createAndEvaluate() {
+        next();
+        return createEngine(objectNames.get(index)).evaluate(expression);
+    }
+
+    private TemplateEngine createEngine(ObjectName objectName) {
+        return TemplateEngine.builder()
+                .addEvaluator('%', ExpressionEvaluator.builder()
+                        .addExpressions(objectName.getKeyPropertyList())
+                        .build())
+                .addEvaluator('#', ExpressionEvaluator.builder()
+                        .addExpression("hostname", "app-042.eu-west-1.example.com")
+                        .build())
+                .doNotEscapeDots()
+                .build();
+    }
+
+    private void next() {
+        if (++index == objectNames.size()) index = 0;
+    }
+}
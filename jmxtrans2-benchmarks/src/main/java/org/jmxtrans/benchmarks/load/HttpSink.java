@@ -0,0 +1,139 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.utils.concurrent.NamedThreadFactory;
+import org.jmxtrans.writers.additional.StreamingLibratoWriter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+/**
+ * HTTP server accepting Librato requests, counting one metric per {@code "name"} field of the JSON body.
+ */
+@ThreadSafe
+public class HttpSink implements MetricSink {
+
+    private static final String PATH = "/v1/metrics";
+    private static final byte[] NAME_FIELD = "\"name\"".getBytes(UTF_8);
+
+    @Nonnull private final AtomicLong measurements = new AtomicLong();
+    @Nonnull private final AtomicLong requests = new AtomicLong();
+    @Nonnull private final ExecutorService executor = Executors.newFixedThreadPool(4, new NamedThreadFactory("http-sink-", true));
+    private final int batchSize;
+    @Nullable private volatile HttpServer server;
+
+    public HttpSink(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void start() throws IOException {
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext(PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try (InputStream body = exchange.getRequestBody()) {
+                    measurements.addAndGet(countNames(body));
+                }
+                requests.incrementAndGet();
+                exchange.sendResponseHeaders(HTTP_OK, -1);
+                exchange.close();
+            }
+        });
+        httpServer.setExecutor(executor);
+        httpServer.start();
+        server = httpServer;
+    }
+
+    private static long countNames(@Nonnull InputStream body) throws IOException {
+        long count = 0;
+        int matched = 0;
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == NAME_FIELD[matched]) {
+                    if (++matched == NAME_FIELD.length) {
+                        count++;
+                        matched = 0;
+                    }
+                } else {
+                    matched = buffer[i] == NAME_FIELD[0] ? 1 : 0;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getReceivedMetrics() {
+        return measurements.get();
+    }
+
+    public long getReceivedRequests() {
+        return requests.get();
+    }
+
+    @Nonnull
+    @Override
+    public String getOutputWriterClass() {
+        return StreamingLibratoWriter.class.getName();
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> getOutputWriterSettings() {
+        HttpServer httpServer = server;
+        if (httpServer == null) throw new IllegalStateException("Sink not started");
+        Map<String, String> settings = new HashMap<>();
+        settings.put("libratoUrl", "http://localhost:" + httpServer.getAddress().getPort() + PATH);
+        settings.put("batchSize", String.valueOf(batchSize));
+        return settings;
+    }
+
+    @Override
+    public void close() {
+        HttpServer httpServer = server;
+        if (httpServer != null) httpServer.stop(0);
+        executor.shutdownNow();
+    }
+}
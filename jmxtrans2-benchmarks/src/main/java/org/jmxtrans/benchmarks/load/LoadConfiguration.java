@@ -0,0 +1,127 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.management.remote.JMXServiceURL;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import static org.jmxtrans.benchmarks.load.SyntheticMBean.COMPOSITE;
+import static org.jmxtrans.benchmarks.load.SyntheticMBean.compositeKeyName;
+import static org.jmxtrans.benchmarks.load.SyntheticMBean.counterName;
+import static org.jmxtrans.benchmarks.load.SyntheticMBean.gaugeName;
+
+/**
+ * Writes the JmxTrans XML configuration collecting all synthetic MBeans of a farm and sending them to a sink.
+ */
+public final class LoadConfiguration {
+
+    private static final String NAMESPACE = "http://jmxtrans.org/config/2.0";
+
+    private LoadConfiguration() {
+    }
+
+    @Nonnull
+    public static File write(
+            @Nonnull LoadParameters parameters,
+            @Nonnull Iterable<JMXServiceURL> serviceUrls,
+            @Nonnull MetricSink sink) throws IOException {
+        File file = File.createTempFile("jmxtrans-load-", ".xml");
+        file.deleteOnExit();
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeStartElement("jmxtrans");
+            xml.writeDefaultNamespace(NAMESPACE);
+            xml.writeAttribute("collectIntervalInSeconds", String.valueOf(parameters.getPeriodSeconds()));
+
+            xml.writeStartElement("servers");
+            for (JMXServiceURL serviceUrl : serviceUrls) {
+                writeServer(xml, parameters, serviceUrl);
+            }
+            xml.writeEndElement();
+
+            xml.writeStartElement("outputWriters");
+            xml.writeStartElement("outputWriter");
+            xml.writeAttribute("class", sink.getOutputWriterClass());
+            for (Map.Entry<String, String> setting : sink.getOutputWriterSettings().entrySet()) {
+                xml.writeAttribute(setting.getKey(), setting.getValue());
+            }
+            xml.writeEndElement();
+            xml.writeEndElement();
+
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not write load configuration", e);
+        }
+        return file;
+    }
+
+    private static void writeServer(
+            @Nonnull XMLStreamWriter xml,
+            @Nonnull LoadParameters parameters,
+            @Nonnull JMXServiceURL serviceUrl) throws XMLStreamException {
+        xml.writeStartElement("server");
+        xml.writeAttribute("jmxUrl", serviceUrl.toString());
+        xml.writeStartElement("queries");
+        xml.writeStartElement("query");
+        xml.writeAttribute("objectName", MBeanFarm.getObjectNamePattern());
+        xml.writeAttribute("resultAlias", "synthetic.%name%");
+        xml.writeAttribute("maxResults", String.valueOf(parameters.getMetricsPerServer()));
+        for (int i = 0; i < parameters.getCounters(); i++) {
+            startQueryAttribute(xml, counterName(i));
+            xml.writeEndElement();
+        }
+        for (int i = 0; i < parameters.getGauges(); i++) {
+            startQueryAttribute(xml, gaugeName(i));
+            xml.writeEndElement();
+        }
+        if (parameters.getCompositeKeys() > 0) {
+            startQueryAttribute(xml, COMPOSITE);
+            for (int i = 0; i < parameters.getCompositeKeys(); i++) {
+                xml.writeStartElement("key");
+                xml.writeCharacters(compositeKeyName(i));
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    private static void startQueryAttribute(@Nonnull XMLStreamWriter xml, @Nonnull String name) throws XMLStreamException {
+        xml.writeStartElement("queryAttribute");
+        xml.writeAttribute("name", name);
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks.load;
+
+import java.io.File;
+import java.io.PrintStream;
+
+import org.jmxtrans.core.config.JmxTransBuilder;
+import org.jmxtrans.core.scheduler.NaiveScheduler;
+import org.jmxtrans.utils.io.FileResource;
+import org.jmxtrans.utils.io.Resource;
+import org.jmxtrans.utils.time.Clock;
+import org.jmxtrans.utils.time.SystemClock;
+
+import com.beust.jcommander.JCommander;
+
+import static java.util.Collections.singleton;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Runs JmxTrans against a farm of synthetic MBeans, exposed as remote servers over RMI, and writing to a local sink.
+ * At each collection period, reports the metrics received per second, the failed and missed collections (timeouts
+ * and queries dropped because their deadline passed), the collection and pipeline latencies and the heap used by the
+ * whole process, farm included.
+ */
+public final class LoadHarness {
+
+    private static final long MEGABYTE = 1024 * 1024;
+    private static final String HEADER = "%8s %12s %10s %10s %8s %8s %12s %14s %8s %10s%n";
+    private static final String ROW = "%8d %12.1f %10d %10d %8d %8d %12d %14d %8d %10d%n";
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadParameters parameters = new LoadParameters();
+        JCommander jCommander = new JCommander(parameters, args);
+        jCommander.setProgramName(LoadHarness.class.getName());
+        if (parameters.isHelp()) {
+            jCommander.usage();
+            return;
+        }
+        run(parameters, System.out);
+    }
+
+    public static void run(LoadParameters parameters, PrintStream out) throws Exception {
+        Clock clock = new SystemClock();
+        try (MBeanFarm farm = new MBeanFarm(
+                parameters.getServers(),
+                parameters.getMbeans(),
+                parameters.getCounters(),
+                parameters.getGauges(),
+                parameters.getCompositeKeys());
+             MetricSink sink = createSink(parameters)) {
+            farm.start();
+            sink.start();
+
+            File configuration = LoadConfiguration.write(parameters, farm.getServiceUrls(), sink);
+            NaiveScheduler scheduler = new JmxTransBuilder(false, singleton((Resource) new FileResource(configuration))).build();
+
+            out.printf("%d servers x %d metrics every %ds = %.1f metrics/s expected, writing to %s%n",
+                    parameters.getServers(),
+                    parameters.getMetricsPerServer(),
+                    parameters.getPeriodSeconds(),
+                    parameters.getServers() * parameters.getMetricsPerServer() / (double) parameters.getPeriodSeconds(),
+                    sink.getOutputWriterClass());
+            out.printf(HEADER, "elapsed", "metrics/s", "collected", "unwritten", "failed", "missed", "query p99ms", "pipeline p99us", "stretch", "heap MB");
+
+            LoadProbe probe = new LoadProbe(clock, sink);
+            scheduler.start();
+            try {
+                LoadProbe.Sample start = probe.sample();
+                LoadProbe.Sample previous = start;
+                long maxHeap = 0;
+                long end = start.getEpochMillis() + SECONDS.toMillis(parameters.getDurationSeconds());
+                while (clock.currentTimeMillis() < end) {
+                    Thread.sleep(SECONDS.toMillis(parameters.getPeriodSeconds()));
+                    LoadProbe.Sample current = probe.sample();
+                    maxHeap = Math.max(maxHeap, current.getHeapUsedBytes());
+                    print(out, parameters, start, previous, current);
+                    previous = current;
+                }
+                out.println();
+                out.printf("average %.1f metrics/s, max heap %d MB%n",
+                        previous.metricsPerSecondSince(start), maxHeap / MEGABYTE);
+            } finally {
+                scheduler.stop();
+            }
+        }
+    }
+
+    /**
+     * Unwritten metrics are the ones collected but not received by the sink, either still in flight or dropped.
+     */
+    private static void print(PrintStream out, LoadParameters parameters, LoadProbe.Sample start, LoadProbe.Sample previous, LoadProbe.Sample current) {
+        long collections = current.getCollections() - start.getCollections();
+        long received = current.getReceivedMetrics() - start.getReceivedMetrics();
+        out.printf(ROW,
+                MILLISECONDS.toSeconds(current.getEpochMillis() - start.getEpochMillis()),
+                current.metricsPerSecondSince(previous),
+                collections,
+                collections * parameters.getMetricsPerServer() - received,
+                current.getFailures() - start.getFailures(),
+                current.getTimeouts() - start.getTimeouts(),
+                current.getCollectionLatencyP99Millis(),
+                current.getPipelineLatencyP99Micros(),
+                current.getStretchFactor(),
+                current.getHeapUsedBytes() / MEGABYTE);
+    }
+
+    private static MetricSink createSink(LoadParameters parameters) {
+        switch (parameters.getWriter()) {
+            case "graphite":
+                return new TcpLineSink(parameters.getBatchSize());
+            case "librato":
+                return new HttpSink(parameters.getBatchSize());
+            default:
+                throw new IllegalArgumentException("Unknown writer " + parameters.getWriter() + ", expected graphite or librato");
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks.load;
+
+import com.beust.jcommander.Parameter;
+
+public class LoadParameters {
+
+    @Parameter(
+            names = { "--servers", "-s" },
+            description = "Number of simulated remote servers, each with its own MBeanServer and RMI connector.")
+    private int servers = 10;
+
+    @Parameter(
+            names = { "--mbeans", "-m" },
+            description = "Number of synthetic MBeans per server, all matched by a single query.")
+    private int mbeans = 100;
+
+    @Parameter(
+            names = "--counters",
+            description = "Number of monotonic long attributes per MBean.")
+    private int counters = 4;
+
+    @Parameter(
+            names = "--gauges",
+            description = "Number of double attributes per MBean.")
+    private int gauges = 4;
+
+    @Parameter(
+            names = "--compositeKeys",
+            description = "Number of keys of the CompositeData attribute of each MBean, 0 to have no such attribute.")
+    private int compositeKeys = 4;
+
+    @Parameter(
+            names = { "--writer", "-w" },
+            description = "Output writer to load: graphite (TCP) or librato (HTTP).")
+    private String writer = "graphite";
+
+    @Parameter(
+            names = "--batchSize",
+            description = "Batch size of the output writer.")
+    private int batchSize = 100;
+
+    @Parameter(
+            names = { "--period", "-p" },
+            description = "Collection period, in seconds.")
+    private int periodSeconds = 10;
+
+    @Parameter(
+            names = { "--duration", "-d" },
+            description = "Duration of the run, in seconds.")
+    private int durationSeconds = 120;
+
+    @Parameter(
+            names = { "--help", "-h" },
+            description = "Display this help message",
+            help = true)
+    private boolean help;
+
+    public int getServers() {
+        return servers;
+    }
+
+    public int getMbeans() {
+        return mbeans;
+    }
+
+    public int getCounters() {
+        return counters;
+    }
+
+    public int getGauges() {
+        return gauges;
+    }
+
+    public int getCompositeKeys() {
+        return compositeKeys;
+    }
+
+    public String getWriter() {
+        return writer;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getPeriodSeconds() {
+        return periodSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public boolean isHelp() {
+        return help;
+    }
+
+    /**
+     * @return number of metrics each server should produce at each collection.
+     */
+    public int getMetricsPerServer() {
+        return mbeans * (counters + gauges + compositeKeys);
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks.load;
+
+import java.lang.management.MemoryMXBean;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jmxtrans.utils.time.Clock;
+
+import static java.lang.management.ManagementFactory.getMemoryMXBean;
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+
+/**
+ * Samples the MBeans JmxTrans publishes about itself and the metrics received by the sink.
+ */
+@NotThreadSafe
+public class LoadProbe {
+
+    @Nonnull private final MBeanServer mbeanServer = getPlatformMBeanServer();
+    @Nonnull private final MemoryMXBean memory = getMemoryMXBean();
+    @Nonnull private final ObjectName targetHealths;
+    @Nonnull private final ObjectName pipelineMetrics;
+    @Nonnull private final ObjectName overloadController;
+    @Nonnull private final Clock clock;
+    @Nonnull private final MetricSink sink;
+
+    public LoadProbe(@Nonnull Clock clock, @Nonnull MetricSink sink) throws JMException {
+        this.clock = clock;
+        this.sink = sink;
+        targetHealths = new ObjectName("org.jmxtrans:type=collection,component=*,*");
+        pipelineMetrics = new ObjectName("org.jmxtrans:type=pipeline,name=stages,*");
+        overloadController = new ObjectName("org.jmxtrans:type=scheduler,name=overload,*");
+    }
+
+    @Nonnull
+    public Sample sample() throws JMException {
+        long collections = 0;
+        long failures = 0;
+        long timeouts = 0;
+        long latencyP99Millis = 0;
+        for (ObjectName targetHealth : mbeanServer.queryNames(targetHealths, null)) {
+            collections += (Long) mbeanServer.getAttribute(targetHealth, "CollectionCount");
+            failures += (Long) mbeanServer.getAttribute(targetHealth, "ConnectFailureCount");
+            failures += (Long) mbeanServer.getAttribute(targetHealth, "CollectionFailureCount");
+            timeouts += (Long) mbeanServer.getAttribute(targetHealth, "TimeoutCount");
+            latencyP99Millis = Math.max(latencyP99Millis, (Long) mbeanServer.getAttribute(targetHealth, "LatencyP99Millis"));
+        }
+        return new Sample(
+                clock.currentTimeMillis(),
+                sink.getReceivedMetrics(),
+                collections,
+                failures,
+                timeouts,
+                latencyP99Millis,
+                (Long) single(pipelineMetrics, "TotalLatencyP99Micros"),
+                (Integer) single(overloadController, "StretchFactor"),
+                memory.getHeapMemoryUsage().getUsed());
+    }
+
+    @Nonnull
+    private Object single(@Nonnull ObjectName pattern, @Nonnull String attribute) throws JMException {
+        Set<ObjectName> names = mbeanServer.queryNames(pattern, null);
+        if (names.size() != 1) throw new IllegalStateException("Expected a single MBean matching " + pattern + " but found " + names);
+        return mbeanServer.getAttribute(names.iterator().next(), attribute);
+    }
+
+    @Immutable
+    public static final class Sample {
+        private final long epochMillis;
+        private final long receivedMetrics;
+        private final long collections;
+        private final long failures;
+        private final long timeouts;
+        private final long collectionLatencyP99Millis;
+        private final long pipelineLatencyP99Micros;
+        private final int stretchFactor;
+        private final long heapUsedBytes;
+
+        public Sample(long epochMillis, long receivedMetrics, long collections, long failures, long timeouts,
+                      long collectionLatencyP99Millis, long pipelineLatencyP99Micros, int stretchFactor,
+                      long heapUsedBytes) {
+            this.epochMillis = epochMillis;
+            this.receivedMetrics = receivedMetrics;
+            this.collections = collections;
+            this.failures = failures;
+            this.timeouts = timeouts;
+            this.collectionLatencyP99Millis = collectionLatencyP99Millis;
+            this.pipelineLatencyP99Micros = pipelineLatencyP99Micros;
+            this.stretchFactor = stretchFactor;
+            this.heapUsedBytes = heapUsedBytes;
+        }
+
+        public long getEpochMillis() {
+            return epochMillis;
+        }
+
+        public long getReceivedMetrics() {
+            return receivedMetrics;
+        }
+
+        public long getCollections() {
+            return collections;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getCollectionLatencyP99Millis() {
+            return collectionLatencyP99Millis;
+        }
+
+        public long getPipelineLatencyP99Micros() {
+            return pipelineLatencyP99Micros;
+        }
+
+        public int getStretchFactor() {
+            return stretchFactor;
+        }
+
+        public long getHeapUsedBytes() {
+            return heapUsedBytes;
+        }
+
+        /**
+         * @return metrics received by the sink per second, between the given earlier sample and this one.
+         */
+        public double metricsPerSecondSince(@Nonnull Sample earlier) {
+            long elapsedMillis = epochMillis - earlier.epochMillis;
+            if (elapsedMillis <= 0) return 0;
+            return (receivedMetrics - earlier.receivedMetrics) * 1000.0 / elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks.load;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.rmi.NoSuchObjectException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import static java.lang.String.format;
+
+/**
+ * A set of MBeanServers populated with {@link SyntheticMBean}s, each exposed by its own RMI connector, so that they
+ * are seen by JmxTrans as distinct remote servers. The host part of each service URL names the simulated server, it
+ * is not resolved as the connector is looked up in a local RMI registry.
+ */
+@NotThreadSafe
+public class MBeanFarm implements Closeable {
+
+    public static final String DOMAIN = "synthetic";
+
+    private final int servers;
+    private final int mbeans;
+    private final int counters;
+    private final int gauges;
+    private final int compositeKeys;
+
+    @Nullable private Registry registry;
+    @Nonnull private final List<MBeanServer> mbeanServers = new ArrayList<>();
+    @Nonnull private final List<JMXConnectorServer> connectorServers = new ArrayList<>();
+    @Nonnull private final List<JMXServiceURL> serviceUrls = new ArrayList<>();
+
+    public MBeanFarm(int servers, int mbeans, int counters, int gauges, int compositeKeys) {
+        this.servers = servers;
+        this.mbeans = mbeans;
+        this.counters = counters;
+        this.gauges = gauges;
+        this.compositeKeys = compositeKeys;
+    }
+
+    public void start() throws IOException, JMException {
+        int port = freePort();
+        registry = LocateRegistry.createRegistry(port);
+        for (int server = 0; server < servers; server++) {
+            MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+            for (int mbean = 0; mbean < mbeans; mbean++) {
+                mbeanServer.registerMBean(
+                        new SyntheticMBean(counters, gauges, compositeKeys, server * mbeans + mbean),
+                        new ObjectName(DOMAIN, "name", "mbean" + mbean));
+            }
+            mbeanServers.add(mbeanServer);
+
+            JMXServiceURL url = new JMXServiceURL(format("service:jmx:rmi://server%d/jndi/rmi://localhost:%d/server%d", server, port, server));
+            JMXConnectorServer connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(url, null, mbeanServer);
+            connectorServer.start();
+            connectorServers.add(connectorServer);
+            serviceUrls.add(connectorServer.getAddress());
+        }
+    }
+
+    /**
+     * @return the pattern matching all synthetic MBeans of a server.
+     */
+    @Nonnull
+    public static String getObjectNamePattern() {
+        return DOMAIN + ":name=*";
+    }
+
+    @Nonnull
+    public List<JMXServiceURL> getServiceUrls() {
+        return Collections.unmodifiableList(serviceUrls);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (JMXConnectorServer connectorServer : connectorServers) {
+            connectorServer.stop();
+        }
+        connectorServers.clear();
+        // servers created by MBeanServerFactory.newMBeanServer() are not referenced by the factory
+        mbeanServers.clear();
+        if (registry != null) {
+            try {
+                UnicastRemoteObject.unexportObject(registry, true);
+            } catch (NoSuchObjectException ignored) {
+                // already unexported
+            }
+            registry = null;
+        }
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
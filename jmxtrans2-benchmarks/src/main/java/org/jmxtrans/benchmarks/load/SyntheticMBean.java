@@ -0,0 +1,182 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanConstructorInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+/**
+ * MBean exposing a configurable number of counters, gauges and keys of a CompositeData attribute. Counters increase
+ * at each read, gauges are random.
+ */
+@ThreadSafe
+public class SyntheticMBean implements DynamicMBean {
+
+    public static final String COMPOSITE = "Composite";
+
+    @Nonnull private final MBeanInfo info;
+    @Nonnull private final AtomicLong reads = new AtomicLong();
+    @Nonnull private final Random random;
+    private final int counters;
+    private final int gauges;
+    private final CompositeType compositeType;
+
+    public SyntheticMBean(int counters, int gauges, int compositeKeys, long seed) throws OpenDataException {
+        this.counters = counters;
+        this.gauges = gauges;
+        this.random = new Random(seed);
+
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (int i = 0; i < counters; i++) {
+            attributes.add(new MBeanAttributeInfo(counterName(i), "long", "Synthetic counter", true, false, false));
+        }
+        for (int i = 0; i < gauges; i++) {
+            attributes.add(new MBeanAttributeInfo(gaugeName(i), "double", "Synthetic gauge", true, false, false));
+        }
+        if (compositeKeys > 0) {
+            String[] keys = new String[compositeKeys];
+            OpenType<?>[] types = new OpenType<?>[compositeKeys];
+            for (int i = 0; i < compositeKeys; i++) {
+                keys[i] = compositeKeyName(i);
+                types[i] = SimpleType.LONG;
+            }
+            compositeType = new CompositeType("Synthetic", "Synthetic composite", keys, keys, types);
+            attributes.add(new MBeanAttributeInfo(
+                    COMPOSITE, CompositeDataSupport.class.getName(), "Synthetic composite", true, false, false));
+        } else {
+            compositeType = null;
+        }
+
+        info = new MBeanInfo(
+                getClass().getName(),
+                "Synthetic MBean",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                new MBeanConstructorInfo[0],
+                new MBeanOperationInfo[0],
+                new MBeanNotificationInfo[0]);
+    }
+
+    @Nonnull
+    public static String counterName(int index) {
+        return "Counter" + index;
+    }
+
+    @Nonnull
+    public static String gaugeName(int index) {
+        return "Gauge" + index;
+    }
+
+    @Nonnull
+    public static String compositeKeyName(int index) {
+        return "key" + index;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        long read = reads.incrementAndGet();
+        if (attribute.startsWith("Counter")) {
+            return read * (index(attribute, "Counter", counters) + 1);
+        }
+        if (attribute.startsWith("Gauge")) {
+            index(attribute, "Gauge", gauges);
+            synchronized (random) {
+                return random.nextDouble() * 1000;
+            }
+        }
+        if (COMPOSITE.equals(attribute) && compositeType != null) {
+            String[] keys = compositeType.keySet().toArray(new String[0]);
+            Object[] values = new Object[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                values[i] = read + i;
+            }
+            try {
+                return new CompositeDataSupport(compositeType, keys, values);
+            } catch (OpenDataException e) {
+                throw new IllegalStateException("Composite values do not match their type", e);
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    private static int index(@Nonnull String attribute, @Nonnull String prefix, int count) throws AttributeNotFoundException {
+        try {
+            int index = Integer.parseInt(attribute.substring(prefix.length()));
+            if (index >= 0 && index < count) return index;
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Synthetic attributes are read only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList result = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                result.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException ignored) {
+                // missing attributes are omitted, as specified by DynamicMBean
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("Synthetic MBeans have no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return info;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.benchmarks.load;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.output.writers.GraphiteOutputWriter;
+import org.jmxtrans.utils.concurrent.NamedThreadFactory;
+
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+/**
+ * Line based TCP server, as Graphite, counting one metric per line.
+ */
+@ThreadSafe
+public class TcpLineSink implements MetricSink {
+
+    @Nonnull private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+    @Nonnull private final AtomicLong lines = new AtomicLong();
+    @Nonnull private final ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("tcp-sink-", true));
+    private final int batchSize;
+    @Nullable private volatile ServerSocket serverSocket;
+
+    public TcpLineSink(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void start() throws IOException {
+        final ServerSocket socket = new ServerSocket(0);
+        serverSocket = socket;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (!socket.isClosed()) {
+                    try {
+                        final Socket connection = socket.accept();
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                consume(connection);
+                            }
+                        });
+                    } catch (IOException e) {
+                        if (!socket.isClosed()) logger.warn("Could not accept connection", e);
+                    }
+                }
+            }
+        });
+    }
+
+    private void consume(@Nonnull Socket connection) {
+        try (Socket s = connection;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), UTF_8))) {
+            while (in.readLine() != null) {
+                lines.incrementAndGet();
+            }
+        } catch (SocketException closed) {
+            // sink is stopping
+        } catch (IOException e) {
+            logger.warn("Could not read from connection", e);
+        }
+    }
+
+    @Override
+    public long getReceivedMetrics() {
+        return lines.get();
+    }
+
+    @Nonnull
+    @Override
+    public String getOutputWriterClass() {
+        return GraphiteOutputWriter.class.getName();
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> getOutputWriterSettings() {
+        ServerSocket socket = serverSocket;
+        if (socket == null) throw new IllegalStateException("Sink not started");
+        Map<String, String> settings = new HashMap<>();
+        settings.put("hostname", "localhost");
+        settings.put("port", String.valueOf(socket.getLocalPort()));
+        settings.put("batchSize", String.valueOf(batchSize));
+        return settings;
+    }
+
+    @Override
+    public void close() throws IOException {
+        ServerSocket socket = serverSocket;
+        if (socket != null) socket.close();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.writers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import org.jmxtrans.benchmarks.ResultCorpus;
+import org.jmxtrans.core.output.support.MinimalFormatOutputWriter;
+import org.jmxtrans.core.output.support.WriterBasedOutputWriter;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.io.NullOutputStream;
+import org.jmxtrans.writers.additional.LibratoWriter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+/**
+ * Serialization of a batch of results by each encoder, to a sink discarding the bytes. Writer based encoders go
+ * through the same buffered UTF-8 writer as {@link org.jmxtrans.core.output.support.TcpOutputWriter}. Scores are
+ * per result.
+ *
+ * Lives in the package of {@link GraphiteOutputWriter} to create the encoder alone, its factory wraps it in a TCP
+ * writer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EncoderBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final OutputStream sink = new NullOutputStream();
+    private List<QueryResult> results;
+    private WriterBasedOutputWriter graphite;
+    private WriterBasedOutputWriter minimalFormat;
+    private LibratoWriter librato;
+
+    @Setup
+    public void createEncoders() {
+        results = ResultCorpus.create(BATCH_SIZE);
+        graphite = new GraphiteOutputWriter();
+        minimalFormat = new MinimalFormatOutputWriter();
+        librato = new LibratoWriter(new JsonFactory(), "hostname");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int graphite() throws IOException {
+        return write(graphite);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int minimalFormat() throws IOException {
+        return write(minimalFormat);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int librato() throws IOException {
+        int count = 0;
+        librato.beforeBatch(sink);
+        for (QueryResult result : results) {
+            count += librato.write(sink, result);
+        }
+        return count + librato.afterBatch(sink);
+    }
+
+    private int write(WriterBasedOutputWriter encoder) throws IOException {
+        int count = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(sink, UTF_8))) {
+            for (QueryResult result : results) {
+                count += encoder.write(writer, result);
+            }
+        }
+        return count;
+    }
+}
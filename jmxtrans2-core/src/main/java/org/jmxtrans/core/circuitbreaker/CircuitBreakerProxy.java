@@ -27,6 +27,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
@@ -36,6 +38,8 @@ import org.jmxtrans.core.log.Logger;
 import org.jmxtrans.core.log.LoggerFactory;
 import org.jmxtrans.utils.time.Clock;
 
+import static java.util.Arrays.asList;
+
 @ThreadSafe
 public class CircuitBreakerProxy implements InvocationHandler {
 
@@ -119,16 +123,24 @@ public class CircuitBreakerProxy implements InvocationHandler {
         }
     }
 
+    /**
+     * @param additionalInterfaces other interfaces of the target exposed by the proxy. The circuit breaker is not
+     *                             applied to their methods.
+     */
     @Nonnull
     public static <T> T create(
             @Nonnull Clock clock,
             @Nonnull Class<T> proxiedInterface,
             @Nonnull T target,
             int maxFailures,
-            int disableDurationMillis) {
+            int disableDurationMillis,
+            @Nonnull Class<?>... additionalInterfaces) {
+        List<Class<?>> interfaces = new ArrayList<>();
+        interfaces.add(proxiedInterface);
+        interfaces.addAll(asList(additionalInterfaces));
         return (T) Proxy.newProxyInstance(
                 CircuitBreakerProxy.class.getClassLoader(),
-                new Class[]{proxiedInterface},
+                interfaces.toArray(new Class<?>[interfaces.size()]),
                 new CircuitBreakerProxy(clock, proxiedInterface, target, maxFailures, disableDurationMillis));
     }
 
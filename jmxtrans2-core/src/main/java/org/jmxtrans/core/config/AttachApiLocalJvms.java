@@ -0,0 +1,168 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.utils.PropertyPlaceholderResolver;
+
+import static java.lang.String.format;
+
+/**
+ * {@link LocalJvms} implemented with the attach API of the JDK.
+ *
+ * The attach API is accessed by reflection: it is part of {@code tools.jar} up to Java 8, which is not on the
+ * classpath of a JRE, and of the {@code jdk.attach} module after. Starting the local management agent of a JVM
+ * requires Java 8, older JVMs are only collected if their agent is already running.
+ */
+@ThreadSafe
+final class AttachApiLocalJvms implements LocalJvms {
+
+    private static final String VIRTUAL_MACHINE = "com.sun.tools.attach.VirtualMachine";
+    private static final String VIRTUAL_MACHINE_DESCRIPTOR = "com.sun.tools.attach.VirtualMachineDescriptor";
+    private static final String LOCAL_CONNECTOR_ADDRESS = "com.sun.management.jmxremote.localConnectorAddress";
+
+    @Nonnull private final Method list;
+    @Nonnull private final Method attach;
+    @Nonnull private final Method id;
+    @Nonnull private final Method displayName;
+    @Nonnull private final Method getSystemProperties;
+    @Nonnull private final Method getAgentProperties;
+    @Nullable private final Method startLocalManagementAgent;
+    @Nonnull private final Method detach;
+
+    private AttachApiLocalJvms(@Nonnull Class<?> virtualMachine, @Nonnull Class<?> descriptor) throws NoSuchMethodException {
+        list = virtualMachine.getMethod("list");
+        attach = virtualMachine.getMethod("attach", String.class);
+        id = descriptor.getMethod("id");
+        displayName = descriptor.getMethod("displayName");
+        getSystemProperties = virtualMachine.getMethod("getSystemProperties");
+        getAgentProperties = virtualMachine.getMethod("getAgentProperties");
+        startLocalManagementAgent = findMethod(virtualMachine, "startLocalManagementAgent");
+        detach = virtualMachine.getMethod("detach");
+    }
+
+    /**
+     * @return null if the attach API is not available.
+     */
+    @Nullable
+    static AttachApiLocalJvms load(@Nonnull PropertyPlaceholderResolver resolver) {
+        ClassLoader classLoader = AttachApiLocalJvms.class.getClassLoader();
+        try {
+            try {
+                Class.forName(VIRTUAL_MACHINE, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                File toolsJar = new File(resolver.resolveString("${java.home}"), "../lib/tools.jar");
+                if (!toolsJar.isFile()) return null;
+                classLoader = toolsJarClassLoader(toolsJar.toURI().toURL(), classLoader);
+            }
+            return new AttachApiLocalJvms(
+                    Class.forName(VIRTUAL_MACHINE, true, classLoader),
+                    Class.forName(VIRTUAL_MACHINE_DESCRIPTOR, true, classLoader));
+        } catch (ReflectiveOperationException | MalformedURLException | LinkageError e) {
+            return null;
+        }
+    }
+
+    @Nonnull
+    private static ClassLoader toolsJarClassLoader(@Nonnull final URL toolsJar, @Nonnull final ClassLoader parent) {
+        return AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
+            @Override
+            public ClassLoader run() {
+                return new URLClassLoader(new URL[] { toolsJar }, parent);
+            }
+        });
+    }
+
+    @Nullable
+    private static Method findMethod(@Nonnull Class<?> type, @Nonnull String name) {
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<LocalJvm> list() throws Exception {
+        List<LocalJvm> jvms = new ArrayList<>();
+        for (Object descriptor : (List<?>) invoke(list, null)) {
+            String name = (String) invoke(displayName, descriptor);
+            int space = name.indexOf(' ');
+            jvms.add(new LocalJvm((String) invoke(id, descriptor), space < 0 ? name : name.substring(0, space)));
+        }
+        return jvms;
+    }
+
+    @Nonnull
+    @Override
+    public Properties systemProperties(@Nonnull String id) throws Exception {
+        Object virtualMachine = invoke(attach, null, id);
+        try {
+            return (Properties) invoke(getSystemProperties, virtualMachine);
+        } finally {
+            invoke(detach, virtualMachine);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String connectorAddress(@Nonnull String id) throws Exception {
+        Object virtualMachine = invoke(attach, null, id);
+        try {
+            String address = ((Properties) invoke(getAgentProperties, virtualMachine)).getProperty(LOCAL_CONNECTOR_ADDRESS);
+            if (address != null) return address;
+            if (startLocalManagementAgent == null) {
+                throw new IllegalStateException(format(
+                        "Local management agent of JVM %s is not running and can only be started from Java 8", id));
+            }
+            return (String) invoke(startLocalManagementAgent, virtualMachine);
+        } finally {
+            invoke(detach, virtualMachine);
+        }
+    }
+
+    private static Object invoke(@Nonnull Method method, @Nullable Object target, Object... arguments) throws Exception {
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+}
@@ -32,6 +32,9 @@ import org.jmxtrans.utils.io.Resource;
 
 import org.xml.sax.SAXException;
 
+/**
+ * Configuration resources are parsed in parallel, implementations must be thread safe.
+ */
 public interface ConfigParser {
 
     boolean supports(@Nonnull Resource resource);
@@ -22,11 +22,16 @@
  */
 package org.jmxtrans.core.config;
 
+import java.util.List;
+import java.util.Map;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 import org.jmxtrans.core.output.OutputWriter;
 import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
 import org.jmxtrans.core.query.Server;
 import org.jmxtrans.utils.time.Interval;
 
@@ -44,4 +49,38 @@ public interface Configuration {
 
     @Nonnull
     Iterable<Invocation> getInvocations();
+
+    /**
+     * @return named query sets, by name. Servers including a set already collect its queries, sets are kept for
+     * servers added later (discovered targets).
+     */
+    @Nonnull
+    Map<String, List<Query>> getQuerySets();
+
+    /**
+     * @return prefix of the metrics published about JmxTrans itself, or {@code null} if they should not be published.
+     */
+    @Nullable
+    String getSelfMetricsPrefix();
+
+    /**
+     * @return maximum factor by which the collection period is stretched when collections cannot keep up, or
+     * {@code null} if not declared (merged configurations always declare it).
+     */
+    @Nullable
+    Integer getMaxPeriodStretch();
+
+    /**
+     * @return number of consecutive healthy cycles after which a stretched period is halved, or {@code null} if not
+     * declared.
+     */
+    @Nullable
+    Integer getOverloadRecoveryCycles();
+
+    /**
+     * @return ratio of the queries of a cycle which must have run before the next one for the cycle to be healthy, or
+     * {@code null} if not declared.
+     */
+    @Nullable
+    Double getMinCompletionRatio();
 }
@@ -24,52 +24,183 @@ package org.jmxtrans.core.config;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
+import javax.management.remote.JMXServiceURL;
 
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
 import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.query.InProcessServer;
 import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.RemoteServer;
 import org.jmxtrans.core.query.Server;
 
-// TODO : Very naive implementation, definitely needs to be improved !!!
+import static java.lang.String.format;
+
+/**
+ * Merges configuration fragments, folding what they have in common.
+ *
+ * <ul>
+ *     <li>remote servers with the same JMX URL are merged into one (the first one defines the credentials), as are all
+ *     in process servers;</li>
+ *     <li>queries are identified by ObjectName, attributes and result alias: a query is collected once per server
+ *     and identical queries of different servers share the same {@link Query} instance;</li>
+ *     <li>query sets with the same name are replaced by the last one, their queries are shared with servers;</li>
+ *     <li>invocations are only kept once;</li>
+ *     <li>output writers are folded by instance. Writers declared with the same class and settings are the same
+ *     instance when the configurations were parsed with the same {@link OutputWriterLoader}.</li>
+ *     <li>the self metrics prefix and overload thresholds are taken from the last fragment declaring them, falling
+ *     back to {@link DefaultConfiguration}.</li>
+ * </ul>
+ *
+ * What was folded is logged at the end of the merge.
+ */
 @ThreadSafe
 @Immutable
 public class ConfigurationMerger {
 
+    private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
     @Nonnull
     public Configuration merge(@Nonnull Collection<Configuration> configurations) {
         ModifiableConfiguration result = new ModifiableConfiguration();
         List<Configuration> configurationsWithDefault = new ArrayList<>();
         configurationsWithDefault.add(DefaultConfiguration.getInstance());
         configurationsWithDefault.addAll(configurations);
+
+        Merge merge = new Merge();
         for (Configuration configuration : configurationsWithDefault) {
-            appendServers(result, configuration.getServers());
-            appendInvocations(result, configuration.getInvocations());
-            appendOutputWriters(result, configuration.getOutputWriters());
+            for (Server server : configuration.getServers()) merge.add(server);
+            for (Map.Entry<String, List<Query>> querySet : configuration.getQuerySets().entrySet()) {
+                merge.add(querySet.getKey(), querySet.getValue());
+            }
+            for (Invocation invocation : configuration.getInvocations()) merge.add(invocation);
+            for (OutputWriter outputWriter : configuration.getOutputWriters()) merge.add(outputWriter);
             result.setPeriod(configuration.getPeriod());
+            if (configuration.getMaxPeriodStretch() != null) {
+                result.setMaxPeriodStretch(configuration.getMaxPeriodStretch());
+            }
+            if (configuration.getOverloadRecoveryCycles() != null) {
+                result.setOverloadRecoveryCycles(configuration.getOverloadRecoveryCycles());
+            }
+            if (configuration.getMinCompletionRatio() != null) {
+                result.setMinCompletionRatio(configuration.getMinCompletionRatio());
+            }
+            if (configuration.getSelfMetricsPrefix() != null) {
+                result.setSelfMetricsPrefix(configuration.getSelfMetricsPrefix());
+            }
         }
+        merge.appendTo(result);
+        merge.report(configurations.size());
         return result;
     }
 
-    private void appendServers(@Nonnull ModifiableConfiguration configuration, @Nonnull Iterable<Server> servers) {
-        for (Server server : servers) {
-            configuration.getServers().add(server);
+    /** State of a single merge. */
+    private final class Merge {
+        @Nonnull private final Map<Query, Query> canonicalQueries = new LinkedHashMap<>();
+        @Nonnull private final Set<Query> inProcessQueries = new LinkedHashSet<>();
+        @Nonnull private final Map<JMXServiceURL, RemoteServer> remoteServers = new LinkedHashMap<>();
+        @Nonnull private final Map<JMXServiceURL, Set<Query>> remoteQueries = new LinkedHashMap<>();
+        @Nonnull private final List<Server> otherServers = new ArrayList<>();
+        @Nonnull private final Map<String, List<Query>> querySets = new LinkedHashMap<>();
+        @Nonnull private final Set<Invocation> invocations = new LinkedHashSet<>();
+        @Nonnull private final Set<OutputWriter> outputWriters = Collections.newSetFromMap(new IdentityHashMap<OutputWriter, Boolean>());
+        @Nonnull private final List<OutputWriter> orderedOutputWriters = new ArrayList<>();
+
+        @Nonnull private final List<String> folded = new ArrayList<>();
+        private int sharedQueries;
+        private boolean inProcessServer;
+
+        private void add(@Nonnull Server server) {
+            if (server instanceof InProcessServer) {
+                if (inProcessServer) folded.add("in process server");
+                inProcessServer = true;
+                addQueries("in process server", server.getQueries(), inProcessQueries);
+            } else if (server instanceof RemoteServer) {
+                RemoteServer remoteServer = (RemoteServer) server;
+                JMXServiceURL url = remoteServer.getUrl();
+                if (remoteServers.containsKey(url)) {
+                    folded.add("server " + url);
+                } else {
+                    remoteServers.put(url, remoteServer);
+                    remoteQueries.put(url, new LinkedHashSet<Query>());
+                }
+                addQueries("server " + url, server.getQueries(), remoteQueries.get(url));
+            } else {
+                // other types of servers cannot be rebuilt with merged queries, they are kept as they are
+                otherServers.add(server);
+            }
         }
-    }
 
-    private void appendInvocations(@Nonnull ModifiableConfiguration configuration, @Nonnull Iterable<Invocation> invocations) {
-        for (Invocation invocation : invocations) {
-            configuration.getInvocations().add(invocation);
+        private void addQueries(@Nonnull String serverName, @Nonnull Iterable<Query> queries, @Nonnull Set<Query> serverQueries) {
+            for (Query query : queries) {
+                Query canonical = canonical(query);
+                if (!serverQueries.add(canonical)) {
+                    folded.add(format("query %s on %s", query, serverName));
+                } else if (canonical != query) {
+                    sharedQueries++;
+                }
+            }
         }
-    }
 
-    private void appendOutputWriters(@Nonnull ModifiableConfiguration configuration, @Nonnull Iterable<OutputWriter> outputWriters) {
-        for (OutputWriter outputWriter : outputWriters) {
-            configuration.getOutputWriters().add(outputWriter);
+        @Nonnull
+        private Query canonical(@Nonnull Query query) {
+            Query canonical = canonicalQueries.get(query);
+            if (canonical == null) {
+                canonicalQueries.put(query, query);
+                canonical = query;
+            }
+            return canonical;
+        }
+
+        private void add(@Nonnull String querySetName, @Nonnull List<Query> queries) {
+            List<Query> querySet = new ArrayList<>();
+            for (Query query : queries) querySet.add(canonical(query));
+            if (querySets.put(querySetName, querySet) != null) folded.add("query set " + querySetName);
         }
-    }
 
+        private void add(@Nonnull Invocation invocation) {
+            if (!invocations.add(invocation)) folded.add("invocation " + invocation);
+        }
+
+        private void add(@Nonnull OutputWriter outputWriter) {
+            if (outputWriters.add(outputWriter)) {
+                orderedOutputWriters.add(outputWriter);
+            } else {
+                folded.add("output writer " + outputWriter);
+            }
+        }
+
+        private void appendTo(@Nonnull ModifiableConfiguration configuration) {
+            if (!inProcessQueries.isEmpty()) {
+                configuration.addServer(new InProcessServer(new ArrayList<>(inProcessQueries)));
+            }
+            for (Map.Entry<JMXServiceURL, RemoteServer> server : remoteServers.entrySet()) {
+                configuration.addServer(server.getValue().withQueries(new ArrayList<>(remoteQueries.get(server.getKey()))));
+            }
+            for (Server server : otherServers) configuration.addServer(server);
+            configuration.getQuerySets().putAll(querySets);
+            configuration.getInvocations().addAll(invocations);
+            configuration.getOutputWriters().addAll(orderedOutputWriters);
+        }
+
+        private void report(int configurationCount) {
+            for (String element : folded) {
+                logger.info("Folded duplicate " + element);
+            }
+            logger.info(format("Merged %d configurations: %d elements folded, %d queries shared between servers",
+                    configurationCount, folded.size(), sharedQueries));
+        }
+    }
 }
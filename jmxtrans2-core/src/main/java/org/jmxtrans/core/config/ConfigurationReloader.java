@@ -0,0 +1,326 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.lifecycle.LifecycleAware;
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.monitoring.MBeanRegistry;
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.monitoring.SelfNamedMBean;
+import org.jmxtrans.core.query.CollectionMonitor;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.TargetHealth;
+import org.jmxtrans.utils.io.FileResource;
+import org.jmxtrans.utils.io.Resource;
+import org.jmxtrans.utils.time.Clock;
+
+import lombok.Getter;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Reloads configuration files when they change, without restarting JmxTrans.
+ *
+ * The directories of the configuration files are watched, changes are coalesced until no event was received for
+ * the quiet period (editors usually write a file in several steps). Only the changed files are parsed again, they
+ * are merged with the configurations of the other files and the result is applied to the {@link LiveConfiguration}:
+ * servers, queries and output writers that did not change are kept, with their MBeans and state. A configuration
+ * that cannot be parsed is logged and the running configuration is left untouched.
+ *
+ * Targets discovered outside of the configuration files (see {@link FileTargetDiscovery}) are merged the same way,
+ * as remote servers collecting the query set they refer to.
+ */
+@ThreadSafe
+public class ConfigurationReloader implements LifecycleAware, SelfNamedMBean, ConfigurationReloaderMBean {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    @Nonnull private final Clock clock;
+    @Nonnull private final Iterable<ConfigParser> parsers;
+    @Nonnull private final LiveConfiguration liveConfiguration;
+    @Nonnull private final MBeanRegistry mBeanRegistry;
+    @Nonnull private final CollectionMonitor collectionMonitor;
+    @Nonnull private final OutputWriterLoader outputWriterLoader;
+    @Nonnull private final ConfigurationMerger merger = new ConfigurationMerger();
+    @Nonnull private final FileWatcher fileWatcher;
+    @Nonnull @Getter private final ObjectName objectName;
+
+    /** Parsed configuration of each resource, in the order they are merged. Resources that failed to parse are null. */
+    @GuardedBy("this") @Nonnull private final Map<Resource, Configuration> configurations;
+    @Nonnull private final Map<Path, Resource> files = new HashMap<>();
+    /** Discovered targets, by the source that discovered them. */
+    @GuardedBy("this") @Nonnull private final Map<String, Collection<Target>> targets = new LinkedHashMap<>();
+
+    @Nonnull private final AtomicLong reloadCount = new AtomicLong();
+    @Nonnull private final AtomicLong failedReloadCount = new AtomicLong();
+    @Getter private volatile long lastReloadDurationMillis;
+    @Getter private volatile long lastReloadEpochMillis;
+    @Nullable @Getter private volatile String lastError;
+
+    ConfigurationReloader(
+            @Nonnull Clock clock,
+            @Nonnull Iterable<ConfigParser> parsers,
+            @Nonnull Map<Resource, Configuration> configurations,
+            @Nonnull LiveConfiguration liveConfiguration,
+            @Nonnull MBeanRegistry mBeanRegistry,
+            @Nonnull CollectionMonitor collectionMonitor,
+            @Nonnull OutputWriterLoader outputWriterLoader,
+            long quietPeriodMillis) throws MalformedObjectNameException {
+        this.clock = clock;
+        this.parsers = parsers;
+        this.configurations = new LinkedHashMap<>(configurations);
+        this.liveConfiguration = liveConfiguration;
+        this.mBeanRegistry = mBeanRegistry;
+        this.collectionMonitor = collectionMonitor;
+        this.outputWriterLoader = outputWriterLoader;
+        Set<Path> directories = new HashSet<>();
+        for (Resource resource : configurations.keySet()) {
+            if (resource instanceof FileResource) {
+                Path file = ((FileResource) resource).getFile().toPath().toAbsolutePath();
+                files.put(file, resource);
+                directories.add(file.getParent());
+            }
+        }
+        this.fileWatcher = new FileWatcher("configReload", directories, quietPeriodMillis, new FileWatcher.Listener() {
+            @Override
+            public void filesChanged(@Nonnull Set<Path> changedFiles, boolean overflow) {
+                Set<Resource> changed = new LinkedHashSet<>();
+                for (Path file : overflow ? files.keySet() : changedFiles) {
+                    Resource resource = files.get(file);
+                    if (resource != null) changed.add(resource);
+                }
+                if (!changed.isEmpty()) reload(changed);
+            }
+        });
+        this.objectName = new ObjectNameFactory("config").create("reloader");
+    }
+
+    /**
+     * Parses the changed resources again and applies the result to the live configuration.
+     *
+     * @return true if the configuration was reloaded, false if it could not be parsed and was left untouched.
+     */
+    public synchronized boolean reload(@Nonnull Collection<Resource> changedResources) {
+        long start = clock.nanoTime();
+        try {
+            Map<Resource, Configuration> updated = new LinkedHashMap<>(configurations);
+            for (Resource resource : changedResources) {
+                if (updated.containsKey(resource)) updated.put(resource, parse(resource));
+            }
+
+            LiveConfiguration.Changes changes = liveConfiguration.update(merge(updated, targets));
+            configurations.putAll(updated);
+            apply(changes);
+            succeeded("configuration " + paths(changedResources), start, changes);
+            return true;
+        } catch (Exception e) {
+            failed("configuration " + paths(changedResources), e);
+            return false;
+        } finally {
+            lastReloadDurationMillis = NANOSECONDS.toMillis(clock.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Replaces the targets discovered by a source. Targets that did not change keep their server, as configured
+     * servers do.
+     *
+     * @param source name of the discovery mechanism, each source replaces its own targets.
+     * @return true if the targets were applied to the live configuration.
+     */
+    public synchronized boolean updateTargets(@Nonnull String source, @Nonnull Collection<Target> discovered) {
+        long start = clock.nanoTime();
+        String what = format("%d targets discovered by %s", discovered.size(), source);
+        try {
+            Map<String, Collection<Target>> updated = new LinkedHashMap<>(targets);
+            updated.put(source, discovered);
+            LiveConfiguration.Changes changes = liveConfiguration.update(merge(configurations, updated));
+            targets.put(source, discovered);
+            apply(changes);
+            succeeded(what, start, changes);
+            return true;
+        } catch (Exception e) {
+            failed(what, e);
+            return false;
+        } finally {
+            lastReloadDurationMillis = NANOSECONDS.toMillis(clock.nanoTime() - start);
+        }
+    }
+
+    @Nonnull
+    private Configuration merge(@Nonnull Map<Resource, Configuration> configurations, @Nonnull Map<String, Collection<Target>> targets)
+            throws MalformedURLException {
+        List<Configuration> parsed = new ArrayList<>();
+        for (Configuration configuration : configurations.values()) {
+            if (configuration != null) parsed.add(configuration);
+        }
+        Configuration merged = merger.merge(parsed);
+        if (targets.isEmpty()) return merged;
+
+        ModifiableConfiguration discovered = new ModifiableConfiguration();
+        discovered.setPeriod(merged.getPeriod());
+        discovered.setSelfMetricsPrefix(merged.getSelfMetricsPrefix());
+        discovered.setMaxPeriodStretch(merged.getMaxPeriodStretch());
+        discovered.setOverloadRecoveryCycles(merged.getOverloadRecoveryCycles());
+        discovered.setMinCompletionRatio(merged.getMinCompletionRatio());
+        Set<String> unknownQuerySets = new TreeSet<>();
+        int ignored = 0;
+        for (Target target : concat(targets.values())) {
+            List<Query> querySet = merged.getQuerySets().get(target.getQuerySet());
+            if (querySet == null) {
+                unknownQuerySets.add(target.getQuerySet());
+                ignored++;
+            } else {
+                discovered.addServer(target.toServer(querySet));
+            }
+        }
+        if (ignored > 0) {
+            logger.warn(format("Ignoring %d discovered targets including unknown query sets %s", ignored, unknownQuerySets));
+        }
+        return merger.merge(Arrays.<Configuration>asList(merged, discovered));
+    }
+
+    @Nonnull
+    private static List<Target> concat(@Nonnull Collection<Collection<Target>> targets) {
+        List<Target> result = new ArrayList<>();
+        for (Collection<Target> sourceTargets : targets) result.addAll(sourceTargets);
+        return result;
+    }
+
+    private void succeeded(@Nonnull String what, long start, @Nonnull LiveConfiguration.Changes changes) {
+        reloadCount.incrementAndGet();
+        lastReloadEpochMillis = clock.currentTimeMillis();
+        lastError = null;
+        logger.info(format("Reloaded %s in %d ms: %s", what, NANOSECONDS.toMillis(clock.nanoTime() - start), changes));
+    }
+
+    private void failed(@Nonnull String what, @Nonnull Exception e) {
+        failedReloadCount.incrementAndGet();
+        lastError = e.getMessage();
+        logger.warn(format("Could not reload %s, running configuration is kept", what), e);
+    }
+
+    @Nonnull
+    private Configuration parse(@Nonnull Resource resource) throws Exception {
+        for (ConfigParser parser : parsers) {
+            if (parser.supports(resource)) return parser.parseConfiguration(resource);
+        }
+        throw new JmxtransConfigurationException("Found no parsers supporting config file " + resource.getPath());
+    }
+
+    private void apply(@Nonnull LiveConfiguration.Changes changes) {
+        mBeanRegistry.unregisterAll(changes.getRemovedQueries());
+        mBeanRegistry.unregisterAll(changes.getRemovedOutputWriters());
+        outputWriterLoader.release(changes.getRemovedOutputWriters());
+        for (Server server : changes.getRemovedServers()) {
+            TargetHealth health = collectionMonitor.remove(server);
+            if (health != null) mBeanRegistry.unregister(health);
+        }
+        for (Server server : changes.getDisconnectedServers()) close(server);
+        mBeanRegistry.registerAll(changes.getAddedQueries());
+        mBeanRegistry.registerAll(changes.getAddedOutputWriters());
+        List<TargetHealth> addedHealths = new ArrayList<>();
+        for (Server server : changes.getAddedServers()) addedHealths.add(collectionMonitor.getTargetHealth(server));
+        mBeanRegistry.registerAll(addedHealths);
+
+        if (changes.isPeriodChanged()) {
+            logger.warn("Collection interval changed, JmxTrans needs to be restarted to apply it");
+        }
+        if (changes.isSelfMetricsPrefixChanged()) {
+            logger.warn("Self metrics prefix changed, JmxTrans needs to be restarted to apply it");
+        }
+        if (changes.isOverloadThresholdsChanged()) {
+            logger.warn("Overload thresholds changed, JmxTrans needs to be restarted to apply them");
+        }
+    }
+
+    /**
+     * Releases the connection of a server that is no longer collected or connects differently, queries still running
+     * on it fail.
+     */
+    private void close(@Nonnull Server server) {
+        if (!(server instanceof Closeable)) return;
+        try {
+            ((Closeable) server).close();
+        } catch (IOException e) {
+            logger.warn("Could not close server " + server.getName(), e);
+        }
+    }
+
+    @Nonnull
+    private static List<String> paths(@Nonnull Collection<Resource> resources) {
+        List<String> paths = new ArrayList<>();
+        for (Resource resource : resources) paths.add(resource.getPath());
+        return paths;
+    }
+
+    /**
+     * Starts watching the configuration files, other resources (classpath, URL) are never reloaded.
+     */
+    @Override
+    public void start() throws IOException {
+        fileWatcher.start();
+    }
+
+    @Override
+    public void stop() throws IOException {
+        fileWatcher.stop();
+    }
+
+    @Override
+    public long getReloadCount() {
+        return reloadCount.get();
+    }
+
+    @Override
+    public long getFailedReloadCount() {
+        return failedReloadCount.get();
+    }
+}
@@ -22,16 +22,22 @@
  */
 package org.jmxtrans.core.config;
 
+import java.util.List;
+import java.util.Map;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
 
 import org.jmxtrans.core.output.OutputWriter;
 import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
 import org.jmxtrans.core.query.Server;
 import org.jmxtrans.utils.time.Interval;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 @Immutable
@@ -67,6 +73,36 @@ public class DefaultConfiguration implements Configuration {
         return emptyList();
     }
 
+    @Nonnull
+    @Override
+    public Map<String, List<Query>> getQuerySets() {
+        return emptyMap();
+    }
+
+    @Nullable
+    @Override
+    public String getSelfMetricsPrefix() {
+        return null;
+    }
+
+    @Nonnull
+    @Override
+    public Integer getMaxPeriodStretch() {
+        return 8;
+    }
+
+    @Nonnull
+    @Override
+    public Integer getOverloadRecoveryCycles() {
+        return 3;
+    }
+
+    @Nonnull
+    @Override
+    public Double getMinCompletionRatio() {
+        return 0.9;
+    }
+
     public static Configuration getInstance() {
         return INSTANCE;
     }
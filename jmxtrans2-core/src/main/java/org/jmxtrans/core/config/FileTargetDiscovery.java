@@ -0,0 +1,164 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.lifecycle.LifecycleAware;
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.utils.io.FileResource;
+import org.jmxtrans.utils.io.Resource;
+
+import static java.lang.String.format;
+
+/**
+ * Discovers the servers to collect from target files (see {@link PropertiesTargetReader} and
+ * {@link JsonTargetReader}) in a set of directories, without restarting JmxTrans.
+ *
+ * Directories are watched, only the files that changed are read again. Targets are applied through the
+ * {@link ConfigurationReloader}: targets that did not change keep their server, new targets are added and targets
+ * whose file was deleted are removed. A file that cannot be read keeps the targets it had before.
+ */
+@ThreadSafe
+public class FileTargetDiscovery implements LifecycleAware {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    @Nonnull private final List<Path> directories = new ArrayList<>();
+    @Nonnull private final Iterable<TargetReader> readers;
+    @Nonnull private final ConfigurationReloader reloader;
+    @Nonnull private final FileWatcher fileWatcher;
+
+    /** Targets of each file, sorted by file so that targets are always merged in the same order. */
+    @GuardedBy("this") @Nonnull private final Map<Path, List<Target>> targetsByFile = new TreeMap<>();
+
+    FileTargetDiscovery(
+            @Nonnull Iterable<File> directories,
+            @Nonnull Iterable<TargetReader> readers,
+            @Nonnull ConfigurationReloader reloader,
+            long quietPeriodMillis) {
+        for (File directory : directories) this.directories.add(directory.toPath().toAbsolutePath());
+        this.readers = readers;
+        this.reloader = reloader;
+        this.fileWatcher = new FileWatcher("targetDiscovery", this.directories, quietPeriodMillis, new FileWatcher.Listener() {
+            @Override
+            public void filesChanged(@Nonnull Set<Path> files, boolean overflow) {
+                if (overflow) {
+                    rescan();
+                } else {
+                    refresh(files);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads all target files before returning, targets are known before the first collection.
+     */
+    @Override
+    public void start() throws IOException {
+        // changes made while the directories are scanned are picked up by the watcher
+        fileWatcher.start();
+        rescan();
+    }
+
+    @Override
+    public void stop() throws IOException {
+        fileWatcher.stop();
+    }
+
+    /** Reads the given files again, deleted files remove their targets. */
+    synchronized void refresh(@Nonnull Set<Path> files) {
+        boolean changed = false;
+        for (Path file : files) changed |= read(file);
+        if (changed) publish();
+    }
+
+    private synchronized void rescan() {
+        Set<Path> files = new HashSet<>();
+        for (Path directory : directories) {
+            try (DirectoryStream<Path> directoryFiles = Files.newDirectoryStream(directory)) {
+                for (Path file : directoryFiles) files.add(file);
+            } catch (IOException e) {
+                logger.warn("Could not list targets in " + directory, e);
+            }
+        }
+        boolean changed = false;
+        Iterator<Path> knownFiles = targetsByFile.keySet().iterator();
+        while (knownFiles.hasNext()) {
+            if (!files.contains(knownFiles.next())) {
+                knownFiles.remove();
+                changed = true;
+            }
+        }
+        for (Path file : files) changed |= read(file);
+        if (changed) publish();
+    }
+
+    /** @return true if the targets of the file changed. */
+    private boolean read(@Nonnull Path file) {
+        Resource resource = new FileResource(file.toFile());
+        TargetReader reader = reader(resource);
+        if (reader == null) return false;
+        if (!Files.isRegularFile(file)) return targetsByFile.remove(file) != null;
+        try {
+            List<Target> targets = reader.readTargets(resource);
+            return !targets.equals(targetsByFile.put(file, targets));
+        } catch (Exception e) {
+            logger.warn(format("Could not read targets from %s, its previous targets are kept", file), e);
+            return false;
+        }
+    }
+
+    @Nullable
+    private TargetReader reader(@Nonnull Resource resource) {
+        for (TargetReader reader : readers) {
+            if (reader.supports(resource)) return reader;
+        }
+        return null;
+    }
+
+    private void publish() {
+        List<Target> targets = new ArrayList<>();
+        for (List<Target> fileTargets : targetsByFile.values()) targets.addAll(fileTargets);
+        logger.info(format("Discovered %d targets in %d files", targets.size(), targetsByFile.size()));
+        reloader.updateTargets("target files", targets);
+    }
+}
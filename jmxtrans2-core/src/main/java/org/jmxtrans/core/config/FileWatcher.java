@@ -0,0 +1,137 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.scheduler.JmxTransThreadFactory;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Watches directories and reports the files created, modified or deleted in them.
+ *
+ * Changes are coalesced until no event was received for the quiet period, editors and deployment tools usually
+ * write a file in several steps. The listener is called from a single thread.
+ */
+@ThreadSafe
+class FileWatcher {
+
+    interface Listener {
+        /**
+         * @param files changed files, absolute.
+         * @param overflow true if events were lost, all watched files should be considered as changed.
+         */
+        void filesChanged(@Nonnull Set<Path> files, boolean overflow);
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    @Nonnull private final String name;
+    @Nonnull private final Set<Path> directories = new LinkedHashSet<>();
+    private final long quietPeriodMillis;
+    @Nonnull private final Listener listener;
+    @GuardedBy("this") @Nullable private WatchService watchService;
+
+    FileWatcher(@Nonnull String name, @Nonnull Collection<Path> directories, long quietPeriodMillis, @Nonnull Listener listener) {
+        this.name = name;
+        for (Path directory : directories) this.directories.add(directory.toAbsolutePath());
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.listener = listener;
+    }
+
+    public synchronized void start() throws IOException {
+        if (watchService != null || directories.isEmpty()) return;
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path directory : directories) directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        new JmxTransThreadFactory(name).newThread(new Watch(watchService)).start();
+        logger.info("Watching directories " + directories);
+    }
+
+    public synchronized void stop() throws IOException {
+        if (watchService == null) return;
+        // the watching thread stops when its watch service is closed
+        watchService.close();
+        watchService = null;
+    }
+
+    private final class Watch implements Runnable {
+        @Nonnull private final WatchService watchService;
+
+        private Watch(@Nonnull WatchService watchService) {
+            this.watchService = watchService;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    WatchKey key = watchService.take();
+                    Set<Path> changed = new LinkedHashSet<>();
+                    boolean overflow = false;
+                    while (key != null) {
+                        Path directory = (Path) key.watchable();
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.kind() == OVERFLOW) {
+                                overflow = true;
+                            } else {
+                                changed.add(directory.resolve((Path) event.context()));
+                            }
+                        }
+                        key.reset();
+                        key = watchService.poll(quietPeriodMillis, MILLISECONDS);
+                    }
+                    try {
+                        listener.filesChanged(changed, overflow);
+                    } catch (RuntimeException e) {
+                        logger.error("Could not process changes of " + changed, e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ClosedWatchServiceException e) {
+                logger.debug("Stopped watching directories " + directories);
+            }
+        }
+    }
+}
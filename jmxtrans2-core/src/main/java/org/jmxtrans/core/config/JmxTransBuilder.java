@@ -22,12 +22,22 @@
  */
 package org.jmxtrans.core.config;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -35,6 +45,7 @@ import java.util.concurrent.ThreadPoolExecutor.AbortPolicy;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.management.MalformedObjectNameException;
 import javax.xml.bind.JAXBException;
@@ -43,13 +54,19 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.jmxtrans.core.lifecycle.LifecycleAware;
 import org.jmxtrans.core.log.Logger;
 import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.monitoring.EventRecorders;
 import org.jmxtrans.core.monitoring.MBeanRegistry;
 import org.jmxtrans.core.monitoring.ObjectNameFactory;
-import org.jmxtrans.core.monitoring.SelfNamedMBean;
+import org.jmxtrans.core.monitoring.PipelineMetrics;
+import org.jmxtrans.core.monitoring.SelfMetricsCollector;
+import org.jmxtrans.core.query.CollectionMonitor;
+import org.jmxtrans.core.query.Query;
 import org.jmxtrans.core.query.ResultNameStrategy;
 import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.SlowQueryLog;
 import org.jmxtrans.core.scheduler.JmxTransThreadFactory;
 import org.jmxtrans.core.scheduler.NaiveScheduler;
+import org.jmxtrans.core.scheduler.OverloadController;
 import org.jmxtrans.core.scheduler.QueryGenerator;
 import org.jmxtrans.core.scheduler.QueryProcessor;
 import org.jmxtrans.core.scheduler.ResultProcessor;
@@ -62,23 +79,68 @@ import org.xml.sax.SAXException;
 
 import static java.lang.String.format;
 import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+import static java.lang.management.ManagementFactory.getRuntimeMXBean;
 import static java.util.Collections.singleton;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 @ThreadSafe
 public class JmxTransBuilder {
 
     private final boolean ignoreParsingErrors;
+    private final boolean streamingXmlParser;
     @Nonnull private final Iterable<Resource> configResources;
+    @Nonnull private final Iterable<File> targetDirectories;
+    @Nonnull private final Iterable<LocalJvmRule> localJvmRules;
     private final Logger logger = LoggerFactory.getLogger(getClass().getName());
     @Nonnull private final ObjectNameFactory executorObjectNameFactory = new ObjectNameFactory("executor");
     @Nonnull private final ObjectNameFactory outputObjectNameFactory = new ObjectNameFactory("outputWriter");
 
+    private static final long RELOAD_QUIET_PERIOD_MILLIS = 500;
+    private static final long LOCAL_JVM_REFRESH_PERIOD_MILLIS = 10000;
+
     public JmxTransBuilder(
             boolean ignoreParsingErrors,
             @Nonnull Iterable<Resource> configResources) {
+        this(ignoreParsingErrors, configResources, false);
+    }
+
+    /**
+     * @param streamingXmlParser read XML configurations with {@link StaxConfigParser} instead of
+     *                           {@link XmlConfigParser}, which avoids loading JAXB and validating against the XSD.
+     */
+    public JmxTransBuilder(
+            boolean ignoreParsingErrors,
+            @Nonnull Iterable<Resource> configResources,
+            boolean streamingXmlParser) {
+        this(ignoreParsingErrors, configResources, streamingXmlParser, Collections.<File>emptyList());
+    }
+
+    /**
+     * @param targetDirectories directories of target files, see {@link FileTargetDiscovery}.
+     */
+    public JmxTransBuilder(
+            boolean ignoreParsingErrors,
+            @Nonnull Iterable<Resource> configResources,
+            boolean streamingXmlParser,
+            @Nonnull Iterable<File> targetDirectories) {
+        this(ignoreParsingErrors, configResources, streamingXmlParser, targetDirectories, Collections.<LocalJvmRule>emptyList());
+    }
+
+    /**
+     * @param localJvmRules rules selecting the local JVMs to collect from, see {@link LocalJvmDiscovery}.
+     */
+    public JmxTransBuilder(
+            boolean ignoreParsingErrors,
+            @Nonnull Iterable<Resource> configResources,
+            boolean streamingXmlParser,
+            @Nonnull Iterable<File> targetDirectories,
+            @Nonnull Iterable<LocalJvmRule> localJvmRules) {
         this.ignoreParsingErrors = ignoreParsingErrors;
         this.configResources = configResources;
+        this.streamingXmlParser = streamingXmlParser;
+        this.targetDirectories = targetDirectories;
+        this.localJvmRules = localJvmRules;
     }
 
     public NaiveScheduler build() throws ParserConfigurationException, IOException, SAXException, JAXBException, IllegalAccessException, InstantiationException, ClassNotFoundException, MalformedObjectNameException {
@@ -91,9 +153,26 @@ public class JmxTransBuilder {
         ExecutorService resultExecutor = createExecutorService("results", 2, 1000, 1, MINUTES, mBeanRegistry);
         ScheduledExecutorService queryTimer = createScheduledExecutorService("queryTimer", mBeanRegistry);
 
-        Configuration configuration = loadConfiguration(clock);
+        // shared by all parsers so that output writers declared in several files are only created once
+        OutputWriterLoader outputWriterLoader = new OutputWriterLoader(clock, outputObjectNameFactory);
+        Iterable<ConfigParser> parsers = getConfigParsers(outputWriterLoader);
+        Map<Resource, Configuration> configurations = loadConfigurations(clock, parsers);
+        LiveConfiguration configuration = new LiveConfiguration(new ConfigurationMerger().merge(nonNull(configurations.values())));
         
         registerMBeans(configuration, mBeanRegistry);
+        CollectionMonitor collectionMonitor = createCollectionMonitor(configuration, mBeanRegistry);
+        ConfigurationReloader configurationReloader = mBeanRegistry.register(new ConfigurationReloader(
+                clock, parsers, configurations, configuration, mBeanRegistry, collectionMonitor, outputWriterLoader,
+                RELOAD_QUIET_PERIOD_MILLIS));
+
+        PipelineMetrics pipelineMetrics = mBeanRegistry.register(new PipelineMetrics(clock));
+        OverloadController overloadController = mBeanRegistry.register(
+                new OverloadController(
+                        configuration.getPeriod(),
+                        collectionMonitor,
+                        configuration.getMaxPeriodStretch(),
+                        configuration.getOverloadRecoveryCycles(),
+                        configuration.getMinCompletionRatio()));
 
         return new NaiveScheduler(
                 queryExecutor,
@@ -111,49 +190,151 @@ public class JmxTransBuilder {
                                         clock,
                                         resultExecutor
                                 ),
-                                new ResultNameStrategy()
+                                new ResultNameStrategy(),
+                                collectionMonitor,
+                                pipelineMetrics
                         ),
-                        queryTimer
+                        queryTimer,
+                        createSelfMetricsCollector(configuration, clock, mBeanRegistry),
+                        EventRecorders.get(),
+                        overloadController
                 ),
-                Collections.<LifecycleAware>singletonList(mBeanRegistry),
+                createLifecycleListeners(mBeanRegistry, configurationReloader),
                 shutdownTimerMillis
         );
     }
 
+    @Nonnull
+    private List<LifecycleAware> createLifecycleListeners(
+            @Nonnull MBeanRegistry mBeanRegistry,
+            @Nonnull ConfigurationReloader configurationReloader) throws MalformedObjectNameException {
+        List<LifecycleAware> lifecycleListeners = new ArrayList<>();
+        lifecycleListeners.add(mBeanRegistry);
+        lifecycleListeners.add(configurationReloader);
+        if (targetDirectories.iterator().hasNext()) {
+            lifecycleListeners.add(new FileTargetDiscovery(
+                    targetDirectories, getTargetReaders(), configurationReloader, RELOAD_QUIET_PERIOD_MILLIS));
+        }
+        if (localJvmRules.iterator().hasNext()) {
+            LocalJvms localJvms = AttachApiLocalJvms.load(new PropertyPlaceholderResolver());
+            if (localJvms == null) {
+                logger.warn("The attach API is not available, local JVMs are not discovered");
+            } else {
+                lifecycleListeners.add(new LocalJvmDiscovery(
+                        localJvms,
+                        localJvmRules,
+                        configurationReloader,
+                        createScheduledExecutorService("localJvmDiscovery", mBeanRegistry),
+                        LOCAL_JVM_REFRESH_PERIOD_MILLIS,
+                        getRuntimeMXBean().getName().split("@")[0]));
+            }
+        }
+        return lifecycleListeners;
+    }
+
+    @Nonnull
+    private CollectionMonitor createCollectionMonitor(Configuration configuration, MBeanRegistry mBeanRegistry) {
+        CollectionMonitor collectionMonitor = new CollectionMonitor(new SlowQueryLog(100, 1000), 64);
+        for (Server server : configuration.getServers()) {
+            collectionMonitor.getTargetHealth(server);
+        }
+        mBeanRegistry.registerAll(collectionMonitor.getTargetHealths());
+        mBeanRegistry.registerAll(singleton(collectionMonitor.getSlowQueryLog()));
+        return collectionMonitor;
+    }
+
+    @Nullable
+    private SelfMetricsCollector createSelfMetricsCollector(Configuration configuration, Clock clock, MBeanRegistry mBeanRegistry) {
+        if (configuration.getSelfMetricsPrefix() == null) return null;
+        return new SelfMetricsCollector(clock, mBeanRegistry, configuration.getSelfMetricsPrefix());
+    }
+
     private void registerMBeans(Configuration configuration, MBeanRegistry mBeanRegistry) {
+        // queries from query sets are shared between servers, they are only registered once
+        Set<Query> queries = Collections.newSetFromMap(new IdentityHashMap<Query, Boolean>());
         for (Server server : configuration.getServers()) {
-            registerMBeans(mBeanRegistry, server.getQueries());
-            registerMBeans(mBeanRegistry, configuration.getOutputWriters());
+            for (Query query : server.getQueries()) queries.add(query);
         }
+        mBeanRegistry.registerAll(queries);
+        mBeanRegistry.registerAll(configuration.getOutputWriters());
     }
 
-    private void registerMBeans(MBeanRegistry mBeanRegistry, Iterable<?> objects) {
-        for (Object object : objects) {
-            
-            if (!(object instanceof SelfNamedMBean)) break;
-            
-            SelfNamedMBean selfNamedMBean = (SelfNamedMBean)object;
-            try {
-                mBeanRegistry.register(selfNamedMBean);
-            } catch (MalformedObjectNameException e) {
-                logger.warn(format("Could not register bean [%s]", selfNamedMBean), e);
+    /**
+     * @return the configuration parsed from each resource, in the order they were given, null for resources that
+     * could not be parsed when parsing errors are ignored.
+     */
+    @Nonnull
+    private Map<Resource, Configuration> loadConfigurations(@Nonnull Clock clock, @Nonnull Iterable<ConfigParser> parsers) {
+        List<Resource> resources = new ArrayList<>();
+        for (Resource configResource : configResources) resources.add(configResource);
+
+        // parsers are thread safe, configurations are parsed in parallel and merged in the order they were given
+        int threads = Math.max(1, Math.min(resources.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new JmxTransThreadFactory("config"));
+        try {
+            List<Future<Configuration>> futures = new ArrayList<>();
+            for (Resource configResource : resources) {
+                futures.add(executor.submit(new ConfigurationLoader(configResource, parsers, clock)));
+            }
+
+            Map<Resource, Configuration> configurations = new LinkedHashMap<>();
+            for (int i = 0; i < resources.size(); i++) {
+                configurations.put(resources.get(i), awaitConfiguration(resources.get(i), futures.get(i)));
             }
+            return configurations;
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    private Configuration loadConfiguration(Clock clock) throws JAXBException, ParserConfigurationException, SAXException, IOException, IllegalAccessException, ClassNotFoundException, InstantiationException {
-        Iterable<ConfigParser> parsers = getConfigParsers(clock);
+    @Nonnull
+    private static Collection<Configuration> nonNull(@Nonnull Collection<Configuration> configurations) {
+        Collection<Configuration> result = new ArrayList<>();
+        for (Configuration configuration : configurations) {
+            if (configuration != null) result.add(configuration);
+        }
+        return result;
+    }
 
-        Collection<Configuration> configurations = new ArrayList<>();
+    @Nullable
+    private Configuration awaitConfiguration(@Nonnull Resource configResource, @Nonnull Future<Configuration> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JmxtransConfigurationException("Interrupted while parsing configuration " + configResource.getPath(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JmxtransConfigurationException) throw (JmxtransConfigurationException) cause;
+            throw new JmxtransConfigurationException("Could not parse configuration " + configResource.getPath(), cause);
+        }
+    }
+
+    private final class ConfigurationLoader implements Callable<Configuration> {
+        @Nonnull private final Resource configResource;
+        @Nonnull private final Iterable<ConfigParser> parsers;
+        @Nonnull private final Clock clock;
 
-        for (Resource configResource : configResources) {
-            boolean parsed = false;
+        private ConfigurationLoader(@Nonnull Resource configResource, @Nonnull Iterable<ConfigParser> parsers, @Nonnull Clock clock) {
+            this.configResource = configResource;
+            this.parsers = parsers;
+            this.clock = clock;
+        }
+
+        /**
+         * @return the parsed configuration, or null if it could not be parsed and parsing errors are ignored.
+         */
+        @Override
+        @Nullable
+        public Configuration call() {
             for (ConfigParser parser : parsers) {
                 if (parser.supports(configResource)) {
+                    long start = clock.nanoTime();
                     try {
                         Configuration configuration = parser.parseConfiguration(configResource);
-                        configurations.add(configuration);
-                        parsed = true;
+                        logger.info(format("Parsed configuration %s in %d ms",
+                                configResource.getPath(), NANOSECONDS.toMillis(clock.nanoTime() - start)));
+                        return configuration;
                     } catch (Exception e) {
                         String message = "Could not parse configuration " + configResource.getPath();
                         if (ignoreParsingErrors) {
@@ -164,21 +345,42 @@ public class JmxTransBuilder {
                     }
                 }
             }
-            if (!parsed && !ignoreParsingErrors) {
+            if (!ignoreParsingErrors) {
                 throw new JmxtransConfigurationException("Found no parsers supporting config file " + configResource.getPath());
             }
+            return null;
         }
-
-        return new ConfigurationMerger().merge(configurations);
     }
 
+    private Iterable<ConfigParser> getConfigParsers(OutputWriterLoader outputWriterLoader) throws JAXBException, ParserConfigurationException, SAXException, IOException {
+        Collection<ConfigParser> parsers = new ArrayList<>();
+        if (streamingXmlParser) {
+            parsers.add(new StaxConfigParser(new PropertyPlaceholderResolver(), outputWriterLoader));
+        } else {
+            parsers.add(XmlConfigParser.newInstance(
+                    new PropertyPlaceholderResolverXmlPreprocessor(new PropertyPlaceholderResolver()),
+                    outputWriterLoader));
+        }
+        try {
+            Class.forName("com.fasterxml.jackson.core.JsonFactory");
+            parsers.add(new JsonConfigParser(new PropertyPlaceholderResolver(), outputWriterLoader));
+        } catch (ClassNotFoundException e) {
+            logger.debug("Jackson is not on the classpath, JSON configurations are not supported");
+        }
+        return parsers;
+    }
 
-    private Iterable<ConfigParser> getConfigParsers(Clock clock) throws JAXBException, ParserConfigurationException, SAXException, IOException {
-        ConfigParser configParser = XmlConfigParser.newInstance(
-                new PropertyPlaceholderResolverXmlPreprocessor(new PropertyPlaceholderResolver()),
-                clock,
-                outputObjectNameFactory);
-        return singleton(configParser);
+    @Nonnull
+    private Iterable<TargetReader> getTargetReaders() {
+        Collection<TargetReader> readers = new ArrayList<>();
+        readers.add(new PropertiesTargetReader());
+        try {
+            Class.forName("com.fasterxml.jackson.core.JsonFactory");
+            readers.add(new JsonTargetReader());
+        } catch (ClassNotFoundException e) {
+            logger.debug("Jackson is not on the classpath, JSON target files are not supported");
+        }
+        return readers;
     }
 
     @Nonnull
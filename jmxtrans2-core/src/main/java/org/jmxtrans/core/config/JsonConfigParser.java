@@ -0,0 +1,480 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.query.InProcessServer;
+import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.QueryAttribute;
+import org.jmxtrans.core.query.RemoteServer;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.utils.PropertyPlaceholderResolver;
+import org.jmxtrans.utils.io.Resource;
+import org.jmxtrans.utils.time.Clock;
+import org.jmxtrans.utils.time.Interval;
+import org.jmxtrans.utils.time.SystemClock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Parses JSON configurations with the Jackson streaming parser, straight into a {@link ModifiableConfiguration}.
+ *
+ * The structure follows the XML schema, with arrays in place of repeated elements. Attributes of a query can be given
+ * by name only, and all the properties of an output writer other than {@code class} are its settings:
+ * <pre>
+ * {
+ *   "collectIntervalInSeconds": 10,
+ *   "queries": [
+ *     { "objectName": "java.lang:type=Memory", "resultAlias": "jvm.memory",
+ *       "attributes": [ "ObjectPendingFinalizationCount", { "name": "HeapMemoryUsage", "keys": [ "used" ] } ] }
+ *   ],
+ *   "querySets": { "tomcat": [ { "objectName": "Catalina:type=ThreadPool,*", "attributes": [ "currentThreadsBusy" ] } ] },
+ *   "servers": [ { "host": "${jmx.host}", "port": 9999, "queries": [ ... ], "include": [ "tomcat" ] } ],
+ *   "invocations": [ { "objectName": "java.lang:type=Memory", "operationName": "gc", "resultAlias": "jvm.gc" } ],
+ *   "outputWriters": [ { "class": "org.jmxtrans.core.output.writers.ConsoleOutputWriter" } ]
+ * }
+ * </pre>
+ * Property placeholders are resolved in each value as it is read. Numbers can also be given as strings, so that they
+ * can use placeholders as well. Unknown properties are rejected.
+ */
+@ThreadSafe
+public class JsonConfigParser implements ConfigParser {
+
+    @Nonnull private final JsonFactory jsonFactory = new JsonFactory();
+    @Nonnull private final PropertyPlaceholderResolver placeholderResolver;
+    @Nonnull private final OutputWriterLoader outputWriterLoader;
+
+    public JsonConfigParser(
+            @Nonnull PropertyPlaceholderResolver placeholderResolver,
+            @Nonnull Clock clock,
+            @Nonnull ObjectNameFactory outputObjectNameFactory) {
+        this(placeholderResolver, new OutputWriterLoader(clock, outputObjectNameFactory));
+    }
+
+    JsonConfigParser(@Nonnull PropertyPlaceholderResolver placeholderResolver, @Nonnull OutputWriterLoader outputWriterLoader) {
+        this.placeholderResolver = placeholderResolver;
+        this.outputWriterLoader = outputWriterLoader;
+    }
+
+    @Override
+    public boolean supports(@Nonnull Resource resource) {
+        return resource.getPath().endsWith(".json");
+    }
+
+    @Nonnull
+    @Override
+    public Configuration parseConfiguration(Resource source) throws IOException, IllegalAccessException, InstantiationException, MalformedObjectNameException {
+        try (InputStream in = source.getInputStream();
+             JsonParser parser = jsonFactory.createParser(in)) {
+            ModifiableConfiguration configuration = new ModifiableConfiguration();
+            // servers are only built at the end, the query sets they include can be defined after them
+            List<PendingServer> servers = Collections.emptyList();
+            Map<String, List<Query>> querySets = Collections.emptyMap();
+            expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "collectIntervalInSeconds":
+                        configuration.setPeriod(new Interval(intValue(field, parser), SECONDS));
+                        break;
+                    case "selfMetricsPrefix":
+                        configuration.setSelfMetricsPrefix(stringValue(parser));
+                        break;
+                    case "maxPeriodStretch":
+                        configuration.setMaxPeriodStretch(intValue(field, parser));
+                        break;
+                    case "overloadRecoveryCycles":
+                        configuration.setOverloadRecoveryCycles(intValue(field, parser));
+                        break;
+                    case "minCompletionRatio":
+                        configuration.setMinCompletionRatio(doubleValue(field, parser));
+                        break;
+                    case "queries":
+                        configuration.addServer(new InProcessServer(parseQueries(parser)));
+                        break;
+                    case "querySets":
+                        querySets = parseQuerySets(parser);
+                        break;
+                    case "servers":
+                        servers = parseServers(parser);
+                        break;
+                    case "invocations":
+                        parseInvocations(parser, configuration);
+                        break;
+                    case "outputWriters":
+                        parseOutputWriters(parser, configuration);
+                        break;
+                    default:
+                        throw unknownProperty(field, parser);
+                }
+            }
+            expect(parser.getCurrentToken(), JsonToken.END_OBJECT, parser);
+            for (PendingServer server : servers) {
+                configuration.addServer(server.build(querySets));
+            }
+            configuration.getQuerySets().putAll(querySets);
+            return new StandardConfiguration(configuration);
+        }
+    }
+
+    /**
+     * Queries of each set are only built once, all servers including a set share the same instances.
+     */
+    @Nonnull
+    private Map<String, List<Query>> parseQuerySets(@Nonnull JsonParser parser) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_OBJECT, parser);
+        Map<String, List<Query>> querySets = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (querySets.put(name, parseQueries(parser)) != null) {
+                throw new JsonParseException("Query set '" + name + "' is defined more than once", parser.getCurrentLocation());
+            }
+        }
+        return querySets;
+    }
+
+    @Nonnull
+    private List<PendingServer> parseServers(@Nonnull JsonParser parser) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_ARRAY, parser);
+        List<PendingServer> servers = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            PendingServer pending = new PendingServer(parser.getCurrentLocation());
+            RemoteServer.Builder server = pending.server;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "jmxUrl":
+                        pending.url = stringValue(parser);
+                        break;
+                    case "host":
+                        server.withHost(stringValue(parser));
+                        break;
+                    case "port":
+                        server.withPort(intValue(field, parser));
+                        break;
+                    case "username":
+                        server.withUsername(stringValue(parser));
+                        break;
+                    case "password":
+                        server.withPassword(stringValue(parser));
+                        break;
+                    case "protocolProviderPackages":
+                        server.withProtocolProviderPackages(stringValue(parser));
+                        break;
+                    case "queries":
+                        pending.queries.addAll(parseQueries(parser));
+                        break;
+                    case "include":
+                        expect(parser.getCurrentToken(), JsonToken.START_ARRAY, parser);
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            pending.includes.add(requiredStringValue(field, parser));
+                        }
+                        break;
+                    default:
+                        throw unknownProperty(field, parser);
+                }
+            }
+            servers.add(pending);
+        }
+        expect(parser.getCurrentToken(), JsonToken.END_ARRAY, parser);
+        return servers;
+    }
+
+    @Nonnull
+    private List<Query> parseQueries(@Nonnull JsonParser parser) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_ARRAY, parser);
+        List<Query> queries = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            Query.Builder query = Query.builder();
+            boolean hasObjectName = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "objectName":
+                        query.withObjectName(requiredStringValue(field, parser));
+                        hasObjectName = true;
+                        break;
+                    case "resultAlias":
+                        query.withResultAlias(stringValue(parser));
+                        break;
+                    case "maxResults":
+                        query.withMaxResults(intValue(field, parser));
+                        break;
+                    case "attributes":
+                        parseQueryAttributes(parser, query);
+                        break;
+                    default:
+                        throw unknownProperty(field, parser);
+                }
+            }
+            if (!hasObjectName) throw missingProperty("objectName", parser);
+            queries.add(query.build());
+        }
+        expect(parser.getCurrentToken(), JsonToken.END_ARRAY, parser);
+        return queries;
+    }
+
+    private void parseQueryAttributes(@Nonnull JsonParser parser, @Nonnull Query.Builder query) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_ARRAY, parser);
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_STRING) {
+                query.addAttribute(resolve(parser.getText()));
+                continue;
+            }
+            expect(token, JsonToken.START_OBJECT, parser);
+            String name = null;
+            String resultAlias = null;
+            String type = null;
+            List<String> keys = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "name":
+                        name = requiredStringValue(field, parser);
+                        break;
+                    case "resultAlias":
+                        resultAlias = stringValue(parser);
+                        break;
+                    case "type":
+                        type = stringValue(parser);
+                        break;
+                    case "keys":
+                        expect(parser.getCurrentToken(), JsonToken.START_ARRAY, parser);
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            keys.add(requiredStringValue(field, parser));
+                        }
+                        break;
+                    default:
+                        throw unknownProperty(field, parser);
+                }
+            }
+            if (name == null) throw missingProperty("name", parser);
+            QueryAttribute.Builder attribute = QueryAttribute.builder(name)
+                    .withResultAlias(resultAlias)
+                    .withType(type);
+            for (String key : keys) {
+                attribute.addKey(key);
+            }
+            query.addAttribute(attribute.build());
+        }
+    }
+
+    private void parseInvocations(@Nonnull JsonParser parser, @Nonnull ModifiableConfiguration configuration) throws IOException, MalformedObjectNameException {
+        expect(parser.getCurrentToken(), JsonToken.START_ARRAY, parser);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String objectName = null;
+            String operationName = null;
+            String resultAlias = null;
+            List<String> params = new ArrayList<>();
+            List<String> signature = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "objectName":
+                        objectName = requiredStringValue(field, parser);
+                        break;
+                    case "operationName":
+                        operationName = requiredStringValue(field, parser);
+                        break;
+                    case "resultAlias":
+                        resultAlias = stringValue(parser);
+                        break;
+                    case "parameters":
+                        parseParameters(parser, params, signature);
+                        break;
+                    default:
+                        throw unknownProperty(field, parser);
+                }
+            }
+            if (objectName == null) throw missingProperty("objectName", parser);
+            if (operationName == null) throw missingProperty("operationName", parser);
+            configuration.getInvocations().add(
+                    new Invocation(
+                            new ObjectName(objectName),
+                            operationName,
+                            params.toArray(),
+                            signature.toArray(new String[0]),
+                            resultAlias, new SystemClock()));
+        }
+        expect(parser.getCurrentToken(), JsonToken.END_ARRAY, parser);
+    }
+
+    private void parseParameters(@Nonnull JsonParser parser, @Nonnull List<String> params, @Nonnull List<String> signature) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_ARRAY, parser);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String value = null;
+            String type = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "value":
+                        value = requiredStringValue(field, parser);
+                        break;
+                    case "type":
+                        type = requiredStringValue(field, parser);
+                        break;
+                    default:
+                        throw unknownProperty(field, parser);
+                }
+            }
+            if (value == null) throw missingProperty("value", parser);
+            if (type == null) throw missingProperty("type", parser);
+            params.add(value);
+            signature.add(type);
+        }
+        expect(parser.getCurrentToken(), JsonToken.END_ARRAY, parser);
+    }
+
+    private void parseOutputWriters(@Nonnull JsonParser parser, @Nonnull ModifiableConfiguration configuration) throws IOException, IllegalAccessException, InstantiationException, MalformedObjectNameException {
+        expect(parser.getCurrentToken(), JsonToken.START_ARRAY, parser);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String outputWriterClass = null;
+            Map<String, String> settings = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("class".equals(field)) {
+                    outputWriterClass = requiredStringValue(field, parser);
+                } else {
+                    settings.put(field, requiredStringValue(field, parser));
+                }
+            }
+            if (outputWriterClass == null) throw missingProperty("class", parser);
+            configuration.getOutputWriters().add(outputWriterLoader.load(outputWriterClass, settings));
+        }
+        expect(parser.getCurrentToken(), JsonToken.END_ARRAY, parser);
+    }
+
+    /**
+     * @return the scalar value of the current token with placeholders resolved, {@code null} for a JSON null.
+     */
+    @Nullable
+    private String stringValue(@Nonnull JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) return null;
+        if (!token.isScalarValue()) {
+            throw new JsonParseException("Expected a value but found " + token, parser.getCurrentLocation());
+        }
+        return resolve(parser.getText());
+    }
+
+    @Nonnull
+    private String requiredStringValue(@Nonnull String field, @Nonnull JsonParser parser) throws IOException {
+        String value = stringValue(parser);
+        if (value == null) throw new JsonParseException("Property '" + field + "' cannot be null", parser.getCurrentLocation());
+        return value;
+    }
+
+    private int intValue(@Nonnull String field, @Nonnull JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT) return parser.getIntValue();
+        String value = requiredStringValue(field, parser);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException("Property '" + field + "' should be an integer but is '" + value + "'", parser.getCurrentLocation(), e);
+        }
+    }
+
+    private double doubleValue(@Nonnull String field, @Nonnull JsonParser parser) throws IOException {
+        if (parser.getCurrentToken().isNumeric()) return parser.getDoubleValue();
+        String value = requiredStringValue(field, parser);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException("Property '" + field + "' should be a number but is '" + value + "'", parser.getCurrentLocation(), e);
+        }
+    }
+
+    @Nonnull
+    private String resolve(@Nonnull String value) {
+        return placeholderResolver.resolveString(value);
+    }
+
+    private static void expect(@Nullable JsonToken actual, @Nonnull JsonToken expected, @Nonnull JsonParser parser) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException("Expected " + expected + " but found " + actual, parser.getCurrentLocation());
+        }
+    }
+
+    @Nonnull
+    private static JsonParseException unknownProperty(@Nonnull String field, @Nonnull JsonParser parser) {
+        return new JsonParseException("Unknown property '" + field + "'", parser.getCurrentLocation());
+    }
+
+    @Nonnull
+    private static JsonParseException missingProperty(@Nonnull String field, @Nonnull JsonParser parser) {
+        return new JsonParseException("Missing property '" + field + "'", parser.getCurrentLocation());
+    }
+
+    private static final class PendingServer {
+        @Nonnull private final RemoteServer.Builder server = RemoteServer.builder();
+        @Nullable private String url;
+        @Nonnull private final List<Query> queries = new ArrayList<>();
+        @Nonnull private final List<String> includes = new ArrayList<>();
+        @Nonnull private final JsonLocation location;
+
+        private PendingServer(@Nonnull JsonLocation location) {
+            this.location = location;
+        }
+
+        @Nonnull
+        private Server build(@Nonnull Map<String, List<Query>> querySets) throws IOException {
+            List<Query> allQueries = new ArrayList<>(queries);
+            for (String include : includes) {
+                List<Query> querySet = querySets.get(include);
+                if (querySet == null) throw new JsonParseException("Unknown query set '" + include + "'", location);
+                allQueries.addAll(querySet);
+            }
+            return Servers.build(url, server, allQueries);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.utils.io.Resource;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads targets from JSON files with the Jackson streaming API, files listing many targets are read without
+ * building a tree.
+ *
+ * <pre>
+ * [
+ *   { "host": "web-1.example.com", "port": 9999, "querySet": "tomcat", "labels": { "datacenter": "eu-west" } }
+ * ]
+ * </pre>
+ */
+@ThreadSafe
+class JsonTargetReader implements TargetReader {
+
+    @Nonnull private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Override
+    public boolean supports(@Nonnull Resource resource) {
+        return resource.getPath().endsWith(".json");
+    }
+
+    @Nonnull
+    @Override
+    public List<Target> readTargets(@Nonnull Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream();
+             JsonParser parser = jsonFactory.createParser(in)) {
+            expect(parser.nextToken(), JsonToken.START_ARRAY, parser);
+            List<Target> targets = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                targets.add(readTarget(parser));
+            }
+            expect(parser.getCurrentToken(), JsonToken.END_ARRAY, parser);
+            return targets;
+        }
+    }
+
+    @Nonnull
+    private Target readTarget(@Nonnull JsonParser parser) throws IOException {
+        String host = null;
+        Integer port = null;
+        String querySet = null;
+        Map<String, String> labels = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "host":
+                    host = stringValue(parser);
+                    break;
+                case "port":
+                    expect(parser.getCurrentToken(), JsonToken.VALUE_NUMBER_INT, parser);
+                    port = parser.getIntValue();
+                    break;
+                case "querySet":
+                    querySet = stringValue(parser);
+                    break;
+                case "labels":
+                    expect(parser.getCurrentToken(), JsonToken.START_OBJECT, parser);
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String label = parser.getCurrentName();
+                        parser.nextToken();
+                        labels.put(label, stringValue(parser));
+                    }
+                    break;
+                default:
+                    throw new JsonParseException("Unknown property '" + field + "'", parser.getCurrentLocation());
+            }
+        }
+        if (host == null) throw missingProperty("host", parser);
+        if (port == null) throw missingProperty("port", parser);
+        if (querySet == null) throw missingProperty("querySet", parser);
+        return new Target(host, port, querySet, labels);
+    }
+
+    @Nonnull
+    private static String stringValue(@Nonnull JsonParser parser) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.VALUE_STRING, parser);
+        return parser.getText();
+    }
+
+    private static void expect(@Nullable JsonToken actual, @Nonnull JsonToken expected, @Nonnull JsonParser parser) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException("Expected " + expected + " but found " + actual, parser.getCurrentLocation());
+        }
+    }
+
+    @Nonnull
+    private static JsonParseException missingProperty(@Nonnull String field, @Nonnull JsonParser parser) {
+        return new JsonParseException("Missing property '" + field + "'", parser.getCurrentLocation());
+    }
+}
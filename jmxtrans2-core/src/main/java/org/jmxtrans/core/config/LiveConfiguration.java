@@ -0,0 +1,303 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.query.InProcessServer;
+import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.RemoteServer;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.utils.time.Interval;
+
+import lombok.Getter;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * Configuration whose servers, output writers, invocations and query sets can be replaced while JmxTrans is running.
+ *
+ * The iterables returned by this configuration always iterate over the latest version, they can be given once to
+ * the components collecting and writing metrics. An update only replaces what changed: servers whose connection
+ * and queries are the same are kept, as are queries equal to a live one and output writers instances, so that the
+ * state attached to them (MBeans, health, throttling, circuit breakers) survives the update.
+ *
+ * The period, self metrics prefix and overload thresholds are fixed when JmxTrans is built, changing them requires a
+ * restart.
+ */
+@ThreadSafe
+public class LiveConfiguration implements Configuration {
+
+    @Nonnull private final Live<Server> servers = new Live<>();
+    @Nonnull private final Live<OutputWriter> outputWriters = new Live<>();
+    @Nonnull private final Live<Invocation> invocations = new Live<>();
+    @Nonnull @Getter private final Interval period;
+    @Nullable @Getter private final String selfMetricsPrefix;
+    @Nullable @Getter private final Integer maxPeriodStretch;
+    @Nullable @Getter private final Integer overloadRecoveryCycles;
+    @Nullable @Getter private final Double minCompletionRatio;
+    @Nonnull private volatile Map<String, List<Query>> querySets;
+
+    public LiveConfiguration(@Nonnull Configuration configuration) {
+        this.period = configuration.getPeriod();
+        this.selfMetricsPrefix = configuration.getSelfMetricsPrefix();
+        this.maxPeriodStretch = configuration.getMaxPeriodStretch();
+        this.overloadRecoveryCycles = configuration.getOverloadRecoveryCycles();
+        this.minCompletionRatio = configuration.getMinCompletionRatio();
+        servers.set(toList(configuration.getServers()));
+        outputWriters.set(toList(configuration.getOutputWriters()));
+        invocations.set(toList(configuration.getInvocations()));
+        querySets = unmodifiableMap(new LinkedHashMap<>(configuration.getQuerySets()));
+    }
+
+    @Nonnull
+    @Override
+    public Iterable<Server> getServers() {
+        return servers;
+    }
+
+    @Nonnull
+    @Override
+    public Iterable<OutputWriter> getOutputWriters() {
+        return outputWriters;
+    }
+
+    @Nonnull
+    @Override
+    public Iterable<Invocation> getInvocations() {
+        return invocations;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, List<Query>> getQuerySets() {
+        return querySets;
+    }
+
+    /**
+     * Replaces the live servers, output writers and invocations by the ones of the given configuration.
+     *
+     * Updates are expected to come from a single thread, concurrent updates are serialized.
+     *
+     * @return what was added and removed by the update.
+     */
+    @Nonnull
+    public synchronized Changes update(@Nonnull Configuration configuration) {
+        Map<Query, Query> liveQueries = new LinkedHashMap<>();
+        Map<Object, Server> liveServers = new LinkedHashMap<>();
+        for (Server server : servers) {
+            for (Query query : server.getQueries()) liveQueries.put(query, query);
+            liveServers.put(key(server), server);
+        }
+
+        Changes changes = new Changes(
+                !period.equals(configuration.getPeriod()),
+                !Objects.equals(selfMetricsPrefix, configuration.getSelfMetricsPrefix()),
+                !Objects.equals(maxPeriodStretch, configuration.getMaxPeriodStretch())
+                        || !Objects.equals(overloadRecoveryCycles, configuration.getOverloadRecoveryCycles())
+                        || !Objects.equals(minCompletionRatio, configuration.getMinCompletionRatio()));
+
+        Set<Query> updatedQueries = identitySet();
+        List<Server> updatedServers = new ArrayList<>();
+        for (Server server : configuration.getServers()) {
+            List<Query> queries = reuse(server.getQueries(), liveQueries);
+            updatedQueries.addAll(queries);
+
+            Server live = liveServers.remove(key(server));
+            Server updated = update(live, server, queries);
+            if (updated != live) {
+                if (live != null) {
+                    changes.removedServers.add(live);
+                    if (!sameConnection(live, updated)) changes.disconnectedServers.add(live);
+                }
+                changes.addedServers.add(updated);
+            }
+            updatedServers.add(updated);
+        }
+        changes.removedServers.addAll(liveServers.values());
+        changes.disconnectedServers.addAll(liveServers.values());
+
+        Set<Query> previousQueries = identitySet();
+        previousQueries.addAll(liveQueries.values());
+        for (Query query : updatedQueries) {
+            if (!previousQueries.contains(query)) changes.addedQueries.add(query);
+        }
+        for (Query query : previousQueries) {
+            if (!updatedQueries.contains(query)) changes.removedQueries.add(query);
+        }
+
+        List<OutputWriter> updatedOutputWriters = toList(configuration.getOutputWriters());
+        changes.addedOutputWriters.addAll(difference(updatedOutputWriters, outputWriters));
+        changes.removedOutputWriters.addAll(difference(outputWriters, updatedOutputWriters));
+
+        servers.set(updatedServers);
+        outputWriters.set(updatedOutputWriters);
+        invocations.set(toList(configuration.getInvocations()));
+        Map<String, List<Query>> updatedQuerySets = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Query>> querySet : configuration.getQuerySets().entrySet()) {
+            updatedQuerySets.put(querySet.getKey(), reuse(querySet.getValue(), liveQueries));
+        }
+        querySets = unmodifiableMap(updatedQuerySets);
+        return changes;
+    }
+
+    /**
+     * @return the live server if it can be kept, a copy of the live server sharing its connection but collecting
+     * other queries, or the updated server.
+     */
+    @Nonnull
+    private static Server update(@Nullable Server live, @Nonnull Server updated, @Nonnull List<Query> queries) {
+        if (live != null && sameInstances(live.getQueries(), queries)) {
+            // other servers are matched by equality, they are already the same
+            if (!(live instanceof RemoteServer) || sameConnection(live, updated)) return live;
+        }
+        if (updated instanceof InProcessServer) return new InProcessServer(queries);
+        if (updated instanceof RemoteServer) {
+            if (sameConnection(live, updated)) return ((RemoteServer) live).withQueries(queries);
+            return ((RemoteServer) updated).withQueries(queries);
+        }
+        return updated;
+    }
+
+    private static boolean sameConnection(@Nullable Server live, @Nonnull Server updated) {
+        return live instanceof RemoteServer && updated instanceof RemoteServer
+                && ((RemoteServer) live).hasSameConnectionAs((RemoteServer) updated);
+    }
+
+    /** @return the live instances of the queries that are already collected, the other queries as they are. */
+    @Nonnull
+    private static List<Query> reuse(@Nonnull Iterable<Query> queries, @Nonnull Map<Query, Query> liveQueries) {
+        List<Query> result = new ArrayList<>();
+        for (Query query : queries) {
+            Query live = liveQueries.get(query);
+            result.add(live != null ? live : query);
+        }
+        return result;
+    }
+
+    /** Servers are matched by JMX URL, there is at most one in process server, other servers by equality. */
+    @Nonnull
+    private static Object key(@Nonnull Server server) {
+        if (server instanceof InProcessServer) return InProcessServer.class;
+        if (server instanceof RemoteServer) return ((RemoteServer) server).getUrl();
+        return server;
+    }
+
+    private static boolean sameInstances(@Nonnull Iterable<Query> live, @Nonnull List<Query> updated) {
+        Iterator<Query> queries = live.iterator();
+        for (Query query : updated) {
+            if (!queries.hasNext() || queries.next() != query) return false;
+        }
+        return !queries.hasNext();
+    }
+
+    @Nonnull
+    private static <T> List<T> difference(@Nonnull Iterable<T> elements, @Nonnull Iterable<T> removed) {
+        Set<T> toRemove = identitySet();
+        for (T element : removed) toRemove.add(element);
+        List<T> result = new ArrayList<>();
+        for (T element : elements) {
+            if (!toRemove.contains(element)) result.add(element);
+        }
+        return result;
+    }
+
+    @Nonnull
+    private static <T> Set<T> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+    }
+
+    @Nonnull
+    private static <T> List<T> toList(@Nonnull Iterable<T> elements) {
+        List<T> result = new ArrayList<>();
+        for (T element : elements) result.add(element);
+        return result;
+    }
+
+    /** Iterates over the latest list it was given, a running iteration is not affected by an update. */
+    @ThreadSafe
+    private static final class Live<T> implements Iterable<T> {
+        @Nonnull private volatile List<T> elements = Collections.emptyList();
+
+        private void set(@Nonnull List<T> elements) {
+            this.elements = unmodifiableList(elements);
+        }
+
+        @Nonnull
+        @Override
+        public Iterator<T> iterator() {
+            return elements.iterator();
+        }
+    }
+
+    /**
+     * What an update added and removed. A server whose queries changed is both removed and added, the removed server
+     * is only disconnected if the added one connects with another URL or other credentials.
+     */
+    public static final class Changes {
+        @Nonnull @Getter private final List<Server> addedServers = new ArrayList<>();
+        @Nonnull @Getter private final List<Server> removedServers = new ArrayList<>();
+        /** Removed servers whose connection is no longer used. */
+        @Nonnull @Getter private final List<Server> disconnectedServers = new ArrayList<>();
+        @Nonnull @Getter private final List<Query> addedQueries = new ArrayList<>();
+        @Nonnull @Getter private final List<Query> removedQueries = new ArrayList<>();
+        @Nonnull @Getter private final List<OutputWriter> addedOutputWriters = new ArrayList<>();
+        @Nonnull @Getter private final List<OutputWriter> removedOutputWriters = new ArrayList<>();
+        @Getter private final boolean periodChanged;
+        @Getter private final boolean selfMetricsPrefixChanged;
+        @Getter private final boolean overloadThresholdsChanged;
+
+        private Changes(boolean periodChanged, boolean selfMetricsPrefixChanged, boolean overloadThresholdsChanged) {
+            this.periodChanged = periodChanged;
+            this.selfMetricsPrefixChanged = selfMetricsPrefixChanged;
+            this.overloadThresholdsChanged = overloadThresholdsChanged;
+        }
+
+        public boolean isEmpty() {
+            return addedServers.isEmpty() && removedServers.isEmpty()
+                    && addedOutputWriters.isEmpty() && removedOutputWriters.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "servers +" + addedServers.size() + "/-" + removedServers.size()
+                    + ", queries +" + addedQueries.size() + "/-" + removedQueries.size()
+                    + ", output writers +" + addedOutputWriters.size() + "/-" + removedOutputWriters.size();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A JVM running on the local host, as listed by {@link LocalJvms}.
+ */
+@Immutable
+@ThreadSafe
+@EqualsAndHashCode
+final class LocalJvm {
+
+    /** Process id of the JVM. */
+    @Nonnull @Getter private final String id;
+    /** Main class or jar of the JVM, empty if it is not known. */
+    @Nonnull @Getter private final String mainClass;
+
+    LocalJvm(@Nonnull String id, @Nonnull String mainClass) {
+        this.id = id;
+        this.mainClass = mainClass;
+    }
+
+    @Override
+    public String toString() {
+        return id + " " + mainClass;
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.lifecycle.LifecycleAware;
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Collects from the JVMs running on the local host that match a {@link LocalJvmRule}, through their local JMX
+ * connector: they do not need to open a remote JMX port.
+ *
+ * JVMs are listed periodically, which does not require attaching to them. Each new JVM is attached to once, to read
+ * its system properties if a rule needs them and the address of its connector if a rule matches. A JVM that cannot be
+ * attached to, still starting for example, is attached to again on the next refreshes, up to
+ * {@link #MAX_ATTACH_ATTEMPTS} times. The first
+ * matching rule gives the query set of the JVM, which is labeled with its pid and main class. All local JVMs share the
+ * same host, so the server of a JVM is named after its main class and pid instead. JVMs that exit are removed, and
+ * the connector to them closed. The JVM running JmxTrans is skipped, it is collected with an in-process server.
+ */
+@ThreadSafe
+public class LocalJvmDiscovery implements LifecycleAware {
+
+    static final String SOURCE = "local JVMs";
+    static final int MAX_ATTACH_ATTEMPTS = 3;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    @Nonnull private final LocalJvms localJvms;
+    @Nonnull private final Iterable<LocalJvmRule> rules;
+    @Nonnull private final ConfigurationReloader reloader;
+    @Nonnull private final ScheduledExecutorService executor;
+    private final long refreshPeriodMillis;
+    @Nullable private final String selfId;
+
+    /** Known JVMs and their target, null for JVMs that are not collected. */
+    @GuardedBy("this") @Nonnull private final Map<LocalJvm, Target> targets = new LinkedHashMap<>();
+    /** Failed attempts to attach to the JVMs which are not known yet. */
+    @GuardedBy("this") @Nonnull private final Map<LocalJvm, Integer> failedAttaches = new HashMap<>();
+
+    LocalJvmDiscovery(
+            @Nonnull LocalJvms localJvms,
+            @Nonnull Iterable<LocalJvmRule> rules,
+            @Nonnull ConfigurationReloader reloader,
+            @Nonnull ScheduledExecutorService executor,
+            long refreshPeriodMillis,
+            @Nullable String selfId) {
+        this.localJvms = localJvms;
+        this.rules = rules;
+        this.reloader = reloader;
+        this.executor = executor;
+        this.refreshPeriodMillis = refreshPeriodMillis;
+        this.selfId = selfId;
+    }
+
+    @Override
+    public void start() {
+        refresh();
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    logger.error("Could not refresh local JVMs", e);
+                }
+            }
+        }, refreshPeriodMillis, refreshPeriodMillis, MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    synchronized void refresh() {
+        List<LocalJvm> jvms;
+        try {
+            jvms = localJvms.list();
+        } catch (Exception e) {
+            logger.warn("Could not list local JVMs", e);
+            return;
+        }
+
+        boolean changed = false;
+        Set<LocalJvm> running = new HashSet<>(jvms);
+        failedAttaches.keySet().retainAll(running);
+        for (Iterator<Map.Entry<LocalJvm, Target>> known = targets.entrySet().iterator(); known.hasNext();) {
+            Map.Entry<LocalJvm, Target> entry = known.next();
+            if (!running.contains(entry.getKey())) {
+                known.remove();
+                changed |= entry.getValue() != null;
+            }
+        }
+        for (LocalJvm jvm : jvms) {
+            if (jvm.getId().equals(selfId) || targets.containsKey(jvm)) continue;
+            Target target;
+            try {
+                target = discover(jvm);
+            } catch (Exception e) {
+                if (!attachFailed(jvm)) {
+                    logger.warn("Could not attach to local JVM " + jvm + ", will retry", e);
+                    continue;
+                }
+                logger.warn("Could not attach to local JVM " + jvm + " after " + MAX_ATTACH_ATTEMPTS + " attempts, it is ignored", e);
+                target = null;
+            }
+            failedAttaches.remove(jvm);
+            targets.put(jvm, target);
+            changed |= target != null;
+        }
+
+        if (changed) {
+            List<Target> discovered = new ArrayList<>();
+            for (Target target : targets.values()) {
+                if (target != null) discovered.add(target);
+            }
+            reloader.updateTargets(SOURCE, discovered);
+        }
+    }
+
+    /**
+     * @return true once attaching to the JVM failed {@link #MAX_ATTACH_ATTEMPTS} times.
+     */
+    @GuardedBy("this")
+    private boolean attachFailed(@Nonnull LocalJvm jvm) {
+        Integer failed = failedAttaches.get(jvm);
+        int attempts = failed == null ? 1 : failed + 1;
+        failedAttaches.put(jvm, attempts);
+        return attempts >= MAX_ATTACH_ATTEMPTS;
+    }
+
+    @Nullable
+    private Target discover(@Nonnull LocalJvm jvm) throws Exception {
+        Properties systemProperties = null;
+        for (LocalJvmRule rule : rules) {
+            if (rule.needsSystemProperties() && systemProperties == null) {
+                systemProperties = localJvms.systemProperties(jvm.getId());
+            }
+            if (rule.matches(jvm.getMainClass(), systemProperties)) {
+                Map<String, String> labels = new HashMap<>();
+                labels.put("pid", jvm.getId());
+                labels.put("mainClass", jvm.getMainClass());
+                return Target.forUrl(localJvms.connectorAddress(jvm.getId()), rule.getQuerySet(), labels).withName(name(jvm));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return {@code <main class>-<pid>}, or the pid alone if the main class is not known.
+     */
+    @Nonnull
+    private static String name(@Nonnull LocalJvm jvm) {
+        if (jvm.getMainClass().isEmpty()) return jvm.getId();
+        return jvm.getMainClass() + "-" + jvm.getId();
+    }
+}
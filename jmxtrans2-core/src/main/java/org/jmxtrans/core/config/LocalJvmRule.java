@@ -0,0 +1,105 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import lombok.Getter;
+
+import static java.lang.String.format;
+
+/**
+ * Selects local JVMs to collect from, and the query set collected from them.
+ *
+ * Rules are written {@code querySet:mainClassPattern} to match the main class (or jar) of a JVM, or
+ * {@code querySet:-Dproperty=valuePattern} to match one of its system properties. Patterns must match the whole
+ * value. Matching a system property requires attaching to the JVM, matching the main class does not.
+ */
+@Immutable
+@ThreadSafe
+public final class LocalJvmRule {
+
+    @Nonnull private final String rule;
+    @Nonnull @Getter private final String querySet;
+    @Nullable private final String property;
+    @Nonnull private final Pattern pattern;
+
+    private LocalJvmRule(@Nonnull String rule, @Nonnull String querySet, @Nullable String property, @Nonnull Pattern pattern) {
+        this.rule = rule;
+        this.querySet = querySet;
+        this.property = property;
+        this.pattern = pattern;
+    }
+
+    @Nonnull
+    public static LocalJvmRule parse(@Nonnull String rule) {
+        int separator = rule.indexOf(':');
+        if (separator <= 0) throw invalid(rule);
+        String querySet = rule.substring(0, separator);
+        String selector = rule.substring(separator + 1);
+        String property = null;
+        if (selector.startsWith("-D")) {
+            int equals = selector.indexOf('=');
+            if (equals <= 2) throw invalid(rule);
+            property = selector.substring(2, equals);
+            selector = selector.substring(equals + 1);
+        }
+        try {
+            return new LocalJvmRule(rule, querySet, property, Pattern.compile(selector));
+        } catch (PatternSyntaxException e) {
+            throw new JmxtransConfigurationException(format("Invalid pattern in local JVM rule '%s'", rule), e);
+        }
+    }
+
+    @Nonnull
+    private static JmxtransConfigurationException invalid(@Nonnull String rule) {
+        return new JmxtransConfigurationException(format(
+                "Local JVM rule '%s' should be querySet:mainClassPattern or querySet:-Dproperty=valuePattern", rule));
+    }
+
+    public boolean needsSystemProperties() {
+        return property != null;
+    }
+
+    /**
+     * @param systemProperties system properties of the JVM, only needed if {@link #needsSystemProperties()}.
+     */
+    public boolean matches(@Nonnull String mainClass, @Nullable Properties systemProperties) {
+        if (property == null) return pattern.matcher(mainClass).matches();
+        if (systemProperties == null) return false;
+        String value = systemProperties.getProperty(property);
+        return value != null && pattern.matcher(value).matches();
+    }
+
+    @Override
+    public String toString() {
+        return rule;
+    }
+}
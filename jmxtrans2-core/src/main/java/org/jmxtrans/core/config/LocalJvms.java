@@ -0,0 +1,49 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.util.List;
+import java.util.Properties;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Lists the JVMs running on the local host and gives access to their local JMX connector.
+ */
+interface LocalJvms {
+
+    /** Lists the JVMs without attaching to them. */
+    @Nonnull
+    List<LocalJvm> list() throws Exception;
+
+    /** Attaches to the JVM to read its system properties. */
+    @Nonnull
+    Properties systemProperties(@Nonnull String id) throws Exception;
+
+    /**
+     * Attaches to the JVM to read the address of its local JMX connector, the local management agent is started if
+     * it is not running yet.
+     */
+    @Nonnull
+    String connectorAddress(@Nonnull String id) throws Exception;
+}
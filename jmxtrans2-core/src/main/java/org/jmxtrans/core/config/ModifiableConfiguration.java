@@ -24,12 +24,17 @@ package org.jmxtrans.core.config;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import org.jmxtrans.core.output.OutputWriter;
 import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
 import org.jmxtrans.core.query.Server;
 import org.jmxtrans.utils.time.Interval;
 
@@ -40,9 +45,14 @@ import lombok.Setter;
 final class ModifiableConfiguration implements Configuration {
 
     @Setter private Interval period;
+    @Nullable @Getter @Setter private String selfMetricsPrefix;
+    @Nullable @Getter @Setter private Integer maxPeriodStretch;
+    @Nullable @Getter @Setter private Integer overloadRecoveryCycles;
+    @Nullable @Getter @Setter private Double minCompletionRatio;
     @Nonnull @Getter private final Collection<OutputWriter> outputWriters = new ArrayList<>();
     @Nonnull @Getter private final Collection<Invocation> invocations = new ArrayList<>();
     @Nonnull @Getter private final Collection<Server> servers = new ArrayList<>();
+    @Nonnull @Getter private final Map<String, List<Query>> querySets = new LinkedHashMap<>();
 
     @Nonnull
     @Override
@@ -0,0 +1,173 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.circuitbreaker.CircuitBreakerProxy;
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.monitoring.NestedMBeans;
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.output.MetricCollectingOutputWriter;
+import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.output.OutputWriterFactory;
+import org.jmxtrans.core.output.throttle.ThrottlingOutputWriter;
+import org.jmxtrans.utils.time.Clock;
+
+import lombok.EqualsAndHashCode;
+
+import static java.lang.String.format;
+
+/**
+ * Instantiates the output writers declared in a configuration, whatever its format, through their {@code Factory}
+ * and wraps them with throttling, circuit breaker and metrics.
+ *
+ * Output writers declared with the same class and settings are only instantiated once, sharing a loader between
+ * parsers lets {@link ConfigurationMerger} fold duplicated declarations across configuration files.
+ */
+@ThreadSafe
+class OutputWriterLoader {
+
+    public static final int MAX_FAILURES = 5;
+    public static final int DISABLE_DURATION_MILLIS = 60 * 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    @Nonnull private final Clock clock;
+    @Nonnull private final ObjectNameFactory outputObjectNameFactory;
+    @GuardedBy("this") @Nonnull private final Map<Definition, OutputWriter> loaded = new HashMap<>();
+
+    OutputWriterLoader(@Nonnull Clock clock, @Nonnull ObjectNameFactory outputObjectNameFactory) {
+        this.clock = clock;
+        this.outputObjectNameFactory = outputObjectNameFactory;
+    }
+
+    @Nonnull
+    public synchronized OutputWriter load(@Nonnull String outputWriterClass, @Nonnull Map<String, String> settings)
+            throws InstantiationException, IllegalAccessException, MalformedObjectNameException {
+        Definition definition = new Definition(outputWriterClass, settings);
+        OutputWriter outputWriter = loaded.get(definition);
+        if (outputWriter == null) {
+            outputWriter = create(outputWriterClass, settings);
+            loaded.put(definition, outputWriter);
+        }
+        return outputWriter;
+    }
+
+    /**
+     * Forgets output writers removed from the configuration, declaring them again creates new instances.
+     * Released writers are closed so that they stop their threads and connections.
+     */
+    public synchronized void release(@Nonnull Iterable<OutputWriter> outputWriters) {
+        for (OutputWriter outputWriter : outputWriters) {
+            Iterator<OutputWriter> loadedWriters = loaded.values().iterator();
+            while (loadedWriters.hasNext()) {
+                if (loadedWriters.next() == outputWriter) loadedWriters.remove();
+            }
+            close(outputWriter);
+        }
+    }
+
+    private void close(@Nonnull OutputWriter outputWriter) {
+        if (!(outputWriter instanceof Closeable)) return;
+        try {
+            ((Closeable) outputWriter).close();
+        } catch (IOException e) {
+            logger.warn("Could not close output writer " + outputWriter, e);
+        }
+    }
+
+    @Nonnull
+    private OutputWriter create(@Nonnull String outputWriterClass, @Nonnull Map<String, String> settings)
+            throws InstantiationException, IllegalAccessException, MalformedObjectNameException {
+        try {
+            @SuppressWarnings("unchecked")
+            Class<OutputWriterFactory<?>> builderClass = (Class<OutputWriterFactory<?>>) Class.forName(outputWriterClass + "$Factory");
+            OutputWriterFactory<?> builder = builderClass.newInstance();
+            return wrapInMetricCollectingOutputWriter(
+                    ThrottlingOutputWriter.throttle(
+                            clock,
+                            wrapInCircuitBreaker(
+                                    builder.create(settings)),
+                            settings),
+                    settings);
+        } catch (ClassNotFoundException e) {
+            throw new JmxtransConfigurationException(
+                    format("Could not load class %s, this can happen if you use non standard outputwriters and did not" +
+                            " add the appropriate jar on the classpath", outputWriterClass), e);
+        }
+    }
+
+    private OutputWriter wrapInMetricCollectingOutputWriter(OutputWriter outputWriter, Map<String, String> settings)
+            throws MalformedObjectNameException {
+        ObjectName objectName = outputObjectNameFactory.create(outputWriter.toString(), instanceName(settings));
+        return new MetricCollectingOutputWriter(clock, outputWriter, objectName);
+    }
+
+    /**
+     * Name derived from the settings, so that writers of the same class keep the same metric names across reloads and
+     * restarts. Settings are hashed rather than spelled out, as they can contain credentials.
+     */
+    @Nonnull
+    static String instanceName(@Nonnull Map<String, String> settings) {
+        return format("%08x", new TreeMap<>(settings).toString().hashCode());
+    }
+
+    private OutputWriter wrapInCircuitBreaker(OutputWriter target) {
+        List<Class<?>> additionalInterfaces = new ArrayList<>();
+        if (target instanceof NestedMBeans) additionalInterfaces.add(NestedMBeans.class);
+        if (target instanceof Closeable) additionalInterfaces.add(Closeable.class);
+        return CircuitBreakerProxy.create(
+                clock,
+                OutputWriter.class,
+                target,
+                MAX_FAILURES,
+                DISABLE_DURATION_MILLIS,
+                additionalInterfaces.toArray(new Class<?>[additionalInterfaces.size()]));
+    }
+
+    @EqualsAndHashCode
+    private static final class Definition {
+        @Nonnull private final String outputWriterClass;
+        @Nonnull private final Map<String, String> settings;
+
+        private Definition(@Nonnull String outputWriterClass, @Nonnull Map<String, String> settings) {
+            this.outputWriterClass = outputWriterClass;
+            this.settings = new HashMap<>(settings);
+        }
+    }
+}
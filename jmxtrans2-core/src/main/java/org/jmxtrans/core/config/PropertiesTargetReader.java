@@ -0,0 +1,137 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.utils.io.Resource;
+
+import static java.lang.String.format;
+
+/**
+ * Reads targets from properties files, each target is identified by the prefix of its properties:
+ *
+ * <pre>
+ * web-1.host=web-1.example.com
+ * web-1.port=9999
+ * web-1.querySet=tomcat
+ * web-1.labels.datacenter=eu-west
+ * </pre>
+ *
+ * Identifiers can contain dots.
+ */
+@ThreadSafe
+@Immutable
+class PropertiesTargetReader implements TargetReader {
+
+    private static final String LABELS = ".labels.";
+
+    @Override
+    public boolean supports(@Nonnull Resource resource) {
+        return resource.getPath().endsWith(".properties");
+    }
+
+    @Nonnull
+    @Override
+    public List<Target> readTargets(@Nonnull Resource resource) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = resource.getInputStream()) {
+            properties.load(in);
+        }
+
+        Map<String, Map<String, String>> definitions = new TreeMap<>();
+        Map<String, Map<String, String>> labels = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            int labelsIndex = key.lastIndexOf(LABELS);
+            if (labelsIndex > 0) {
+                get(labels, key.substring(0, labelsIndex)).put(key.substring(labelsIndex + LABELS.length()), value);
+                get(definitions, key.substring(0, labelsIndex));
+                continue;
+            }
+            int dot = key.lastIndexOf('.');
+            if (dot <= 0) throw error(resource, key, "is not of the form <target>.<property>");
+            get(definitions, key.substring(0, dot)).put(key.substring(dot + 1), value);
+        }
+
+        List<Target> targets = new ArrayList<>(definitions.size());
+        for (Map.Entry<String, Map<String, String>> definition : definitions.entrySet()) {
+            String id = definition.getKey();
+            Map<String, String> target = definition.getValue();
+            for (String property : target.keySet()) {
+                if (!property.equals("host") && !property.equals("port") && !property.equals("querySet")) {
+                    throw error(resource, id + "." + property, "is not a known target property");
+                }
+            }
+            Map<String, String> targetLabels = labels.get(id);
+            targets.add(new Target(
+                    required(resource, id, target, "host"),
+                    port(resource, id, required(resource, id, target, "port")),
+                    required(resource, id, target, "querySet"),
+                    targetLabels == null ? new HashMap<String, String>() : targetLabels));
+        }
+        return targets;
+    }
+
+    @Nonnull
+    private static Map<String, String> get(@Nonnull Map<String, Map<String, String>> map, @Nonnull String id) {
+        Map<String, String> values = map.get(id);
+        if (values == null) {
+            values = new HashMap<>();
+            map.put(id, values);
+        }
+        return values;
+    }
+
+    @Nonnull
+    private static String required(@Nonnull Resource resource, @Nonnull String id, @Nonnull Map<String, String> target, @Nonnull String property) {
+        String value = target.get(property);
+        if (value == null || value.isEmpty()) throw error(resource, id + "." + property, "is missing");
+        return value;
+    }
+
+    private static int port(@Nonnull Resource resource, @Nonnull String id, @Nonnull String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw error(resource, id + ".port", "should be an integer but is '" + value + "'");
+        }
+    }
+
+    @Nonnull
+    private static JmxtransConfigurationException error(@Nonnull Resource resource, @Nullable String key, @Nonnull String message) {
+        return new JmxtransConfigurationException(format("Property '%s' of %s %s", key, resource.getPath(), message));
+    }
+}
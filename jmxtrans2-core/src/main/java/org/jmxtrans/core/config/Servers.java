@@ -0,0 +1,59 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.net.MalformedURLException;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.RemoteServer;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.jolokia.JolokiaServer;
+import org.jmxtrans.core.query.perfdata.PerfDataServer;
+import org.jmxtrans.core.query.proc.ProcServer;
+
+/**
+ * Builds the servers of configurations and discovered targets. The scheme of the URL selects how a server is
+ * collected: {@code perfdata:} URLs from HotSpot performance counters (see {@link PerfDataServer}), {@code proc:} URLs
+ * from the Linux /proc file system (see {@link ProcServer}), {@code http:} and {@code https:} URLs from Jolokia agents
+ * (see {@link JolokiaServer}), other URLs and servers given by host and port over a JMX connector.
+ */
+final class Servers {
+
+    private Servers() {
+    }
+
+    /**
+     * @param remote host, port and credentials of the server, used if the URL is a JMX service URL or is not given.
+     */
+    @Nonnull
+    static Server build(@Nullable String url, @Nonnull RemoteServer.Builder remote, @Nonnull List<Query> queries) throws MalformedURLException {
+        if (url != null && url.startsWith(PerfDataServer.SCHEME)) return PerfDataServer.forUrl(url, queries);
+        if (url != null && url.startsWith(ProcServer.SCHEME)) return ProcServer.forUrl(url, queries);
+        if (url != null && (url.startsWith(JolokiaServer.HTTP_SCHEME) || url.startsWith(JolokiaServer.HTTPS_SCHEME))) return JolokiaServer.forUrl(url, queries);
+        return remote.withUrl(url).withQueries(queries).build();
+    }
+}
@@ -22,16 +22,23 @@
  */
 package org.jmxtrans.core.config;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 import org.jmxtrans.core.output.OutputWriter;
 import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
 import org.jmxtrans.core.query.Server;
 import org.jmxtrans.utils.time.Interval;
 
+import static java.util.Collections.unmodifiableMap;
+
 @ThreadSafe // TODO: synchronization is overly aggressive
 public class StandardConfiguration implements Configuration {
 
@@ -39,10 +46,20 @@ public class StandardConfiguration implements Configuration {
     private final CopyOnWriteArrayList<Server> servers = new CopyOnWriteArrayList<>();
     @Nonnull
     private volatile Interval period;
+    @Nullable
+    private final String selfMetricsPrefix;
+    @Nullable
+    private final Integer maxPeriodStretch;
+    @Nullable
+    private final Integer overloadRecoveryCycles;
+    @Nullable
+    private final Double minCompletionRatio;
     @Nonnull
     private final CopyOnWriteArrayList<OutputWriter> outputWriters = new CopyOnWriteArrayList<>();
     @Nonnull
     private final CopyOnWriteArrayList<Invocation> invocations = new CopyOnWriteArrayList<>();
+    @Nonnull
+    private final Map<String, List<Query>> querySets;
 
     public StandardConfiguration(Configuration configuration) {
         servers.clear();
@@ -50,6 +67,10 @@ public class StandardConfiguration implements Configuration {
             servers.add(server);
         }
         period = configuration.getPeriod();
+        selfMetricsPrefix = configuration.getSelfMetricsPrefix();
+        maxPeriodStretch = configuration.getMaxPeriodStretch();
+        overloadRecoveryCycles = configuration.getOverloadRecoveryCycles();
+        minCompletionRatio = configuration.getMinCompletionRatio();
         outputWriters.clear();
         for (OutputWriter outputWriter : configuration.getOutputWriters()) {
             outputWriters.add(outputWriter);
@@ -58,6 +79,7 @@ public class StandardConfiguration implements Configuration {
         for (Invocation invocation : configuration.getInvocations()) {
             invocations.add(invocation);
         }
+        querySets = unmodifiableMap(new LinkedHashMap<>(configuration.getQuerySets()));
     }
 
     @Nonnull
@@ -83,4 +105,34 @@ public class StandardConfiguration implements Configuration {
     public synchronized Iterable<Invocation> getInvocations() {
         return invocations;
     }
+
+    @Override
+    @Nonnull
+    public Map<String, List<Query>> getQuerySets() {
+        return querySets;
+    }
+
+    @Override
+    @Nullable
+    public String getSelfMetricsPrefix() {
+        return selfMetricsPrefix;
+    }
+
+    @Override
+    @Nullable
+    public Integer getMaxPeriodStretch() {
+        return maxPeriodStretch;
+    }
+
+    @Override
+    @Nullable
+    public Integer getOverloadRecoveryCycles() {
+        return overloadRecoveryCycles;
+    }
+
+    @Override
+    @Nullable
+    public Double getMinCompletionRatio() {
+        return minCompletionRatio;
+    }
 }
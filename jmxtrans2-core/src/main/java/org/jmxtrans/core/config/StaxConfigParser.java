@@ -0,0 +1,477 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.query.InProcessServer;
+import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.QueryAttribute;
+import org.jmxtrans.core.query.RemoteServer;
+import org.jmxtrans.utils.PropertyPlaceholderResolver;
+import org.jmxtrans.utils.io.Resource;
+import org.jmxtrans.utils.time.Clock;
+import org.jmxtrans.utils.time.Interval;
+import org.jmxtrans.utils.time.SystemClock;
+
+import org.xml.sax.SAXParseException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Reads the same XML configuration as {@link XmlConfigParser} in a single pass with StAX.
+ *
+ * No DOM is built and JAXB is not loaded: placeholders are resolved as attributes are read and queries, servers,
+ * invocations and output writers are built directly. Instead of validating against the XSD, the structure is checked
+ * while reading (expected elements, known and required attributes, integer values, output writer class names) and
+ * parsing stops at the first error, reported as a {@link SAXParseException} with its location.
+ */
+@ThreadSafe
+public class StaxConfigParser implements ConfigParser {
+
+    public static final String NAMESPACE = "http://jmxtrans.org/config/2.0";
+
+    /** Same restriction as the className type of the XSD. */
+    private static final Pattern CLASS_NAME = Pattern.compile("([a-zA-Z_$][a-zA-Z\\d_$]*\\.)*[a-zA-Z_$][a-zA-Z\\d_$]*");
+
+    @GuardedBy("inputFactory") @Nonnull private final XMLInputFactory inputFactory;
+    @Nonnull private final PropertyPlaceholderResolver placeholderResolver;
+    @Nonnull private final OutputWriterLoader outputWriterLoader;
+
+    public StaxConfigParser(
+            @Nonnull PropertyPlaceholderResolver placeholderResolver,
+            @Nonnull Clock clock,
+            @Nonnull ObjectNameFactory outputObjectNameFactory) {
+        this(placeholderResolver, new OutputWriterLoader(clock, outputObjectNameFactory));
+    }
+
+    StaxConfigParser(@Nonnull PropertyPlaceholderResolver placeholderResolver, @Nonnull OutputWriterLoader outputWriterLoader) {
+        this.placeholderResolver = placeholderResolver;
+        this.outputWriterLoader = outputWriterLoader;
+        this.inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @Override
+    public boolean supports(@Nonnull Resource resource) {
+        return resource.getPath().endsWith(".xml");
+    }
+
+    @Nonnull
+    @Override
+    public Configuration parseConfiguration(Resource source) throws IOException, SAXParseException, IllegalAccessException, InstantiationException, MalformedObjectNameException {
+        try (InputStream in = source.getInputStream()) {
+            XMLStreamReader reader = createReader(in, source);
+            try {
+                ModifiableConfiguration configuration = new ModifiableConfiguration();
+                reader.nextTag();
+                expectElement(reader, "jmxtrans");
+                parseJmxtrans(reader, configuration);
+                return new StandardConfiguration(configuration);
+            } catch (XMLStreamException e) {
+                throw new SAXParseException(e.getMessage(), source.getPath(), null, line(e.getLocation()), column(e.getLocation()), e);
+            } finally {
+                close(reader);
+            }
+        }
+    }
+
+    private void parseJmxtrans(@Nonnull XMLStreamReader reader, @Nonnull ModifiableConfiguration configuration) throws XMLStreamException, SAXParseException, IllegalAccessException, InstantiationException, MalformedObjectNameException {
+        Map<String, String> attributes = attributes(reader, "collectIntervalInSeconds", "selfMetricsPrefix",
+                "maxPeriodStretch", "overloadRecoveryCycles", "minCompletionRatio");
+        if (attributes.containsKey("collectIntervalInSeconds")) {
+            configuration.setPeriod(new Interval(intAttribute(reader, attributes, "collectIntervalInSeconds"), SECONDS));
+        }
+        configuration.setSelfMetricsPrefix(attributes.get("selfMetricsPrefix"));
+        if (attributes.containsKey("maxPeriodStretch")) {
+            configuration.setMaxPeriodStretch(intAttribute(reader, attributes, "maxPeriodStretch"));
+        }
+        if (attributes.containsKey("overloadRecoveryCycles")) {
+            configuration.setOverloadRecoveryCycles(intAttribute(reader, attributes, "overloadRecoveryCycles"));
+        }
+        if (attributes.containsKey("minCompletionRatio")) {
+            configuration.setMinCompletionRatio(doubleAttribute(reader, attributes, "minCompletionRatio"));
+        }
+
+        // children are an xs:all, in any order but each one at most once
+        Set<String> seen = new HashSet<>();
+        List<PendingServer> servers = Collections.emptyList();
+        Map<String, List<Query>> querySets = Collections.emptyMap();
+        while (reader.nextTag() == START_ELEMENT) {
+            String element = reader.getLocalName();
+            if (!seen.add(element)) throw error(reader, "Element <" + element + "> can only appear once");
+            switch (element(reader)) {
+                case "queries":
+                    configuration.addServer(new InProcessServer(parseQueries(reader)));
+                    break;
+                case "querySets":
+                    querySets = parseQuerySets(reader);
+                    break;
+                case "servers":
+                    servers = parseServers(reader);
+                    break;
+                case "invocations":
+                    parseInvocations(reader, configuration);
+                    break;
+                case "outputWriters":
+                    parseOutputWriters(reader, configuration);
+                    break;
+                default:
+                    throw unexpectedElement(reader);
+            }
+        }
+        addServers(servers, querySets, configuration);
+        configuration.getQuerySets().putAll(querySets);
+    }
+
+    /**
+     * Servers are only built once the whole document has been read, the query sets they include can be defined after
+     * them.
+     */
+    @Nonnull
+    private List<PendingServer> parseServers(@Nonnull XMLStreamReader reader) throws XMLStreamException, SAXParseException {
+        attributes(reader);
+        List<PendingServer> servers = new ArrayList<>();
+        while (reader.nextTag() == START_ELEMENT) {
+            expectElement(reader, "server");
+            Map<String, String> attributes = attributes(reader,
+                    "jmxUrl", "host", "port", "username", "password", "protocolProviderPackages");
+            Integer port = attributes.containsKey("port") ? intAttribute(reader, attributes, "port") : null;
+            PendingServer server = new PendingServer(attributes, port, reader.getLocation());
+            int event = reader.nextTag();
+            if (event == START_ELEMENT && "queries".equals(element(reader))) {
+                server.queries.addAll(parseQueries(reader));
+                event = reader.nextTag();
+            }
+            while (event == START_ELEMENT) {
+                expectElement(reader, "include");
+                server.includes.add(requiredAttribute(reader, attributes(reader, "querySet"), "querySet"));
+                expectEnd(reader);
+                event = reader.nextTag();
+            }
+            servers.add(server);
+        }
+        if (servers.isEmpty()) throw error(reader, "Element <servers> needs at least one <server>");
+        return servers;
+    }
+
+    /**
+     * Queries of each set are only built once, all servers including a set share the same instances.
+     */
+    @Nonnull
+    private Map<String, List<Query>> parseQuerySets(@Nonnull XMLStreamReader reader) throws XMLStreamException, SAXParseException {
+        attributes(reader);
+        Map<String, List<Query>> querySets = new HashMap<>();
+        while (reader.nextTag() == START_ELEMENT) {
+            expectElement(reader, "querySet");
+            Map<String, String> attributes = attributes(reader, "name");
+            String name = requiredAttribute(reader, attributes, "name");
+            if (querySets.containsKey(name)) throw error(reader, "Query set '" + name + "' is defined more than once");
+            querySets.put(name, parseQueries(reader, false));
+        }
+        if (querySets.isEmpty()) throw error(reader, "Element <querySets> needs at least one <querySet>");
+        return querySets;
+    }
+
+    private void addServers(
+            @Nonnull List<PendingServer> servers,
+            @Nonnull Map<String, List<Query>> querySets,
+            @Nonnull ModifiableConfiguration configuration) throws SAXParseException {
+        for (PendingServer server : servers) {
+            List<Query> queries = new ArrayList<>(server.queries);
+            for (String include : server.includes) {
+                List<Query> querySet = querySets.get(include);
+                if (querySet == null) throw server.error("Unknown query set '" + include + "'");
+                queries.addAll(querySet);
+            }
+            try {
+                configuration.addServer(Servers.build(server.attributes.get("jmxUrl"), RemoteServer.builder()
+                        .withHost(server.attributes.get("host"))
+                        .withPort(server.port)
+                        .withUsername(server.attributes.get("username"))
+                        .withPassword(server.attributes.get("password"))
+                        .withProtocolProviderPackages(server.attributes.get("protocolProviderPackages")), queries));
+            } catch (MalformedURLException e) {
+                throw server.error("JMXUrl is not valid: " + e.getMessage());
+            }
+        }
+    }
+
+    @Nonnull
+    private List<Query> parseQueries(@Nonnull XMLStreamReader reader) throws XMLStreamException, SAXParseException {
+        return parseQueries(reader, true);
+    }
+
+    /**
+     * @param checkAttributes false if the attributes of the current element have already been read
+     */
+    @Nonnull
+    private List<Query> parseQueries(@Nonnull XMLStreamReader reader, boolean checkAttributes) throws XMLStreamException, SAXParseException {
+        if (checkAttributes) attributes(reader);
+        List<Query> queries = new ArrayList<>();
+        while (reader.nextTag() == START_ELEMENT) {
+            expectElement(reader, "query");
+            Map<String, String> attributes = attributes(reader, "objectName", "resultAlias", "maxResults");
+            Query.Builder query = Query.builder()
+                    .withObjectName(requiredAttribute(reader, attributes, "objectName"))
+                    .withResultAlias(attributes.get("resultAlias"));
+            if (attributes.containsKey("maxResults")) {
+                query.withMaxResults(intAttribute(reader, attributes, "maxResults"));
+            }
+            while (reader.nextTag() == START_ELEMENT) {
+                expectElement(reader, "queryAttribute");
+                query.addAttribute(parseQueryAttribute(reader));
+            }
+            queries.add(query.build());
+        }
+        if (queries.isEmpty()) throw error(reader, "Element <" + reader.getLocalName() + "> needs at least one <query>");
+        return queries;
+    }
+
+    @Nonnull
+    private QueryAttribute parseQueryAttribute(@Nonnull XMLStreamReader reader) throws XMLStreamException, SAXParseException {
+        Map<String, String> attributes = attributes(reader, "name", "resultAlias", "type");
+        QueryAttribute.Builder attribute = QueryAttribute.builder(requiredAttribute(reader, attributes, "name"))
+                .withResultAlias(attributes.get("resultAlias"))
+                .withType(attributes.get("type"));
+        while (reader.nextTag() == START_ELEMENT) {
+            expectElement(reader, "key");
+            attributes(reader);
+            attribute.addKey(resolve(reader.getElementText()));
+        }
+        return attribute.build();
+    }
+
+    private void parseInvocations(@Nonnull XMLStreamReader reader, @Nonnull ModifiableConfiguration configuration) throws XMLStreamException, SAXParseException, MalformedObjectNameException {
+        attributes(reader);
+        while (reader.nextTag() == START_ELEMENT) {
+            expectElement(reader, "invocation");
+            Map<String, String> attributes = attributes(reader, "objectName", "operationName", "resultAlias", "maxResults");
+            String objectName = requiredAttribute(reader, attributes, "objectName");
+            String operationName = requiredAttribute(reader, attributes, "operationName");
+            if (attributes.containsKey("maxResults")) intAttribute(reader, attributes, "maxResults");
+            List<String> params = new ArrayList<>();
+            List<String> signature = new ArrayList<>();
+            while (reader.nextTag() == START_ELEMENT) {
+                expectElement(reader, "parameter");
+                Map<String, String> parameter = attributes(reader, "value", "type");
+                params.add(requiredAttribute(reader, parameter, "value"));
+                signature.add(requiredAttribute(reader, parameter, "type"));
+                expectEnd(reader);
+            }
+            configuration.getInvocations().add(
+                    new Invocation(
+                            new ObjectName(objectName),
+                            operationName,
+                            params.toArray(),
+                            signature.toArray(new String[0]),
+                            attributes.get("resultAlias"), new SystemClock()));
+        }
+        if (configuration.getInvocations().isEmpty()) {
+            throw error(reader, "Element <invocations> needs at least one <invocation>");
+        }
+    }
+
+    private void parseOutputWriters(@Nonnull XMLStreamReader reader, @Nonnull ModifiableConfiguration configuration) throws XMLStreamException, SAXParseException, IllegalAccessException, InstantiationException, MalformedObjectNameException {
+        attributes(reader);
+        while (reader.nextTag() == START_ELEMENT) {
+            expectElement(reader, "outputWriter");
+            // any attribute other than the class is a setting of the output writer
+            Map<String, String> settings = new HashMap<>();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                settings.put(reader.getAttributeLocalName(i), resolve(reader.getAttributeValue(i)));
+            }
+            String outputWriterClass = requiredAttribute(reader, settings, "class");
+            if (!CLASS_NAME.matcher(outputWriterClass).matches()) {
+                throw error(reader, "'" + outputWriterClass + "' is not a valid class name");
+            }
+            settings.remove("class");
+            expectEnd(reader);
+            configuration.getOutputWriters().add(outputWriterLoader.load(outputWriterClass, settings));
+        }
+        if (configuration.getOutputWriters().isEmpty()) {
+            throw error(reader, "Element <outputWriters> needs at least one <outputWriter>");
+        }
+    }
+
+    /**
+     * @return the attributes of the current element with placeholders resolved. Attributes from other namespaces (as
+     *         xsi:schemaLocation) are ignored, unknown attributes are rejected.
+     */
+    @Nonnull
+    private Map<String, String> attributes(@Nonnull XMLStreamReader reader, @Nonnull String... allowed) throws SAXParseException {
+        Map<String, String> attributes = new HashMap<>();
+        List<String> allowedNames = Arrays.asList(allowed);
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String namespace = reader.getAttributeNamespace(i);
+            if (namespace != null && !namespace.isEmpty()) continue;
+            String name = reader.getAttributeLocalName(i);
+            if (!allowedNames.contains(name)) {
+                throw error(reader, "Unknown attribute '" + name + "' on element <" + reader.getLocalName() + ">");
+            }
+            attributes.put(name, resolve(reader.getAttributeValue(i)));
+        }
+        return attributes;
+    }
+
+    @Nonnull
+    private String requiredAttribute(@Nonnull XMLStreamReader reader, @Nonnull Map<String, String> attributes, @Nonnull String name) throws SAXParseException {
+        String value = attributes.get(name);
+        if (value == null) {
+            throw error(reader, "Missing attribute '" + name + "' on element <" + reader.getLocalName() + ">");
+        }
+        return value;
+    }
+
+    private int intAttribute(@Nonnull XMLStreamReader reader, @Nonnull Map<String, String> attributes, @Nonnull String name) throws SAXParseException {
+        String value = requiredAttribute(reader, attributes, name).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw error(reader, "Attribute '" + name + "' should be an integer but is '" + value + "'");
+        }
+    }
+
+    private double doubleAttribute(@Nonnull XMLStreamReader reader, @Nonnull Map<String, String> attributes, @Nonnull String name) throws SAXParseException {
+        String value = requiredAttribute(reader, attributes, name).trim();
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw error(reader, "Attribute '" + name + "' should be a number but is '" + value + "'");
+        }
+    }
+
+    @Nonnull
+    private String resolve(@Nonnull String value) {
+        return placeholderResolver.resolveString(value);
+    }
+
+    @Nonnull
+    private XMLStreamReader createReader(@Nonnull InputStream in, @Nonnull Resource source) throws SAXParseException {
+        try {
+            // factories are only thread safe once configured, reader creation is cheap enough to be serialized
+            synchronized (inputFactory) {
+                return inputFactory.createXMLStreamReader(source.getPath(), in);
+            }
+        } catch (XMLStreamException e) {
+            throw new SAXParseException(e.getMessage(), source.getPath(), null, -1, -1, e);
+        }
+    }
+
+    private static void close(@Nonnull XMLStreamReader reader) {
+        try {
+            reader.close();
+        } catch (XMLStreamException ignore) {
+            // the underlying stream is closed by the caller
+        }
+    }
+
+    @Nonnull
+    private static String element(@Nonnull XMLStreamReader reader) throws SAXParseException {
+        if (!NAMESPACE.equals(reader.getNamespaceURI())) {
+            throw error(reader, "Element <" + reader.getLocalName() + "> should be in namespace " + NAMESPACE);
+        }
+        return reader.getLocalName();
+    }
+
+    private static void expectElement(@Nonnull XMLStreamReader reader, @Nonnull String expected) throws SAXParseException {
+        if (!expected.equals(element(reader))) throw unexpectedElement(reader);
+    }
+
+    /** Checks that the current element has no child. */
+    private static void expectEnd(@Nonnull XMLStreamReader reader) throws XMLStreamException, SAXParseException {
+        if (reader.nextTag() != END_ELEMENT) throw unexpectedElement(reader);
+    }
+
+    @Nonnull
+    private static SAXParseException unexpectedElement(@Nonnull XMLStreamReader reader) {
+        return error(reader, "Unexpected element <" + reader.getLocalName() + ">");
+    }
+
+    @Nonnull
+    private static SAXParseException error(@Nonnull XMLStreamReader reader, @Nonnull String message) {
+        Location location = reader.getLocation();
+        return new SAXParseException(message, location.getPublicId(), location.getSystemId(), line(location), column(location));
+    }
+
+    private static int line(@Nullable Location location) {
+        return location == null ? -1 : location.getLineNumber();
+    }
+
+    private static int column(@Nullable Location location) {
+        return location == null ? -1 : location.getColumnNumber();
+    }
+
+    private static final class PendingServer {
+        @Nonnull private final Map<String, String> attributes;
+        @Nullable private final Integer port;
+        @Nonnull private final List<Query> queries = new ArrayList<>();
+        @Nonnull private final List<String> includes = new ArrayList<>();
+        @Nullable private final String systemId;
+        private final int line;
+        private final int column;
+
+        private PendingServer(@Nonnull Map<String, String> attributes, @Nullable Integer port, @Nonnull Location location) {
+            this.attributes = attributes;
+            this.port = port;
+            // locations can be reused by the reader, only keep their values
+            this.systemId = location.getSystemId();
+            this.line = location.getLineNumber();
+            this.column = location.getColumnNumber();
+        }
+
+        @Nonnull
+        private SAXParseException error(@Nonnull String message) {
+            return new SAXParseException(message, null, systemId, line, column);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.net.MalformedURLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.RemoteServer;
+import org.jmxtrans.core.query.Server;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * A JMX server discovered outside of the configuration files, collecting the queries of a named query set. The
+ * server is either identified by host and port or by its JMX URL, and can be given a name when neither tells it apart
+ * from other servers.
+ *
+ * Labels describe the target (datacenter, role, ...), they are kept with the target but are not yet attached to the
+ * collected results.
+ */
+@Immutable
+@ThreadSafe
+@EqualsAndHashCode
+public final class Target {
+
+    @Nullable @Getter private final String host;
+    @Getter private final int port;
+    @Nullable @Getter private final String url;
+    @Nullable @Getter private final String name;
+    @Nonnull @Getter private final String querySet;
+    @Nonnull @Getter private final Map<String, String> labels;
+
+    public Target(@Nonnull String host, int port, @Nonnull String querySet, @Nonnull Map<String, String> labels) {
+        this(host, port, null, null, querySet, labels);
+    }
+
+    private Target(
+            @Nullable String host,
+            int port,
+            @Nullable String url,
+            @Nullable String name,
+            @Nonnull String querySet,
+            @Nonnull Map<String, String> labels) {
+        this.host = host;
+        this.port = port;
+        this.url = url;
+        this.name = name;
+        this.querySet = querySet;
+        this.labels = unmodifiableMap(new TreeMap<>(labels));
+    }
+
+    @Nonnull
+    public static Target forUrl(@Nonnull String url, @Nonnull String querySet, @Nonnull Map<String, String> labels) {
+        return new Target(null, 0, url, null, querySet, labels);
+    }
+
+    /**
+     * @return the same target, collected as a server with the given name.
+     */
+    @Nonnull
+    public Target withName(@Nullable String name) {
+        return new Target(host, port, url, name, querySet, labels);
+    }
+
+    @Nonnull
+    Server toServer(@Nonnull List<Query> queries) throws MalformedURLException {
+        return Servers.build(url, RemoteServer.builder().withName(name).withHost(host).withPort(port), queries);
+    }
+
+    @Override
+    public String toString() {
+        return (name != null ? name + "@" : "") + (url != null ? url : host + ":" + port) + "[" + querySet + "]" + (labels.isEmpty() ? "" : labels.toString());
+    }
+}
@@ -22,6 +22,8 @@
  */
 package org.jmxtrans.core.config;
 
+import org.jmxtrans.core.monitoring.MonotonicCounter;
+
 public interface ThreadPoolExecutorMetricsMBean {
     int getWorkQueueSize();
 
@@ -31,6 +33,7 @@ public interface ThreadPoolExecutorMetricsMBean {
 
     int getCorePoolSize();
 
+    @MonotonicCounter
     long getCompletedTaskCount();
 
     long getLargestPoolSize();
@@ -39,5 +42,6 @@ public interface ThreadPoolExecutorMetricsMBean {
 
     long getPoolSize();
 
+    @MonotonicCounter
     long getTaskCount();
 }
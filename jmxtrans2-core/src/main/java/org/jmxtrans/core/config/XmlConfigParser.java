@@ -26,13 +26,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
@@ -47,19 +47,16 @@ import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 
-import org.jmxtrans.core.circuitbreaker.CircuitBreakerProxy;
 import org.jmxtrans.core.config.jaxb.InvocationType;
 import org.jmxtrans.core.config.jaxb.Jmxtrans;
 import org.jmxtrans.core.config.jaxb.OutputWriterType;
 import org.jmxtrans.core.config.jaxb.QueriesType;
+import org.jmxtrans.core.config.jaxb.QuerySetType;
 import org.jmxtrans.core.config.jaxb.QueryType;
 import org.jmxtrans.core.config.jaxb.ServerType;
 import org.jmxtrans.core.log.Logger;
 import org.jmxtrans.core.log.LoggerFactory;
 import org.jmxtrans.core.monitoring.ObjectNameFactory;
-import org.jmxtrans.core.output.MetricCollectingOutputWriter;
-import org.jmxtrans.core.output.OutputWriter;
-import org.jmxtrans.core.output.OutputWriterFactory;
 import org.jmxtrans.core.query.InProcessServer;
 import org.jmxtrans.core.query.Invocation;
 import org.jmxtrans.core.query.Query;
@@ -74,7 +71,6 @@ import org.jmxtrans.utils.time.SystemClock;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
-import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
@@ -86,26 +82,30 @@ public class XmlConfigParser implements ConfigParser {
 
     public static final String JMXTRANS_XSD_PATH = "classpath:jmxtrans.xsd";
 
-    public static final int MAX_FAILURES = 5;
-    public static final int DISABLE_DURATION_MILLIS = 60 * 1000;
+    /** Both are thread safe and costly to create, they are shared by all parsers. */
+    @GuardedBy("XmlConfigParser.class") @Nullable private static JAXBContext jaxbContext;
+    @GuardedBy("XmlConfigParser.class") @Nullable private static Schema schema;
 
-    @Nonnull private final Clock clock;
     @Nonnull private final PropertyPlaceholderResolverXmlPreprocessor preprocessor;
-    @Nonnull private final DocumentBuilder documentBuilder;
-    @Nonnull private final Unmarshaller unmarshaller;
-    @Nonnull private final ObjectNameFactory outputObjectNameFactory;
+    @GuardedBy("documentBuilderFactory") @Nonnull private final DocumentBuilderFactory documentBuilderFactory;
+    @Nonnull private final JAXBContext context;
+    @Nonnull private final Schema validationSchema;
+    /** Document builders and unmarshallers are not thread safe, each thread parsing configurations gets its own. */
+    @Nonnull private final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<>();
+    @Nonnull private final ThreadLocal<Unmarshaller> unmarshallers = new ThreadLocal<>();
+    @Nonnull private final OutputWriterLoader outputWriterLoader;
 
     private XmlConfigParser(
-            @Nonnull DocumentBuilder documentBuilder,
-            @Nonnull Unmarshaller unmarshaller,
+            @Nonnull DocumentBuilderFactory documentBuilderFactory,
+            @Nonnull JAXBContext context,
+            @Nonnull Schema validationSchema,
             @Nonnull PropertyPlaceholderResolverXmlPreprocessor preprocessor,
-            @Nonnull Clock clock,
-            @Nonnull ObjectNameFactory outputObjectNameFactory) {
-        this.documentBuilder = documentBuilder;
-        this.unmarshaller = unmarshaller;
+            @Nonnull OutputWriterLoader outputWriterLoader) {
+        this.documentBuilderFactory = documentBuilderFactory;
+        this.context = context;
+        this.validationSchema = validationSchema;
         this.preprocessor = preprocessor;
-        this.clock = clock;
-        this.outputObjectNameFactory = outputObjectNameFactory;
+        this.outputWriterLoader = outputWriterLoader;
     }
 
     @Override
@@ -115,11 +115,11 @@ public class XmlConfigParser implements ConfigParser {
 
     @Override
     @Nonnull
-    public synchronized Configuration parseConfiguration(Resource source) throws IOException, SAXException, JAXBException, IllegalAccessException, ClassNotFoundException, InstantiationException, MalformedObjectNameException {
+    public Configuration parseConfiguration(Resource source) throws IOException, SAXException, JAXBException, IllegalAccessException, ClassNotFoundException, InstantiationException, MalformedObjectNameException {
         try (InputStream in = source.getInputStream()) {
-            Document document = documentBuilder.parse(in);
+            Document document = documentBuilder().parse(in);
             document = preprocessor.preprocess(document);
-            Jmxtrans jmxtrans = (Jmxtrans) unmarshaller.unmarshal(document);
+            Jmxtrans jmxtrans = (Jmxtrans) unmarshaller().unmarshal(document);
 
             ModifiableConfiguration newConfiguration = new ModifiableConfiguration();
 
@@ -129,16 +129,52 @@ public class XmlConfigParser implements ConfigParser {
         }
     }
 
+    @Nonnull
+    private DocumentBuilder documentBuilder() {
+        DocumentBuilder documentBuilder = documentBuilders.get();
+        if (documentBuilder == null) {
+            synchronized (documentBuilderFactory) {
+                try {
+                    documentBuilder = documentBuilderFactory.newDocumentBuilder();
+                } catch (ParserConfigurationException e) {
+                    throw new JmxtransConfigurationException("Could not create XML document builder", e);
+                }
+            }
+            documentBuilders.set(documentBuilder);
+        }
+        return documentBuilder;
+    }
+
+    @Nonnull
+    private Unmarshaller unmarshaller() throws JAXBException {
+        Unmarshaller unmarshaller = unmarshallers.get();
+        if (unmarshaller == null) {
+            unmarshaller = context.createUnmarshaller();
+            unmarshaller.setSchema(validationSchema);
+            unmarshallers.set(unmarshaller);
+        }
+        return unmarshaller;
+    }
+
     private void parse(@Nonnull Jmxtrans jmxtrans, @Nonnull ModifiableConfiguration configuration) throws IllegalAccessException, InstantiationException, ClassNotFoundException, MalformedObjectNameException {
         if (jmxtrans.getCollectIntervalInSeconds() != null) {
             configuration.setPeriod(new Interval(jmxtrans.getCollectIntervalInSeconds(), SECONDS));
         }
+        configuration.setSelfMetricsPrefix(jmxtrans.getSelfMetricsPrefix());
+        configuration.setMaxPeriodStretch(jmxtrans.getMaxPeriodStretch());
+        configuration.setOverloadRecoveryCycles(jmxtrans.getOverloadRecoveryCycles());
+        configuration.setMinCompletionRatio(jmxtrans.getMinCompletionRatio());
         if (jmxtrans.getQueries() != null) {
             configuration.addServer(new InProcessServer(parse(jmxtrans.getQueries())));
         }
+        Map<String, List<Query>> querySets = new HashMap<>();
+        if (jmxtrans.getQuerySets() != null) {
+            querySets = parse(jmxtrans.getQuerySets());
+            configuration.getQuerySets().putAll(querySets);
+        }
         if (jmxtrans.getServers() != null) {
             try {
-                parse(jmxtrans.getServers(), configuration);
+                parse(jmxtrans.getServers(), querySets, configuration);
             } catch (MalformedURLException e) {
                 logger.error("JMXUrl is not valid", e);
             }
@@ -151,22 +187,40 @@ public class XmlConfigParser implements ConfigParser {
         }
     }
 
-    private void parse(Jmxtrans.Servers servers, ModifiableConfiguration configuration) throws MalformedURLException {
+    /**
+     * Queries of each set are only built once, all servers including a set share the same instances.
+     */
+    @Nonnull
+    private Map<String, List<Query>> parse(@Nonnull Jmxtrans.QuerySets querySets) {
+        Map<String, List<Query>> result = new HashMap<>();
+        for (QuerySetType querySet : querySets.getQuerySet()) {
+            if (result.put(querySet.getName(), parse(querySet)) != null) {
+                throw new JmxtransConfigurationException("Query set " + querySet.getName() + " is defined more than once");
+            }
+        }
+        return result;
+    }
+
+    private void parse(Jmxtrans.Servers servers, Map<String, List<Query>> querySets, ModifiableConfiguration configuration) throws MalformedURLException {
         for (ServerType server : servers.getServer()) {
 
-            Collection<Query> queries = Collections.emptyList();
+            List<Query> queries = new ArrayList<>();
             if (server.getQueries() != null) {
-                queries = parse(server.getQueries());
+                queries.addAll(parse(server.getQueries()));
+            }
+            for (ServerType.Include include : server.getInclude()) {
+                List<Query> querySet = querySets.get(include.getQuerySet());
+                if (querySet == null) {
+                    throw new JmxtransConfigurationException("Unknown query set " + include.getQuerySet());
+                }
+                queries.addAll(querySet);
             }
-            configuration.addServer(RemoteServer.builder()
-                    .withUrl(server.getJmxUrl())
+            configuration.addServer(Servers.build(server.getJmxUrl(), RemoteServer.builder()
                     .withHost(server.getHost())
                     .withPort(server.getPort())
                     .withUsername(server.getUsername())
                     .withPassword(server.getPassword())
-                    .withProtocolProviderPackages(server.getProtocolProviderPackages())
-                    .withQueries(queries)
-                    .build());
+                    .withProtocolProviderPackages(server.getProtocolProviderPackages()), queries));
         }
     }
 
@@ -217,61 +271,46 @@ public class XmlConfigParser implements ConfigParser {
             for (Map.Entry<QName, String> attribute : outputWriter.getOtherAttributes().entrySet()) {
                 settings.put(attribute.getKey().getLocalPart(), attribute.getValue());
             }
-            configuration.getOutputWriters().add(instantiateOutputWriter(outputWriter.getClazz(), settings));
+            configuration.getOutputWriters().add(outputWriterLoader.load(outputWriter.getClazz(), settings));
         }
     }
 
-    @Nonnull
-    private OutputWriter instantiateOutputWriter(@Nonnull String outputWriterClass, @Nonnull Map<String, String> settings)
-            throws InstantiationException, IllegalAccessException, MalformedObjectNameException {
-        try {
-            @SuppressWarnings("unchecked")
-            Class<OutputWriterFactory<?>> builderClass = (Class<OutputWriterFactory<?>>) Class.forName(outputWriterClass + "$Factory");
-            OutputWriterFactory<?> builder = builderClass.newInstance();
-            return wrapInMetricCollectingOutputWriter(
-                    wrapInCircuitBreaker(
-                            builder.create(settings)));
-        } catch (ClassNotFoundException e) {
-            throw new JmxtransConfigurationException(
-                    format("Could not load class %s, this can happen if you use non standard outputwriters and did not" +
-                            " add the appropriate jar on the classpath", outputWriterClass), e);
-        }
-    }
-
-    private OutputWriter wrapInMetricCollectingOutputWriter(OutputWriter outputWriter) throws MalformedObjectNameException {
-        ObjectName objectName = outputObjectNameFactory.create(outputWriter.toString());
-        return new MetricCollectingOutputWriter(clock, outputWriter, objectName);
-    }
-
-    private OutputWriter wrapInCircuitBreaker(OutputWriter target) {
-        return CircuitBreakerProxy.create(
-                clock,
-                OutputWriter.class,
-                target,
-                MAX_FAILURES,
-                DISABLE_DURATION_MILLIS);
-    }
-
     @Nonnull
     public static XmlConfigParser newInstance(
             @Nonnull PropertyPlaceholderResolverXmlPreprocessor preprocessor,
             @Nonnull Clock clock,
             @Nonnull ObjectNameFactory outputObjectNameFactory) throws JAXBException, ParserConfigurationException, SAXException, IOException {
+        return newInstance(preprocessor, new OutputWriterLoader(clock, outputObjectNameFactory));
+    }
+
+    @Nonnull
+    static XmlConfigParser newInstance(
+            @Nonnull PropertyPlaceholderResolverXmlPreprocessor preprocessor,
+            @Nonnull OutputWriterLoader outputWriterLoader) throws JAXBException, ParserConfigurationException, SAXException, IOException {
 
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         dbf.setNamespaceAware(true);
-        JAXBContext jaxbContext = JAXBContext.newInstance(Jmxtrans.class);
-
-        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-
-        unmarshaller.setSchema(loadSchema());
+        // fail early if the factory is misconfigured, rather than when the first configuration is parsed
+        dbf.newDocumentBuilder();
 
         return new XmlConfigParser(
-                dbf.newDocumentBuilder(),
-                unmarshaller,
+                dbf,
+                jaxbContext(),
+                schema(),
                 preprocessor,
-                clock,
-                outputObjectNameFactory);
+                outputWriterLoader);
+    }
+
+    @Nonnull
+    private static synchronized JAXBContext jaxbContext() throws JAXBException {
+        if (jaxbContext == null) jaxbContext = JAXBContext.newInstance(Jmxtrans.class);
+        return jaxbContext;
+    }
+
+    @Nonnull
+    private static synchronized Schema schema() throws SAXException, IOException {
+        if (schema == null) schema = loadSchema();
+        return schema;
     }
 
     @Nonnull
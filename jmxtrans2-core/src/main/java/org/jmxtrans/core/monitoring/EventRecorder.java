@@ -0,0 +1,109 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Receives fine grained events about collection cycles, query executions and writer flushes, so that they can be
+ * correlated with other events of the JVM (GC, I/O, ...) by a profiler.
+ *
+ * Each method is called when the activity starts and returns a handle which is completed when the activity ends.
+ * Implementations are discovered by {@link EventRecorders}, the core itself does not depend on any profiler.
+ */
+@ThreadSafe
+public interface EventRecorder {
+
+    @Nonnull
+    EventRecorder NONE = new EventRecorder() {
+        @Nonnull
+        @Override
+        public Cycle cycleStarted() {
+            return Cycle.NONE;
+        }
+
+        @Nonnull
+        @Override
+        public QueryExecution queryStarted(@Nonnull String server, @Nonnull String objectName) {
+            return QueryExecution.NONE;
+        }
+
+        @Nonnull
+        @Override
+        public Flush flushStarted(@Nonnull String writer) {
+            return Flush.NONE;
+        }
+    };
+
+    @Nonnull
+    Cycle cycleStarted();
+
+    @Nonnull
+    QueryExecution queryStarted(@Nonnull String server, @Nonnull String objectName);
+
+    @Nonnull
+    Flush flushStarted(@Nonnull String writer);
+
+    /**
+     * A collection cycle, from the dispatch of its queries until the last of them ran, failed or was dropped.
+     */
+    interface Cycle {
+        @Nonnull
+        Cycle NONE = new Cycle() {
+            @Override
+            public void completed(int dispatchedQueries, int rejectedQueries) {
+            }
+        };
+
+        void completed(int dispatchedQueries, int rejectedQueries);
+    }
+
+    interface QueryExecution {
+        @Nonnull
+        QueryExecution NONE = new QueryExecution() {
+            @Override
+            public void matched(int objectNames) {
+            }
+
+            @Override
+            public void completed(int results, boolean success) {
+            }
+        };
+
+        void matched(int objectNames);
+
+        void completed(int results, boolean success);
+    }
+
+    interface Flush {
+        @Nonnull
+        Flush NONE = new Flush() {
+            @Override
+            public void completed(int results, long bytes, boolean success) {
+            }
+        };
+
+        void completed(int results, long bytes, boolean success);
+    }
+}
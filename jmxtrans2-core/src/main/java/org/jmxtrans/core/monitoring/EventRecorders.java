@@ -0,0 +1,67 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import javax.annotation.Nonnull;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+
+/**
+ * Looks up the {@link EventRecorder} available on the classpath (declared in
+ * <code>META-INF/services/org.jmxtrans.core.monitoring.EventRecorder</code>).
+ *
+ * Lookup happens once, recording is disabled if no implementation is found.
+ */
+public final class EventRecorders {
+
+    @Nonnull private static final EventRecorder RECORDER = load(EventRecorders.class.getClassLoader());
+
+    private EventRecorders() {
+    }
+
+    @Nonnull
+    public static EventRecorder get() {
+        return RECORDER;
+    }
+
+    @Nonnull
+    static EventRecorder load(@Nonnull ClassLoader classLoader) {
+        Logger logger = LoggerFactory.getLogger(EventRecorders.class.getName());
+        try {
+            Iterator<EventRecorder> recorders = ServiceLoader.load(EventRecorder.class, classLoader).iterator();
+            if (recorders.hasNext()) {
+                EventRecorder recorder = recorders.next();
+                logger.info("Recording events with " + recorder.getClass().getName());
+                return recorder;
+            }
+        } catch (ServiceConfigurationError | LinkageError e) {
+            logger.warn("Could not load event recorder, events will not be recorded", e);
+        }
+        return EventRecorder.NONE;
+    }
+}
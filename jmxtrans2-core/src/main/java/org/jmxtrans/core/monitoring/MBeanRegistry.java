@@ -25,6 +25,8 @@ package org.jmxtrans.core.monitoring;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
@@ -39,6 +41,7 @@ import org.jmxtrans.core.log.Logger;
 import org.jmxtrans.core.log.LoggerFactory;
 
 import static java.lang.String.format;
+import static java.util.Collections.unmodifiableMap;
 
 @ThreadSafe
 public class MBeanRegistry implements LifecycleAware {
@@ -49,6 +52,8 @@ public class MBeanRegistry implements LifecycleAware {
     
     private final MBeanServer mBeanServer;
 
+    @GuardedBy("this") private boolean started;
+
     public MBeanRegistry(MBeanServer mBeanServer) {
         this.mBeanServer = mBeanServer;
     }
@@ -58,30 +63,95 @@ public class MBeanRegistry implements LifecycleAware {
         return mBean;
     }
     
-    public <T> T register(ObjectName name, T mBean) {
+    /**
+     * MBeans registered once the registry is started, after a configuration reload, are exposed immediately.
+     */
+    public synchronized <T> T register(ObjectName name, T mBean) {
         mBeans.put(mBean, name);
+        if (started) {
+            try {
+                registerMBean(mBean, name);
+            } catch (InstanceAlreadyExistsException | MBeanRegistrationException | InstanceNotFoundException e) {
+                logger.warn(format("Could not register MBean [%s], named [%s]", mBean, name), e);
+            }
+        }
         return mBean;
     }
+
+    public synchronized void unregister(Object mBean) {
+        ObjectName name = mBeans.remove(mBean);
+        if (name == null || !started) return;
+        try {
+            mBeanServer.unregisterMBean(name);
+        } catch (InstanceNotFoundException ignore) {
+        } catch (MBeanRegistrationException e) {
+            logger.warn(format("Could not unregister MBean [%s], named [%s]", mBean, name), e);
+        }
+    }
+
+    /**
+     * Registers the objects that are {@link SelfNamedMBean}s, with their {@link NestedMBeans}, other objects are
+     * ignored.
+     */
+    public void registerAll(Iterable<?> objects) {
+        for (Object object : objects) {
+            if (!(object instanceof SelfNamedMBean)) continue;
+
+            SelfNamedMBean selfNamedMBean = (SelfNamedMBean) object;
+            try {
+                register(selfNamedMBean);
+                if (object instanceof NestedMBeans) {
+                    ObjectName parent = selfNamedMBean.getObjectName();
+                    for (Map.Entry<String, Object> nested : ((NestedMBeans) object).getNestedMBeans().entrySet()) {
+                        register(ObjectNameFactory.createNested(parent, nested.getKey()), nested.getValue());
+                    }
+                }
+            } catch (MalformedObjectNameException e) {
+                logger.warn(format("Could not register bean [%s]", selfNamedMBean), e);
+            }
+        }
+    }
+
+    /** Unregisters objects registered with {@link #registerAll(Iterable)}. */
+    public void unregisterAll(Iterable<?> objects) {
+        for (Object object : objects) {
+            unregister(object);
+            if (object instanceof NestedMBeans) {
+                for (Object nested : ((NestedMBeans) object).getNestedMBeans().values()) unregister(nested);
+            }
+        }
+    }
     
+    /**
+     * @return registered MBeans with their names, for components sampling them without going through JMX.
+     */
+    @Nonnull
+    public Map<Object, ObjectName> getMBeans() {
+        return unmodifiableMap(mBeans);
+    }
+
     @Override
-    public void start() throws InstanceAlreadyExistsException, MBeanRegistrationException, InstanceNotFoundException {
+    public synchronized void start() throws InstanceAlreadyExistsException, MBeanRegistrationException, InstanceNotFoundException {
         for (Map.Entry<Object, ObjectName> entry : mBeans.entrySet()) {
-            Object mBean = entry.getKey();
-            ObjectName name = entry.getValue();
-            
-            if (mBeanServer.isRegistered(name)) mBeanServer.unregisterMBean(name);
-            
-            try {
-                logger.debug("Registering mbean " + name);
-                mBeanServer.registerMBean(mBean, name);
-            } catch (NotCompliantMBeanException e) {
-                logger.error(format("MBean [%s], named [%s] is not compliant.", mBean.toString(), name), e);
-            }
+            registerMBean(entry.getKey(), entry.getValue());
+        }
+        started = true;
+    }
+
+    private void registerMBean(Object mBean, ObjectName name) throws InstanceAlreadyExistsException, MBeanRegistrationException, InstanceNotFoundException {
+        if (mBeanServer.isRegistered(name)) mBeanServer.unregisterMBean(name);
+
+        try {
+            logger.debug("Registering mbean " + name);
+            mBeanServer.registerMBean(mBean, name);
+        } catch (NotCompliantMBeanException e) {
+            logger.error(format("MBean [%s], named [%s] is not compliant.", mBean.toString(), name), e);
         }
     }
     
     @Override
-    public void stop() throws MBeanRegistrationException {
+    public synchronized void stop() throws MBeanRegistrationException {
+        started = false;
         for (ObjectName name : mBeans.values()) {
             try {
                 mBeanServer.unregisterMBean(name);
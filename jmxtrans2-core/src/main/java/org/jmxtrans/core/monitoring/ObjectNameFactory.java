@@ -45,11 +45,36 @@ public class ObjectNameFactory {
         Hashtable<String, String> properties = new Hashtable<>();
         properties.put("id", type + "-" + idSequence.getAndIncrement());
         properties.put("type", type);
-        properties.put("name", name
+        properties.put("name", sanitize(name));
+        return ObjectName.getInstance(DOMAIN, properties);
+    }
+
+    /**
+     * Same as {@link #create(String)}, with an additional {@code instance} key telling apart beans of the same name.
+     * Unlike {@code id}, which depends on the creation order, the instance should be derived from the configuration
+     * so that it is stable across reloads and restarts.
+     */
+    public ObjectName create(String name, String instance) throws MalformedObjectNameException {
+        Hashtable<String, String> properties = new Hashtable<>(create(name).getKeyPropertyList());
+        properties.put("instance", sanitize(instance));
+        return ObjectName.getInstance(DOMAIN, properties);
+    }
+
+    @Nonnull
+    public static ObjectName createNested(@Nonnull ObjectName parent, @Nonnull String component) throws MalformedObjectNameException {
+        Hashtable<String, String> properties = new Hashtable<>(parent.getKeyPropertyList());
+        properties.put("component", sanitize(component));
+        return ObjectName.getInstance(parent.getDomain(), properties);
+    }
+
+    @Nonnull
+    private static String sanitize(@Nonnull String name) {
+        return name
                 .replaceAll(":", "|")
                 .replaceAll("=", "-")
                 .replaceAll(",", ".")
-                .replaceAll(" ", "_"));
-        return ObjectName.getInstance(DOMAIN, properties);
+                .replaceAll(" ", "_")
+                // wildcards would turn the name into a pattern, which cannot be registered
+                .replaceAll("[*?]", "_");
     }
 }
@@ -0,0 +1,180 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.results.PipelineListener;
+import org.jmxtrans.core.results.PipelineStage;
+import org.jmxtrans.utils.time.Clock;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Latency distribution of each {@link PipelineStage}, over a sliding window of one minute.
+ *
+ * Tells where results spend their time: collecting (query executor queue and JMX calls), waiting in the result
+ * executor queue and for a batch to fill, sending batches and waiting for the backend to acknowledge them.
+ */
+@ThreadSafe
+public class PipelineMetrics implements PipelineMetricsMBean, PipelineListener, SelfNamedMBean {
+
+    private static final int WINDOW_SLOTS = 6;
+    private static final long SLOT_MILLIS = 10000;
+
+    @Nonnull private final Map<PipelineStage, SlidingWindowHistogram> latencies = new EnumMap<>(PipelineStage.class);
+    @Nonnull private final ObjectName objectName;
+
+    public PipelineMetrics(@Nonnull Clock clock) {
+        for (PipelineStage stage : PipelineStage.values()) {
+            if (stage == PipelineStage.DISPATCHED) continue;
+            latencies.put(stage, new SlidingWindowHistogram(clock, WINDOW_SLOTS, SLOT_MILLIS));
+        }
+        try {
+            this.objectName = new ObjectNameFactory("pipeline").create("stages");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("Invalid pipeline metrics object name", e);
+        }
+    }
+
+    @Override
+    public void onStage(@Nonnull PipelineStage stage, long latencyNanos) {
+        SlidingWindowHistogram histogram = latencies.get(stage);
+        if (histogram != null) histogram.record(latencyNanos);
+    }
+
+    @Nonnull
+    public SlidingWindowHistogram.HistogramSnapshot snapshot(@Nonnull PipelineStage stage) {
+        return latencies.get(stage).snapshot();
+    }
+
+    private long percentileMicros(@Nonnull PipelineStage stage, double percentile) {
+        return NANOSECONDS.toMicros(snapshot(stage).getValueAtPercentile(percentile));
+    }
+
+    private long maxMicros(@Nonnull PipelineStage stage) {
+        return NANOSECONDS.toMicros(snapshot(stage).getMax());
+    }
+
+    @Override
+    public long getCollectedLatencyP50Micros() {
+        return percentileMicros(PipelineStage.COLLECTED, 50);
+    }
+
+    @Override
+    public long getCollectedLatencyP99Micros() {
+        return percentileMicros(PipelineStage.COLLECTED, 99);
+    }
+
+    @Override
+    public long getCollectedLatencyMaxMicros() {
+        return maxMicros(PipelineStage.COLLECTED);
+    }
+
+    @Override
+    public long getDequeuedLatencyP50Micros() {
+        return percentileMicros(PipelineStage.DEQUEUED, 50);
+    }
+
+    @Override
+    public long getDequeuedLatencyP99Micros() {
+        return percentileMicros(PipelineStage.DEQUEUED, 99);
+    }
+
+    @Override
+    public long getDequeuedLatencyMaxMicros() {
+        return maxMicros(PipelineStage.DEQUEUED);
+    }
+
+    @Override
+    public long getEncodedLatencyP50Micros() {
+        return percentileMicros(PipelineStage.ENCODED, 50);
+    }
+
+    @Override
+    public long getEncodedLatencyP99Micros() {
+        return percentileMicros(PipelineStage.ENCODED, 99);
+    }
+
+    @Override
+    public long getEncodedLatencyMaxMicros() {
+        return maxMicros(PipelineStage.ENCODED);
+    }
+
+    @Override
+    public long getFlushedLatencyP50Micros() {
+        return percentileMicros(PipelineStage.FLUSHED, 50);
+    }
+
+    @Override
+    public long getFlushedLatencyP99Micros() {
+        return percentileMicros(PipelineStage.FLUSHED, 99);
+    }
+
+    @Override
+    public long getFlushedLatencyMaxMicros() {
+        return maxMicros(PipelineStage.FLUSHED);
+    }
+
+    @Override
+    public long getAckedLatencyP50Micros() {
+        return percentileMicros(PipelineStage.ACKED, 50);
+    }
+
+    @Override
+    public long getAckedLatencyP99Micros() {
+        return percentileMicros(PipelineStage.ACKED, 99);
+    }
+
+    @Override
+    public long getAckedLatencyMaxMicros() {
+        return maxMicros(PipelineStage.ACKED);
+    }
+
+    @Override
+    public long getTotalLatencyP50Micros() {
+        return percentileMicros(PipelineStage.TOTAL, 50);
+    }
+
+    @Override
+    public long getTotalLatencyP99Micros() {
+        return percentileMicros(PipelineStage.TOTAL, 99);
+    }
+
+    @Override
+    public long getTotalLatencyMaxMicros() {
+        return maxMicros(PipelineStage.TOTAL);
+    }
+
+    @Nonnull
+    @Override
+    public ObjectName getObjectName() throws MalformedObjectNameException {
+        return objectName;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+public interface PipelineMetricsMBean {
+
+    long getCollectedLatencyP50Micros();
+
+    long getCollectedLatencyP99Micros();
+
+    long getCollectedLatencyMaxMicros();
+
+    long getDequeuedLatencyP50Micros();
+
+    long getDequeuedLatencyP99Micros();
+
+    long getDequeuedLatencyMaxMicros();
+
+    long getEncodedLatencyP50Micros();
+
+    long getEncodedLatencyP99Micros();
+
+    long getEncodedLatencyMaxMicros();
+
+    long getFlushedLatencyP50Micros();
+
+    long getFlushedLatencyP99Micros();
+
+    long getFlushedLatencyMaxMicros();
+
+    long getAckedLatencyP50Micros();
+
+    long getAckedLatencyP99Micros();
+
+    long getAckedLatencyMaxMicros();
+
+    long getTotalLatencyP50Micros();
+
+    long getTotalLatencyP99Micros();
+
+    long getTotalLatencyMaxMicros();
+}
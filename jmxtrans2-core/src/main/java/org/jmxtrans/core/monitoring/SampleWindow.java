@@ -0,0 +1,85 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import java.util.Arrays;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static org.jmxtrans.utils.Preconditions2.checkArgument;
+
+/**
+ * Keeps the last {@code size} recorded values and computes exact percentiles over them.
+ *
+ * Meant for low frequency measures kept in large numbers (one per collection target for example), where
+ * {@link SlidingWindowHistogram} would use too much memory: a window only costs {@code size} longs.
+ */
+@ThreadSafe
+public class SampleWindow {
+
+    @GuardedBy("this") private final long[] values;
+    @GuardedBy("this") private int next;
+    @GuardedBy("this") private int count;
+
+    public SampleWindow(int size) {
+        checkArgument(size > 0, "size must be strictly positive");
+        this.values = new long[size];
+    }
+
+    public synchronized void record(long value) {
+        values[next] = value;
+        next = (next + 1) % values.length;
+        if (count < values.length) count++;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the nearest rank percentile of the values in the window, 0 if the window is empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] sorted = sortedValues();
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    public long getMax() {
+        long[] sorted = sortedValues();
+        if (sorted.length == 0) return 0;
+        return sorted[sorted.length - 1];
+    }
+
+    private long[] sortedValues() {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(values, count);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
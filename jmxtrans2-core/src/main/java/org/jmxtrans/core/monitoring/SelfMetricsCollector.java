@@ -0,0 +1,256 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.VisibleForTesting;
+import org.jmxtrans.utils.time.Clock;
+
+import lombok.Getter;
+
+import static java.lang.String.format;
+
+/**
+ * Samples the MBeans known to a {@link MBeanRegistry} directly from memory, without going through the
+ * {@link javax.management.MBeanServer}, and converts their numeric attributes into {@link QueryResult}s.
+ *
+ * Attributes are read through the getters of the MBean interfaces implemented by each bean, boolean attributes being
+ * published as 0 or 1. Metric names are built from the {@code type}, {@code name} and {@code component} keys of the
+ * bean {@link ObjectName}, followed by the attribute name, all under a configurable prefix. MBeans sharing the same
+ * metric path are told apart by appending their {@code instance} key, derived from their configuration, or their
+ * {@code id} key if they have none, so that they do not overwrite each other's values and rates. Attributes marked as
+ * {@link MonotonicCounter} are published as counters and, from the second sample on, with an additional {@code rate}
+ * metric (per second).
+ */
+@ThreadSafe
+public class SelfMetricsCollector {
+
+    @Nonnull private static final Pattern ILLEGAL_CHARACTERS = Pattern.compile("[^A-Za-z0-9_\\-]");
+    @Nonnull private static final String[] NAME_KEYS = {"type", "name", "component"};
+
+    @Nonnull private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+    @Nonnull private final Clock clock;
+    @Nonnull private final MBeanRegistry mBeanRegistry;
+    @Nonnull @Getter private final String prefix;
+
+    @GuardedBy("this")
+    @Nonnull private final Map<Class<?>, List<Attribute>> attributesByClass = new HashMap<>();
+    @GuardedBy("this")
+    @Nonnull private Map<String, Sample> previousSamples = new HashMap<>();
+
+    public SelfMetricsCollector(@Nonnull Clock clock, @Nonnull MBeanRegistry mBeanRegistry, @Nonnull String prefix) {
+        this.clock = clock;
+        this.mBeanRegistry = mBeanRegistry;
+        this.prefix = prefix.isEmpty() || prefix.endsWith(".") ? prefix : prefix + ".";
+    }
+
+    @Nonnull
+    public synchronized Collection<QueryResult> collect() {
+        long now = clock.currentTimeMillis();
+        List<QueryResult> results = new ArrayList<>();
+        Map<String, Sample> samples = new HashMap<>();
+
+        for (Map.Entry<Object, String> mBean : metricPaths(mBeanRegistry.getMBeans()).entrySet()) {
+            String baseName = prefix + mBean.getValue();
+            for (Attribute attribute : getAttributes(mBean.getKey().getClass())) {
+                Number value = attribute.read(mBean.getKey());
+                if (value == null) continue;
+
+                String name = baseName + "." + attribute.getName();
+                if (!attribute.isCounter()) {
+                    results.add(new QueryResult(name, "gauge", value, now));
+                    continue;
+                }
+
+                results.add(new QueryResult(name, "counter", value, now));
+                Sample sample = new Sample(value.longValue(), now);
+                Sample previous = previousSamples.get(name);
+                if (previous != null && sample.epochInMillis > previous.epochInMillis && sample.value >= previous.value) {
+                    results.add(new QueryResult(name + ".rate", "gauge", sample.ratePerSecondSince(previous), now));
+                }
+                samples.put(name, sample);
+            }
+        }
+
+        previousSamples = samples;
+        return results;
+    }
+
+    @VisibleForTesting
+    @Nonnull
+    static Map<Object, String> metricPaths(@Nonnull Map<Object, ObjectName> mBeans) {
+        Map<Object, ObjectName> objectNames = new HashMap<>(mBeans);
+        Map<Object, String> paths = new HashMap<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (Map.Entry<Object, ObjectName> mBean : objectNames.entrySet()) {
+            String path = metricPath(mBean.getValue());
+            paths.put(mBean.getKey(), path);
+            Integer count = occurrences.get(path);
+            occurrences.put(path, count == null ? 1 : count + 1);
+        }
+        for (Map.Entry<Object, String> path : paths.entrySet()) {
+            if (occurrences.get(path.getValue()) == 1) continue;
+            ObjectName objectName = objectNames.get(path.getKey());
+            String disambiguator = objectName.getKeyProperty("instance");
+            if (disambiguator == null) disambiguator = objectName.getKeyProperty("id");
+            if (disambiguator != null) {
+                path.setValue(path.getValue() + "." + ILLEGAL_CHARACTERS.matcher(disambiguator).replaceAll("_"));
+            }
+        }
+        return paths;
+    }
+
+    @VisibleForTesting
+    @Nonnull
+    static String metricPath(@Nonnull ObjectName objectName) {
+        StringBuilder path = new StringBuilder();
+        for (String key : NAME_KEYS) {
+            String value = objectName.getKeyProperty(key);
+            if (value == null) continue;
+            if (path.length() > 0) path.append('.');
+            path.append(ILLEGAL_CHARACTERS.matcher(value).replaceAll("_"));
+        }
+        return path.toString();
+    }
+
+    @GuardedBy("this")
+    @Nonnull
+    private List<Attribute> getAttributes(@Nonnull Class<?> mBeanClass) {
+        List<Attribute> attributes = attributesByClass.get(mBeanClass);
+        if (attributes == null) {
+            attributes = new ArrayList<>();
+            for (Class<?> mBeanInterface : mBeanInterfaces(mBeanClass)) {
+                for (Method method : mBeanInterface.getMethods()) {
+                    Attribute attribute = Attribute.of(method);
+                    if (attribute != null) attributes.add(attribute);
+                }
+            }
+            attributesByClass.put(mBeanClass, attributes);
+        }
+        return attributes;
+    }
+
+    @Nonnull
+    private static List<Class<?>> mBeanInterfaces(@Nonnull Class<?> mBeanClass) {
+        List<Class<?>> interfaces = new ArrayList<>();
+        for (Class<?> current = mBeanClass; current != null; current = current.getSuperclass()) {
+            for (Class<?> candidate : current.getInterfaces()) {
+                if (candidate.getSimpleName().endsWith("MBean") && !interfaces.contains(candidate)) {
+                    interfaces.add(candidate);
+                }
+            }
+        }
+        return interfaces;
+    }
+
+    @Immutable
+    @ThreadSafe
+    private static final class Attribute {
+        @Nonnull private static final Logger LOGGER = LoggerFactory.getLogger(Attribute.class.getName());
+        @Nonnull @Getter private final String name;
+        @Nonnull private final Method getter;
+        @Getter private final boolean counter;
+
+        private Attribute(@Nonnull String name, @Nonnull Method getter, boolean counter) {
+            this.name = name;
+            this.getter = getter;
+            this.counter = counter;
+        }
+
+        @Nullable
+        public Number read(@Nonnull Object mBean) {
+            try {
+                Object value = getter.invoke(mBean);
+                if (value instanceof Boolean) return (Boolean) value ? 1 : 0;
+                return (Number) value;
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                LOGGER.warn(format("Could not read attribute [%s] of [%s]", name, mBean), e);
+                return null;
+            }
+        }
+
+        @Nullable
+        public static Attribute of(@Nonnull Method method) {
+            if (method.getParameterTypes().length != 0) return null;
+            int prefixLength;
+            if (method.getName().startsWith("get") && isNumeric(method.getReturnType())) {
+                prefixLength = 3;
+            } else if (method.getName().startsWith("is") && isBoolean(method.getReturnType())) {
+                prefixLength = 2;
+            } else {
+                return null;
+            }
+            if (method.getName().length() == prefixLength) return null;
+            String name = Character.toLowerCase(method.getName().charAt(prefixLength)) + method.getName().substring(prefixLength + 1);
+            return new Attribute(name, method, method.isAnnotationPresent(MonotonicCounter.class));
+        }
+
+        private static boolean isBoolean(@Nonnull Class<?> type) {
+            return type == boolean.class || type == Boolean.class;
+        }
+
+        private static boolean isNumeric(@Nonnull Class<?> type) {
+            return Number.class.isAssignableFrom(type)
+                    || type == int.class
+                    || type == long.class
+                    || type == double.class
+                    || type == float.class
+                    || type == short.class
+                    || type == byte.class;
+        }
+    }
+
+    @Immutable
+    @ThreadSafe
+    private static final class Sample {
+        private final long value;
+        private final long epochInMillis;
+
+        private Sample(long value, long epochInMillis) {
+            this.value = value;
+            this.epochInMillis = epochInMillis;
+        }
+
+        public double ratePerSecondSince(@Nonnull Sample previous) {
+            return (value - previous.value) * 1000d / (epochInMillis - previous.epochInMillis);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.utils.time.Clock;
+
+import static org.jmxtrans.utils.Preconditions2.checkArgument;
+
+/**
+ * Lock free histogram of the values recorded over a sliding window.
+ *
+ * Values are recorded in log-linear buckets, in the spirit of HdrHistogram: each power of 2 is split in 32 linear
+ * sub-buckets, which gives about 3% precision over the whole range. The window is made of {@code slotCount} slots of
+ * {@code slotMillis}; recording always goes to the current slot, which is reset when it is reused. The thread that
+ * resets a slot first claims it by a CAS of its epoch to {@code RESETTING}: concurrent recordings wait for the reset to
+ * complete, so that they are neither wiped by the reset nor counted in the previous window.
+ */
+@ThreadSafe
+public class SlidingWindowHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /** Values are capped to 2^48 - 1 (78 hours in nanoseconds). */
+    private static final int MAX_MAGNITUDE = 47;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2);
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+    private static final long NEVER_USED = Long.MIN_VALUE;
+    private static final long RESETTING = Long.MIN_VALUE + 1;
+
+    @Nonnull private final Clock clock;
+    private final long slotMillis;
+    @Nonnull private final Slot[] slots;
+
+    public SlidingWindowHistogram(@Nonnull Clock clock, int slotCount, long slotMillis) {
+        checkArgument(slotCount > 0, "slotCount must be strictly positive");
+        checkArgument(slotMillis > 0, "slotMillis must be strictly positive");
+        this.clock = clock;
+        this.slotMillis = slotMillis;
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) slots[i] = new Slot();
+    }
+
+    public void record(long value) {
+        long epoch = clock.currentTimeMillis() / slotMillis;
+        Slot slot = slots[(int) (epoch % slots.length)];
+        claim(slot, epoch);
+        long capped = Math.max(0, Math.min(value, MAX_VALUE));
+        slot.counts.incrementAndGet(bucketIndex(capped));
+        slot.count.incrementAndGet();
+        slot.sum.addAndGet(capped);
+        updateMax(slot.max, capped);
+    }
+
+    /**
+     * Makes sure the slot holds the values of {@code epoch}, resetting it if it still holds an older window.
+     */
+    private static void claim(@Nonnull Slot slot, long epoch) {
+        while (true) {
+            long slotEpoch = slot.epoch.get();
+            if (slotEpoch >= epoch) return;
+            if (slotEpoch == RESETTING) {
+                Thread.yield();
+            } else if (slot.epoch.compareAndSet(slotEpoch, RESETTING)) {
+                slot.reset();
+                slot.epoch.set(epoch);
+                return;
+            }
+        }
+    }
+
+    @Nonnull
+    public HistogramSnapshot snapshot() {
+        long currentEpoch = clock.currentTimeMillis() / slotMillis;
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+        for (Slot slot : slots) {
+            if (slot.epoch.get() <= currentEpoch - slots.length) continue;
+            for (int i = 0; i < BUCKET_COUNT; i++) counts[i] += slot.counts.get(i);
+            count += slot.count.get();
+            sum += slot.sum.get();
+            max = Math.max(max, slot.max.get());
+        }
+        return new HistogramSnapshot(counts, count, sum, max);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return SUB_BUCKET_COUNT * (magnitude - SUB_BUCKET_BITS + 1) + subBucket;
+    }
+
+    /**
+     * @return the highest value that falls in the bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int magnitude = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        long lowerBound = (1L << magnitude) + (subBucket << (magnitude - SUB_BUCKET_BITS));
+        return lowerBound + (1L << (magnitude - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static void updateMax(@Nonnull AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static final class Slot {
+        @Nonnull private final AtomicLong epoch = new AtomicLong(NEVER_USED);
+        @Nonnull private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        @Nonnull private final AtomicLong count = new AtomicLong();
+        @Nonnull private final AtomicLong sum = new AtomicLong();
+        @Nonnull private final AtomicLong max = new AtomicLong();
+
+        private void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0);
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+    }
+
+    /**
+     * Immutable view of the histogram at a point in time.
+     */
+    public static final class HistogramSnapshot {
+        @Nonnull private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private HistogramSnapshot(@Nonnull long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100.
+         * @return upper bound of the bucket containing the value at this percentile, capped at the maximum value.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= target) return Math.min(bucketUpperBound(i), max);
+            }
+            return max;
+        }
+    }
+}
@@ -22,8 +22,9 @@
  */
 package org.jmxtrans.core.output;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
@@ -31,45 +32,53 @@ import javax.annotation.concurrent.ThreadSafe;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 
+import org.jmxtrans.core.monitoring.NestedMBeans;
 import org.jmxtrans.core.monitoring.SelfNamedMBean;
+import org.jmxtrans.core.monitoring.SlidingWindowHistogram;
 import org.jmxtrans.core.results.QueryResult;
 import org.jmxtrans.utils.time.Clock;
-import org.jmxtrans.utils.time.NanoChronometer;
 
+import static java.util.Collections.emptyMap;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 @ThreadSafe
-public class MetricCollectingOutputWriter implements OutputWriter, MetricCollectingOutputWriterMBean, SelfNamedMBean {
+public class MetricCollectingOutputWriter implements OutputWriter, MetricCollectingOutputWriterMBean, SelfNamedMBean, NestedMBeans, Closeable {
 
     @Nonnull private final Clock clock;
     @Nonnull private final OutputWriter delegate;
-    @Nonnull private final AtomicInteger processedCount = new AtomicInteger();
+    @Nonnull private final AtomicLong processedCount = new AtomicLong();
     @Nonnull private final ObjectName objectName;
     @Nonnull private final AtomicLong processingTimeCounter = new AtomicLong();
+    @Nonnull private final AtomicLong errorCount = new AtomicLong();
+    @Nonnull private final SlidingWindowHistogram writeLatencies;
 
     public MetricCollectingOutputWriter(@Nonnull Clock clock, @Nonnull OutputWriter delegate, @Nonnull ObjectName objectName) {
         this.clock = clock;
         this.delegate = delegate;
         this.objectName = objectName;
+        this.writeLatencies = new SlidingWindowHistogram(clock, 6, 10000);
     }
     
     @Override
     public int write(@Nonnull QueryResult result) throws IOException {
-        try (NanoChronometer chronometer = getProcessingTimeChronometer()) {
+        long start = clock.nanoTime();
+        try {
             int count = delegate.write(result);
             processedCount.addAndGet(count);
             return count;
+        } catch (IOException | RuntimeException e) {
+            errorCount.incrementAndGet();
+            throw e;
+        } finally {
+            long duration = clock.nanoTime() - start;
+            processingTimeCounter.addAndGet(duration);
+            writeLatencies.record(duration);
         }
     }
 
-    @Nonnull
-    private NanoChronometer getProcessingTimeChronometer() {
-        return new NanoChronometer(processingTimeCounter, clock);
-    }
-
     @Override
-    public int getProcessedResultsCount() {
+    public long getProcessedResultsCount() {
         return processedCount.get();
     }
 
@@ -78,6 +87,52 @@ public class MetricCollectingOutputWriter implements OutputWriter, MetricCollect
         return MILLISECONDS.convert(processingTimeCounter.get(), NANOSECONDS);
     }
 
+    @Override
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    @Override
+    public long getWriteLatencyP50Micros() {
+        return NANOSECONDS.toMicros(writeLatencies.snapshot().getValueAtPercentile(50));
+    }
+
+    @Override
+    public long getWriteLatencyP99Micros() {
+        return NANOSECONDS.toMicros(writeLatencies.snapshot().getValueAtPercentile(99));
+    }
+
+    @Override
+    public long getWriteLatencyP999Micros() {
+        return NANOSECONDS.toMicros(writeLatencies.snapshot().getValueAtPercentile(99.9));
+    }
+
+    @Override
+    public long getWriteLatencyMaxMicros() {
+        return NANOSECONDS.toMicros(writeLatencies.snapshot().getMax());
+    }
+
+    @Nonnull
+    public SlidingWindowHistogram getWriteLatencies() {
+        return writeLatencies;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Object> getNestedMBeans() {
+        if (delegate instanceof NestedMBeans) return ((NestedMBeans) delegate).getNestedMBeans();
+        return emptyMap();
+    }
+
+    /**
+     * Closes the delegate if it holds resources (threads, connections), once the writer is removed from the
+     * configuration.
+     */
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) ((Closeable) delegate).close();
+    }
+
     @Nonnull
     @Override
     public ObjectName getObjectName() throws MalformedObjectNameException {
@@ -22,9 +22,24 @@
  */
 package org.jmxtrans.core.output;
 
+import org.jmxtrans.core.monitoring.MonotonicCounter;
+
 public interface MetricCollectingOutputWriterMBean {
     
-    int getProcessedResultsCount();
+    @MonotonicCounter
+    long getProcessedResultsCount();
     
+    @MonotonicCounter
     long getProcessingTimeMillis();
+
+    @MonotonicCounter
+    long getErrorCount();
+
+    long getWriteLatencyP50Micros();
+
+    long getWriteLatencyP99Micros();
+
+    long getWriteLatencyP999Micros();
+
+    long getWriteLatencyMaxMicros();
 }
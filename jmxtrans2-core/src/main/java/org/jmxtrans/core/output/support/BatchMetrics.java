@@ -0,0 +1,133 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.monitoring.SlidingWindowHistogram;
+import org.jmxtrans.utils.time.Clock;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Statistics on the batches sent by a {@link BatchingOutputWriter}: sizes, time spent flushing them to the backend,
+ * failures and bytes sent. Distributions are computed over a sliding window of one minute.
+ */
+@ThreadSafe
+public class BatchMetrics implements BatchMetricsMBean {
+
+    private static final int WINDOW_SLOTS = 6;
+    private static final long SLOT_MILLIS = 10000;
+
+    @Nonnull private final Clock clock;
+    @Nullable private final ByteCountingOutputWriter byteCounter;
+
+    @Nonnull private final AtomicLong batchCount = new AtomicLong();
+    @Nonnull private final AtomicLong failedBatchCount = new AtomicLong();
+    @Nonnull private final AtomicLong failedResultCount = new AtomicLong();
+    @Nonnull private final SlidingWindowHistogram batchSizes;
+    @Nonnull private final SlidingWindowHistogram flushLatencies;
+
+    public BatchMetrics(@Nonnull Clock clock, @Nullable ByteCountingOutputWriter byteCounter) {
+        this.clock = clock;
+        this.byteCounter = byteCounter;
+        this.batchSizes = new SlidingWindowHistogram(clock, WINDOW_SLOTS, SLOT_MILLIS);
+        this.flushLatencies = new SlidingWindowHistogram(clock, WINDOW_SLOTS, SLOT_MILLIS);
+    }
+
+    public long startBatch(int size) {
+        batchCount.incrementAndGet();
+        batchSizes.record(size);
+        return clock.nanoTime();
+    }
+
+    public void endBatch(long startNanos, int failedResults, boolean failed) {
+        flushLatencies.record(clock.nanoTime() - startNanos);
+        failedResultCount.addAndGet(failedResults);
+        if (failed) failedBatchCount.incrementAndGet();
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    @Override
+    public long getFailedBatchCount() {
+        return failedBatchCount.get();
+    }
+
+    @Override
+    public long getFailedResultCount() {
+        return failedResultCount.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return byteCounter == null ? 0 : byteCounter.getBytesWritten();
+    }
+
+    @Override
+    public long getBatchSizeP50() {
+        return batchSizes.snapshot().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getBatchSizeMax() {
+        return batchSizes.snapshot().getMax();
+    }
+
+    @Override
+    public long getFlushLatencyP50Micros() {
+        return NANOSECONDS.toMicros(flushLatencies.snapshot().getValueAtPercentile(50));
+    }
+
+    @Override
+    public long getFlushLatencyP99Micros() {
+        return NANOSECONDS.toMicros(flushLatencies.snapshot().getValueAtPercentile(99));
+    }
+
+    @Override
+    public long getFlushLatencyP999Micros() {
+        return NANOSECONDS.toMicros(flushLatencies.snapshot().getValueAtPercentile(99.9));
+    }
+
+    @Override
+    public long getFlushLatencyMaxMicros() {
+        return NANOSECONDS.toMicros(flushLatencies.snapshot().getMax());
+    }
+
+    @Nonnull
+    public SlidingWindowHistogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    @Nonnull
+    public SlidingWindowHistogram getFlushLatencies() {
+        return flushLatencies;
+    }
+}
@@ -22,25 +22,42 @@
  */
 package org.jmxtrans.core.output.support;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.jmxtrans.core.log.Logger;
 import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.monitoring.EventRecorder;
+import org.jmxtrans.core.monitoring.EventRecorders;
+import org.jmxtrans.core.monitoring.NestedMBeans;
 import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.results.PipelineListener;
+import org.jmxtrans.core.results.PipelineStage;
+import org.jmxtrans.core.results.PipelineTrace;
 import org.jmxtrans.core.results.QueryResult;
 import org.jmxtrans.core.results.QueryResultTimeComparator;
+import org.jmxtrans.utils.concurrent.NamedThreadFactory;
+import org.jmxtrans.utils.time.Clock;
+import org.jmxtrans.utils.time.SystemClock;
 
 import static java.lang.String.format;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.sort;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
-public class BatchingOutputWriter<T extends BatchedOutputWriter> implements OutputWriter {
+public class BatchingOutputWriter<T extends BatchedOutputWriter> implements OutputWriter, NestedMBeans, Closeable {
 
     @Nonnull private final Logger logger = LoggerFactory.getLogger(getClass().getName());
 
@@ -48,14 +65,59 @@ public class BatchingOutputWriter<T extends BatchedOutputWriter> implements Outp
     private final int batchSize;
     @Nonnull private final T outputWriter;
     @Nonnull private final Comparator<QueryResult> batchOrder = new QueryResultTimeComparator();
+    @Nonnull private final RetryPolicy retryPolicy;
+    @Nonnull private final BatchMetrics batchMetrics;
+    @Nonnull private final Clock clock;
+    @Nonnull private final EventRecorder eventRecorder;
+    @Nonnull private final String writerName;
+    @Nonnull private final ScheduledExecutorService retryExecutor;
 
     public BatchingOutputWriter(int batchSize, @Nonnull T outputWriter) {
+        this(batchSize, outputWriter, RetryPolicy.noRetry());
+    }
+
+    public BatchingOutputWriter(int batchSize, @Nonnull T outputWriter, @Nonnull RetryPolicy retryPolicy) {
+        this(batchSize, outputWriter, retryPolicy, new SystemClock());
+    }
+
+    public BatchingOutputWriter(int batchSize, @Nonnull T outputWriter, @Nonnull RetryPolicy retryPolicy, @Nonnull Clock clock) {
+        this(batchSize, outputWriter, retryPolicy, clock, EventRecorders.get());
+    }
+
+    public BatchingOutputWriter(
+            int batchSize,
+            @Nonnull T outputWriter,
+            @Nonnull RetryPolicy retryPolicy,
+            @Nonnull Clock clock,
+            @Nonnull EventRecorder eventRecorder) {
+        this(batchSize, outputWriter, retryPolicy, clock, eventRecorder,
+                new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("jmxtrans-retry-", true)));
+    }
+
+    /**
+     * @param retryExecutor runs the retries once their backoff has elapsed, so that a failing backend does not keep
+     *                      the thread writing results busy. It is shut down when this writer is closed.
+     */
+    public BatchingOutputWriter(
+            int batchSize,
+            @Nonnull T outputWriter,
+            @Nonnull RetryPolicy retryPolicy,
+            @Nonnull Clock clock,
+            @Nonnull EventRecorder eventRecorder,
+            @Nonnull ScheduledExecutorService retryExecutor) {
         this.batchSize = batchSize;
         resultQueue = new LinkedBlockingQueue<>(batchSize);
         this.outputWriter = outputWriter;
+        this.retryPolicy = retryPolicy;
+        this.clock = clock;
+        this.eventRecorder = eventRecorder;
+        this.retryExecutor = retryExecutor;
+        this.writerName = outputWriter.getClass().getSimpleName();
+        this.batchMetrics = new BatchMetrics(
+                clock,
+                outputWriter instanceof ByteCountingOutputWriter ? (ByteCountingOutputWriter) outputWriter : null);
     }
 
-
     @Override
     public int write(@Nonnull QueryResult result) throws IOException {
         List<QueryResult> batch = enqueueAndGetBatch(result);
@@ -78,21 +140,191 @@ public class BatchingOutputWriter<T extends BatchedOutputWriter> implements Outp
         return emptyList();
     }
 
+    @Nonnull
+    public BatchMetrics getBatchMetrics() {
+        return batchMetrics;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Object> getNestedMBeans() {
+        Map<String, Object> mBeans = new HashMap<>();
+        if (outputWriter instanceof NestedMBeans) mBeans.putAll(((NestedMBeans) outputWriter).getNestedMBeans());
+        mBeans.put("retry", retryPolicy);
+        mBeans.put("batches", batchMetrics);
+        return mBeans;
+    }
+
+    /**
+     * Closes the delegate if it holds resources (threads, connections), once the writer is removed from the
+     * configuration.
+     */
+    @Override
+    public void close() throws IOException {
+        retryExecutor.shutdownNow();
+        if (outputWriter instanceof Closeable) ((Closeable) outputWriter).close();
+    }
+
+    /**
+     * Write the batch, retrying according to the {@link RetryPolicy}. If the whole batch fails (in
+     * {@link BatchedOutputWriter#beforeBatch()} or {@link BatchedOutputWriter#afterBatch()}), it is retried as a whole.
+     * If only some results fail, or if the writer reports a {@link PartialBatchFailureException}, only those are
+     * retried.
+     *
+     * Retries are scheduled on the retry executor after their backoff, they never block the calling thread. Failures
+     * of the first attempt are thrown to the caller when no retry is scheduled, failures of retries are logged.
+     *
+     * @return the number of results written by the first attempt.
+     */
     private int processBatch(@Nonnull List<QueryResult> batch) throws IOException {
-        int counter = 0;
+        sort(batch, batchOrder);
+        retryPolicy.onFirstAttempt();
+        return attempt(new Batch(batch.size()), batch, 0);
+    }
+
+    private int attempt(@Nonnull Batch batch, @Nonnull List<QueryResult> pending, int retry) throws IOException {
+        Attempt attempt = new Attempt();
+        boolean wholeBatchFailed = false;
+        IOException failure;
+        List<QueryResult> failedResults = attempt.failedResults;
+        try {
+            writeBatch(pending, attempt);
+            failure = attempt.lastFailure;
+        } catch (PartialBatchFailureException pbfe) {
+            attempt.count += pbfe.getAcceptedCount();
+            failedResults.addAll(pbfe.getFailedResults());
+            failure = pbfe;
+        } catch (IOException ioe) {
+            attempt.count = 0;
+            wholeBatchFailed = true;
+            failedResults = pending;
+            failure = ioe;
+        }
+        if (failure == null || failedResults.isEmpty()) {
+            retryPolicy.onSuccess(retry);
+            batch.completed(0, false);
+            return attempt.count;
+        }
+        if (!retryPolicy.shouldRetry(failure, retry)) {
+            batch.completed(failedResults.size(), wholeBatchFailed);
+            if (wholeBatchFailed) throw failure;
+            return attempt.count;
+        }
+        logger.info(format("Error writing %d results to output writer [%s], will retry.",
+                failedResults.size(), outputWriter), failure);
+        scheduleRetry(batch, failedResults, retry + 1, wholeBatchFailed);
+        return attempt.count;
+    }
+
+    private void scheduleRetry(
+            @Nonnull final Batch batch,
+            @Nonnull final List<QueryResult> pending,
+            final int retry,
+            boolean wholeBatchFailed) {
+        try {
+            retryExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        attempt(batch, pending, retry);
+                    } catch (IOException ioe) {
+                        logger.warn(format("Could not write %d results to output writer [%s] after %d retries.",
+                                pending.size(), outputWriter, retry), ioe);
+                    }
+                }
+            }, retryPolicy.getBackoffMillis(retry), MILLISECONDS);
+        } catch (RejectedExecutionException ree) {
+            logger.warn(format("Could not schedule retry of %d results to output writer [%s], dropping them.",
+                    pending.size(), outputWriter), ree);
+            batch.completed(pending.size(), wholeBatchFailed);
+        }
+    }
+
+    private long bytesWritten() {
+        if (outputWriter instanceof ByteCountingOutputWriter) {
+            return ((ByteCountingOutputWriter) outputWriter).getBytesWritten();
+        }
+        return 0;
+    }
+
+    private void writeBatch(@Nonnull List<QueryResult> batch, @Nonnull Attempt attempt) throws IOException {
         try {
             outputWriter.beforeBatch();
-            sort(batch, batchOrder);
             for (QueryResult result : batch) {
                 try {
-                    counter += outputWriter.write(result);
+                    attempt.count += outputWriter.write(result);
+                    encoded(result, attempt);
                 } catch (IOException ioe) {
                     logger.warn(format("Error writing result [%s] to output writer [%s].", result, outputWriter), ioe);
+                    attempt.failedResults.add(result);
+                    attempt.lastFailure = ioe;
                 }
             }
         } finally {
-            counter += outputWriter.afterBatch();
+            attempt.count += outputWriter.afterBatch();
+        }
+        acknowledged(attempt);
+    }
+
+    private void encoded(@Nonnull QueryResult result, @Nonnull Attempt attempt) {
+        PipelineTrace trace = result.getTrace();
+        if (trace == null) return;
+        attempt.lastEncodedNanos = clock.nanoTime();
+        attempt.tracedResults.add(result);
+        long dequeued = trace.getStamp(PipelineStage.DEQUEUED);
+        if (dequeued != PipelineTrace.NOT_STAMPED) {
+            trace.getListener().onStage(PipelineStage.ENCODED, attempt.lastEncodedNanos - dequeued);
         }
-        return counter;
+    }
+
+    /**
+     * Reports the time spent sending the batch and waiting for its acknowledgement, once per batch, and the total
+     * time spent in the pipeline by each result.
+     */
+    private void acknowledged(@Nonnull Attempt attempt) {
+        if (attempt.tracedResults.isEmpty()) return;
+        long acked = clock.nanoTime();
+        long flushed = acked;
+        if (outputWriter instanceof AcknowledgedOutputWriter) {
+            flushed -= ((AcknowledgedOutputWriter) outputWriter).getLastAcknowledgementDelayNanos();
+        }
+        PipelineListener listener = null;
+        for (QueryResult result : attempt.tracedResults) {
+            PipelineTrace trace = result.getTrace();
+            if (trace == null) continue;
+            listener = trace.getListener();
+            listener.onStage(PipelineStage.TOTAL, acked - trace.getStamp(PipelineStage.DISPATCHED));
+        }
+        if (listener == null) return;
+        listener.onStage(PipelineStage.FLUSHED, flushed - attempt.lastEncodedNanos);
+        listener.onStage(PipelineStage.ACKED, acked - flushed);
+    }
+
+    /** State of a batch across its attempts. */
+    private final class Batch {
+        private final int size;
+        @Nonnull private final EventRecorder.Flush flush;
+        private final long bytesBefore;
+        private final long start;
+
+        private Batch(int size) {
+            this.size = size;
+            this.flush = eventRecorder.flushStarted(writerName);
+            this.bytesBefore = bytesWritten();
+            this.start = batchMetrics.startBatch(size);
+        }
+
+        private void completed(int failedResults, boolean wholeBatchFailed) {
+            batchMetrics.endBatch(start, failedResults, wholeBatchFailed);
+            flush.completed(size, bytesWritten() - bytesBefore, failedResults == 0);
+        }
+    }
+
+    private static final class Attempt {
+        private int count;
+        @Nonnull private final List<QueryResult> failedResults = new ArrayList<>();
+        @Nullable private IOException lastFailure;
+        @Nonnull private final List<QueryResult> tracedResults = new ArrayList<>();
+        private long lastEncodedNanos;
     }
 }
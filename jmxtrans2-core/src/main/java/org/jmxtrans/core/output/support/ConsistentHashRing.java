@@ -0,0 +1,115 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.support;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import static org.jmxtrans.utils.Preconditions2.checkArgument;
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+/**
+ * Consistent hash ring, compatible with the one used by carbon-relay ({@code carbon.hashing.ConsistentHashRing}).
+ *
+ * Each node is placed on the ring {@code replicaCount} times, at the position given by the first 2 bytes of the MD5
+ * of {@code "<nodeKey>:<replica>"}. Collisions are resolved by moving to the next position, in the order nodes are
+ * added. A key is assigned to the first node found at or after its own position.
+ *
+ * To get the same distribution as carbon, node keys must be formatted as carbon does, i.e. as the Python
+ * representation of the {@code (server, instance)} tuple: {@code ('127.0.0.1', 'a')} or {@code ('127.0.0.1', None)}.
+ *
+ * @param <N> type of the nodes
+ */
+@Immutable
+public class ConsistentHashRing<N> {
+
+    @Nonnull private final TreeMap<Integer, N> ring = new TreeMap<>();
+    private final int nodeCount;
+
+    /**
+     * @param nodes nodes indexed by their key, in the order they should be added to the ring.
+     */
+    public ConsistentHashRing(@Nonnull Map<String, N> nodes, int replicaCount) {
+        checkArgument(!nodes.isEmpty(), "Hash ring needs at least one node");
+        checkArgument(replicaCount > 0, "replicaCount must be strictly positive");
+        for (Map.Entry<String, N> node : nodes.entrySet()) {
+            for (int i = 0; i < replicaCount; i++) {
+                int position = computeRingPosition(node.getKey() + ":" + i);
+                while (ring.containsKey(position)) position++;
+                ring.put(position, node.getValue());
+            }
+        }
+        nodeCount = nodes.size();
+    }
+
+    @Nonnull
+    public N getNode(@Nonnull String key) {
+        Map.Entry<Integer, N> entry = ring.ceilingEntry(computeRingPosition(key));
+        if (entry == null) entry = ring.firstEntry();
+        return entry.getValue();
+    }
+
+    /**
+     * @return all distinct nodes, in the order they are found on the ring, starting from the position of the key. The
+     * first node is the one returned by {@link #getNode(String)}, the next ones can be used for failover.
+     */
+    @Nonnull
+    public List<N> getNodes(@Nonnull String key) {
+        int position = computeRingPosition(key);
+        Set<N> nodes = new LinkedHashSet<>();
+        collectDistinct(ring.tailMap(position, true).values(), nodes);
+        collectDistinct(ring.headMap(position, false).values(), nodes);
+        return new ArrayList<>(nodes);
+    }
+
+    private void collectDistinct(@Nonnull Collection<N> source, @Nonnull Set<N> nodes) {
+        for (N node : source) {
+            if (nodes.size() == nodeCount) return;
+            nodes.add(node);
+        }
+    }
+
+    static int computeRingPosition(@Nonnull String key) {
+        byte[] digest = md5().digest(key.getBytes(UTF_8));
+        return ((digest[0] & 0xff) << 8) | (digest[1] & 0xff);
+    }
+
+    @Nonnull
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is always available in a JVM", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.support;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.concurrent.Immutable;
+
+import static org.jmxtrans.utils.Preconditions2.checkArgument;
+
+/**
+ * Exponential backoff with "equal jitter": the delay for a retry is chosen randomly between half and all of the
+ * exponentially growing cap, so that writers failing at the same time do not retry in lock step.
+ */
+@Immutable
+public class ExponentialBackoff {
+
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    public ExponentialBackoff(long initialDelayMillis, long maxDelayMillis) {
+        checkArgument(initialDelayMillis >= 0, "initialDelayMillis cannot be negative");
+        checkArgument(maxDelayMillis >= initialDelayMillis, "maxDelayMillis cannot be smaller than initialDelayMillis");
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param retry the retry number, starting at 1.
+     */
+    public long getDelayMillis(int retry) {
+        checkArgument(retry > 0, "retry must be strictly positive");
+        long cap = getCap(retry);
+        if (cap == 0) return 0;
+        long half = cap / 2;
+        return half + ThreadLocalRandom.current().nextLong(cap - half + 1);
+    }
+
+    long getCap(int retry) {
+        if (initialDelayMillis == 0) return 0;
+        int shift = retry - 1;
+        if (shift >= Long.numberOfLeadingZeros(initialDelayMillis) - 1) return maxDelayMillis;
+        return Math.min(maxDelayMillis, initialDelayMillis << shift);
+    }
+}
@@ -31,6 +31,7 @@ import java.net.Proxy;
 import java.net.URL;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -38,7 +39,10 @@ import javax.annotation.Nullable;
 import org.jmxtrans.core.log.Logger;
 import org.jmxtrans.core.results.QueryResult;
 import org.jmxtrans.utils.appinfo.AppInfo;
+import org.jmxtrans.utils.io.CountingOutputStream;
 import org.jmxtrans.utils.io.NullOutputStream;
+import org.jmxtrans.utils.time.Clock;
+import org.jmxtrans.utils.time.SystemClock;
 
 import static java.lang.String.format;
 import static java.net.HttpURLConnection.HTTP_OK;
@@ -51,11 +55,14 @@ import static org.jmxtrans.core.log.LoggerFactory.getLogger;
 import static org.jmxtrans.utils.io.Charsets.US_ASCII;
 import static org.jmxtrans.utils.io.IoUtils.copy;
 
-public class HttpOutputWriter<T extends OutputStreamBasedOutputWriter> implements BatchedOutputWriter {
+public class HttpOutputWriter<T extends OutputStreamBasedOutputWriter> implements AcknowledgedOutputWriter, ByteCountingOutputWriter {
 
     @Nonnull private final Logger logger = getLogger(getClass().getName());
     
     @Nonnull private final ThreadLocal<HttpURLConnection> connection = new ThreadLocal<>();
+    @Nonnull private final ThreadLocal<CountingOutputStream> outputStream = new ThreadLocal<>();
+    @Nonnull private final ThreadLocal<Long> acknowledgementDelay = new ThreadLocal<>();
+    @Nonnull private final AtomicLong bytesWritten = new AtomicLong();
 
     @Nonnull final private URL url;
     private final int timeoutInMillis;
@@ -64,6 +71,7 @@ public class HttpOutputWriter<T extends OutputStreamBasedOutputWriter> implement
     @Nullable final private String basicAuthentication;
     @Nonnull final private AppInfo<?> appInfo;
     @Nonnull final private T target;
+    @Nonnull final private Clock clock;
 
     private HttpOutputWriter(
             @Nonnull URL url,
@@ -72,7 +80,8 @@ public class HttpOutputWriter<T extends OutputStreamBasedOutputWriter> implement
             @Nullable String contentType,
             @Nullable String basicAuthentication,
             @Nonnull AppInfo<?> appInfo,
-            @Nonnull T target) {
+            @Nonnull T target,
+            @Nonnull Clock clock) {
         this.url = url;
         this.timeoutInMillis = timeoutInMillis;
         this.proxy = proxy;
@@ -80,6 +89,7 @@ public class HttpOutputWriter<T extends OutputStreamBasedOutputWriter> implement
         this.basicAuthentication = basicAuthentication;
         this.appInfo = appInfo;
         this.target = target;
+        this.clock = clock;
     }
 
     @Override
@@ -87,16 +97,23 @@ public class HttpOutputWriter<T extends OutputStreamBasedOutputWriter> implement
         HttpURLConnection urlConnection = openConnection();
         configureConnection(urlConnection);
         connection.set(urlConnection);
-        target.beforeBatch(getURLConnection().getOutputStream());
+        outputStream.set(new CountingOutputStream(urlConnection.getOutputStream()));
+        target.beforeBatch(getOutputStream());
     }
 
     @Override
     public int write(@Nonnull QueryResult result) throws IOException {
-        HttpURLConnection urlConnection = getURLConnection();
-        int count = target.write(urlConnection.getOutputStream(), result);
+        int count = target.write(getOutputStream(), result);
         return count;
     }
 
+    @Nonnull
+    private CountingOutputStream getOutputStream() {
+        CountingOutputStream out = outputStream.get();
+        if (out == null) throw new IllegalStateException("Connection has not been initialized");
+        return out;
+    }
+
     private HttpURLConnection getURLConnection() {
         HttpURLConnection urlConnection = connection.get();
         if (urlConnection == null) throw new IllegalStateException("Connection has not been initialized");
@@ -105,12 +122,23 @@ public class HttpOutputWriter<T extends OutputStreamBasedOutputWriter> implement
 
     @Override
     public int afterBatch() throws IOException {
+        // a batch failing before its response is read has no acknowledgement delay, not the one of the previous batch
+        acknowledgementDelay.remove();
         HttpURLConnection urlConnection = getURLConnection();
+        CountingOutputStream out = outputStream.get();
         try {
-            return target.afterBatch(urlConnection.getOutputStream());
+            return target.afterBatch(out != null ? out : urlConnection.getOutputStream());
         } finally {
-            if (urlConnection.getResponseCode() != HTTP_OK) {
-                throw new IOException("Error connecting to server, response code is not OK but " + urlConnection.getResponseCode());
+            if (out != null) {
+                bytesWritten.addAndGet(out.getCount());
+                outputStream.remove();
+            }
+            // HttpURLConnection buffers the request body, so the delay includes sending it
+            long sent = clock.nanoTime();
+            int responseCode = urlConnection.getResponseCode();
+            acknowledgementDelay.set(clock.nanoTime() - sent);
+            if (responseCode != HTTP_OK) {
+                throw new UnexpectedResponseCodeException(responseCode);
             }
             try {
                 disposeOfConnection(connection.get());
@@ -120,6 +148,17 @@ public class HttpOutputWriter<T extends OutputStreamBasedOutputWriter> implement
         }
     }
 
+    @Override
+    public long getLastAcknowledgementDelayNanos() {
+        Long delay = acknowledgementDelay.get();
+        return delay == null ? 0 : delay;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
     @Nonnull
     private HttpURLConnection openConnection() throws IOException {
         if (proxy == null) return (HttpURLConnection) url.openConnection();
@@ -181,6 +220,7 @@ public class HttpOutputWriter<T extends OutputStreamBasedOutputWriter> implement
         @Nullable private Proxy proxy;
         @Nullable private String contentType;
         @Nullable private String basicAuthentication;
+        @Nonnull private Clock clock = new SystemClock();
 
         public Builder(URL url, AppInfo<?> appInfo, T target) {
             this.url = validateHttp(url);
@@ -212,9 +252,15 @@ public class HttpOutputWriter<T extends OutputStreamBasedOutputWriter> implement
             return this;
         }
 
+        @Nonnull
+        public Builder<T> withClock(@Nonnull Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
         @Nonnull
         public HttpOutputWriter<T> build() {
-            return new HttpOutputWriter<>(url, timeoutInMillis, proxy, contentType, basicAuthentication, appInfo, target);
+            return new HttpOutputWriter<>(url, timeoutInMillis, proxy, contentType, basicAuthentication, appInfo, target, clock);
         }
 
         @Nonnull
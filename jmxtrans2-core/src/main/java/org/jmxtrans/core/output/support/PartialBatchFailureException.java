@@ -0,0 +1,65 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.support;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jmxtrans.core.results.QueryResult;
+
+import lombok.Getter;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Thrown by a {@link BatchedOutputWriter} when only part of a batch could be sent, a batch split in several requests
+ * for example. {@link BatchingOutputWriter} only retries the results that were not sent, the others are not sent
+ * twice.
+ */
+public class PartialBatchFailureException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    @Getter private final int acceptedCount;
+    /** Results are not serializable, they are only needed to retry the batch in the same JVM. */
+    @Nonnull @Getter private final transient List<QueryResult> failedResults;
+
+    /**
+     * @param acceptedCount number of results accepted by the backend, as returned by a successful
+     * {@link BatchedOutputWriter#afterBatch()}.
+     */
+    public PartialBatchFailureException(
+            @Nonnull String message,
+            @Nullable Throwable cause,
+            int acceptedCount,
+            @Nonnull Collection<QueryResult> failedResults) {
+        super(message, cause);
+        this.acceptedCount = acceptedCount;
+        this.failedResults = unmodifiableList(new ArrayList<>(failedResults));
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.support;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+
+import static java.lang.String.format;
+
+import static org.jmxtrans.utils.ConfigurationUtils.getDouble;
+import static org.jmxtrans.utils.ConfigurationUtils.getInt;
+import static org.jmxtrans.utils.ConfigurationUtils.getLong;
+import static org.jmxtrans.utils.Preconditions2.checkArgument;
+
+/**
+ * Decides if a failed batch should be retried, and keeps track of the outcomes.
+ *
+ * Failures are classified as either retryable (network errors, server errors, throttling) or permanent (anything
+ * that will fail the same way on the next attempt: client errors, unknown hosts, programming errors). Retries are
+ * limited both by a maximum number of retries per batch and by a {@link RetryBudget} shared by all batches of the
+ * same writer, so that retries cannot amplify an outage.
+ */
+@ThreadSafe
+public class RetryPolicy implements RetryPolicyMBean {
+
+    public static final String SETTING_MAX_RETRIES = "maxRetries";
+    public static final int SETTING_MAX_RETRIES_DEFAULT_VALUE = 0;
+    public static final String SETTING_INITIAL_BACKOFF_MILLIS = "retryInitialBackoffMillis";
+    public static final long SETTING_INITIAL_BACKOFF_MILLIS_DEFAULT_VALUE = 100;
+    public static final String SETTING_MAX_BACKOFF_MILLIS = "retryMaxBackoffMillis";
+    public static final long SETTING_MAX_BACKOFF_MILLIS_DEFAULT_VALUE = 5000;
+    public static final String SETTING_BUDGET_RATIO = "retryBudgetRatio";
+    public static final double SETTING_BUDGET_RATIO_DEFAULT_VALUE = 0.1;
+    public static final String SETTING_BUDGET_MAX_BALANCE = "retryBudgetMaxBalance";
+    public static final int SETTING_BUDGET_MAX_BALANCE_DEFAULT_VALUE = 10;
+
+    @Nonnull private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    private final int maxRetries;
+    @Nonnull private final ExponentialBackoff backoff;
+    @Nonnull private final RetryBudget budget;
+
+    @Nonnull private final AtomicLong batchCount = new AtomicLong();
+    @Nonnull private final AtomicLong retryCount = new AtomicLong();
+    @Nonnull private final AtomicLong recoveredBatchCount = new AtomicLong();
+    @Nonnull private final AtomicLong retryableFailureCount = new AtomicLong();
+    @Nonnull private final AtomicLong permanentFailureCount = new AtomicLong();
+    @Nonnull private final AtomicLong retriesExhaustedCount = new AtomicLong();
+    @Nonnull private final AtomicLong budgetExhaustedCount = new AtomicLong();
+
+    public RetryPolicy(int maxRetries, @Nonnull ExponentialBackoff backoff, @Nonnull RetryBudget budget) {
+        checkArgument(maxRetries >= 0, "maxRetries cannot be negative");
+        this.maxRetries = maxRetries;
+        this.backoff = backoff;
+        this.budget = budget;
+    }
+
+    /** Called once for each new batch, before the first attempt. */
+    public void onFirstAttempt() {
+        batchCount.incrementAndGet();
+        budget.deposit();
+    }
+
+    /** Called when a batch has been fully written. */
+    public void onSuccess(int retry) {
+        if (retry > 0) recoveredBatchCount.incrementAndGet();
+    }
+
+    /**
+     * Classify the failure and decide if another attempt should be made.
+     *
+     * @param failure the exception that caused the last attempt to fail.
+     * @param retry number of retries already done for this batch.
+     */
+    public boolean shouldRetry(@Nonnull Exception failure, int retry) {
+        if (!isRetryable(failure)) {
+            permanentFailureCount.incrementAndGet();
+            return false;
+        }
+        retryableFailureCount.incrementAndGet();
+        if (retry >= maxRetries) {
+            if (maxRetries > 0) retriesExhaustedCount.incrementAndGet();
+            return false;
+        }
+        if (!budget.tryWithdraw()) {
+            budgetExhaustedCount.incrementAndGet();
+            logger.warn(format("Retry budget exhausted, not retrying after [%s].", failure.getMessage()));
+            return false;
+        }
+        retryCount.incrementAndGet();
+        return true;
+    }
+
+    /** Delay to wait before the given retry (starting at 1). */
+    public long getBackoffMillis(int retry) {
+        return backoff.getDelayMillis(retry);
+    }
+
+    public static boolean isRetryable(@Nullable Throwable failure) {
+        if (failure instanceof UnexpectedResponseCodeException) {
+            int responseCode = ((UnexpectedResponseCodeException) failure).getResponseCode();
+            return responseCode >= 500 || responseCode == 429 || responseCode == 408;
+        }
+        if (failure instanceof InterruptedIOException) {
+            // timeouts are retryable, interruptions are not
+            return !Thread.currentThread().isInterrupted();
+        }
+        if (failure instanceof UnknownHostException) return false;
+        if (failure instanceof MalformedURLException) return false;
+        return failure instanceof IOException;
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    @Override
+    public long getRecoveredBatchCount() {
+        return recoveredBatchCount.get();
+    }
+
+    @Override
+    public long getRetryableFailureCount() {
+        return retryableFailureCount.get();
+    }
+
+    @Override
+    public long getPermanentFailureCount() {
+        return permanentFailureCount.get();
+    }
+
+    @Override
+    public long getRetriesExhaustedCount() {
+        return retriesExhaustedCount.get();
+    }
+
+    @Override
+    public long getBudgetExhaustedCount() {
+        return budgetExhaustedCount.get();
+    }
+
+    @Override
+    public double getRetryBudgetBalance() {
+        return budget.getBalance();
+    }
+
+    /** A policy that never retries, but still classifies failures. */
+    @Nonnull
+    public static RetryPolicy noRetry() {
+        return new RetryPolicy(0, new ExponentialBackoff(0, 0), new RetryBudget(0, 0));
+    }
+
+    @Nonnull
+    public static RetryPolicy fromSettings(@Nonnull Map<String, String> settings) {
+        return new RetryPolicy(
+                getInt(settings, SETTING_MAX_RETRIES, SETTING_MAX_RETRIES_DEFAULT_VALUE),
+                new ExponentialBackoff(
+                        getLong(settings, SETTING_INITIAL_BACKOFF_MILLIS, SETTING_INITIAL_BACKOFF_MILLIS_DEFAULT_VALUE),
+                        getLong(settings, SETTING_MAX_BACKOFF_MILLIS, SETTING_MAX_BACKOFF_MILLIS_DEFAULT_VALUE)),
+                new RetryBudget(
+                        getDouble(settings, SETTING_BUDGET_RATIO, SETTING_BUDGET_RATIO_DEFAULT_VALUE),
+                        getInt(settings, SETTING_BUDGET_MAX_BALANCE, SETTING_BUDGET_MAX_BALANCE_DEFAULT_VALUE)));
+    }
+}
@@ -30,11 +30,13 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.ThreadSafe;
 
 import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.io.CountingOutputStream;
 
 /**
  * Provide base functionality to write a TCP based OutputWriter.
@@ -52,10 +54,12 @@ import org.jmxtrans.core.results.QueryResult;
  * connections instead.
  */
 @ThreadSafe
-public class TcpOutputWriter<T extends WriterBasedOutputWriter> implements BatchedOutputWriter {
+public class TcpOutputWriter<T extends WriterBasedOutputWriter> implements BatchedOutputWriter, ByteCountingOutputWriter {
 
     @Nonnull private final ThreadLocal<BufferedWriter> threadLocalWriter = new ThreadLocal<>();
     @Nonnull private final ThreadLocal<Socket> threadLocalSocket = new ThreadLocal<>();
+    @Nonnull private final ThreadLocal<CountingOutputStream> threadLocalCounter = new ThreadLocal<>();
+    @Nonnull private final AtomicLong bytesWritten = new AtomicLong();
     @Nonnull private final InetSocketAddress server;
     @Nonnull private final Charset charset;
     private final int socketTimeoutMillis;
@@ -118,7 +122,9 @@ public class TcpOutputWriter<T extends WriterBasedOutputWriter> implements Batch
         Socket socket = new Socket();
         socket.setKeepAlive(false);
         socket.connect(serverAddress, socketTimeoutMillis);
-        threadLocalWriter.set(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), charset)));
+        CountingOutputStream out = new CountingOutputStream(socket.getOutputStream());
+        threadLocalCounter.set(out);
+        threadLocalWriter.set(new BufferedWriter(new OutputStreamWriter(out, charset)));
     }
 
     private void releaseSocket() throws IOException {
@@ -126,9 +132,24 @@ public class TcpOutputWriter<T extends WriterBasedOutputWriter> implements Batch
              BufferedWriter writer = threadLocalWriter.get()) {
             threadLocalWriter.remove();
             threadLocalSocket.remove();
+        } finally {
+            countBytesWritten();
         }
     }
 
+    private void countBytesWritten() {
+        CountingOutputStream counter = threadLocalCounter.get();
+        if (counter != null) {
+            bytesWritten.addAndGet(counter.getCount());
+            threadLocalCounter.remove();
+        }
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
     @Override
     public int afterBatch() throws IOException {
         releaseSocket();
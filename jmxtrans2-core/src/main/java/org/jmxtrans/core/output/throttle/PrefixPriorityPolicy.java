@@ -0,0 +1,69 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.throttle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.jmxtrans.core.results.QueryResult;
+
+/**
+ * Results are prioritized by the prefix of their name. The first prefix has the highest priority, results not matching
+ * any prefix have the lowest.
+ *
+ * Lower priority results are only admitted while the rate limiter keeps a reserve proportional to their priority
+ * level, so when traffic increases they are shed first and higher priority results can still use the whole burst.
+ */
+@Immutable
+public class PrefixPriorityPolicy implements SheddingPolicy {
+
+    @Nonnull private final List<String> prefixes;
+
+    public PrefixPriorityPolicy(@Nonnull List<String> prefixes) {
+        this.prefixes = new ArrayList<>(prefixes);
+    }
+
+    @Override
+    public boolean admit(@Nonnull QueryResult result, long size, @Nonnull RateLimiter rateLimiter) {
+        return rateLimiter.tryAcquire(size, getReserveFraction(result.getName()));
+    }
+
+    double getReserveFraction(@Nonnull String name) {
+        return (double) getPriority(name) / (prefixes.size() + 1);
+    }
+
+    private int getPriority(@Nonnull String name) {
+        for (int i = 0; i < prefixes.size(); i++) {
+            if (name.startsWith(prefixes.get(i))) return i;
+        }
+        return prefixes.size();
+    }
+
+    @Override
+    public String toString() {
+        return "priority" + prefixes;
+    }
+}
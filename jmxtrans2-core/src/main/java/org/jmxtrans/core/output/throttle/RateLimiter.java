@@ -0,0 +1,116 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.throttle;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.utils.time.Clock;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Token bucket limiting both the number of points and the number of bytes sent per second.
+ *
+ * Each bucket holds up to {@code burstSeconds} worth of traffic, so short bursts above the configured rate are
+ * accepted. A limit of 0 or less means unlimited.
+ */
+@ThreadSafe
+public class RateLimiter {
+
+    private static final double NANOS_PER_SECOND = SECONDS.toNanos(1);
+
+    @Nonnull private final Clock clock;
+    @Nullable @GuardedBy("this") private final Bucket points;
+    @Nullable @GuardedBy("this") private final Bucket bytes;
+
+    public RateLimiter(@Nonnull Clock clock, double pointsPerSecond, double bytesPerSecond, double burstSeconds) {
+        this.clock = clock;
+        long now = clock.nanoTime();
+        this.points = pointsPerSecond > 0 ? new Bucket(pointsPerSecond, burstSeconds, now) : null;
+        this.bytes = bytesPerSecond > 0 ? new Bucket(bytesPerSecond, burstSeconds, now) : null;
+    }
+
+    /**
+     * Try to acquire tokens for one point of {@code size} bytes.
+     *
+     * @param reserveFraction fraction of the bucket capacity that must remain available after acquisition. Used to
+     *                        keep room for higher priority points.
+     */
+    public synchronized boolean tryAcquire(long size, double reserveFraction) {
+        long now = clock.nanoTime();
+        if (points != null && !points.canConsume(1, reserveFraction, now)) return false;
+        if (bytes != null && !bytes.canConsume(size, reserveFraction, now)) return false;
+        if (points != null) points.consume(1);
+        if (bytes != null) bytes.consume(size);
+        return true;
+    }
+
+    /**
+     * @return the fraction of the offered traffic that can be sent without exceeding the limits.
+     */
+    public double getAdmissibleFraction(long offeredPoints, long offeredBytes, double elapsedSeconds) {
+        double fraction = 1;
+        if (points != null && offeredPoints > 0) {
+            fraction = Math.min(fraction, points.ratePerSecond * elapsedSeconds / offeredPoints);
+        }
+        if (bytes != null && offeredBytes > 0) {
+            fraction = Math.min(fraction, bytes.ratePerSecond * elapsedSeconds / offeredBytes);
+        }
+        return fraction;
+    }
+
+    @NotThreadSafe
+    private static final class Bucket {
+        private final double ratePerSecond;
+        private final double capacity;
+        private double tokens;
+        private long lastRefillNanos;
+
+        private Bucket(double ratePerSecond, double burstSeconds, long now) {
+            this.ratePerSecond = ratePerSecond;
+            this.capacity = Math.max(1, ratePerSecond * burstSeconds);
+            this.tokens = capacity;
+            this.lastRefillNanos = now;
+        }
+
+        private boolean canConsume(long amount, double reserveFraction, long now) {
+            refill(now);
+            return tokens - amount >= capacity * reserveFraction;
+        }
+
+        private void consume(long amount) {
+            tokens -= amount;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefillNanos;
+            if (elapsed <= 0) return;
+            tokens = Math.min(capacity, tokens + elapsed * ratePerSecond / NANOS_PER_SECOND);
+            lastRefillNanos = now;
+        }
+    }
+}
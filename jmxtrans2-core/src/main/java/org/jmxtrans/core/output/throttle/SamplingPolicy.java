@@ -0,0 +1,87 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.throttle;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.time.Clock;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * When the offered traffic is above the limit, results are randomly sampled so that all series lose the same
+ * proportion of points, instead of dropping whatever arrives last.
+ *
+ * The sampling probability is recomputed every second from the traffic offered during the previous second.
+ */
+@ThreadSafe
+public class SamplingPolicy implements SheddingPolicy {
+
+    private static final long WINDOW_NANOS = SECONDS.toNanos(1);
+
+    @Nonnull private final Clock clock;
+
+    @GuardedBy("this") private long windowStartNanos;
+    @GuardedBy("this") private long offeredPoints;
+    @GuardedBy("this") private long offeredBytes;
+    private volatile double probability = 1;
+
+    public SamplingPolicy(@Nonnull Clock clock) {
+        this.clock = clock;
+        this.windowStartNanos = clock.nanoTime();
+    }
+
+    @Override
+    public boolean admit(@Nonnull QueryResult result, long size, @Nonnull RateLimiter rateLimiter) {
+        offer(size, rateLimiter);
+        if (ThreadLocalRandom.current().nextDouble() >= probability) return false;
+        return rateLimiter.tryAcquire(size, 0);
+    }
+
+    private synchronized void offer(long size, @Nonnull RateLimiter rateLimiter) {
+        long now = clock.nanoTime();
+        long elapsed = now - windowStartNanos;
+        if (elapsed >= WINDOW_NANOS) {
+            probability = rateLimiter.getAdmissibleFraction(offeredPoints, offeredBytes, (double) elapsed / WINDOW_NANOS);
+            windowStartNanos = now;
+            offeredPoints = 0;
+            offeredBytes = 0;
+        }
+        offeredPoints++;
+        offeredBytes += size;
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    @Override
+    public String toString() {
+        return "sample";
+    }
+}
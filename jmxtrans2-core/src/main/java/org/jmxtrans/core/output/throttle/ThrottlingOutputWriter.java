@@ -0,0 +1,200 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.throttle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.monitoring.NestedMBeans;
+import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.time.Clock;
+
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+
+import static org.jmxtrans.utils.ConfigurationUtils.getDouble;
+import static org.jmxtrans.utils.ConfigurationUtils.getString;
+
+/**
+ * Limits the rate of results sent to an output writer, shedding results according to a {@link SheddingPolicy} when
+ * the limit is reached. Shed results are counted, not silently lost.
+ *
+ * A warning is logged once per shedding episode: an episode ends after a full second without any result being shed,
+ * so that results admitted in between sheds do not make the warning repeat.
+ */
+@ThreadSafe
+public class ThrottlingOutputWriter implements OutputWriter, ThrottlingOutputWriterMBean, NestedMBeans, Closeable {
+
+    public static final String SETTING_MAX_POINTS_PER_SECOND = "maxPointsPerSecond";
+    public static final String SETTING_MAX_BYTES_PER_SECOND = "maxBytesPerSecond";
+    public static final String SETTING_BURST_SECONDS = "burstSeconds";
+    public static final double SETTING_BURST_SECONDS_DEFAULT_VALUE = 1;
+    public static final String SETTING_SHEDDING_POLICY = "sheddingPolicy";
+    public static final String SETTING_PRIORITY_PREFIXES = "priorityPrefixes";
+
+    private static final long SHEDDING_EPISODE_END_MILLIS = 1000;
+    private static final long NEVER_SHED = -1;
+
+    @Nonnull private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    @Nonnull private final OutputWriter delegate;
+    @Nonnull private final RateLimiter rateLimiter;
+    @Nonnull private final SheddingPolicy sheddingPolicy;
+    @Nonnull private final Clock clock;
+
+    @Nonnull private final AtomicLong admittedCount = new AtomicLong();
+    @Nonnull private final AtomicLong shedCount = new AtomicLong();
+    @Nonnull private final AtomicLong shedBytes = new AtomicLong();
+    @Nonnull private final AtomicLong sheddingEpisodeCount = new AtomicLong();
+    @Nonnull private final AtomicLong lastShedMillis = new AtomicLong(NEVER_SHED);
+
+    public ThrottlingOutputWriter(
+            @Nonnull OutputWriter delegate,
+            @Nonnull RateLimiter rateLimiter,
+            @Nonnull SheddingPolicy sheddingPolicy,
+            @Nonnull Clock clock) {
+        this.delegate = delegate;
+        this.rateLimiter = rateLimiter;
+        this.sheddingPolicy = sheddingPolicy;
+        this.clock = clock;
+    }
+
+    @Override
+    public int write(@Nonnull QueryResult result) throws IOException {
+        long size = estimateSize(result);
+        if (!sheddingPolicy.admit(result, size, rateLimiter)) {
+            shedCount.incrementAndGet();
+            shedBytes.addAndGet(size);
+            long now = clock.currentTimeMillis();
+            long previousShed = lastShedMillis.getAndSet(now);
+            if (previousShed == NEVER_SHED || now - previousShed >= SHEDDING_EPISODE_END_MILLIS) {
+                sheddingEpisodeCount.incrementAndGet();
+                logger.warn(format("Rate limit reached for output writer [%s], shedding results with policy [%s].", delegate, sheddingPolicy));
+            }
+            return 0;
+        }
+        admittedCount.incrementAndGet();
+        return delegate.write(result);
+    }
+
+    /**
+     * Estimated size of the result in a plain text protocol ({@code name value timestamp\n}). Output writers encode
+     * results differently, but this is good enough to protect the backend.
+     */
+    static long estimateSize(@Nonnull QueryResult result) {
+        return result.getName().length() + Objects.toString(result.getValue()).length() + 12;
+    }
+
+    @Override
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    @Override
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    @Override
+    public long getShedBytes() {
+        return shedBytes.get();
+    }
+
+    @Override
+    public long getSheddingEpisodeCount() {
+        return sheddingEpisodeCount.get();
+    }
+
+    @Override
+    public String getSheddingPolicy() {
+        return sheddingPolicy.toString();
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Object> getNestedMBeans() {
+        Map<String, Object> mBeans = new HashMap<>();
+        if (delegate instanceof NestedMBeans) mBeans.putAll(((NestedMBeans) delegate).getNestedMBeans());
+        mBeans.put("throttling", this);
+        return mBeans;
+    }
+
+    /**
+     * Closes the delegate if it holds resources (threads, connections), once the writer is removed from the
+     * configuration.
+     */
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) ((Closeable) delegate).close();
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+
+    /**
+     * Wraps the output writer if a points per second or bytes per second limit is configured, returns it unchanged
+     * otherwise.
+     */
+    @Nonnull
+    public static OutputWriter throttle(@Nonnull Clock clock, @Nonnull OutputWriter target, @Nonnull Map<String, String> settings) {
+        double pointsPerSecond = getDouble(settings, SETTING_MAX_POINTS_PER_SECOND, 0);
+        double bytesPerSecond = getDouble(settings, SETTING_MAX_BYTES_PER_SECOND, 0);
+        if (pointsPerSecond <= 0 && bytesPerSecond <= 0) return target;
+
+        RateLimiter rateLimiter = new RateLimiter(
+                clock,
+                pointsPerSecond,
+                bytesPerSecond,
+                getDouble(settings, SETTING_BURST_SECONDS, SETTING_BURST_SECONDS_DEFAULT_VALUE));
+        return new ThrottlingOutputWriter(target, rateLimiter, createSheddingPolicy(clock, settings), clock);
+    }
+
+    @Nonnull
+    private static SheddingPolicy createSheddingPolicy(@Nonnull Clock clock, @Nonnull Map<String, String> settings) {
+        String policy = getString(settings, SETTING_SHEDDING_POLICY, "dropNewest");
+        switch (policy) {
+            case "dropNewest":
+                return new DropNewestPolicy();
+            case "priority":
+                String prefixes = getString(settings, SETTING_PRIORITY_PREFIXES, "");
+                return new PrefixPriorityPolicy(asList(prefixes.trim().isEmpty() ? new String[0] : prefixes.trim().split("\\s*,\\s*")));
+            case "sample":
+                return new SamplingPolicy(clock);
+            default:
+                throw new IllegalArgumentException(format(
+                        "Setting '%s=%s' is not one of dropNewest, priority or sample", SETTING_SHEDDING_POLICY, policy));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.writers;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.output.support.TcpOutputWriter;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.time.Clock;
+
+import lombok.Getter;
+
+import static java.lang.String.format;
+
+/**
+ * One of the carbon nodes a {@link ShardedGraphiteOutputWriter} sends metrics to.
+ *
+ * When writing to the endpoint fails, it is considered unavailable for {@code downtimeMillis}, during which its
+ * metrics are sent to the next node of the ring.
+ */
+@ThreadSafe
+public class GraphiteEndpoint implements GraphiteEndpointMBean {
+
+    @Nonnull private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    @Nonnull @Getter private final String host;
+    @Getter private final int port;
+    @Nullable private final String instance;
+    @Nonnull private final TcpOutputWriter<GraphiteOutputWriter> writer;
+    @Nonnull private final Clock clock;
+    private final long downtimeMillis;
+
+    private volatile long unavailableUntil = 0;
+    @Nonnull private final AtomicLong sentCount = new AtomicLong();
+    @Nonnull private final AtomicLong failoverCount = new AtomicLong();
+    @Nonnull private final AtomicLong failureCount = new AtomicLong();
+
+    public GraphiteEndpoint(
+            @Nonnull String host,
+            int port,
+            @Nullable String instance,
+            @Nonnull TcpOutputWriter<GraphiteOutputWriter> writer,
+            @Nonnull Clock clock,
+            long downtimeMillis) {
+        this.host = host;
+        this.port = port;
+        this.instance = instance;
+        this.writer = writer;
+        this.clock = clock;
+        this.downtimeMillis = downtimeMillis;
+    }
+
+    /**
+     * @return key of this endpoint on a carbon compatible {@link org.jmxtrans.core.output.support.ConsistentHashRing}.
+     */
+    @Nonnull
+    public String getRingKey() {
+        return format("('%s', %s)", host, instance == null ? "None" : "'" + instance + "'");
+    }
+
+    public void beforeBatch() throws IOException {
+        writer.beforeBatch();
+    }
+
+    public int write(@Nonnull QueryResult result, boolean failover) throws IOException {
+        try {
+            int count = writer.write(result);
+            sentCount.addAndGet(count);
+            if (failover) failoverCount.addAndGet(count);
+            return count;
+        } catch (IOException ioe) {
+            markUnavailable(ioe);
+            throw ioe;
+        }
+    }
+
+    public int afterBatch() throws IOException {
+        try {
+            return writer.afterBatch();
+        } catch (IOException ioe) {
+            markUnavailable(ioe);
+            throw ioe;
+        }
+    }
+
+    private void markUnavailable(@Nonnull IOException cause) {
+        failureCount.incrementAndGet();
+        unavailableUntil = clock.currentTimeMillis() + downtimeMillis;
+        logger.warn(format("Error writing to Graphite endpoint [%s], disabled until %s", this, new Timestamp(unavailableUntil)), cause);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return unavailableUntil <= clock.currentTimeMillis();
+    }
+
+    @Override
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    @Override
+    public long getFailoverCount() {
+        return failoverCount.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return writer.getBytesWritten();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port + (instance == null ? "" : ":" + instance);
+    }
+}
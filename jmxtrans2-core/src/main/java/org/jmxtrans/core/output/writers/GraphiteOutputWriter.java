@@ -36,6 +36,7 @@ import javax.annotation.concurrent.ThreadSafe;
 
 import org.jmxtrans.core.output.OutputWriterFactory;
 import org.jmxtrans.core.output.support.BatchingOutputWriter;
+import org.jmxtrans.core.output.support.RetryPolicy;
 import org.jmxtrans.core.output.support.TcpOutputWriter;
 import org.jmxtrans.core.output.support.WriterBasedOutputWriter;
 import org.jmxtrans.core.results.QueryResult;
@@ -56,8 +57,7 @@ public class GraphiteOutputWriter implements WriterBasedOutputWriter {
 
     @Override
     public int write(@Nonnull Writer writer, @Nonnull QueryResult result) throws IOException {
-        writer.write(buildMetricPathPrefix());
-        writer.write(result.getName());
+        writer.write(getMetricPath(result));
         writer.write(" ");
         writer.write(Objects.toString(result.getValue()));
         writer.write(" ");
@@ -65,6 +65,11 @@ public class GraphiteOutputWriter implements WriterBasedOutputWriter {
         return 1;
     }
 
+    @Nonnull
+    String getMetricPath(@Nonnull QueryResult result) {
+        return buildMetricPathPrefix() + result.getName();
+    }
+
     // TODO: rewriting the metric name is a job for the naming strategy, not for the output writers
     @Nonnull
     private String buildMetricPathPrefix() {
@@ -103,7 +108,8 @@ public class GraphiteOutputWriter implements WriterBasedOutputWriter {
                             server,
                             socketTimeoutMillis,
                             UTF_8,
-                            new GraphiteOutputWriter())
+                            new GraphiteOutputWriter()),
+                    RetryPolicy.fromSettings(settings)
             );
         }
     }
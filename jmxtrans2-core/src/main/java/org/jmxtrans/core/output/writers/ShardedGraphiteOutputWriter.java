@@ -0,0 +1,206 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.writers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.monitoring.NestedMBeans;
+import org.jmxtrans.core.output.OutputWriterFactory;
+import org.jmxtrans.core.output.support.BatchedOutputWriter;
+import org.jmxtrans.core.output.support.BatchingOutputWriter;
+import org.jmxtrans.core.output.support.ByteCountingOutputWriter;
+import org.jmxtrans.core.output.support.ConsistentHashRing;
+import org.jmxtrans.core.output.support.RetryPolicy;
+import org.jmxtrans.core.output.support.TcpOutputWriter;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.time.Clock;
+import org.jmxtrans.utils.time.SystemClock;
+
+import static java.lang.String.format;
+
+import static org.jmxtrans.utils.ConfigurationUtils.getInt;
+import static org.jmxtrans.utils.ConfigurationUtils.getLong;
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+/**
+ * Sends metrics to multiple carbon nodes, sharded by the consistent hash of the metric path.
+ *
+ * Hashing is compatible with carbon-relay's {@code consistent-hashing} relay method, so each series always lands on the
+ * same node as if it had gone through a carbon-relay. When a node is unavailable, its metrics are sent to the next node
+ * of the ring until it is available again.
+ */
+@ThreadSafe
+public class ShardedGraphiteOutputWriter implements BatchedOutputWriter, ByteCountingOutputWriter, NestedMBeans {
+
+    @Nonnull private final GraphiteOutputWriter graphiteOutputWriter;
+    @Nonnull private final List<GraphiteEndpoint> endpoints;
+    @Nonnull private final ConsistentHashRing<GraphiteEndpoint> ring;
+
+    public ShardedGraphiteOutputWriter(
+            @Nonnull GraphiteOutputWriter graphiteOutputWriter,
+            @Nonnull List<GraphiteEndpoint> endpoints,
+            int replicaCount) {
+        this.graphiteOutputWriter = graphiteOutputWriter;
+        this.endpoints = new ArrayList<>(endpoints);
+        Map<String, GraphiteEndpoint> nodes = new LinkedHashMap<>();
+        for (GraphiteEndpoint endpoint : endpoints) {
+            nodes.put(endpoint.getRingKey(), endpoint);
+        }
+        this.ring = new ConsistentHashRing<>(nodes, replicaCount);
+    }
+
+    @Override
+    public void beforeBatch() throws IOException {
+        for (GraphiteEndpoint endpoint : endpoints) {
+            endpoint.beforeBatch();
+        }
+    }
+
+    @Override
+    public int write(@Nonnull QueryResult result) throws IOException {
+        List<GraphiteEndpoint> candidates = ring.getNodes(graphiteOutputWriter.getMetricPath(result));
+        IOException lastFailure = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            GraphiteEndpoint endpoint = candidates.get(i);
+            if (!endpoint.isAvailable()) continue;
+            try {
+                return endpoint.write(result, i > 0);
+            } catch (IOException ioe) {
+                lastFailure = ioe;
+            }
+        }
+        if (lastFailure != null) throw lastFailure;
+        // all endpoints are disabled, last resort is to try the primary one
+        return candidates.get(0).write(result, false);
+    }
+
+    @Override
+    public int afterBatch() throws IOException {
+        int count = 0;
+        IOException firstFailure = null;
+        for (GraphiteEndpoint endpoint : endpoints) {
+            try {
+                count += endpoint.afterBatch();
+            } catch (IOException ioe) {
+                if (firstFailure == null) firstFailure = ioe;
+            }
+        }
+        if (firstFailure != null) throw firstFailure;
+        return count;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        long bytesWritten = 0;
+        for (GraphiteEndpoint endpoint : endpoints) {
+            bytesWritten += endpoint.getBytesWritten();
+        }
+        return bytesWritten;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Object> getNestedMBeans() {
+        Map<String, Object> mBeans = new LinkedHashMap<>();
+        for (GraphiteEndpoint endpoint : endpoints) {
+            mBeans.put("endpoint-" + endpoint, endpoint);
+        }
+        return mBeans;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedGraphiteOutputWriter" + endpoints;
+    }
+
+    public static class Factory implements OutputWriterFactory<BatchingOutputWriter<ShardedGraphiteOutputWriter>> {
+        @Nonnull
+        @Override
+        public BatchingOutputWriter<ShardedGraphiteOutputWriter> create(@Nonnull Map<String, String> settings) {
+            String endpointsSetting = settings.get("endpoints");
+            if (endpointsSetting == null) throw new IllegalArgumentException("endpoints can't be null");
+            int socketTimeoutMillis = getInt(settings, "socketTimeoutMillis", 2000);
+            int batchSize = getInt(settings, "batchSize", 100);
+            int replicaCount = getInt(settings, "replicaCount", 100);
+            long downtimeMillis = getLong(settings, "endpointDowntimeMillis", 30000);
+
+            GraphiteOutputWriter graphiteOutputWriter = new GraphiteOutputWriter();
+            Clock clock = new SystemClock();
+
+            List<GraphiteEndpoint> endpoints = new ArrayList<>();
+            for (String endpoint : endpointsSetting.split("[,\\s]+")) {
+                if (endpoint.isEmpty()) continue;
+                endpoints.add(parseEndpoint(endpoint, graphiteOutputWriter, socketTimeoutMillis, clock, downtimeMillis));
+            }
+            if (endpoints.isEmpty()) throw new IllegalArgumentException("At least one endpoint is required");
+
+            return new BatchingOutputWriter<>(
+                    batchSize,
+                    new ShardedGraphiteOutputWriter(graphiteOutputWriter, endpoints, replicaCount),
+                    RetryPolicy.fromSettings(settings));
+        }
+
+        /**
+         * Endpoints are specified as carbon destinations: {@code host:port[:instance]}.
+         */
+        @Nonnull
+        private GraphiteEndpoint parseEndpoint(
+                @Nonnull String endpoint,
+                @Nonnull GraphiteOutputWriter graphiteOutputWriter,
+                int socketTimeoutMillis,
+                @Nonnull Clock clock,
+                long downtimeMillis) {
+            String[] parts = endpoint.split(":");
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException(format("Endpoint '%s' should be in the form host:port[:instance]", endpoint));
+            }
+            String host = parts[0];
+            int port;
+            try {
+                port = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(format("Port of endpoint '%s' is not an integer", endpoint));
+            }
+            String instance = parts.length == 3 ? parts[2] : null;
+            return new GraphiteEndpoint(
+                    host,
+                    port,
+                    instance,
+                    new TcpOutputWriter<>(
+                            new InetSocketAddress(host, port),
+                            socketTimeoutMillis,
+                            UTF_8,
+                            graphiteOutputWriter),
+                    clock,
+                    downtimeMillis);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+
+import lombok.Getter;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Tracks the health of each server and its queries and logs slow collections.
+ *
+ * {@link TargetHealth} instances are created the first time a server is seen; create them upfront with
+ * {@link #getTargetHealth(Server)} to expose them as MBeans.
+ */
+@ThreadSafe
+public class CollectionMonitor {
+
+    @Nonnull private final ObjectNameFactory objectNameFactory = new ObjectNameFactory("collection");
+    @Nonnull private final ConcurrentMap<Server, TargetHealth> targets = new ConcurrentHashMap<>();
+    @Nonnull @Getter private final SlowQueryLog slowQueryLog;
+    private final int latencySampleSize;
+    @Nonnull private final AtomicLong completedCount = new AtomicLong();
+    @Nonnull private final AtomicLong droppedCount = new AtomicLong();
+
+    public CollectionMonitor(@Nonnull SlowQueryLog slowQueryLog, int latencySampleSize) {
+        this.slowQueryLog = slowQueryLog;
+        this.latencySampleSize = latencySampleSize;
+    }
+
+    @Nonnull
+    public TargetHealth getTargetHealth(@Nonnull Server server) {
+        TargetHealth health = targets.get(server);
+        if (health == null) {
+            TargetHealth created = createTargetHealth(server);
+            health = targets.putIfAbsent(server, created);
+            if (health == null) health = created;
+        }
+        return health;
+    }
+
+    /**
+     * Stops tracking a server that is no longer collected.
+     *
+     * @return the health of the server, to unregister its MBean, or null if the server was not tracked.
+     */
+    @Nullable
+    public TargetHealth remove(@Nonnull Server server) {
+        return targets.remove(server);
+    }
+
+    @Nonnull
+    public Collection<TargetHealth> getTargetHealths() {
+        return targets.values();
+    }
+
+    /**
+     * @return number of collections which ran, successfully or not.
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * @return number of collections dropped because their deadline passed before they started.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public void collected(@Nonnull Server server, @Nonnull Query query, long durationNanos, long endMillis, long deadline, int resultCount) {
+        completedCount.incrementAndGet();
+        boolean deadlineExceeded = endMillis > deadline;
+        TargetHealth health = getTargetHealth(server);
+        health.collected(query, durationNanos, endMillis, deadlineExceeded);
+        slowQueryLog.record(endMillis, health.getServer(), queryName(query), NANOSECONDS.toMillis(durationNanos),
+                deadlineExceeded, resultCount + " results");
+    }
+
+    public void connectFailed(@Nonnull Server server, @Nonnull Query query, long durationNanos, long endMillis, long deadline, @Nonnull Exception failure) {
+        completedCount.incrementAndGet();
+        boolean timeout = isTimeout(failure);
+        TargetHealth health = getTargetHealth(server);
+        health.connectFailed(query, durationNanos, failure, timeout);
+        slowQueryLog.record(endMillis, health.getServer(), queryName(query), NANOSECONDS.toMillis(durationNanos),
+                timeout || endMillis > deadline, "connection failed: " + failure);
+    }
+
+    public void collectionFailed(@Nonnull Server server, @Nonnull Query query, long durationNanos, long endMillis, long deadline, @Nonnull Exception failure) {
+        completedCount.incrementAndGet();
+        boolean timeout = isTimeout(failure);
+        TargetHealth health = getTargetHealth(server);
+        health.collectionFailed(query, durationNanos, failure, timeout);
+        slowQueryLog.record(endMillis, health.getServer(), queryName(query), NANOSECONDS.toMillis(durationNanos),
+                timeout || endMillis > deadline, "collection failed: " + failure);
+    }
+
+    public void deadlineMissed(@Nonnull Server server, @Nonnull Query query, long epochMillis) {
+        droppedCount.incrementAndGet();
+        TargetHealth health = getTargetHealth(server);
+        health.deadlineMissed(query);
+        slowQueryLog.record(epochMillis, health.getServer(), queryName(query), 0, true, "dropped, deadline passed before collection started");
+    }
+
+    /**
+     * Socket timeouts (connect or read) are reported as {@link InterruptedIOException}, possibly wrapped by JMX.
+     */
+    private static boolean isTimeout(@Nonnull Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException) return true;
+        }
+        return false;
+    }
+
+    @Nonnull
+    private TargetHealth createTargetHealth(@Nonnull Server server) {
+        List<Query> queries = new ArrayList<>();
+        List<String> queryNames = new ArrayList<>();
+        for (Query query : server.getQueries()) {
+            queries.add(query);
+            queryNames.add(queryName(query));
+        }
+        try {
+            return new TargetHealth(objectNameFactory.create(server.getName()), server.getName(), queries, queryNames, latencySampleSize);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("Names are sanitized by the object name factory", e);
+        }
+    }
+
+    @Nonnull
+    private static String queryName(@Nonnull Query query) {
+        if (query.getResultAlias() != null) return query.getResultAlias();
+        return String.valueOf(query.getId());
+    }
+}
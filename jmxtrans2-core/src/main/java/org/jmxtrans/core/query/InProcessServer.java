@@ -43,6 +43,12 @@ public class InProcessServer implements Server {
         return null;
     }
 
+    @Nonnull
+    @Override
+    public String getName() {
+        return "in-process";
+    }
+
     @Nonnull
     @Override
     public MBeanServerConnection getServerConnection() throws Exception {
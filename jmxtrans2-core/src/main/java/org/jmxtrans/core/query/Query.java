@@ -40,6 +40,7 @@ import javax.management.ObjectName;
 
 import org.jmxtrans.core.log.Logger;
 import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.monitoring.EventRecorder;
 import org.jmxtrans.core.monitoring.ObjectNameFactory;
 import org.jmxtrans.core.monitoring.SelfNamedMBean;
 import org.jmxtrans.core.results.QueryResult;
@@ -112,6 +113,16 @@ public class Query implements QueryMBean, SelfNamedMBean {
     }
 
     public Iterable<QueryResult> collectMetrics(@Nonnull MBeanServerConnection mbeanServer, @Nonnull ResultNameStrategy resultNameStrategy) throws IOException {
+        return collectMetrics(mbeanServer, resultNameStrategy, EventRecorder.QueryExecution.NONE);
+    }
+
+    /**
+     * Collect metrics, reporting the number of MBeans matching this query to the given execution.
+     */
+    public Iterable<QueryResult> collectMetrics(
+            @Nonnull MBeanServerConnection mbeanServer,
+            @Nonnull ResultNameStrategy resultNameStrategy,
+            @Nonnull EventRecorder.QueryExecution execution) throws IOException {
         Collection<QueryResult> results = new ArrayList<>();
         try (NanoChronometer chrono = metrics.collectionDurationChronometer()) {
             /*
@@ -121,6 +132,7 @@ public class Query implements QueryMBean, SelfNamedMBean {
              */
             Set<ObjectName> matchingObjectNames = mbeanServer.queryNames(this.objectName, null);
             logger.debug(format("Query %s returned %s", objectName, matchingObjectNames));
+            execution.matched(matchingObjectNames.size());
 
             for (ObjectName matchingObjectName : matchingObjectNames) {
                 try {
@@ -144,6 +156,14 @@ public class Query implements QueryMBean, SelfNamedMBean {
         }
     }
 
+    /**
+     * @return the {@link ObjectName} (possibly a pattern) of the MBeans collected by this query.
+     */
+    @Nonnull
+    public ObjectName getObjectNamePattern() {
+        return objectName;
+    }
+
     @Nonnull
     public Collection<QueryAttribute> getQueryAttributes() {
         return attributesByName.values();
@@ -135,8 +135,9 @@ public class QueryAttribute {
             collectCompositeData(objectName, results, query, resultNameStrategy, compositeData, maxResults);
         } else if (value instanceof Number || value instanceof String || value instanceof Date) {
             collectScalar(objectName, value, results, query, resultNameStrategy);
+        } else {
+            logger.info(format("Ignore non CompositeData attribute value %s:%s:%s=%s", query, objectName, this, value));
         }
-        logger.info(format("Ignore non CompositeData attribute value %s:%s:%s=%s", query, objectName, this, value));
     }
 
     private void collectScalar(
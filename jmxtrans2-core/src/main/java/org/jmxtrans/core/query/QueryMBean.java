@@ -26,15 +26,20 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.management.ObjectName;
 
+import org.jmxtrans.core.monitoring.MonotonicCounter;
+
 /**
  * @author <a href="mailto:cleclerc@xebia.fr">Cyrille Le Clerc</a>
  */
 public interface QueryMBean {
 
+    @MonotonicCounter
     int getCollectedMetricsCount();
 
+    @MonotonicCounter
     long getCollectionDurationInNanos();
 
+    @MonotonicCounter
     int getCollectionCount();
 
     @Nullable
@@ -0,0 +1,185 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServerConnection;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+/**
+ * Exposes metrics that are not collected over JMX (performance counters, /proc files, Jolokia agents, ...) as read only MBeans, so
+ * that they are collected by the usual {@link Query}.
+ *
+ * Only {@link #queryNames(ObjectName, QueryExp)} and {@link #getAttributes(ObjectName, String[])} are needed by
+ * queries, the other read methods are derived from them and write methods are not supported.
+ */
+public abstract class ReadOnlyMBeanServerConnection implements MBeanServerConnection {
+
+    @Override
+    public abstract Set<ObjectName> queryNames(@Nullable ObjectName name, @Nullable QueryExp query) throws IOException;
+
+    @Override
+    public abstract AttributeList getAttributes(@Nonnull ObjectName name, @Nonnull String[] attributes) throws IOException;
+
+    @Override
+    public Set<ObjectInstance> queryMBeans(@Nullable ObjectName name, @Nullable QueryExp query) throws IOException {
+        Set<ObjectInstance> instances = new LinkedHashSet<>();
+        for (ObjectName objectName : queryNames(name, query)) {
+            instances.add(new ObjectInstance(objectName, getClass().getName()));
+        }
+        return instances;
+    }
+
+    @Override
+    public ObjectInstance getObjectInstance(@Nonnull ObjectName name) throws IOException {
+        return new ObjectInstance(name, getClass().getName());
+    }
+
+    @Override
+    public boolean isRegistered(@Nonnull ObjectName name) throws IOException {
+        return !queryNames(name, null).isEmpty();
+    }
+
+    @Override
+    public Integer getMBeanCount() throws IOException {
+        return queryNames(null, null).size();
+    }
+
+    @Override
+    public Object getAttribute(@Nonnull ObjectName name, @Nonnull String attribute) throws AttributeNotFoundException, IOException {
+        for (Attribute found : getAttributes(name, new String[] { attribute }).asList()) {
+            return found.getValue();
+        }
+        throw new AttributeNotFoundException(attribute + " of " + name);
+    }
+
+    @Override
+    public String[] getDomains() throws IOException {
+        Set<String> domains = new LinkedHashSet<>();
+        for (ObjectName objectName : queryNames(null, null)) domains.add(objectName.getDomain());
+        return domains.toArray(new String[domains.size()]);
+    }
+
+    @Override
+    public String getDefaultDomain() {
+        throw unsupported();
+    }
+
+    @Override
+    public ObjectInstance createMBean(String className, ObjectName name) {
+        throw unsupported();
+    }
+
+    @Override
+    public ObjectInstance createMBean(String className, ObjectName name, ObjectName loaderName) {
+        throw unsupported();
+    }
+
+    @Override
+    public ObjectInstance createMBean(String className, ObjectName name, Object[] params, String[] signature) {
+        throw unsupported();
+    }
+
+    @Override
+    public ObjectInstance createMBean(String className, ObjectName name, ObjectName loaderName, Object[] params, String[] signature) {
+        throw unsupported();
+    }
+
+    @Override
+    public void unregisterMBean(ObjectName name) {
+        throw unsupported();
+    }
+
+    @Override
+    public void setAttribute(ObjectName name, Attribute attribute) {
+        throw unsupported();
+    }
+
+    @Override
+    public AttributeList setAttributes(ObjectName name, AttributeList attributes) {
+        throw unsupported();
+    }
+
+    @Override
+    public Object invoke(ObjectName name, String operationName, Object[] params, String[] signature) {
+        throw unsupported();
+    }
+
+    @Override
+    public void addNotificationListener(ObjectName name, NotificationListener listener, NotificationFilter filter, Object handback) {
+        throw unsupported();
+    }
+
+    @Override
+    public void addNotificationListener(ObjectName name, ObjectName listener, NotificationFilter filter, Object handback) {
+        throw unsupported();
+    }
+
+    @Override
+    public void removeNotificationListener(ObjectName name, ObjectName listener) {
+        throw unsupported();
+    }
+
+    @Override
+    public void removeNotificationListener(ObjectName name, ObjectName listener, NotificationFilter filter, Object handback) {
+        throw unsupported();
+    }
+
+    @Override
+    public void removeNotificationListener(ObjectName name, NotificationListener listener) {
+        throw unsupported();
+    }
+
+    @Override
+    public void removeNotificationListener(ObjectName name, NotificationListener listener, NotificationFilter filter, Object handback) {
+        throw unsupported();
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo(ObjectName name) {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isInstanceOf(ObjectName name, String className) {
+        throw unsupported();
+    }
+
+    @Nonnull
+    private UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException(getClass().getSimpleName() + " is read only");
+    }
+}
@@ -22,15 +22,23 @@
  */
 package org.jmxtrans.core.query;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
 import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.remote.JMXConnectionNotification;
 import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
@@ -45,29 +53,48 @@ import static javax.naming.Context.SECURITY_PRINCIPAL;
 
 import static org.jmxtrans.utils.Preconditions2.checkNotEmpty;
 
-public class RemoteServer implements Server {
+/**
+ * A server collected over a JMX connector.
+ *
+ * The connector is opened on first collection and shared by the queries of the server, it is opened again once it
+ * failed or was closed by the other side. Closing the server, once it is no longer collected, closes the connector.
+ *
+ * Copies collecting other queries, made with {@link #withQueries(Iterable)}, share the connector of the server they
+ * were made from: closing any of them closes it for all.
+ */
+@ThreadSafe
+public class RemoteServer implements Server, Closeable {
 
+    @Nullable private final String name;
     @Nullable private final String host;
-    @Nonnull private final JMXServiceURL url;
+    @Nullable private final Integer port;
+    @Nonnull @Getter private final JMXServiceURL url;
     @Nullable private final String username;
     @Nullable private final String password;
     @Nullable private final String protocolProviderPackages;
     @Nonnull @Getter
     private final Iterable<Query> queries;
+    @Nonnull private final Connection connection;
 
     private RemoteServer(
+            @Nullable String name,
             @Nullable String host,
+            @Nullable Integer port,
             @Nonnull JMXServiceURL url,
             @Nullable String username,
             @Nullable String password,
             @Nullable String protocolProviderPackages,
-            @Nonnull Iterable<Query> queries) {
+            @Nonnull Iterable<Query> queries,
+            @Nonnull Connection connection) {
+        this.name = name;
         this.host = host;
+        this.port = port;
         this.url = url;
         this.username = username;
         this.password = password;
         this.protocolProviderPackages = protocolProviderPackages;
         this.queries = queries;
+        this.connection = connection;
     }
 
     @Nullable
@@ -77,6 +104,18 @@ public class RemoteServer implements Server {
         return host;
     }
 
+    /**
+     * @return the name the server was built with, {@code host:port} for servers built from a host and a port, the
+     * JMX URL otherwise.
+     */
+    @Nonnull
+    @Override
+    public String getName() {
+        if (name != null) return name;
+        if (port != null && getHost() != null) return getHost() + ":" + port;
+        return url.toString();
+    }
+
     @Nonnull
     private Map<String, ?> getEnvironment() {
         if (protocolProviderPackages != null && protocolProviderPackages.contains("weblogic")) {
@@ -110,9 +149,33 @@ public class RemoteServer implements Server {
     }
 
     @Override
-    public MBeanServerConnection getServerConnection() throws Exception {
-        // FIXME: closing of JMXConnector is not done
-        return JMXConnectorFactory.connect(url, this.getEnvironment()).getMBeanServerConnection();
+    public MBeanServerConnection getServerConnection() throws IOException {
+        return connection.get(this);
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+
+    /**
+     * @return a server sharing the connector of this one, but collecting other queries.
+     */
+    @Nonnull
+    public RemoteServer withQueries(@Nonnull Iterable<Query> queries) {
+        return new RemoteServer(name, host, port, url, username, password, protocolProviderPackages, queries, connection);
+    }
+
+    /**
+     * @return true if both servers have the same name and connect to the same JMX URL with the same credentials,
+     * whatever their queries.
+     */
+    public boolean hasSameConnectionAs(@Nonnull RemoteServer other) {
+        return url.equals(other.url)
+                && Objects.equals(name, other.name)
+                && Objects.equals(username, other.username)
+                && Objects.equals(password, other.password)
+                && Objects.equals(protocolProviderPackages, other.protocolProviderPackages);
     }
 
     @Nonnull
@@ -121,6 +184,7 @@ public class RemoteServer implements Server {
     }
 
     public static class Builder {
+        @Nullable private String name;
         @Nullable private JMXServiceURL url;
         @Nullable private String host;
         @Nullable private Integer port;
@@ -139,6 +203,15 @@ public class RemoteServer implements Server {
             return this;
         }
 
+        /**
+         * @param name identifies the server when neither its host and port nor its URL do, local JVMs for example.
+         */
+        @Nonnull
+        public Builder withName(@Nullable String name) {
+            this.name = name;
+            return this;
+        }
+
         @Nonnull
         public Builder withHost(@Nullable String host) {
             this.host = host;
@@ -179,12 +252,15 @@ public class RemoteServer implements Server {
         @Nonnull
         public RemoteServer build() throws MalformedURLException {
             return new RemoteServer(
+                    name,
                     host,
+                    url == null ? port : null,
                     computeUrl(),
                     username,
                     password,
                     protocolProviderPackages,
-                    queries
+                    queries,
+                    new Connection()
             );
         }
 
@@ -204,4 +280,44 @@ public class RemoteServer implements Server {
                             + "/jmxrmi");
         }
     }
+
+    /** The connector of a server and of its copies. */
+    @ThreadSafe
+    private static final class Connection {
+        @GuardedBy("this") @Nullable private JMXConnector connector;
+        @GuardedBy("this") private boolean closed;
+
+        @Nonnull
+        private synchronized MBeanServerConnection get(@Nonnull RemoteServer server) throws IOException {
+            if (closed) throw new IOException("Server " + server.getName() + " is closed");
+            if (connector == null) {
+                final JMXConnector connected = JMXConnectorFactory.connect(server.url, server.getEnvironment());
+                connected.addConnectionNotificationListener(new NotificationListener() {
+                    @Override
+                    public void handleNotification(Notification notification, Object handback) {
+                        if (JMXConnectionNotification.FAILED.equals(notification.getType())
+                                || JMXConnectionNotification.CLOSED.equals(notification.getType())) {
+                            disconnected(connected);
+                        }
+                    }
+                }, null, null);
+                connector = connected;
+            }
+            return connector.getMBeanServerConnection();
+        }
+
+        private synchronized void disconnected(@Nonnull JMXConnector disconnected) {
+            if (connector == disconnected) connector = null;
+        }
+
+        private synchronized void close() throws IOException {
+            closed = true;
+            if (connector == null) return;
+            try {
+                connector.close();
+            } finally {
+                connector = null;
+            }
+        }
+    }
 }
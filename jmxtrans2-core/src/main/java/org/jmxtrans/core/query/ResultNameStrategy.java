@@ -23,8 +23,10 @@
 package org.jmxtrans.core.query;
 
 import java.net.InetAddress;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.management.ObjectName;
@@ -45,11 +47,12 @@ public class ResultNameStrategy {
 
     private final Logger logger = LoggerFactory.getLogger(getClass().getName());
 
+    @Nonnull private final Map<String, String> expressions;
     @Nonnull private final ExpressionEvaluator expressionEvaluator;
     @Nonnull private final StringEscape stringEscape;
 
     public ResultNameStrategy() {
-        ExpressionEvaluator.Builder evaluatorsBuilder = ExpressionEvaluator.builder();
+        Map<String, String> localHostExpressions = new HashMap<>();
         try {
             InetAddress localHost = InetAddress.getLocalHost();
             String hostName = localHost.getHostName();
@@ -58,22 +61,40 @@ public class ResultNameStrategy {
             String reversedCanonicalHostName = StringUtils2.reverseTokens(canonicalHostName, ".");
             String hostAddress = localHost.getHostAddress();
 
-            evaluatorsBuilder
-                    .addExpression("hostname", hostName)
-                    .addExpression("reversed_hostname", reversedHostName)
-                    .addExpression("escaped_hostname", hostName.replaceAll("\\.", "_"))
-                    .addExpression("canonical_hostname", canonicalHostName)
-                    .addExpression("reversed_canonical_hostname", reversedCanonicalHostName)
-                    .addExpression("escaped_canonical_hostname", canonicalHostName.replaceAll("\\.", "_"))
-                    .addExpression("hostaddress", hostAddress)
-                    .addExpression("escaped_hostaddress", hostAddress.replaceAll("\\.", "_"));
+            localHostExpressions.put("hostname", hostName);
+            localHostExpressions.put("reversed_hostname", reversedHostName);
+            localHostExpressions.put("escaped_hostname", hostName.replaceAll("\\.", "_"));
+            localHostExpressions.put("canonical_hostname", canonicalHostName);
+            localHostExpressions.put("reversed_canonical_hostname", reversedCanonicalHostName);
+            localHostExpressions.put("escaped_canonical_hostname", canonicalHostName.replaceAll("\\.", "_"));
+            localHostExpressions.put("hostaddress", hostAddress);
+            localHostExpressions.put("escaped_hostaddress", hostAddress.replaceAll("\\.", "_"));
         } catch (Exception e) {
             logger.error("Exception resolving localhost, expressions like #hostname#, #canonical_hostname# or #hostaddress# will not be available", e);
         }
-        expressionEvaluator = evaluatorsBuilder.build();
+        expressions = localHostExpressions;
+        expressionEvaluator = ExpressionEvaluator.builder().addExpressions(expressions).build();
         stringEscape = new KeepAlphaNumericAndDots();
     }
 
+    private ResultNameStrategy(@Nonnull Map<String, String> expressions) {
+        this.expressions = expressions;
+        this.expressionEvaluator = ExpressionEvaluator.builder().addExpressions(expressions).build();
+        this.stringEscape = new KeepAlphaNumericAndDots();
+    }
+
+    /**
+     * @return a strategy that also resolves {@code #server#} to the name of the collected server and
+     * {@code #escaped_server#} to the same name with anything but letters and digits replaced by '_'.
+     */
+    @Nonnull
+    public ResultNameStrategy forServer(@Nonnull Server server) {
+        Map<String, String> serverExpressions = new HashMap<>(expressions);
+        serverExpressions.put("server", server.getName());
+        serverExpressions.put("escaped_server", server.getName().replaceAll("[^a-zA-Z0-9]", "_"));
+        return new ResultNameStrategy(serverExpressions);
+    }
+
     @Nonnull
     public String getResultName(@Nonnull Query query, @Nonnull ObjectName objectName, @Nonnull QueryAttribute queryAttribute) {
 
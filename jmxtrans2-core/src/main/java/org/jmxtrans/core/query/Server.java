@@ -30,6 +30,13 @@ public interface Server {
     @Nullable
     String getHost();
 
+    /**
+     * @return a name identifying this server among the collected servers, {@code host:port} for a remote server for
+     * example. Used to name monitoring MBeans and log entries.
+     */
+    @Nonnull
+    String getName();
+
     @Nonnull
     MBeanServerConnection getServerConnection() throws Exception;
 
@@ -0,0 +1,150 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.monitoring.SelfNamedMBean;
+
+import lombok.Getter;
+
+import static java.lang.String.format;
+
+import static org.jmxtrans.utils.Preconditions2.checkArgument;
+
+/**
+ * Bounded log of the collections which took longer than a threshold or missed their deadline.
+ *
+ * Only the last {@code capacity} entries are kept, older ones are overwritten.
+ */
+@ThreadSafe
+public class SlowQueryLog implements SlowQueryLogMBean, SelfNamedMBean {
+
+    @Nonnull private final ObjectName objectName;
+    @GuardedBy("this") @Nonnull private final Entry[] entries;
+    @GuardedBy("this") private int next;
+    @Getter private volatile long thresholdMillis;
+    @Nonnull private final AtomicLong slowQueryCount = new AtomicLong();
+
+    public SlowQueryLog(int capacity, long thresholdMillis) {
+        checkArgument(capacity > 0, "capacity must be strictly positive");
+        this.entries = new Entry[capacity];
+        this.thresholdMillis = thresholdMillis;
+        try {
+            this.objectName = new ObjectNameFactory("slowQueryLog").create("collection");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("Invalid slow query log object name", e);
+        }
+    }
+
+    /**
+     * Logs the collection if it is slow, or if it missed its deadline.
+     */
+    public void record(
+            long epochMillis,
+            @Nonnull String server,
+            @Nonnull String query,
+            long durationMillis,
+            boolean deadlineExceeded,
+            @Nonnull String outcome) {
+        if (durationMillis < thresholdMillis && !deadlineExceeded) return;
+        slowQueryCount.incrementAndGet();
+        Entry entry = new Entry(epochMillis, server, query, durationMillis, outcome);
+        synchronized (this) {
+            entries[next] = entry;
+            next = (next + 1) % entries.length;
+        }
+    }
+
+    @Override
+    public synchronized String[] getEntries() {
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry != null) count++;
+        }
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = entries[(next - 1 - i + entries.length) % entries.length].toString();
+        }
+        return result;
+    }
+
+    @Override
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    @Override
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueryCount.get();
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (int i = 0; i < entries.length; i++) entries[i] = null;
+        next = 0;
+    }
+
+    @Nonnull
+    @Override
+    public ObjectName getObjectName() throws MalformedObjectNameException {
+        return objectName;
+    }
+
+    @Immutable
+    @ThreadSafe
+    private static final class Entry {
+        private final long epochMillis;
+        @Nonnull private final String server;
+        @Nonnull private final String query;
+        private final long durationMillis;
+        @Nonnull private final String outcome;
+
+        private Entry(long epochMillis, @Nonnull String server, @Nonnull String query, long durationMillis, @Nonnull String outcome) {
+            this.epochMillis = epochMillis;
+            this.server = server;
+            this.query = query;
+            this.durationMillis = durationMillis;
+            this.outcome = outcome;
+        }
+
+        @Override
+        public String toString() {
+            return format("%tFT%<tT.%<tL server=%s query=%s duration=%dms outcome=%s",
+                    epochMillis, server, query, durationMillis, outcome);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.monitoring.SampleWindow;
+import org.jmxtrans.core.monitoring.SelfNamedMBean;
+
+import lombok.Getter;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Collection health of the queries of a single server: up / down state, failures and recent latencies.
+ *
+ * A query is up as long as its last collection succeeded, the server is up when all its queries are. Collections
+ * dropped because they missed their deadline before even starting are counted as timeouts but do not change the
+ * state of the query, the problem being on our side.
+ *
+ * Query sets can be shared by many servers, so the state of each query is kept in arrays indexed by the position of
+ * the query in the server, latencies included: a server costs a few longs plus a {@link SampleWindow} per query and a
+ * single MBean. Queries which are not part of the server are not tracked.
+ *
+ * Latency percentiles are exposed per query, in the order of {@link #getQueries()}. The server wide percentiles are
+ * the ones of its slowest query, so that a single slow query is not hidden by fast ones.
+ */
+@ThreadSafe
+public class TargetHealth implements TargetHealthMBean, SelfNamedMBean {
+
+    private static final int COLLECTIONS = 0;
+    private static final int CONNECT_FAILURES = 1;
+    private static final int COLLECTION_FAILURES = 2;
+    private static final int TIMEOUTS = 3;
+    private static final int CONSECUTIVE_FAILURES = 4;
+    private static final int COUNTERS = 5;
+
+    @Nonnull @Getter private final ObjectName objectName;
+    @Nonnull @Getter private final String server;
+    @Nonnull private final Query[] queries;
+    @Nonnull private final String[] queryNames;
+    @Nonnull private final SampleWindow[] latencies;
+
+    /** {@link #COUNTERS} counters per query. */
+    @Nonnull private final AtomicLongArray counters;
+    @Nonnull private final AtomicLongArray lastDurationsMillis;
+    @Nonnull private final AtomicLongArray lastSuccessesEpochMillis;
+    @Nonnull private final AtomicReferenceArray<String> lastErrors;
+
+    public TargetHealth(
+            @Nonnull ObjectName objectName,
+            @Nonnull String server,
+            @Nonnull List<Query> queries,
+            @Nonnull List<String> queryNames,
+            int latencySampleSize) {
+        this.objectName = objectName;
+        this.server = server;
+        this.queries = queries.toArray(new Query[queries.size()]);
+        this.queryNames = queryNames.toArray(new String[queryNames.size()]);
+        this.latencies = new SampleWindow[this.queries.length];
+        for (int i = 0; i < latencies.length; i++) latencies[i] = new SampleWindow(latencySampleSize);
+        this.counters = new AtomicLongArray(this.queries.length * COUNTERS);
+        this.lastDurationsMillis = new AtomicLongArray(this.queries.length);
+        this.lastSuccessesEpochMillis = new AtomicLongArray(this.queries.length);
+        this.lastErrors = new AtomicReferenceArray<>(this.queries.length);
+    }
+
+    public void collected(@Nonnull Query query, long durationNanos, long epochMillis, boolean deadlineExceeded) {
+        int index = indexOf(query);
+        if (index < 0) return;
+        recordDuration(index, durationNanos);
+        counters.incrementAndGet(index * COUNTERS + COLLECTIONS);
+        counters.set(index * COUNTERS + CONSECUTIVE_FAILURES, 0);
+        if (deadlineExceeded) counters.incrementAndGet(index * COUNTERS + TIMEOUTS);
+        lastSuccessesEpochMillis.set(index, epochMillis);
+    }
+
+    public void connectFailed(@Nonnull Query query, long durationNanos, @Nonnull Exception failure, boolean timeout) {
+        int index = indexOf(query);
+        if (index < 0) return;
+        counters.incrementAndGet(index * COUNTERS + CONNECT_FAILURES);
+        failed(index, durationNanos, failure, timeout);
+    }
+
+    public void collectionFailed(@Nonnull Query query, long durationNanos, @Nonnull Exception failure, boolean timeout) {
+        int index = indexOf(query);
+        if (index < 0) return;
+        counters.incrementAndGet(index * COUNTERS + COLLECTION_FAILURES);
+        failed(index, durationNanos, failure, timeout);
+    }
+
+    public void deadlineMissed(@Nonnull Query query) {
+        int index = indexOf(query);
+        if (index < 0) return;
+        counters.incrementAndGet(index * COUNTERS + TIMEOUTS);
+    }
+
+    private void failed(int index, long durationNanos, @Nonnull Exception failure, boolean timeout) {
+        recordDuration(index, durationNanos);
+        counters.incrementAndGet(index * COUNTERS + COLLECTIONS);
+        counters.incrementAndGet(index * COUNTERS + CONSECUTIVE_FAILURES);
+        if (timeout) counters.incrementAndGet(index * COUNTERS + TIMEOUTS);
+        lastErrors.set(index, failure.toString());
+    }
+
+    private void recordDuration(int index, long durationNanos) {
+        long durationMillis = NANOSECONDS.toMillis(durationNanos);
+        lastDurationsMillis.set(index, durationMillis);
+        latencies[index].record(durationMillis);
+    }
+
+    /**
+     * Servers have few queries, a linear scan is cheaper than a map entry per query.
+     */
+    private int indexOf(@Nonnull Query query) {
+        for (int i = 0; i < queries.length; i++) {
+            if (queries[i] == query) return i;
+        }
+        return -1;
+    }
+
+    private long sum(int counter) {
+        long sum = 0;
+        for (int i = 0; i < queries.length; i++) sum += counters.get(i * COUNTERS + counter);
+        return sum;
+    }
+
+    @Nonnull
+    @Override
+    public String[] getQueries() {
+        return queryNames.clone();
+    }
+
+    @Override
+    public boolean isUp() {
+        return getConsecutiveFailureCount() == 0;
+    }
+
+    @Nonnull
+    @Override
+    public String[] getDownQueries() {
+        List<String> down = new ArrayList<>();
+        for (int i = 0; i < queries.length; i++) {
+            if (counters.get(i * COUNTERS + CONSECUTIVE_FAILURES) > 0) down.add(queryNames[i]);
+        }
+        return down.toArray(new String[down.size()]);
+    }
+
+    @Override
+    public long getCollectionCount() {
+        return sum(COLLECTIONS);
+    }
+
+    @Override
+    public long getConnectFailureCount() {
+        return sum(CONNECT_FAILURES);
+    }
+
+    @Override
+    public long getCollectionFailureCount() {
+        return sum(COLLECTION_FAILURES);
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return sum(TIMEOUTS);
+    }
+
+    @Override
+    public long getConsecutiveFailureCount() {
+        long max = 0;
+        for (int i = 0; i < queries.length; i++) max = Math.max(max, counters.get(i * COUNTERS + CONSECUTIVE_FAILURES));
+        return max;
+    }
+
+    @Nonnull
+    @Override
+    public long[] getLastDurationsMillis() {
+        long[] durations = new long[queries.length];
+        for (int i = 0; i < queries.length; i++) durations[i] = lastDurationsMillis.get(i);
+        return durations;
+    }
+
+    @Override
+    public long getLastSuccessEpochMillis() {
+        long last = 0;
+        for (int i = 0; i < queries.length; i++) last = Math.max(last, lastSuccessesEpochMillis.get(i));
+        return last;
+    }
+
+    @Nonnull
+    @Override
+    public long[] getLastSuccessesEpochMillis() {
+        long[] successes = new long[queries.length];
+        for (int i = 0; i < queries.length; i++) successes[i] = lastSuccessesEpochMillis.get(i);
+        return successes;
+    }
+
+    @Nonnull
+    @Override
+    public String[] getLastErrors() {
+        String[] errors = new String[queries.length];
+        for (int i = 0; i < queries.length; i++) errors[i] = lastErrors.get(i);
+        return errors;
+    }
+
+    @Nullable
+    @Override
+    public String getLastError() {
+        String lastError = null;
+        for (int i = 0; i < queries.length && lastError == null; i++) {
+            if (counters.get(i * COUNTERS + CONSECUTIVE_FAILURES) > 0) lastError = lastErrors.get(i);
+        }
+        return lastError;
+    }
+
+    @Override
+    public long getLatencyP50Millis() {
+        return max(getLatencyP50sMillis());
+    }
+
+    @Override
+    public long getLatencyP99Millis() {
+        return max(getLatencyP99sMillis());
+    }
+
+    @Override
+    public long getLatencyMaxMillis() {
+        return max(getLatencyMaxesMillis());
+    }
+
+    @Nonnull
+    @Override
+    public long[] getLatencyP50sMillis() {
+        return percentiles(50);
+    }
+
+    @Nonnull
+    @Override
+    public long[] getLatencyP99sMillis() {
+        return percentiles(99);
+    }
+
+    @Nonnull
+    @Override
+    public long[] getLatencyMaxesMillis() {
+        long[] maxes = new long[queries.length];
+        for (int i = 0; i < queries.length; i++) maxes[i] = latencies[i].getMax();
+        return maxes;
+    }
+
+    @Nonnull
+    private long[] percentiles(double percentile) {
+        long[] percentiles = new long[queries.length];
+        for (int i = 0; i < queries.length; i++) percentiles[i] = latencies[i].getValueAtPercentile(percentile);
+        return percentiles;
+    }
+
+    private static long max(@Nonnull long[] values) {
+        long max = 0;
+        for (long value : values) max = Math.max(max, value);
+        return max;
+    }
+}
@@ -0,0 +1,352 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.jolokia;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.QueryAttribute;
+import org.jmxtrans.utils.io.NullOutputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+
+import static javax.xml.bind.DatatypeConverter.printBase64Binary;
+
+import static org.jmxtrans.core.log.LoggerFactory.getLogger;
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+import static org.jmxtrans.utils.io.IoUtils.copy;
+
+/**
+ * Reads the attributes of all queries of a server with a single Jolokia bulk request, queries on the same MBeans are
+ * merged in a single read. The response is parsed with the Jackson streaming API.
+ *
+ * Responses are read entirely and closed, so that {@link HttpURLConnection} keeps the connection alive and reuses it
+ * for the next request.
+ */
+@ThreadSafe
+class JolokiaClient {
+
+    @Nonnull private final Logger logger = getLogger(getClass().getName());
+
+    @Nonnull private final JsonFactory jsonFactory = new JsonFactory();
+    @Nonnull private final URL url;
+    /** URL without credentials, for messages. */
+    @Nonnull private final String displayUrl;
+    private final int timeoutInMillis;
+    @Nullable private final String basicAuthentication;
+
+    JolokiaClient(@Nonnull URL url, int timeoutInMillis) {
+        this.url = url;
+        this.displayUrl = withoutUserInfo(url);
+        this.timeoutInMillis = timeoutInMillis;
+        this.basicAuthentication = url.getUserInfo() == null ? null : basicAuthentication(url.getUserInfo());
+    }
+
+    /**
+     * @return the Basic authentication credentials of the user info, which is percent-encoded in the URL while Basic
+     * authentication expects the user and password as they are.
+     */
+    @Nonnull
+    static String basicAuthentication(@Nonnull String userInfo) {
+        int separator = userInfo.indexOf(':');
+        String credentials = separator < 0
+                ? decode(userInfo)
+                : decode(userInfo.substring(0, separator)) + ":" + decode(userInfo.substring(separator + 1));
+        return printBase64Binary(credentials.getBytes(UTF_8));
+    }
+
+    @Nonnull
+    private static String decode(@Nonnull String encoded) {
+        try {
+            // URLDecoder decodes forms, where '+' is a space, it is a plain '+' in URLs
+            return URLDecoder.decode(encoded.replace("+", "%2B"), UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is always supported", e);
+        }
+    }
+
+    /**
+     * @return the URL without its user info, which holds the credentials of the agent.
+     */
+    @Nonnull
+    static String withoutUserInfo(@Nonnull URL url) {
+        if (url.getUserInfo() == null) return url.toString();
+        try {
+            return new URL(url.getProtocol(), url.getHost(), url.getPort(), url.getFile()).toString();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException("URL was already parsed", e);
+        }
+    }
+
+    /**
+     * @return attribute values by MBean, MBeans or attributes which could not be read are missing.
+     */
+    @Nonnull
+    Map<ObjectName, Map<String, Object>> read(@Nonnull Iterable<Query> queries) throws IOException {
+        Map<ObjectName, Set<String>> reads = reads(queries);
+        Map<ObjectName, Map<String, Object>> values = new HashMap<>();
+        if (reads.isEmpty()) return values;
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(timeoutInMillis);
+        connection.setReadTimeout(timeoutInMillis);
+        connection.setRequestProperty("Content-Type", "application/json");
+        if (basicAuthentication != null) connection.setRequestProperty("Authorization", "Basic " + basicAuthentication);
+        try (OutputStream out = connection.getOutputStream()) {
+            writeRequest(reads, out);
+        }
+        int responseCode = connection.getResponseCode();
+        if (responseCode != HTTP_OK) {
+            consumeErrorStream(connection);
+            throw new IOException("Jolokia agent " + displayUrl + " responded with HTTP " + responseCode);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            readResponse(reads, in, values);
+            // the connection is only reused once the whole response has been read
+            copy(in, new NullOutputStream());
+        }
+        return values;
+    }
+
+    @Nonnull
+    private static Map<ObjectName, Set<String>> reads(@Nonnull Iterable<Query> queries) {
+        Map<ObjectName, Set<String>> reads = new LinkedHashMap<>();
+        for (Query query : queries) {
+            if (query.getQueryAttributes().isEmpty()) continue;
+            Set<String> attributes = reads.get(query.getObjectNamePattern());
+            if (attributes == null) {
+                attributes = new LinkedHashSet<>();
+                reads.put(query.getObjectNamePattern(), attributes);
+            }
+            for (QueryAttribute attribute : query.getQueryAttributes()) attributes.add(attribute.getName());
+        }
+        return reads;
+    }
+
+    private void writeRequest(@Nonnull Map<ObjectName, Set<String>> reads, @Nonnull OutputStream out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartArray();
+            for (Map.Entry<ObjectName, Set<String>> read : reads.entrySet()) {
+                generator.writeStartObject();
+                generator.writeStringField("type", "read");
+                generator.writeStringField("mbean", read.getKey().getCanonicalName());
+                generator.writeArrayFieldStart("attribute");
+                for (String attribute : read.getValue()) generator.writeString(attribute);
+                generator.writeEndArray();
+                // MBeans of patterns missing some attributes are still read
+                generator.writeObjectFieldStart("config");
+                generator.writeBooleanField("ignoreErrors", true);
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /** Responses of a bulk request are in the order of the requests. */
+    private void readResponse(
+            @Nonnull Map<ObjectName, Set<String>> reads,
+            @Nonnull InputStream in,
+            @Nonnull Map<ObjectName, Map<String, Object>> values) throws IOException {
+        JsonParser parser = jsonFactory.createParser(in);
+        if (parser.nextToken() != JsonToken.START_ARRAY) throw new JsonParseException("Expected a bulk response", parser.getCurrentLocation());
+        for (ObjectName objectName : reads.keySet()) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new JsonParseException("Missing responses", parser.getCurrentLocation());
+            readResponse(parser, objectName, values);
+        }
+    }
+
+    private void readResponse(
+            @Nonnull JsonParser parser,
+            @Nonnull ObjectName objectName,
+            @Nonnull Map<ObjectName, Map<String, Object>> values) throws IOException {
+        // the status can follow the value, values are only kept once the response is known to be successful
+        Map<ObjectName, Map<String, Object>> read = new HashMap<>();
+        int status = 0;
+        String error = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("status".equals(field)) {
+                status = parser.getIntValue();
+            } else if ("error".equals(field)) {
+                error = parser.getText();
+            } else if ("value".equals(field) && token == JsonToken.START_OBJECT) {
+                if (objectName.isPattern()) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        ObjectName matched = objectName(parser.getCurrentName(), parser);
+                        parser.nextToken();
+                        read.put(matched, readAttributes(parser));
+                    }
+                } else {
+                    read.put(objectName, readAttributes(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (status != HTTP_OK) {
+            logger.debug("Could not read " + objectName + " from " + displayUrl + ": " + status + " " + error);
+            return;
+        }
+        for (Map.Entry<ObjectName, Map<String, Object>> entry : read.entrySet()) {
+            Map<String, Object> attributes = values.get(entry.getKey());
+            if (attributes == null) {
+                values.put(entry.getKey(), entry.getValue());
+            } else {
+                attributes.putAll(entry.getValue());
+            }
+        }
+    }
+
+    @Nonnull
+    private static Map<String, Object> readAttributes(@Nonnull JsonParser parser) throws IOException {
+        Map<String, Object> attributes = new HashMap<>();
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return attributes;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String attribute = parser.getCurrentName();
+            parser.nextToken();
+            Object value = readValue(parser);
+            if (value != null) attributes.put(attribute, value);
+        }
+        return attributes;
+    }
+
+    /**
+     * @return scalars as they would be read over JMX, objects of scalars as {@link CompositeData}, {@code null} for
+     * other values, which queries cannot collect.
+     */
+    @Nullable
+    private static Object readValue(@Nonnull JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case START_OBJECT:
+                return readCompositeData(parser);
+            default:
+                parser.skipChildren();
+                return null;
+        }
+    }
+
+    @Nullable
+    private static CompositeData readCompositeData(@Nonnull JsonParser parser) throws IOException {
+        Map<String, Object> items = new LinkedHashMap<>();
+        Map<String, OpenType<?>> types = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            parser.nextToken();
+            Object value = readValue(parser);
+            OpenType<?> type = openType(value);
+            if (type != null) {
+                items.put(key, value);
+                types.put(key, type);
+            }
+        }
+        if (items.isEmpty()) return null;
+        try {
+            String[] keys = items.keySet().toArray(new String[items.size()]);
+            OpenType<?>[] itemTypes = types.values().toArray(new OpenType<?>[types.size()]);
+            CompositeType compositeType = new CompositeType("jolokia", "Jolokia object", keys, keys, itemTypes);
+            return new CompositeDataSupport(compositeType, items);
+        } catch (OpenDataException e) {
+            throw new JsonParseException("Invalid object: " + e.getMessage(), parser.getCurrentLocation());
+        }
+    }
+
+    @Nullable
+    private static OpenType<?> openType(@Nullable Object value) {
+        if (value instanceof Integer) return SimpleType.INTEGER;
+        if (value instanceof Long) return SimpleType.LONG;
+        if (value instanceof Double) return SimpleType.DOUBLE;
+        if (value instanceof String) return SimpleType.STRING;
+        if (value instanceof Boolean) return SimpleType.BOOLEAN;
+        if (value instanceof BigInteger) return SimpleType.BIGINTEGER;
+        if (value instanceof BigDecimal) return SimpleType.BIGDECIMAL;
+        return null;
+    }
+
+    @Nonnull
+    private static ObjectName objectName(@Nonnull String name, @Nonnull JsonParser parser) throws JsonParseException {
+        try {
+            return new ObjectName(name);
+        } catch (MalformedObjectNameException e) {
+            throw new JsonParseException("Invalid MBean name " + name, parser.getCurrentLocation());
+        }
+    }
+
+    private void consumeErrorStream(@Nonnull HttpURLConnection connection) {
+        try (InputStream in = connection.getErrorStream()) {
+            if (in != null) copy(in, new NullOutputStream());
+        } catch (FileNotFoundException ignore) {
+        } catch (IOException e) {
+            logger.debug("Could not consume error stream of " + displayUrl);
+        }
+    }
+}
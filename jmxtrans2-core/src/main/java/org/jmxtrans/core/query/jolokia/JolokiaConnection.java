@@ -0,0 +1,131 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.jolokia;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.ReadOnlyMBeanServerConnection;
+import org.jmxtrans.utils.time.Clock;
+
+/**
+ * Serves the queries of a collection cycle from the values of a single bulk read.
+ *
+ * Queries of a server are run separately, each one looking up its MBeans with
+ * {@link #queryNames(ObjectName, QueryExp)}. Values are read again once a query looks up its MBeans a second time,
+ * which starts the next cycle, or once they are older than the maximum age, so that a query skipped during a cycle
+ * does not leave old values for the next one.
+ *
+ * When the read fails, the query that started it and the other queries of the cycle fail with the same cause.
+ */
+@ThreadSafe
+final class JolokiaConnection extends ReadOnlyMBeanServerConnection {
+
+    @Nonnull private final JolokiaClient client;
+    @Nonnull private final Iterable<Query> queries;
+    @Nonnull private final Clock clock;
+    private final long maxAgeMillis;
+
+    @GuardedBy("this") @Nonnull private Map<ObjectName, Map<String, Object>> values = Collections.emptyMap();
+    /** Number of queries of each MBean pattern which have not yet read the current values. */
+    @GuardedBy("this") @Nonnull private final Map<ObjectName, Integer> pendingReads = new HashMap<>();
+    @GuardedBy("this") private long readTimeMillis;
+    @GuardedBy("this") private boolean read;
+    /** Failure of the last read, if any. */
+    @GuardedBy("this") @Nullable private IOException failure;
+
+    JolokiaConnection(@Nonnull JolokiaClient client, @Nonnull Iterable<Query> queries, @Nonnull Clock clock, long maxAgeMillis) {
+        this.client = client;
+        this.queries = queries;
+        this.clock = clock;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    @Override
+    public synchronized Set<ObjectName> queryNames(@Nullable ObjectName name, @Nullable QueryExp query) throws IOException {
+        if (query != null) throw new UnsupportedOperationException("Query expressions are not supported over Jolokia");
+        Integer pending = pendingReads.get(name);
+        boolean refreshed = false;
+        if (!read || clock.currentTimeMillis() - readTimeMillis > maxAgeMillis || Integer.valueOf(0).equals(pending)) {
+            refresh();
+            refreshed = true;
+            pending = pendingReads.get(name);
+        }
+        if (pending != null) pendingReads.put(name, pending - 1);
+        if (failure != null) {
+            if (refreshed) throw failure;
+            throw new IOException("Bulk read failed: " + failure.getMessage(), failure);
+        }
+
+        Set<ObjectName> names = new LinkedHashSet<>();
+        for (ObjectName objectName : values.keySet()) {
+            if (name == null || name.apply(objectName)) names.add(objectName);
+        }
+        return names;
+    }
+
+    @Override
+    public synchronized AttributeList getAttributes(@Nonnull ObjectName name, @Nonnull String[] attributes) {
+        AttributeList list = new AttributeList();
+        Map<String, Object> mbean = values.get(name);
+        if (mbean == null) return list;
+        for (String attribute : attributes) {
+            Object value = mbean.get(attribute);
+            if (value != null) list.add(new Attribute(attribute, value));
+        }
+        return list;
+    }
+
+    @GuardedBy("this")
+    private void refresh() {
+        // marked as read first, a failing agent is not read again by every query of the cycle
+        read = true;
+        readTimeMillis = clock.currentTimeMillis();
+        pendingReads.clear();
+        values = Collections.emptyMap();
+        for (Query query : queries) {
+            Integer pending = pendingReads.get(query.getObjectNamePattern());
+            pendingReads.put(query.getObjectNamePattern(), pending == null ? 1 : pending + 1);
+        }
+        failure = null;
+        try {
+            values = client.read(queries);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.jolokia;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MBeanServerConnection;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.utils.time.Clock;
+import org.jmxtrans.utils.time.SystemClock;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Collects a server through a Jolokia agent (JMX over HTTP), given by the URL of the agent, for example
+ * {@code http://host:8778/jolokia/}. Credentials for basic authentication can be given in the URL.
+ *
+ * All queries of the server are read with a single bulk request per collection, instead of one request per MBean
+ * over a JMX connector. Jackson is needed on the classpath.
+ */
+@ThreadSafe
+@EqualsAndHashCode(of = {"url", "queries"})
+public class JolokiaServer implements Server {
+
+    public static final String HTTP_SCHEME = "http:";
+    public static final String HTTPS_SCHEME = "https:";
+    /** Queries of a collection are started together, values older than this belong to a previous collection. */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 5000;
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    @Nonnull @Getter private final String url;
+    @Nonnull private final String displayUrl;
+    @Nonnull @Getter private final String name;
+    @Nonnull @Getter private final Iterable<Query> queries;
+    @Nonnull private final JolokiaConnection connection;
+
+    public JolokiaServer(@Nonnull URL url, @Nonnull Iterable<Query> queries, @Nonnull Clock clock, long maxAgeMillis) {
+        this.url = url.toString();
+        this.displayUrl = JolokiaClient.withoutUserInfo(url);
+        this.name = url.getHost() + ":" + (url.getPort() == -1 ? url.getDefaultPort() : url.getPort());
+        this.queries = queries;
+        this.connection = new JolokiaConnection(new JolokiaClient(url, TIMEOUT_MILLIS), queries, clock, maxAgeMillis);
+    }
+
+    @Nonnull
+    public static JolokiaServer forUrl(@Nonnull String url, @Nonnull Iterable<Query> queries) throws MalformedURLException {
+        return new JolokiaServer(new URL(url), queries, new SystemClock(), DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    @Nullable
+    @Override
+    public String getHost() {
+        try {
+            return new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException("URL was already parsed", e);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public MBeanServerConnection getServerConnection() {
+        return connection;
+    }
+
+    /**
+     * Servers are logged, credentials given in the URL are left out.
+     */
+    @Override
+    public String toString() {
+        return "JolokiaServer(url=" + displayUrl + ")";
+    }
+}
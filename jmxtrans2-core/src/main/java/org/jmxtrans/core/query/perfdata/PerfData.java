@@ -0,0 +1,187 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.perfdata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+import static org.jmxtrans.utils.io.Charsets.US_ASCII;
+
+/**
+ * Decodes the performance counters published by HotSpot in {@code hsperfdata_<user>/<pid>} files, the format read
+ * by jstat (version 2).
+ *
+ * The file starts with a prologue followed by one entry per counter: entry length, name offset, vector length, type,
+ * flags, units, variability and data offset. Entries are only indexed once, the JVM appends entries while it runs.
+ * Values are read from the buffer each time they are accessed, so that they follow the JVM.
+ */
+@ThreadSafe
+final class PerfData {
+
+    static final String DOMAIN = "perfdata";
+
+    private static final int MAGIC = 0xcafec0c0;
+    private static final int SUPPORTED_MAJOR_VERSION = 2;
+    private static final int BYTE_ORDER_OFFSET = 4;
+    private static final int MAJOR_VERSION_OFFSET = 5;
+    private static final int ENTRY_OFFSET_OFFSET = 24;
+    private static final int NUM_ENTRIES_OFFSET = 28;
+
+    private static final int ENTRY_LENGTH_OFFSET = 0;
+    private static final int NAME_OFFSET_OFFSET = 4;
+    private static final int VECTOR_LENGTH_OFFSET = 8;
+    private static final int DATA_TYPE_OFFSET = 12;
+    private static final int DATA_UNITS_OFFSET = 14;
+    private static final int DATA_OFFSET_OFFSET = 16;
+
+    private static final byte TYPE_LONG = 'J';
+    private static final byte TYPE_BYTE = 'B';
+    private static final byte UNITS_STRING = 5;
+
+    @Nonnull private final ByteBuffer buffer;
+
+    @GuardedBy("this") private int indexedEntries;
+    @GuardedBy("this") private int nextEntry;
+    @GuardedBy("this") @Nonnull private Map<ObjectName, Counter> counters = Collections.emptyMap();
+
+    PerfData(@Nonnull ByteBuffer buffer) throws IOException {
+        ByteBuffer bigEndian = buffer.duplicate().order(BIG_ENDIAN);
+        if (bigEndian.capacity() < NUM_ENTRIES_OFFSET + 4 || bigEndian.getInt(0) != MAGIC) {
+            throw new IOException("Not a HotSpot performance data file");
+        }
+        if (bigEndian.get(MAJOR_VERSION_OFFSET) != SUPPORTED_MAJOR_VERSION) {
+            throw new IOException("Unsupported performance data version " + bigEndian.get(MAJOR_VERSION_OFFSET));
+        }
+        this.buffer = bigEndian.order(bigEndian.get(BYTE_ORDER_OFFSET) == 0 ? BIG_ENDIAN : LITTLE_ENDIAN);
+        this.nextEntry = this.buffer.getInt(ENTRY_OFFSET_OFFSET);
+    }
+
+    @Nonnull
+    static PerfData map(@Nonnull File file) throws IOException {
+        // the mapping stays valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            return new PerfData(channel.map(READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return counters by object name, including the entries added since the last call.
+     */
+    @Nonnull
+    synchronized Map<ObjectName, Counter> getCounters() {
+        int entries = buffer.getInt(NUM_ENTRIES_OFFSET);
+        if (entries == indexedEntries) return counters;
+
+        Map<ObjectName, Counter> indexed = new LinkedHashMap<>(counters);
+        while (indexedEntries < entries) {
+            int entryLength = buffer.getInt(nextEntry + ENTRY_LENGTH_OFFSET);
+            if (entryLength <= 0 || nextEntry + entryLength > buffer.capacity()) break;
+            Counter counter = counter(nextEntry);
+            if (counter != null) indexed.put(counter.getObjectName(), counter);
+            nextEntry += entryLength;
+            indexedEntries++;
+        }
+        counters = Collections.unmodifiableMap(indexed);
+        return counters;
+    }
+
+    /** @return the counter of the given entry, null if its type is not supported. */
+    @Nullable
+    private Counter counter(int entry) {
+        byte type = buffer.get(entry + DATA_TYPE_OFFSET);
+        int vectorLength = buffer.getInt(entry + VECTOR_LENGTH_OFFSET);
+        boolean isLong = type == TYPE_LONG && vectorLength == 0;
+        boolean isString = type == TYPE_BYTE && vectorLength > 0 && buffer.get(entry + DATA_UNITS_OFFSET) == UNITS_STRING;
+        if (!isLong && !isString) return null;
+
+        int nameOffset = entry + buffer.getInt(entry + NAME_OFFSET_OFFSET);
+        String name = ascii(buffer, nameOffset, buffer.capacity() - nameOffset);
+        try {
+            return new Counter(objectName(name), buffer, entry + buffer.getInt(entry + DATA_OFFSET_OFFSET), isString ? vectorLength : 0);
+        } catch (MalformedObjectNameException e) {
+            return null;
+        }
+    }
+
+    @Nonnull
+    static ObjectName objectName(@Nonnull String counterName) throws MalformedObjectNameException {
+        return new ObjectName(DOMAIN, "name", counterName);
+    }
+
+    /** Reads a NUL terminated ASCII string of at most the given length. */
+    @Nonnull
+    private static String ascii(@Nonnull ByteBuffer buffer, int offset, int maxLength) {
+        int length = 0;
+        while (length < maxLength && buffer.get(offset + length) != 0) length++;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = buffer.get(offset + i);
+        return new String(bytes, US_ASCII);
+    }
+
+    /**
+     * A long or string counter. Long values are read without allocation other than boxing.
+     */
+    @ThreadSafe
+    static final class Counter {
+        @Nonnull private final ObjectName objectName;
+        @Nonnull private final ByteBuffer buffer;
+        private final int dataOffset;
+        /** Length of string counters, 0 for long counters. */
+        private final int stringLength;
+
+        private Counter(@Nonnull ObjectName objectName, @Nonnull ByteBuffer buffer, int dataOffset, int stringLength) {
+            this.objectName = objectName;
+            this.buffer = buffer;
+            this.dataOffset = dataOffset;
+            this.stringLength = stringLength;
+        }
+
+        @Nonnull
+        ObjectName getObjectName() {
+            return objectName;
+        }
+
+        @Nonnull
+        Object getValue() {
+            if (stringLength == 0) return buffer.getLong(dataOffset);
+            return ascii(buffer, dataOffset, stringLength);
+        }
+    }
+}
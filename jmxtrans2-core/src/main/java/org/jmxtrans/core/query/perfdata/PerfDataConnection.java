@@ -0,0 +1,76 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.perfdata;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+import org.jmxtrans.core.query.ReadOnlyMBeanServerConnection;
+
+/**
+ * Exposes each performance counter as an MBean with a single {@code value} attribute.
+ */
+@ThreadSafe
+final class PerfDataConnection extends ReadOnlyMBeanServerConnection {
+
+    static final String VALUE = "value";
+
+    @Nonnull private final Map<ObjectName, PerfData.Counter> counters;
+
+    PerfDataConnection(@Nonnull Map<ObjectName, PerfData.Counter> counters) {
+        this.counters = counters;
+    }
+
+    @Override
+    public Set<ObjectName> queryNames(@Nullable ObjectName name, @Nullable QueryExp query) {
+        if (query != null) throw new UnsupportedOperationException("Query expressions are not supported on performance counters");
+        if (name == null) return counters.keySet();
+        if (!name.isPattern()) return counters.containsKey(name) ? Collections.singleton(name) : Collections.<ObjectName>emptySet();
+        Set<ObjectName> names = new LinkedHashSet<>();
+        for (ObjectName counter : counters.keySet()) {
+            if (name.apply(counter)) names.add(counter);
+        }
+        return names;
+    }
+
+    @Override
+    public AttributeList getAttributes(@Nonnull ObjectName name, @Nonnull String[] attributes) {
+        AttributeList values = new AttributeList();
+        PerfData.Counter counter = counters.get(name);
+        if (counter == null) return values;
+        for (String attribute : attributes) {
+            if (VALUE.equals(attribute)) values.add(new Attribute(VALUE, counter.getValue()));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.perfdata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MBeanServerConnection;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.utils.PropertyPlaceholderResolver;
+import org.jmxtrans.utils.VisibleForTesting;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Collects the performance counters of a local HotSpot JVM (GC, heap, class loading, compilation, safepoints, ...)
+ * from its {@code hsperfdata} file, without JMX: the file is memory mapped and decoded directly, which puts no load on
+ * the collected JVM.
+ *
+ * Each counter is exposed as an MBean named {@code perfdata:name=<counter>} with a {@code value} attribute, so counters
+ * are selected with object name patterns, {@code perfdata:name=sun.gc.collector.*} for example. The URL of the server
+ * is {@code perfdata:<pid>} for a JVM of the current user or {@code perfdata:<path of the hsperfdata file>}. Servers
+ * have no host, they are told apart by the pid of their JVM.
+ *
+ * The file is mapped on first collection, and mapped again if it was replaced by a new JVM with the same pid.
+ */
+@ThreadSafe
+@EqualsAndHashCode(of = {"file", "queries"})
+@ToString(of = "file")
+public class PerfDataServer implements Server {
+
+    public static final String SCHEME = "perfdata:";
+
+    @Nonnull @Getter private final File file;
+    @Nonnull @Getter private final Iterable<Query> queries;
+
+    @GuardedBy("this") @Nullable private PerfData perfData;
+    @GuardedBy("this") @Nullable private Object fileKey;
+
+    public PerfDataServer(@Nonnull File file, @Nonnull Iterable<Query> queries) {
+        this.file = file;
+        this.queries = queries;
+    }
+
+    @Nonnull
+    public static PerfDataServer forUrl(@Nonnull String url, @Nonnull Iterable<Query> queries) {
+        String location = url.substring(SCHEME.length());
+        if (location.matches("[0-9]+")) {
+            PropertyPlaceholderResolver resolver = new PropertyPlaceholderResolver();
+            File directory = perfDataDirectory(
+                    resolver.resolveString("${os.name}"),
+                    resolver.resolveString("${java.io.tmpdir}"),
+                    resolver.resolveString("${user.name}"));
+            return new PerfDataServer(new File(directory, location), queries);
+        }
+        return new PerfDataServer(new File(location), queries);
+    }
+
+    /**
+     * HotSpot writes hsperfdata files under /tmp on Linux and other Unixes, whatever java.io.tmpdir says, and under
+     * the temporary directory of the user on Windows and macOS.
+     */
+    @VisibleForTesting
+    @Nonnull
+    static File perfDataDirectory(@Nonnull String osName, @Nonnull String tmpDir, @Nonnull String userName) {
+        boolean usesTmpDir = osName.startsWith("Windows") || osName.startsWith("Mac");
+        return new File(usesTmpDir ? tmpDir : "/tmp", "hsperfdata_" + userName);
+    }
+
+    /**
+     * @return pid of the collected JVM, hsperfdata files are named after it.
+     */
+    @Nonnull
+    public String getPid() {
+        return file.getName();
+    }
+
+    @Nullable
+    @Override
+    public String getHost() {
+        return null;
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return SCHEME + getPid();
+    }
+
+    @Nonnull
+    @Override
+    public synchronized MBeanServerConnection getServerConnection() throws IOException {
+        Object key = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        if (perfData == null || !Objects.equals(key, fileKey)) {
+            perfData = PerfData.map(file);
+            fileKey = key;
+        }
+        return new PerfDataConnection(perfData.getCounters());
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.proc;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+import org.jmxtrans.core.query.ReadOnlyMBeanServerConnection;
+
+import static org.jmxtrans.utils.io.Charsets.US_ASCII;
+
+/**
+ * Exposes the /proc files of a process as MBeans:
+ * <ul>
+ *     <li>{@code proc:type=stat}: {@code minflt}, {@code majflt}, {@code utime}, {@code stime} (clock ticks),
+ *     {@code num_threads}, {@code vsize} (bytes) and {@code rss} (pages) from {@code stat},</li>
+ *     <li>{@code proc:type=status}: {@code VmRSS}, {@code VmHWM}, {@code VmSize}, {@code VmSwap} (kB),
+ *     {@code Threads}, {@code voluntary_ctxt_switches} and {@code nonvoluntary_ctxt_switches} from {@code status},</li>
+ *     <li>{@code proc:type=fd}: {@code count} of open file descriptors,</li>
+ *     <li>{@code proc:type=task,name=<thread name>,id=<tid>}: the {@code stat} attributes of each thread.</li>
+ * </ul>
+ * Only the files of the requested MBeans are read. Names are the ones of proc(5), values keep their unit.
+ */
+@ThreadSafe
+final class ProcConnection extends ReadOnlyMBeanServerConnection {
+
+    static final String DOMAIN = "proc";
+
+    private static final Map<String, Integer> STAT_FIELDS = new LinkedHashMap<>();
+    private static final String[] STATUS_KEYS = {
+            "VmRSS", "VmHWM", "VmSize", "VmSwap", "Threads", "voluntary_ctxt_switches", "nonvoluntary_ctxt_switches" };
+    private static final byte[][] STATUS_KEY_BYTES = new byte[STATUS_KEYS.length][];
+
+    static {
+        STAT_FIELDS.put("minflt", 10);
+        STAT_FIELDS.put("majflt", 12);
+        STAT_FIELDS.put("utime", 14);
+        STAT_FIELDS.put("stime", 15);
+        STAT_FIELDS.put("num_threads", 20);
+        STAT_FIELDS.put("vsize", 23);
+        STAT_FIELDS.put("rss", 24);
+        for (int i = 0; i < STATUS_KEYS.length; i++) STATUS_KEY_BYTES[i] = STATUS_KEYS[i].getBytes(US_ASCII);
+    }
+
+    @Nonnull private final File statFile;
+    @Nonnull private final File statusFile;
+    @Nonnull private final File fdDirectory;
+    @Nonnull private final File taskDirectory;
+    @Nonnull private final ObjectName stat;
+    @Nonnull private final ObjectName status;
+    @Nonnull private final ObjectName fd;
+
+    @GuardedBy("this") @Nonnull private final ProcFile file = new ProcFile();
+    @GuardedBy("this") @Nonnull private final long[] statFields = new long[25];
+    @GuardedBy("this") @Nonnull private final long[] statusValues = new long[STATUS_KEYS.length];
+    /** Threads by id, their name is only read when they are first seen. */
+    @GuardedBy("this") @Nonnull private Map<String, Task> tasks = Collections.emptyMap();
+
+    ProcConnection(@Nonnull File directory) throws MalformedObjectNameException {
+        this.statFile = new File(directory, "stat");
+        this.statusFile = new File(directory, "status");
+        this.fdDirectory = new File(directory, "fd");
+        this.taskDirectory = new File(directory, "task");
+        this.stat = new ObjectName(DOMAIN, "type", "stat");
+        this.status = new ObjectName(DOMAIN, "type", "status");
+        this.fd = new ObjectName(DOMAIN, "type", "fd");
+    }
+
+    @Override
+    public synchronized Set<ObjectName> queryNames(@Nullable ObjectName name, @Nullable QueryExp query) throws IOException {
+        if (query != null) throw new UnsupportedOperationException("Query expressions are not supported on /proc");
+        Set<ObjectName> names = new LinkedHashSet<>();
+        for (ObjectName candidate : new ObjectName[] { stat, status, fd }) {
+            if (name == null || name.apply(candidate)) names.add(candidate);
+        }
+        if (name == null || name.isPattern() || "task".equals(name.getKeyProperty("type"))) {
+            for (Task task : refreshTasks().values()) {
+                if (name == null || name.apply(task.objectName)) names.add(task.objectName);
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public synchronized AttributeList getAttributes(@Nonnull ObjectName name, @Nonnull String[] attributes) throws IOException {
+        AttributeList values = new AttributeList();
+        if (!DOMAIN.equals(name.getDomain())) return values;
+        String type = name.getKeyProperty("type");
+        if ("stat".equals(type)) {
+            addStat(statFile, attributes, values);
+        } else if ("status".equals(type)) {
+            file.read(statusFile);
+            file.parseStatus(STATUS_KEY_BYTES, statusValues);
+            for (String attribute : attributes) {
+                for (int i = 0; i < STATUS_KEYS.length; i++) {
+                    if (STATUS_KEYS[i].equals(attribute) && statusValues[i] >= 0) values.add(new Attribute(attribute, statusValues[i]));
+                }
+            }
+        } else if ("fd".equals(type)) {
+            String[] descriptors = fdDirectory.list();
+            if (descriptors == null) throw new IOException("Cannot list file descriptors in " + fdDirectory);
+            for (String attribute : attributes) {
+                if ("count".equals(attribute)) values.add(new Attribute(attribute, (long) descriptors.length));
+            }
+        } else if ("task".equals(type)) {
+            Task task = tasks.get(name.getKeyProperty("id"));
+            if (task != null) addStat(task.stat, attributes, values);
+        }
+        return values;
+    }
+
+    @GuardedBy("this")
+    private void addStat(@Nonnull File statFile, @Nonnull String[] attributes, @Nonnull AttributeList values) throws IOException {
+        file.read(statFile);
+        file.parseStat(statFields);
+        for (String attribute : attributes) {
+            Integer field = STAT_FIELDS.get(attribute);
+            if (field != null) values.add(new Attribute(attribute, statFields[field]));
+        }
+    }
+
+    @GuardedBy("this")
+    @Nonnull
+    private Map<String, Task> refreshTasks() throws IOException {
+        String[] ids = taskDirectory.list();
+        if (ids == null) throw new IOException("Cannot list threads in " + taskDirectory);
+        Map<String, Task> refreshed = new HashMap<>();
+        for (String id : ids) {
+            Task task = tasks.get(id);
+            if (task == null) {
+                File taskStat = new File(new File(taskDirectory, id), "stat");
+                try {
+                    file.read(taskStat);
+                } catch (IOException e) {
+                    // the thread ended since the directory was listed
+                    continue;
+                }
+                task = new Task(objectName(file.parseCommand(), id), taskStat);
+            }
+            refreshed.put(id, task);
+        }
+        tasks = refreshed;
+        return tasks;
+    }
+
+    @Nonnull
+    private static ObjectName objectName(@Nonnull String threadName, @Nonnull String id) throws IOException {
+        try {
+            return new ObjectName(DOMAIN + ":type=task,name=" + quoteIfNeeded(threadName) + ",id=" + id);
+        } catch (MalformedObjectNameException e) {
+            throw new IOException("Invalid thread " + id, e);
+        }
+    }
+
+    @Nonnull
+    private static String quoteIfNeeded(@Nonnull String value) {
+        for (char c : new char[] { ',', '=', ':', '"', '*', '?', '\n' }) {
+            if (value.indexOf(c) >= 0) return ObjectName.quote(value);
+        }
+        return value;
+    }
+
+    private static final class Task {
+        @Nonnull private final ObjectName objectName;
+        /** Resolved once, when the thread is first seen. */
+        @Nonnull private final File stat;
+
+        private Task(@Nonnull ObjectName objectName, @Nonnull File stat) {
+            this.objectName = objectName;
+            this.stat = stat;
+        }
+    }
+}
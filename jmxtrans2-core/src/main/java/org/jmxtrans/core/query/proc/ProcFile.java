@@ -0,0 +1,147 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.proc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static org.jmxtrans.utils.io.Charsets.US_ASCII;
+
+/**
+ * Reads /proc files in a buffer reused between reads, and parses their numbers without allocating strings.
+ */
+@NotThreadSafe
+final class ProcFile {
+
+    @Nonnull private byte[] buffer = new byte[4096];
+    private int length;
+    /** Last number parsed, so that parsing does not allocate. */
+    private long number;
+
+    /** Reads the whole file, /proc files do not have a size. */
+    void read(@Nonnull File file) throws IOException {
+        length = 0;
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+                if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Parses a {@code stat} file. Fields are numbered from 1 as in proc(5), the command name (2) and state (3) are not
+     * numbers and are skipped, parsing stops once the array is filled.
+     */
+    void parseStat(@Nonnull long[] fields) {
+        // the command name can contain spaces and parentheses, it ends at the last parenthesis
+        int position = lastIndexOf((byte) ')') + 1;
+        position = skipField(skipSpaces(position));
+        for (int field = 4; field < fields.length && position < length; field++) {
+            position = parseNumber(skipSpaces(position));
+            fields[field] = number;
+        }
+    }
+
+    /**
+     * Parses a {@code status} file: lines of {@code key: value}, values of the given keys are set to the first number
+     * of their line, -1 if the key was not found.
+     */
+    void parseStatus(@Nonnull byte[][] keys, @Nonnull long[] values) {
+        Arrays.fill(values, -1);
+        int position = 0;
+        while (position < length) {
+            int colon = indexOf((byte) ':', position);
+            int end = indexOf((byte) '\n', position);
+            if (colon < end) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (matches(keys[i], position, colon)) {
+                        parseNumber(skipSpaces(colon + 1));
+                        values[i] = number;
+                    }
+                }
+            }
+            position = end + 1;
+        }
+    }
+
+    /** @return the command name of a {@code stat} file, between its first and last parenthesis. */
+    @Nonnull
+    String parseCommand() {
+        int start = indexOf((byte) '(', 0) + 1;
+        int end = lastIndexOf((byte) ')');
+        if (start <= 0 || end < start) return "";
+        return new String(buffer, start, end - start, US_ASCII);
+    }
+
+    private boolean matches(@Nonnull byte[] key, int start, int end) {
+        if (end - start != key.length) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer[start + i] != key[i]) return false;
+        }
+        return true;
+    }
+
+    private int parseNumber(int position) {
+        boolean negative = position < length && buffer[position] == '-';
+        if (negative) position++;
+        long value = 0;
+        while (position < length && buffer[position] >= '0' && buffer[position] <= '9') {
+            value = value * 10 + buffer[position] - '0';
+            position++;
+        }
+        number = negative ? -value : value;
+        return position;
+    }
+
+    private int skipSpaces(int position) {
+        while (position < length && (buffer[position] == ' ' || buffer[position] == '\t')) position++;
+        return position;
+    }
+
+    private int skipField(int position) {
+        while (position < length && buffer[position] != ' ') position++;
+        return position;
+    }
+
+    /** @return the index of the byte, the end of the content if it is not found. */
+    private int indexOf(byte b, int from) {
+        for (int i = from; i < length; i++) {
+            if (buffer[i] == b) return i;
+        }
+        return length;
+    }
+
+    private int lastIndexOf(byte b) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == b) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.proc;
+
+import java.io.File;
+import java.net.MalformedURLException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.Server;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Collects process metrics from the Linux /proc file system: CPU time, memory, page faults, context switches, file
+ * descriptors and CPU time of each thread (see {@link ProcConnection} for the MBeans and attributes).
+ *
+ * The URL of the server is {@code proc:self} for the JVM running JmxTrans, which is the JVM being monitored when
+ * JmxTrans runs as an agent, or {@code proc:<pid>}. Files are parsed in a reused buffer, reads do not allocate
+ * strings.
+ */
+@ThreadSafe
+@EqualsAndHashCode(of = {"directory", "queries"})
+@ToString(of = "directory")
+public class ProcServer implements Server {
+
+    public static final String SCHEME = "proc:";
+
+    @Nonnull @Getter private final File directory;
+    @Nonnull @Getter private final Iterable<Query> queries;
+    @Nonnull private final ProcConnection connection;
+
+    public ProcServer(@Nonnull File directory, @Nonnull Iterable<Query> queries) {
+        this.directory = directory;
+        this.queries = queries;
+        try {
+            this.connection = new ProcConnection(directory);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("Invalid /proc object names", e);
+        }
+    }
+
+    @Nonnull
+    public static ProcServer forUrl(@Nonnull String url, @Nonnull Iterable<Query> queries) throws MalformedURLException {
+        String process = url.substring(SCHEME.length());
+        if (!"self".equals(process) && !process.matches("[0-9]+")) {
+            throw new MalformedURLException("Process of " + url + " should be self or a pid");
+        }
+        return new ProcServer(new File("/proc", process), queries);
+    }
+
+    @Nullable
+    @Override
+    public String getHost() {
+        return null;
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return SCHEME + directory.getName();
+    }
+
+    @Nonnull
+    @Override
+    public MBeanServerConnection getServerConnection() {
+        return connection;
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.results;
+
+/**
+ * Stages a result goes through, from the scheduling of its query to the acknowledgement by the backend.
+ *
+ * The latency reported for a stage is the time elapsed since the previous stage, except for {@link #TOTAL} which
+ * covers the whole pipeline.
+ */
+public enum PipelineStage {
+    /** Query handed to the query executor. */
+    DISPATCHED,
+    /** Metrics collected from the server (includes waiting in the query executor queue). */
+    COLLECTED,
+    /** Result picked up by the result executor (time spent waiting in its queue). */
+    DEQUEUED,
+    /** Result encoded by a batching writer (time spent waiting for a full batch). */
+    ENCODED,
+    /** Batch sent to the backend. */
+    FLUSHED,
+    /** Batch acknowledged by the backend, same as {@link #FLUSHED} for protocols without acknowledgement. */
+    ACKED,
+    /** From dispatch to acknowledgement. */
+    TOTAL
+}
@@ -0,0 +1,73 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.results;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import lombok.Getter;
+
+import static org.jmxtrans.utils.Preconditions2.checkArgument;
+
+/**
+ * Timestamps of a single collection as it goes through the pipeline, shared by all the results it produced.
+ *
+ * Only the stages common to all output writers ({@link PipelineStage#DISPATCHED} to {@link PipelineStage#DEQUEUED})
+ * are stored, the first stamp of a stage wins. Later stages are specific to each writer and are only reported to the
+ * {@link PipelineListener}. All timestamps come from {@link org.jmxtrans.utils.time.Clock#nanoTime()}.
+ */
+@ThreadSafe
+public class PipelineTrace {
+
+    /** Marks stages not stamped yet, as any value (even 0) can be returned by {@code nanoTime()}. */
+    public static final long NOT_STAMPED = Long.MIN_VALUE;
+
+    @Nonnull @Getter private final PipelineListener listener;
+    @Nonnull private final AtomicLongArray stamps = new AtomicLongArray(PipelineStage.DEQUEUED.ordinal() + 1);
+
+    public PipelineTrace(@Nonnull PipelineListener listener, long dispatchedNanos) {
+        this.listener = listener;
+        for (int i = 0; i < stamps.length(); i++) stamps.set(i, NOT_STAMPED);
+        stamps.set(PipelineStage.DISPATCHED.ordinal(), dispatchedNanos);
+    }
+
+    /**
+     * Stamps a shared stage and reports its latency, unless the stage has already been stamped.
+     */
+    public void stamp(@Nonnull PipelineStage stage, long nanos) {
+        checkArgument(stage.ordinal() > 0 && stage.ordinal() < stamps.length(), "Only shared stages can be stamped");
+        if (!stamps.compareAndSet(stage.ordinal(), NOT_STAMPED, nanos)) return;
+        long previous = stamps.get(stage.ordinal() - 1);
+        if (previous != NOT_STAMPED) listener.onStage(stage, nanos - previous);
+    }
+
+    /**
+     * @return time at which the stage was stamped, {@link #NOT_STAMPED} if it has not been stamped yet.
+     */
+    public long getStamp(@Nonnull PipelineStage stage) {
+        checkArgument(stage.ordinal() < stamps.length(), "Only shared stages are stamped");
+        return stamps.get(stage.ordinal());
+    }
+}
@@ -42,13 +42,17 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  */
 @Immutable
 @ThreadSafe
-@EqualsAndHashCode
-@ToString
+@EqualsAndHashCode(exclude = "trace")
+@ToString(exclude = "trace")
 public class QueryResult {
     @Nonnull @Getter private final String name;
     private final long epochInMillis;
     @Nullable @Getter private final Object value;
     @Nullable @Getter private final String type;
+    /**
+     * Pipeline timing of the collection which produced this result, not part of the identity of the result.
+     */
+    @Nullable @Getter private final PipelineTrace trace;
 
     /**
      * @param name          plain name of the metric (variables (e.g. <code>%my-jmx-attr%</code>) must have been resolved).
@@ -66,10 +70,23 @@ public class QueryResult {
      * @param epochInMillis collect time in millis (see {@link System#currentTimeMillis()})
      */
     public QueryResult(@Nonnull String name, @Nullable String type, @Nullable Object value, long epochInMillis) {
+        this(name, type, value, epochInMillis, null);
+    }
+
+    private QueryResult(@Nonnull String name, @Nullable String type, @Nullable Object value, long epochInMillis, @Nullable PipelineTrace trace) {
         this.name = Preconditions2.checkNotEmpty(name);
         this.value = value;
         this.epochInMillis = epochInMillis;
         this.type = type;
+        this.trace = trace;
+    }
+
+    /**
+     * @return a copy of this result, traced through the pipeline by {@code trace}.
+     */
+    @Nonnull
+    public QueryResult withTrace(@Nonnull PipelineTrace trace) {
+        return new QueryResult(name, type, value, epochInMillis, trace);
     }
 
     public long getEpoch(TimeUnit timeUnit) {
@@ -0,0 +1,65 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.scheduler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.monitoring.EventRecorder;
+
+/**
+ * Queries of a collection cycle which have not run yet. The cycle event is completed by the last query to run, fail
+ * or be dropped, so that it covers the whole collection and not only the dispatch of the queries.
+ */
+@ThreadSafe
+public class CollectionCycle {
+
+    @Nonnull private final EventRecorder.Cycle event;
+    /** Queries not completed yet, plus one as long as the cycle is being dispatched. */
+    @Nonnull private final AtomicInteger pendingQueries = new AtomicInteger(1);
+    private volatile int dispatchedQueries;
+    private volatile int rejectedQueries;
+
+    public CollectionCycle(@Nonnull EventRecorder.Cycle event) {
+        this.event = event;
+    }
+
+    void queryDispatched() {
+        pendingQueries.incrementAndGet();
+    }
+
+    void queryCompleted() {
+        if (pendingQueries.decrementAndGet() == 0) event.completed(dispatchedQueries, rejectedQueries);
+    }
+
+    /**
+     * Called once all queries of the cycle have been submitted.
+     */
+    void dispatched(int dispatchedQueries, int rejectedQueries) {
+        this.dispatchedQueries = dispatchedQueries;
+        this.rejectedQueries = rejectedQueries;
+        queryCompleted();
+    }
+}
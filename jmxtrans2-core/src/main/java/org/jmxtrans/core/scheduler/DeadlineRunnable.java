@@ -48,8 +48,8 @@ public abstract class DeadlineRunnable implements Runnable {
     @Override
     public final void run() {
         if (deadline < clock.currentTimeMillis()) {
-            // TODO: log and count
             logger.warn("Deadline is passed, dropping job");
+            onDeadlineMissed();
             return;
         }
         doRun();
@@ -57,4 +57,10 @@ public abstract class DeadlineRunnable implements Runnable {
 
     protected abstract void doRun();
 
+    /**
+     * Called instead of {@link #doRun()} when the job is dropped, override to count dropped jobs.
+     */
+    protected void onDeadlineMissed() {
+    }
+
 }
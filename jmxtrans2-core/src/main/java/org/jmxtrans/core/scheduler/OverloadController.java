@@ -0,0 +1,200 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.scheduler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.log.Logger;
+import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.monitoring.SelfNamedMBean;
+import org.jmxtrans.core.query.CollectionMonitor;
+import org.jmxtrans.utils.time.Interval;
+
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.jmxtrans.utils.Preconditions2.checkArgument;
+
+/**
+ * Adapts the collection period when cycles cannot complete in time.
+ *
+ * After each cycle is dispatched, the queries rejected by the executor, and the queries of the previous cycle which
+ * were dropped or have not run yet, are compared to the number of queries dispatched. If any query was rejected or
+ * dropped, or if too few completed, the period is doubled (up to {@code maxStretch} times the configured period).
+ * Once enough consecutive cycles are healthy, the period is halved again, until it is back to the configured one.
+ */
+@ThreadSafe
+public class OverloadController implements OverloadControllerMBean, SelfNamedMBean {
+
+    @Nonnull private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+    @Nonnull private final ObjectName objectName;
+    @Nonnull private final Interval period;
+    @Nonnull private final CollectionMonitor collectionMonitor;
+    private final int maxStretch;
+    private final int recoveryCycles;
+    private final double minCompletionRatio;
+
+    @GuardedBy("this") @Nonnull private State state = State.NORMAL;
+    @GuardedBy("this") private int stretch = 1;
+    @GuardedBy("this") private int healthyCycles;
+    @GuardedBy("this") private int lastDispatched;
+    @GuardedBy("this") private long lastCompletedCount;
+    @GuardedBy("this") private long lastDroppedCount;
+    @GuardedBy("this") private double rejectionRatio;
+    @GuardedBy("this") private double dropRatio;
+    @GuardedBy("this") private double completionRatio = 1;
+    @GuardedBy("this") private long overloadedCycleCount;
+
+    public OverloadController(
+            @Nonnull Interval period,
+            @Nonnull CollectionMonitor collectionMonitor,
+            int maxStretch,
+            int recoveryCycles,
+            double minCompletionRatio) {
+        checkArgument(maxStretch >= 1, "maxStretch must be at least 1");
+        checkArgument(recoveryCycles >= 1, "recoveryCycles must be at least 1");
+        this.period = period;
+        this.collectionMonitor = collectionMonitor;
+        this.maxStretch = maxStretch;
+        this.recoveryCycles = recoveryCycles;
+        this.minCompletionRatio = minCompletionRatio;
+        this.lastCompletedCount = collectionMonitor.getCompletedCount();
+        this.lastDroppedCount = collectionMonitor.getDroppedCount();
+        try {
+            this.objectName = new ObjectNameFactory("scheduler").create("overload");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("Invalid overload controller object name", e);
+        }
+    }
+
+    /**
+     * Called once all queries of a cycle have been submitted.
+     *
+     * @param dispatched number of queries accepted by the executor
+     * @param rejected number of queries which could not be enqueued
+     */
+    public synchronized void cycleDispatched(int dispatched, int rejected) {
+        long completedCount = collectionMonitor.getCompletedCount();
+        long droppedCount = collectionMonitor.getDroppedCount();
+        long completed = completedCount - lastCompletedCount;
+        long dropped = droppedCount - lastDroppedCount;
+        lastCompletedCount = completedCount;
+        lastDroppedCount = droppedCount;
+
+        int submitted = dispatched + rejected;
+        rejectionRatio = submitted == 0 ? 0 : (double) rejected / submitted;
+        dropRatio = lastDispatched == 0 ? 0 : min(1, (double) dropped / lastDispatched);
+        completionRatio = lastDispatched == 0 ? 1 : min(1, (double) completed / lastDispatched);
+        lastDispatched = dispatched;
+
+        if (rejected > 0 || dropped > 0 || completionRatio < minCompletionRatio) {
+            overloaded();
+        } else {
+            healthy();
+        }
+    }
+
+    @GuardedBy("this")
+    private void overloaded() {
+        overloadedCycleCount++;
+        healthyCycles = 0;
+        state = State.OVERLOADED;
+        if (stretch < maxStretch) {
+            stretch = min(maxStretch, stretch * 2);
+            logger.warn(format("Collection cannot keep up (rejected %.2f, dropped %.2f, completed %.2f), period stretched to %d ms",
+                    rejectionRatio, dropRatio, completionRatio, getEffectivePeriodMillis()));
+        }
+    }
+
+    @GuardedBy("this")
+    private void healthy() {
+        if (stretch == 1) {
+            state = State.NORMAL;
+            return;
+        }
+        state = State.RECOVERING;
+        if (++healthyCycles < recoveryCycles) return;
+        healthyCycles = 0;
+        stretch = stretch / 2;
+        logger.info(format("Collection has headroom, period reduced to %d ms", getEffectivePeriodMillis()));
+        if (stretch == 1) state = State.NORMAL;
+    }
+
+    @Override
+    public synchronized String getState() {
+        return state.name();
+    }
+
+    @Override
+    public synchronized boolean isOverloaded() {
+        return state == State.OVERLOADED;
+    }
+
+    @Override
+    public synchronized int getStretchFactor() {
+        return stretch;
+    }
+
+    @Override
+    public synchronized long getEffectivePeriodMillis() {
+        return period.getDuration(MILLISECONDS) * stretch;
+    }
+
+    @Override
+    public synchronized double getRejectionRatio() {
+        return rejectionRatio;
+    }
+
+    @Override
+    public synchronized double getDropRatio() {
+        return dropRatio;
+    }
+
+    @Override
+    public synchronized double getCompletionRatio() {
+        return completionRatio;
+    }
+
+    @Override
+    public synchronized long getOverloadedCycleCount() {
+        return overloadedCycleCount;
+    }
+
+    @Nonnull
+    @Override
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    private enum State {
+        NORMAL,
+        OVERLOADED,
+        RECOVERING
+    }
+}
@@ -25,17 +25,20 @@ package org.jmxtrans.core.scheduler;
 import java.util.concurrent.ScheduledExecutorService;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 import org.jmxtrans.core.log.Logger;
 import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.monitoring.EventRecorder;
+import org.jmxtrans.core.monitoring.EventRecorders;
+import org.jmxtrans.core.monitoring.SelfMetricsCollector;
 import org.jmxtrans.core.query.Query;
 import org.jmxtrans.core.query.Server;
 import org.jmxtrans.utils.time.Clock;
 import org.jmxtrans.utils.time.Interval;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static java.util.concurrent.TimeUnit.SECONDS;
 
 @ThreadSafe
 public class QueryGenerator implements Runnable {
@@ -45,6 +48,9 @@ public class QueryGenerator implements Runnable {
     @Nonnull private final Iterable<Server> servers;
     @Nonnull private final QueryProcessor queryProcessor;
     @Nonnull private final ScheduledExecutorService queryTimer;
+    @Nullable private final SelfMetricsCollector selfMetricsCollector;
+    @Nonnull private final EventRecorder eventRecorder;
+    @Nullable private final OverloadController overloadController;
     private volatile boolean running = false;
 
     public QueryGenerator(
@@ -53,34 +59,89 @@ public class QueryGenerator implements Runnable {
             @Nonnull Iterable<Server> servers,
             @Nonnull QueryProcessor queryProcessor,
             @Nonnull ScheduledExecutorService queryTimer) {
+        this(clock, queryPeriod, servers, queryProcessor, queryTimer, null);
+    }
+
+    public QueryGenerator(
+            @Nonnull Clock clock,
+            @Nonnull Interval queryPeriod,
+            @Nonnull Iterable<Server> servers,
+            @Nonnull QueryProcessor queryProcessor,
+            @Nonnull ScheduledExecutorService queryTimer,
+            @Nullable SelfMetricsCollector selfMetricsCollector) {
+        this(clock, queryPeriod, servers, queryProcessor, queryTimer, selfMetricsCollector, EventRecorders.get());
+    }
+
+    public QueryGenerator(
+            @Nonnull Clock clock,
+            @Nonnull Interval queryPeriod,
+            @Nonnull Iterable<Server> servers,
+            @Nonnull QueryProcessor queryProcessor,
+            @Nonnull ScheduledExecutorService queryTimer,
+            @Nullable SelfMetricsCollector selfMetricsCollector,
+            @Nonnull EventRecorder eventRecorder) {
+        this(clock, queryPeriod, servers, queryProcessor, queryTimer, selfMetricsCollector, eventRecorder, null);
+    }
+
+    /**
+     * @param overloadController adapts the period to the load, the period is fixed if {@code null}
+     */
+    public QueryGenerator(
+            @Nonnull Clock clock,
+            @Nonnull Interval queryPeriod,
+            @Nonnull Iterable<Server> servers,
+            @Nonnull QueryProcessor queryProcessor,
+            @Nonnull ScheduledExecutorService queryTimer,
+            @Nullable SelfMetricsCollector selfMetricsCollector,
+            @Nonnull EventRecorder eventRecorder,
+            @Nullable OverloadController overloadController) {
         this.clock = clock;
         this.queryPeriod = queryPeriod;
         this.servers = servers;
         this.queryProcessor = queryProcessor;
         this.queryTimer = queryTimer;
+        this.selfMetricsCollector = selfMetricsCollector;
+        this.eventRecorder = eventRecorder;
+        this.overloadController = overloadController;
     }
 
     @Override
     public void run() {
         try {
-            long deadline = clock.currentTimeMillis() + queryPeriod.getDuration(MILLISECONDS);
+            CollectionCycle cycle = new CollectionCycle(eventRecorder.cycleStarted());
+            int dispatched = 0;
+            int rejected = 0;
+            long deadline = clock.currentTimeMillis() + periodMillis();
             for (Server server : servers) {
                 for (final Query query : server.getQueries()) {
                     try {
                         logger.debug("Enqueue query " + query);
-                        queryProcessor.process(deadline, server, query);
+                        queryProcessor.process(deadline, server, query, cycle);
+                        dispatched++;
                     } catch (Exception e) {
+                        rejected++;
                         logger.warn("Could not enqueue query " + query, e);
                     }
                 }
             }
 
+            if (selfMetricsCollector != null) {
+                try {
+                    queryProcessor.process(deadline, selfMetricsCollector.collect());
+                } catch (Exception e) {
+                    logger.warn("Could not enqueue self metrics", e);
+                }
+            }
+            cycle.dispatched(dispatched, rejected);
+            if (overloadController != null) overloadController.cycleDispatched(dispatched, rejected);
+
             if (running) {
-                logger.debug("Scheduling next run in " + queryPeriod.getDuration(SECONDS) + " seconds.");
+                long periodMillis = periodMillis();
+                logger.debug("Scheduling next run in " + MILLISECONDS.toSeconds(periodMillis) + " seconds.");
                 try {
                     queryTimer.schedule(
                             this,
-                            queryPeriod.getDuration(MILLISECONDS),
+                            periodMillis,
                             MILLISECONDS);
                 } catch (Exception e) {
                     logger.error("Could not schedule next task", e);
@@ -92,6 +153,11 @@ public class QueryGenerator implements Runnable {
         }
     }
 
+    private long periodMillis() {
+        if (overloadController != null) return overloadController.getEffectivePeriodMillis();
+        return queryPeriod.getDuration(MILLISECONDS);
+    }
+
     public void start() {
         running = true;
         run();
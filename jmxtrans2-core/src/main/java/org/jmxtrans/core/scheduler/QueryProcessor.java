@@ -22,22 +22,37 @@
  */
 package org.jmxtrans.core.scheduler;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MBeanServerConnection;
 
 import org.jmxtrans.core.log.Logger;
 import org.jmxtrans.core.log.LoggerFactory;
+import org.jmxtrans.core.monitoring.EventRecorder;
+import org.jmxtrans.core.monitoring.EventRecorders;
 import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.query.CollectionMonitor;
 import org.jmxtrans.core.query.Query;
 import org.jmxtrans.core.query.ResultNameStrategy;
 import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.SlowQueryLog;
+import org.jmxtrans.core.results.PipelineListener;
+import org.jmxtrans.core.results.PipelineStage;
+import org.jmxtrans.core.results.PipelineTrace;
 import org.jmxtrans.core.results.QueryResult;
 import org.jmxtrans.utils.time.Clock;
 
 import static java.lang.String.format;
+import static java.util.Collections.synchronizedMap;
 
 public class QueryProcessor {
 
@@ -46,6 +61,12 @@ public class QueryProcessor {
     @Nonnull private final Executor queryExecutor;
     @Nonnull private final ResultProcessor resultProcessor;
     @Nonnull private final ResultNameStrategy resultNameStrategy;
+    /** Weakly keyed, servers removed by a reload are forgotten. */
+    @Nonnull private final Map<Server, ResultNameStrategy> serverResultNameStrategies =
+            synchronizedMap(new WeakHashMap<Server, ResultNameStrategy>());
+    @Nonnull private final CollectionMonitor collectionMonitor;
+    @Nonnull private final PipelineListener pipelineListener;
+    @Nonnull private final EventRecorder eventRecorder;
 
     public QueryProcessor(
             @Nonnull Clock clock,
@@ -53,16 +74,82 @@ public class QueryProcessor {
             @Nonnull Executor queryExecutor,
             @Nonnull ResultProcessor resultProcessor,
             @Nonnull ResultNameStrategy resultNameStrategy) {
+        this(clock, outputWriters, queryExecutor, resultProcessor, resultNameStrategy,
+                new CollectionMonitor(new SlowQueryLog(100, 1000), 64), PipelineListener.NONE);
+    }
+
+    public QueryProcessor(
+            @Nonnull Clock clock,
+            @Nonnull Iterable<OutputWriter> outputWriters,
+            @Nonnull Executor queryExecutor,
+            @Nonnull ResultProcessor resultProcessor,
+            @Nonnull ResultNameStrategy resultNameStrategy,
+            @Nonnull CollectionMonitor collectionMonitor,
+            @Nonnull PipelineListener pipelineListener) {
+        this(clock, outputWriters, queryExecutor, resultProcessor, resultNameStrategy, collectionMonitor, pipelineListener,
+                EventRecorders.get());
+    }
+
+    public QueryProcessor(
+            @Nonnull Clock clock,
+            @Nonnull Iterable<OutputWriter> outputWriters,
+            @Nonnull Executor queryExecutor,
+            @Nonnull ResultProcessor resultProcessor,
+            @Nonnull ResultNameStrategy resultNameStrategy,
+            @Nonnull CollectionMonitor collectionMonitor,
+            @Nonnull PipelineListener pipelineListener,
+            @Nonnull EventRecorder eventRecorder) {
         this.clock = clock;
         this.outputWriters = outputWriters;
         this.queryExecutor = queryExecutor;
         this.resultProcessor = resultProcessor;
         this.resultNameStrategy = resultNameStrategy;
+        this.collectionMonitor = collectionMonitor;
+        this.pipelineListener = pipelineListener;
+        this.eventRecorder = eventRecorder;
     }
 
     @Nonnull
     public void process(long deadline, @Nonnull Server server, @Nonnull Query query) {
-        queryExecutor.execute(new Processor(clock, deadline, server, query, outputWriters, resultProcessor, resultNameStrategy));
+        process(deadline, server, query, new CollectionCycle(EventRecorder.Cycle.NONE));
+    }
+
+    /**
+     * Enqueues a query of a collection cycle, the query completes the cycle once it ran, failed or was dropped.
+     */
+    public void process(long deadline, @Nonnull Server server, @Nonnull Query query, @Nonnull CollectionCycle cycle) {
+        PipelineTrace trace = new PipelineTrace(pipelineListener, clock.nanoTime());
+        cycle.queryDispatched();
+        try {
+            queryExecutor.execute(new Processor(clock, deadline, server, query, outputWriters, resultProcessor, resultNameStrategy(server), collectionMonitor, trace, eventRecorder, cycle));
+        } catch (RuntimeException e) {
+            cycle.queryCompleted();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the strategy resolving the expressions of the server, built once per server.
+     */
+    @Nonnull
+    private ResultNameStrategy resultNameStrategy(@Nonnull Server server) {
+        ResultNameStrategy serverResultNameStrategy = serverResultNameStrategies.get(server);
+        if (serverResultNameStrategy == null) {
+            serverResultNameStrategy = resultNameStrategy.forServer(server);
+            serverResultNameStrategies.put(server, serverResultNameStrategy);
+        }
+        return serverResultNameStrategy;
+    }
+
+    /**
+     * Sends results which were not collected by a query (self metrics, ...) to all output writers.
+     */
+    public void process(long deadline, @Nonnull Iterable<QueryResult> results) {
+        for (OutputWriter outputWriter : outputWriters) {
+            for (QueryResult result : results) {
+                resultProcessor.writeResult(deadline, result, outputWriter);
+            }
+        }
     }
 
     @ThreadSafe
@@ -73,6 +160,10 @@ public class QueryProcessor {
         @Nonnull private final Iterable<OutputWriter> outputWriters;
         @Nonnull private final ResultProcessor resultProcessor;
         @Nonnull private final ResultNameStrategy resultNameStrategy;
+        @Nonnull private final CollectionMonitor collectionMonitor;
+        @Nonnull private final PipelineTrace trace;
+        @Nonnull private final EventRecorder eventRecorder;
+        @Nonnull private final CollectionCycle cycle;
 
         public Processor(
                 @Nonnull Clock clock,
@@ -81,20 +172,29 @@ public class QueryProcessor {
                 @Nonnull Query query,
                 @Nonnull Iterable<OutputWriter> outputWriters,
                 @Nonnull ResultProcessor resultProcessor,
-                @Nonnull ResultNameStrategy resultNameStrategy) {
+                @Nonnull ResultNameStrategy resultNameStrategy,
+                @Nonnull CollectionMonitor collectionMonitor,
+                @Nonnull PipelineTrace trace,
+                @Nonnull EventRecorder eventRecorder,
+                @Nonnull CollectionCycle cycle) {
             super(clock, deadline);
             this.query = query;
             this.server = server;
             this.outputWriters = outputWriters;
             this.resultProcessor = resultProcessor;
             this.resultNameStrategy = resultNameStrategy;
+            this.collectionMonitor = collectionMonitor;
+            this.trace = trace;
+            this.eventRecorder = eventRecorder;
+            this.cycle = cycle;
         }
 
         @Override
         protected void doRun() {
             try {
                 logger.debug(format("Collecting metrics from query [%s] for server [%s]", query, server));
-                Iterable<QueryResult> results = query.collectMetrics(server.getServerConnection(), resultNameStrategy);
+                Iterable<QueryResult> results = collect();
+                if (results == null) return;
                 for (OutputWriter outputWriter : outputWriters) {
                     for (QueryResult result : results) {
                         try {
@@ -109,6 +209,49 @@ public class QueryProcessor {
             } catch (Throwable t) {
                 logger.error(format("Error while collecting metrics from query [%s] for server [%s]", query, server), t);
                 throw t;
+            } finally {
+                cycle.queryCompleted();
+            }
+        }
+
+        /**
+         * @return collected results, or {@code null} if the server could not be reached.
+         */
+        @Nullable
+        private Iterable<QueryResult> collect() throws IOException {
+            long start = getClock().nanoTime();
+            EventRecorder.QueryExecution execution = eventRecorder.queryStarted(server.getName(), query.getObjectNamePattern().toString());
+            MBeanServerConnection connection;
+            try {
+                connection = server.getServerConnection();
+            } catch (Exception e) {
+                execution.completed(0, false);
+                collectionMonitor.connectFailed(server, query, getClock().nanoTime() - start, getClock().currentTimeMillis(), getDeadline(), e);
+                logger.warn(format("Could not connect to server [%s] for query [%s]", server, query), e);
+                return null;
+            }
+            try {
+                Collection<QueryResult> results = new ArrayList<>();
+                for (QueryResult result : query.collectMetrics(connection, resultNameStrategy, execution)) {
+                    results.add(result.withTrace(trace));
+                }
+                trace.stamp(PipelineStage.COLLECTED, getClock().nanoTime());
+                execution.completed(results.size(), true);
+                collectionMonitor.collected(server, query, getClock().nanoTime() - start, getClock().currentTimeMillis(), getDeadline(), results.size());
+                return results;
+            } catch (IOException | RuntimeException e) {
+                execution.completed(0, false);
+                collectionMonitor.collectionFailed(server, query, getClock().nanoTime() - start, getClock().currentTimeMillis(), getDeadline(), e);
+                throw e;
+            }
+        }
+
+        @Override
+        protected void onDeadlineMissed() {
+            try {
+                collectionMonitor.deadlineMissed(server, query, getClock().currentTimeMillis());
+            } finally {
+                cycle.queryCompleted();
             }
         }
     }
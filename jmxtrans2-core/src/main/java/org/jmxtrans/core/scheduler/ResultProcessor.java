@@ -31,6 +31,7 @@ import javax.annotation.concurrent.ThreadSafe;
 import org.jmxtrans.core.log.Logger;
 import org.jmxtrans.core.log.LoggerFactory;
 import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.results.PipelineStage;
 import org.jmxtrans.core.results.QueryResult;
 import org.jmxtrans.utils.time.Clock;
 
@@ -74,6 +75,7 @@ public class ResultProcessor {
 
         @Override
         protected void doRun() {
+            if (result.getTrace() != null) result.getTrace().stamp(PipelineStage.DEQUEUED, getClock().nanoTime());
             try {
                 int numberOfResultsWritten = outputWriter.write(result);
                 logger.debug(format("Writing [%d] results to [%s]", numberOfResultsWritten, outputWriter));
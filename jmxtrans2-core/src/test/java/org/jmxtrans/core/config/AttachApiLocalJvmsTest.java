@@ -0,0 +1,48 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jmxtrans.utils.PropertyPlaceholderResolver;
+
+import org.testng.annotations.Test;
+
+import static java.lang.management.ManagementFactory.getRuntimeMXBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AttachApiLocalJvmsTest {
+
+    @Test
+    public void currentJvmIsListed() throws Exception {
+        AttachApiLocalJvms localJvms = AttachApiLocalJvms.load(new PropertyPlaceholderResolver());
+        assertThat(localJvms).isNotNull();
+
+        List<String> ids = new ArrayList<>();
+        for (LocalJvm jvm : localJvms.list()) ids.add(jvm.getId());
+
+        assertThat(ids).contains(getRuntimeMXBean().getName().split("@")[0]);
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.annotation.Nonnull;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.output.DevNullOutputWriter;
+import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.query.InProcessServer;
+import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.RemoteServer;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.utils.time.Interval;
+import org.jmxtrans.utils.time.SystemClock;
+
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConfigurationMergerTest {
+
+    private final ConfigurationMerger merger = new ConfigurationMerger();
+
+    @Test
+    public void serversWithTheSameUrlAreMerged() throws MalformedURLException {
+        Configuration merged = merger.merge(Arrays.<Configuration>asList(
+                configuration(remoteServer("host1", query("java.lang:type=Memory"))),
+                configuration(remoteServer("host1", query("java.lang:type=Threading"), query("java.lang:type=Memory"))),
+                configuration(remoteServer("host2", query("java.lang:type=Memory")))));
+
+        Iterator<Server> servers = merged.getServers().iterator();
+        Server host1 = servers.next();
+        assertThat(host1.getHost()).isEqualTo("host1");
+        assertThat(host1.getQueries()).containsExactly(query("java.lang:type=Memory"), query("java.lang:type=Threading"));
+        assertThat(servers.next().getHost()).isEqualTo("host2");
+        assertThat(servers.hasNext()).isFalse();
+    }
+
+    @Test
+    public void identicalQueriesAreShared() throws MalformedURLException {
+        Configuration merged = merger.merge(Arrays.<Configuration>asList(
+                configuration(remoteServer("host1", query("java.lang:type=Memory"))),
+                configuration(remoteServer("host2", query("java.lang:type=Memory")))));
+
+        Iterator<Server> servers = merged.getServers().iterator();
+        Query query1 = servers.next().getQueries().iterator().next();
+        Query query2 = servers.next().getQueries().iterator().next();
+        assertThat(query1).isSameAs(query2);
+    }
+
+    @Test
+    public void queriesWithDifferentAliasesAreNotFolded() {
+        Query aliased = Query.builder().withObjectName("java.lang:type=Memory").withResultAlias("memory").build();
+        Configuration merged = merger.merge(Arrays.<Configuration>asList(
+                configuration(new InProcessServer(Collections.singletonList(query("java.lang:type=Memory")))),
+                configuration(new InProcessServer(Collections.singletonList(aliased)))));
+
+        assertThat(merged.getServers()).hasSize(1);
+        assertThat(merged.getServers().iterator().next().getQueries()).hasSize(2);
+    }
+
+    @Test
+    public void inProcessServersAreMerged() {
+        Configuration merged = merger.merge(Arrays.<Configuration>asList(
+                configuration(new InProcessServer(Collections.singletonList(query("java.lang:type=Memory")))),
+                configuration(new InProcessServer(Arrays.asList(query("java.lang:type=Memory"), query("java.lang:type=Threading"))))));
+
+        assertThat(merged.getServers()).hasSize(1);
+        assertThat(merged.getServers().iterator().next().getQueries()).hasSize(2);
+    }
+
+    @Test
+    public void duplicateInvocationsAreFolded() throws Exception {
+        ModifiableConfiguration configuration1 = new ModifiableConfiguration();
+        configuration1.getInvocations().add(gc());
+        ModifiableConfiguration configuration2 = new ModifiableConfiguration();
+        configuration2.getInvocations().add(gc());
+
+        Configuration merged = merger.merge(Arrays.<Configuration>asList(configuration1, configuration2));
+
+        assertThat(merged.getInvocations()).hasSize(1);
+    }
+
+    @Test
+    public void sameOutputWriterIsOnlyKeptOnce() {
+        OutputWriter outputWriter = new DevNullOutputWriter();
+        ModifiableConfiguration configuration1 = new ModifiableConfiguration();
+        configuration1.getOutputWriters().add(outputWriter);
+        ModifiableConfiguration configuration2 = new ModifiableConfiguration();
+        configuration2.getOutputWriters().add(outputWriter);
+        configuration2.getOutputWriters().add(new DevNullOutputWriter());
+
+        Configuration merged = merger.merge(Arrays.<Configuration>asList(configuration1, configuration2));
+
+        assertThat(merged.getOutputWriters()).hasSize(2);
+        assertThat(merged.getOutputWriters().iterator().next()).isSameAs(outputWriter);
+    }
+
+    @Test
+    public void querySetsShareQueriesWithServers() throws MalformedURLException {
+        ModifiableConfiguration configuration1 = new ModifiableConfiguration();
+        configuration1.addServer(remoteServer("host1", query("java.lang:type=Memory")));
+        ModifiableConfiguration configuration2 = new ModifiableConfiguration();
+        configuration2.getQuerySets().put("jvm", Collections.singletonList(query("java.lang:type=Memory")));
+
+        Configuration merged = merger.merge(Arrays.<Configuration>asList(configuration1, configuration2));
+
+        assertThat(merged.getQuerySets().get("jvm").get(0))
+                .isSameAs(merged.getServers().iterator().next().getQueries().iterator().next());
+    }
+
+    @Test
+    public void lastPeriodIsKept() {
+        ModifiableConfiguration configuration1 = new ModifiableConfiguration();
+        configuration1.setPeriod(new Interval(10, SECONDS));
+        ModifiableConfiguration configuration2 = new ModifiableConfiguration();
+        configuration2.setPeriod(new Interval(20, SECONDS));
+
+        Configuration merged = merger.merge(Arrays.<Configuration>asList(configuration1, configuration2));
+
+        assertThat(merged.getPeriod()).isEqualTo(new Interval(20, SECONDS));
+    }
+
+    @Test
+    public void overloadThresholdsAreKeptWhenLaterFragmentsDoNotDeclareThem() {
+        ModifiableConfiguration configuration1 = new ModifiableConfiguration();
+        configuration1.setMaxPeriodStretch(4);
+        configuration1.setOverloadRecoveryCycles(5);
+        configuration1.setMinCompletionRatio(0.75);
+        ModifiableConfiguration configuration2 = new ModifiableConfiguration();
+
+        Configuration merged = merger.merge(Arrays.<Configuration>asList(configuration1, configuration2));
+
+        assertThat(merged.getMaxPeriodStretch()).isEqualTo(4);
+        assertThat(merged.getOverloadRecoveryCycles()).isEqualTo(5);
+        assertThat(merged.getMinCompletionRatio()).isEqualTo(0.75);
+    }
+
+    @Test
+    public void overloadThresholdsDefaultWhenNotDeclared() {
+        Configuration merged = merger.merge(Collections.<Configuration>singletonList(new ModifiableConfiguration()));
+
+        assertThat(merged.getMaxPeriodStretch()).isEqualTo(8);
+        assertThat(merged.getOverloadRecoveryCycles()).isEqualTo(3);
+        assertThat(merged.getMinCompletionRatio()).isEqualTo(0.9);
+    }
+
+    @Nonnull
+    private static Configuration configuration(@Nonnull Server server) {
+        ModifiableConfiguration configuration = new ModifiableConfiguration();
+        configuration.addServer(server);
+        return configuration;
+    }
+
+    @Nonnull
+    private static RemoteServer remoteServer(@Nonnull String host, @Nonnull Query... queries) throws MalformedURLException {
+        return RemoteServer.builder()
+                .withHost(host)
+                .withPort(1099)
+                .withQueries(Arrays.asList(queries))
+                .build();
+    }
+
+    @Nonnull
+    private static Query query(@Nonnull String objectName) {
+        return Query.builder().withObjectName(objectName).addAttribute("attribute").build();
+    }
+
+    @Nonnull
+    private static Invocation gc() throws Exception {
+        return new Invocation(new ObjectName("java.lang:type=Memory"), "gc", new Object[0], new String[0], "jvm.gc", new SystemClock());
+    }
+}
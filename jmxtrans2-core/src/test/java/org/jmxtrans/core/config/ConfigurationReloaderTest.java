@@ -0,0 +1,233 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.management.MalformedObjectNameException;
+
+import org.jmxtrans.core.monitoring.MBeanRegistry;
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.query.CollectionMonitor;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.SlowQueryLog;
+import org.jmxtrans.core.query.TargetHealth;
+import org.jmxtrans.utils.PropertyPlaceholderResolver;
+import org.jmxtrans.utils.io.FileResource;
+import org.jmxtrans.utils.io.Resource;
+import org.jmxtrans.utils.io.TemporaryFolder;
+import org.jmxtrans.utils.time.SystemClock;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+public class ConfigurationReloaderTest {
+
+    private TemporaryFolder folder;
+    private File file1;
+    private File file2;
+    private LiveConfiguration liveConfiguration;
+    private MBeanRegistry mBeanRegistry;
+    private CollectionMonitor collectionMonitor;
+    private ConfigurationReloader reloader;
+
+    @BeforeMethod
+    public void createReloader() throws Exception {
+        folder = new TemporaryFolder();
+        File directory = folder.newFolder();
+        file1 = new File(directory, "config1.xml");
+        file2 = new File(directory, "config2.xml");
+        write(file1, server("host1", "java.lang:type=Memory"));
+        write(file2, server("host2", "java.lang:type=Memory"));
+
+        OutputWriterLoader outputWriterLoader = new OutputWriterLoader(new SystemClock(), new ObjectNameFactory("outputWriter"));
+        ConfigParser parser = new StaxConfigParser(new PropertyPlaceholderResolver(), outputWriterLoader);
+        Map<Resource, Configuration> configurations = new LinkedHashMap<>();
+        for (File file : new File[] { file1, file2 }) {
+            Resource resource = new FileResource(file);
+            configurations.put(resource, parser.parseConfiguration(resource));
+        }
+        liveConfiguration = new LiveConfiguration(new ConfigurationMerger().merge(configurations.values()));
+        mBeanRegistry = new MBeanRegistry(getPlatformMBeanServer());
+        collectionMonitor = new CollectionMonitor(new SlowQueryLog(10, 1000), 16);
+        reloader = new ConfigurationReloader(
+                new SystemClock(),
+                Collections.singleton(parser),
+                configurations,
+                liveConfiguration,
+                mBeanRegistry,
+                collectionMonitor,
+                outputWriterLoader,
+                50);
+    }
+
+    @AfterMethod
+    public void stopReloader() throws IOException {
+        reloader.stop();
+        folder.destroy();
+    }
+
+    @Test
+    public void onlyChangedServersAreReplaced() throws IOException {
+        Iterator<Server> servers = liveConfiguration.getServers().iterator();
+        servers.next();
+        Server host2 = servers.next();
+        write(file1, server("host1", "java.lang:type=Memory", "java.lang:type=Threading"));
+
+        assertThat(reloader.reload(Collections.<Resource>singleton(new FileResource(file1)))).isTrue();
+
+        servers = liveConfiguration.getServers().iterator();
+        assertThat(servers.next().getQueries()).hasSize(2);
+        assertThat(servers.next()).isSameAs(host2);
+        assertThat(reloader.getReloadCount()).isEqualTo(1);
+        assertThat(reloader.getLastError()).isNull();
+    }
+
+    @Test
+    public void targetHealthOfAddedAndRemovedServersIsRegistered() throws IOException {
+        for (Server server : liveConfiguration.getServers()) collectionMonitor.getTargetHealth(server);
+        mBeanRegistry.registerAll(collectionMonitor.getTargetHealths());
+        write(file2, server("host3", "java.lang:type=Memory"));
+
+        assertThat(reloader.reload(Collections.<Resource>singleton(new FileResource(file2)))).isTrue();
+
+        List<String> registered = new ArrayList<>();
+        for (Object mBean : mBeanRegistry.getMBeans().keySet()) {
+            if (mBean instanceof TargetHealth) registered.add(((TargetHealth) mBean).getServer());
+        }
+        assertThat(registered).containsOnly("host1:1099", "host3:1099");
+        assertThat(collectionMonitor.getTargetHealths()).hasSize(2);
+    }
+
+    @Test
+    public void invalidConfigurationsAreNotApplied() throws IOException {
+        Iterable<Server> before = copy(liveConfiguration.getServers());
+        write(file1, "<jmxtrans xmlns='http://jmxtrans.org/config/2.0'><servers>");
+
+        assertThat(reloader.reload(Collections.<Resource>singleton(new FileResource(file1)))).isFalse();
+
+        assertThat(liveConfiguration.getServers()).containsExactlyElementsOf(before);
+        assertThat(reloader.getFailedReloadCount()).isEqualTo(1);
+        assertThat(reloader.getLastError()).isNotNull();
+    }
+
+    @Test
+    public void unknownResourcesAreIgnored() {
+        assertThat(reloader.reload(Collections.<Resource>singleton(new FileResource(new File("unknown.xml"))))).isTrue();
+
+        assertThat(liveConfiguration.getServers()).hasSize(2);
+    }
+
+    @Test(timeOut = 20000)
+    public void modifiedFilesAreReloaded() throws Exception {
+        reloader.start();
+
+        write(file2, server("host3", "java.lang:type=Memory"));
+
+        while (reloader.getReloadCount() == 0) Thread.sleep(50);
+        Iterator<Server> servers = liveConfiguration.getServers().iterator();
+        assertThat(servers.next().getHost()).isEqualTo("host1");
+        assertThat(servers.next().getHost()).isEqualTo("host3");
+    }
+
+    @Test
+    public void targetsWithKnownQuerySetsAreAdded() throws IOException {
+        write(file1, "<jmxtrans xmlns='http://jmxtrans.org/config/2.0'>"
+                + "<querySets><querySet name='jvm'><query objectName='java.lang:type=Memory'/></querySet></querySets>"
+                + "</jmxtrans>");
+        reloader.reload(Collections.<Resource>singleton(new FileResource(file1)));
+        Query memory = liveConfiguration.getServers().iterator().next().getQueries().iterator().next();
+
+        assertThat(reloader.updateTargets("test", Arrays.asList(
+                new Target("host3", 1099, "jvm", Collections.<String, String>emptyMap()),
+                new Target("host4", 1099, "unknown", Collections.<String, String>emptyMap())))).isTrue();
+
+        Iterator<Server> servers = liveConfiguration.getServers().iterator();
+        assertThat(servers.next().getHost()).isEqualTo("host2");
+        Server host3 = servers.next();
+        assertThat(host3.getHost()).isEqualTo("host3");
+        assertThat(host3.getQueries().iterator().next()).isSameAs(memory);
+        assertThat(servers.hasNext()).isFalse();
+    }
+
+    @Test
+    public void eachSourceReplacesItsOwnTargets() throws IOException {
+        write(file1, "<jmxtrans xmlns='http://jmxtrans.org/config/2.0'>"
+                + "<querySets><querySet name='jvm'><query objectName='java.lang:type=Memory'/></querySet></querySets>"
+                + "</jmxtrans>");
+        reloader.reload(Collections.<Resource>singleton(new FileResource(file1)));
+        reloader.updateTargets("files", Collections.singletonList(new Target("host3", 1099, "jvm", Collections.<String, String>emptyMap())));
+        reloader.updateTargets("local", Collections.singletonList(
+                Target.forUrl("service:jmx:rmi://127.0.0.1/stub/42", "jvm", Collections.<String, String>emptyMap())));
+
+        reloader.updateTargets("files", Collections.<Target>emptyList());
+
+        Iterator<Server> servers = liveConfiguration.getServers().iterator();
+        assertThat(servers.next().getHost()).isEqualTo("host2");
+        assertThat(servers.next().getHost()).isEqualTo("127.0.0.1");
+        assertThat(servers.hasNext()).isFalse();
+    }
+
+    @Test
+    public void reloaderIsNamed() throws MalformedObjectNameException {
+        assertThat(reloader.getObjectName().getKeyProperty("type")).isEqualTo("config");
+    }
+
+    @Nonnull
+    private static <T> Iterable<T> copy(@Nonnull Iterable<T> elements) {
+        List<T> copy = new ArrayList<>();
+        for (T element : elements) copy.add(element);
+        return copy;
+    }
+
+    @Nonnull
+    private static String server(@Nonnull String host, @Nonnull String... objectNames) {
+        StringBuilder xml = new StringBuilder("<jmxtrans xmlns='http://jmxtrans.org/config/2.0'><servers>")
+                .append("<server host='").append(host).append("' port='1099'><queries>");
+        for (String objectName : objectNames) {
+            xml.append("<query objectName='").append(objectName).append("'/>");
+        }
+        return xml.append("</queries></server></servers></jmxtrans>").toString();
+    }
+
+    private static void write(@Nonnull File file, @Nonnull String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jmxtrans.core.monitoring.MBeanRegistry;
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.query.CollectionMonitor;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.SlowQueryLog;
+import org.jmxtrans.utils.PropertyPlaceholderResolver;
+import org.jmxtrans.utils.io.FileResource;
+import org.jmxtrans.utils.io.Resource;
+import org.jmxtrans.utils.io.TemporaryFolder;
+import org.jmxtrans.utils.time.SystemClock;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+import static java.util.Arrays.asList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+public class FileTargetDiscoveryTest {
+
+    private TemporaryFolder folder;
+    private File targetDirectory;
+    private LiveConfiguration liveConfiguration;
+    private ConfigurationReloader reloader;
+    private FileTargetDiscovery discovery;
+
+    @BeforeMethod
+    public void createDiscovery() throws Exception {
+        folder = new TemporaryFolder();
+        File configFile = new File(folder.newFolder(), "config.xml");
+        write(configFile, "<jmxtrans xmlns='http://jmxtrans.org/config/2.0'>"
+                + "<querySets><querySet name='jvm'><query objectName='java.lang:type=Memory'/></querySet></querySets>"
+                + "</jmxtrans>");
+        targetDirectory = folder.newFolder();
+
+        OutputWriterLoader outputWriterLoader = new OutputWriterLoader(new SystemClock(), new ObjectNameFactory("outputWriter"));
+        ConfigParser parser = new StaxConfigParser(new PropertyPlaceholderResolver(), outputWriterLoader);
+        Map<Resource, Configuration> configurations = new LinkedHashMap<>();
+        Resource resource = new FileResource(configFile);
+        configurations.put(resource, parser.parseConfiguration(resource));
+        liveConfiguration = new LiveConfiguration(new ConfigurationMerger().merge(configurations.values()));
+        reloader = new ConfigurationReloader(
+                new SystemClock(),
+                Collections.singleton(parser),
+                configurations,
+                liveConfiguration,
+                new MBeanRegistry(getPlatformMBeanServer()),
+                new CollectionMonitor(new SlowQueryLog(10, 1000), 16),
+                outputWriterLoader,
+                50);
+        discovery = new FileTargetDiscovery(
+                Collections.singleton(targetDirectory),
+                asList(new PropertiesTargetReader(), new JsonTargetReader()),
+                reloader,
+                50);
+    }
+
+    @AfterMethod
+    public void stopDiscovery() throws IOException {
+        discovery.stop();
+        folder.destroy();
+    }
+
+    @Test
+    public void targetsAreDiscoveredOnStart() throws Exception {
+        write(new File(targetDirectory, "web.properties"), target("web1", 1099) + target("web2", 1099));
+        write(new File(targetDirectory, "db.json"), "[ { \"host\": \"db1\", \"port\": 1099, \"querySet\": \"jvm\" } ]");
+
+        discovery.start();
+
+        assertThat(liveConfiguration.getServers()).hasSize(3);
+        Server web1 = server("web1");
+        assertThat(web1).isNotNull();
+        assertThat(web1.getQueries()).hasSize(1);
+        assertThat(server("db1")).isNotNull();
+    }
+
+    @Test
+    public void unchangedTargetsKeepTheirServer() throws Exception {
+        File targets = new File(targetDirectory, "web.properties");
+        write(targets, target("web1", 1099));
+        discovery.start();
+        Server web1 = server("web1");
+
+        write(targets, target("web1", 1099) + target("web2", 1099));
+        discovery.refresh(Collections.singleton(targets.toPath().toAbsolutePath()));
+
+        assertThat(server("web1")).isSameAs(web1);
+        assertThat(server("web2")).isNotNull();
+    }
+
+    @Test
+    public void deletedFilesRemoveTheirTargets() throws Exception {
+        File targets = new File(targetDirectory, "web.properties");
+        write(targets, target("web1", 1099));
+        discovery.start();
+
+        Files.delete(targets.toPath());
+        discovery.refresh(Collections.singleton(targets.toPath().toAbsolutePath()));
+
+        assertThat(liveConfiguration.getServers()).isEmpty();
+    }
+
+    @Test
+    public void invalidFilesKeepTheirTargets() throws Exception {
+        File targets = new File(targetDirectory, "web.properties");
+        write(targets, target("web1", 1099));
+        discovery.start();
+
+        write(targets, "web1.host=web1\n");
+        discovery.refresh(Collections.singleton(targets.toPath().toAbsolutePath()));
+
+        assertThat(server("web1")).isNotNull();
+    }
+
+    @Test
+    public void targetsWithUnknownQuerySetsAreIgnored() throws Exception {
+        write(new File(targetDirectory, "web.properties"), target("web1", 1099) + "web2.host=web2\nweb2.port=1099\nweb2.querySet=tomcat\n");
+
+        discovery.start();
+
+        assertThat(liveConfiguration.getServers()).hasSize(1);
+    }
+
+    @Test
+    public void largeTargetFilesAreSupported() throws Exception {
+        File targets = new File(targetDirectory, "fleet.json");
+        write(targets, fleet(10000, -1));
+        discovery.start();
+        assertThat(liveConfiguration.getServers()).hasSize(10000);
+        Server first = server("host0");
+
+        write(targets, fleet(10000, 42));
+        discovery.refresh(Collections.singleton(targets.toPath().toAbsolutePath()));
+
+        assertThat(liveConfiguration.getServers()).hasSize(10000);
+        assertThat(server("host0")).isSameAs(first);
+        assertThat(server("moved42")).isNotNull();
+    }
+
+    @Test(timeOut = 20000)
+    public void modifiedTargetFilesAreDiscovered() throws Exception {
+        discovery.start();
+
+        write(new File(targetDirectory, "web.properties"), target("web1", 1099));
+
+        while (server("web1") == null) Thread.sleep(50);
+    }
+
+    @Nullable
+    private Server server(@Nonnull String host) {
+        for (Server server : liveConfiguration.getServers()) {
+            if (host.equals(server.getHost())) return server;
+        }
+        return null;
+    }
+
+    @Nonnull
+    private static String target(@Nonnull String host, int port) {
+        return host + ".host=" + host + "\n" + host + ".port=" + port + "\n" + host + ".querySet=jvm\n";
+    }
+
+    @Nonnull
+    private static String fleet(int size, int moved) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) json.append(',');
+            String host = i == moved ? "moved" + i : "host" + i;
+            json.append("{ \"host\": \"").append(host).append("\", \"port\": 1099, \"querySet\": \"jvm\" }");
+        }
+        return json.append(']').toString();
+    }
+
+    private static void write(@Nonnull File file, @Nonnull String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(UTF_8));
+    }
+}
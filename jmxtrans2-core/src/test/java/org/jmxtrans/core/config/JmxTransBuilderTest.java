@@ -24,6 +24,7 @@ package org.jmxtrans.core.config;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 
 import javax.management.MalformedObjectNameException;
@@ -48,6 +49,38 @@ public class JmxTransBuilderTest {
         assertThat(scheduler).isNotNull();
     }
 
+    @Test
+    public void schedulerIsBuiltFromJsonConfiguration() throws SAXException, IllegalAccessException, IOException, JAXBException, InstantiationException, ParserConfigurationException, ClassNotFoundException, MalformedObjectNameException {
+        NaiveScheduler scheduler = new JmxTransBuilder(false,
+                Collections.<Resource>singletonList(new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.json"))).build();
+        assertThat(scheduler).isNotNull();
+    }
+
+    @Test
+    public void schedulerIsBuiltWithStreamingXmlParser() throws SAXException, IllegalAccessException, IOException, JAXBException, InstantiationException, ParserConfigurationException, ClassNotFoundException, MalformedObjectNameException {
+        NaiveScheduler scheduler = new JmxTransBuilder(false,
+                Collections.<Resource>singletonList(new StandardResource(getConfigFile().getAbsolutePath())), true).build();
+        assertThat(scheduler).isNotNull();
+    }
+
+    @Test
+    public void schedulerIsBuiltFromSeveralConfigurations() throws SAXException, IllegalAccessException, IOException, JAXBException, InstantiationException, ParserConfigurationException, ClassNotFoundException, MalformedObjectNameException {
+        NaiveScheduler scheduler = new JmxTransBuilder(false,
+                Arrays.<Resource>asList(
+                        new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.xml"),
+                        new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.json"),
+                        new StandardResource("classpath:org/jmxtrans/core/config/no-collection-interval.xml"))).build();
+        assertThat(scheduler).isNotNull();
+    }
+
+    @Test(expectedExceptions = JmxtransConfigurationException.class)
+    public void parsingErrorsInAnyConfigurationAreRaised() throws SAXException, IllegalAccessException, IOException, JAXBException, InstantiationException, ParserConfigurationException, ClassNotFoundException, MalformedObjectNameException {
+        new JmxTransBuilder(false,
+                Arrays.<Resource>asList(
+                        new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.xml"),
+                        new StandardResource("classpath:org/jmxtrans/core/config/invalid-configuration.xml"))).build();
+    }
+
     @Test
     public void parsingErrorsAreIgnoredIfSoConfigured() throws SAXException, IllegalAccessException, IOException, JAXBException, InstantiationException, ParserConfigurationException, ClassNotFoundException, MalformedObjectNameException {
         NaiveScheduler scheduler = new JmxTransBuilder(true,
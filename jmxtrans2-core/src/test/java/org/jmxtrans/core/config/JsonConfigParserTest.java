@@ -0,0 +1,163 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.utils.PropertyPlaceholderResolver;
+import org.jmxtrans.utils.io.Resource;
+import org.jmxtrans.utils.io.StandardResource;
+import org.jmxtrans.utils.time.Interval;
+import org.jmxtrans.utils.time.SystemClock;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JsonConfigParserTest {
+
+    private JsonConfigParser parser;
+
+    @BeforeMethod
+    public void createConfigurationParser() {
+        parser = new JsonConfigParser(
+                new PropertyPlaceholderResolver(),
+                new SystemClock(),
+                new ObjectNameFactory("outputWriter"));
+    }
+
+    @Test
+    public void onlyJsonFilesAreSupported() {
+        assertThat(parser.supports(new StandardResource("classpath:jmxtrans.json"))).isTrue();
+        assertThat(parser.supports(new StandardResource("classpath:jmxtrans.xml"))).isFalse();
+    }
+
+    @Test(expectedExceptions = JsonParseException.class)
+    public void invalidConfigurationThrowsException() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/invalid-configuration.json");
+        parser.parseConfiguration(resource);
+    }
+
+    @Test
+    public void queriesAreParsed() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.json");
+        Configuration configuration = parser.parseConfiguration(resource);
+        assertThat(configuration.getServers()).hasSize(1);
+        Server server = configuration.getServers().iterator().next();
+        assertThat(server.getQueries()).hasSize(3);
+        assertThat(configuration.getPeriod()).isEqualTo(new Interval(10, SECONDS));
+
+        Iterator<Query> queries = server.getQueries().iterator();
+        assertThat(queries.next().getMaxResults()).isEqualTo(50);
+        Query permgen = queries.next();
+        assertThat(permgen.getResultAlias()).isEqualTo("permgen");
+        assertThat(permgen.getQueryAttributes()).hasSize(1);
+        assertThat(permgen.getQueryAttributes().iterator().next().getName()).isEqualTo("CollectionUsageThresholdCount");
+        assertThat(queries.next().getMaxResults()).isEqualTo(10);
+    }
+
+    @Test
+    public void serversAreParsedWithPlaceholders() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/with-servers.json");
+        Configuration configuration = parser.parseConfiguration(resource);
+        assertThat(configuration.getServers()).hasSize(1);
+
+        Server server = configuration.getServers().iterator().next();
+        assertThat(server.getHost()).isEqualTo("host.test.net");
+        assertThat(server.getQueries()).hasSize(1);
+        assertThat(configuration.getSelfMetricsPrefix()).isEqualTo("jmxtrans");
+    }
+
+    @Test
+    public void overloadThresholdsAreParsed() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/with-servers.json"));
+        assertThat(configuration.getMaxPeriodStretch()).isEqualTo(4);
+        assertThat(configuration.getOverloadRecoveryCycles()).isNull();
+        assertThat(configuration.getMinCompletionRatio()).isEqualTo(0.75);
+    }
+
+    @Test
+    public void invocationsAreParsed() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.json");
+        Configuration configuration = parser.parseConfiguration(resource);
+        assertThat(configuration.getInvocations()).hasSize(2);
+
+        Iterator<Invocation> invocationIterator = configuration.getInvocations().iterator();
+
+        Invocation gc = invocationIterator.next();
+        assertThat(gc).isEqualTo(new Invocation(new ObjectName("java.lang:type=Memory"), "gc", new Object[0], new String[0], "jvm.gc", new SystemClock()));
+
+        Invocation threadCpuTime = invocationIterator.next();
+        assertThat(threadCpuTime).isEqualTo(new Invocation(
+                new ObjectName("java.lang:type=Threading"),
+                "getThreadCpuTime",
+                new Object[] { "1" },
+                new String[] { "long" },
+                "jvm.thread.cpu", new SystemClock()
+        ));
+    }
+
+    @Test
+    public void outputWritersAreParsed() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.json");
+        Configuration configuration = parser.parseConfiguration(resource);
+        assertThat(configuration.getOutputWriters()).hasSize(2);
+    }
+
+    @Test
+    public void noSelfMetricsIfNotConfigured() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.json");
+        Configuration configuration = parser.parseConfiguration(resource);
+        assertThat(configuration.getSelfMetricsPrefix()).isNull();
+    }
+
+    @Test
+    public void querySetsAreSharedBetweenServers() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/with-query-sets.json"));
+        Iterator<Server> servers = configuration.getServers().iterator();
+        List<Query> host1 = new ArrayList<>();
+        for (Query query : servers.next().getQueries()) host1.add(query);
+        List<Query> host2 = new ArrayList<>();
+        for (Query query : servers.next().getQueries()) host2.add(query);
+
+        assertThat(host1).hasSize(3);
+        assertThat(host2).hasSize(2);
+        assertThat(host2.get(0)).isSameAs(host1.get(1));
+        assertThat(host2.get(1)).isSameAs(host1.get(2));
+        assertThat(configuration.getQuerySets().get("jvm")).containsExactlyElementsOf(host2);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.jmxtrans.utils.io.Resource;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+public class JsonTargetReaderTest {
+
+    private final JsonTargetReader reader = new JsonTargetReader();
+
+    @Test
+    public void targetsAreRead() throws Exception {
+        List<Target> targets = reader.readTargets(json("["
+                + "{ \"host\": \"web-1.example.com\", \"port\": 9999, \"querySet\": \"tomcat\", \"labels\": { \"datacenter\": \"eu-west\" } },"
+                + "{ \"host\": \"db.example.com\", \"port\": 1099, \"querySet\": \"jvm\" }"
+                + "]"));
+
+        assertThat(targets).containsExactly(
+                new Target("web-1.example.com", 9999, "tomcat", Collections.singletonMap("datacenter", "eu-west")),
+                new Target("db.example.com", 1099, "jvm", Collections.<String, String>emptyMap()));
+    }
+
+    @Test
+    public void emptyListHasNoTargets() throws Exception {
+        assertThat(reader.readTargets(json("[]"))).isEmpty();
+    }
+
+    @Test(expectedExceptions = JsonParseException.class, expectedExceptionsMessageRegExp = "Missing property 'querySet'(?s).*")
+    public void querySetIsRequired() throws Exception {
+        reader.readTargets(json("[ { \"host\": \"db.example.com\", \"port\": 1099 } ]"));
+    }
+
+    @Test(expectedExceptions = JsonParseException.class, expectedExceptionsMessageRegExp = "Unknown property 'user'(?s).*")
+    public void unknownPropertiesAreRejected() throws Exception {
+        reader.readTargets(json("[ { \"host\": \"db.example.com\", \"user\": \"admin\" } ]"));
+    }
+
+    @Nonnull
+    private static Resource json(@Nonnull final String content) {
+        return new Resource() {
+            @Nonnull
+            @Override
+            public String getPath() {
+                return "targets.json";
+            }
+
+            @Nonnull
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(content.getBytes(UTF_8));
+            }
+        };
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.annotation.Nonnull;
+
+import org.jmxtrans.core.output.DevNullOutputWriter;
+import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.query.InProcessServer;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.RemoteServer;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.perfdata.PerfDataServer;
+import org.jmxtrans.utils.time.Interval;
+
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LiveConfigurationTest {
+
+    @Test
+    public void unchangedServersAreKept() throws MalformedURLException {
+        RemoteServer server = remoteServer("host1", null, query("java.lang:type=Memory"));
+        LiveConfiguration live = new LiveConfiguration(configuration(server));
+
+        LiveConfiguration.Changes changes = live.update(configuration(remoteServer("host1", null, query("java.lang:type=Memory"))));
+
+        assertThat(live.getServers()).containsExactly(server);
+        assertThat(changes.isEmpty()).isTrue();
+        assertThat(changes.getAddedQueries()).isEmpty();
+    }
+
+    @Test
+    public void serversWithNewQueriesKeepExistingQueries() throws MalformedURLException {
+        Query memory = query("java.lang:type=Memory");
+        RemoteServer server = remoteServer("host1", null, memory);
+        LiveConfiguration live = new LiveConfiguration(configuration(server));
+
+        LiveConfiguration.Changes changes = live.update(configuration(
+                remoteServer("host1", null, query("java.lang:type=Memory"), query("java.lang:type=Threading"))));
+
+        Server updated = live.getServers().iterator().next();
+        assertThat(updated).isNotSameAs(server);
+        Iterator<Query> queries = updated.getQueries().iterator();
+        assertThat(queries.next()).isSameAs(memory);
+        assertThat(queries.next()).isEqualTo(query("java.lang:type=Threading"));
+        assertThat(changes.getRemovedServers()).containsExactly(server);
+        assertThat(changes.getDisconnectedServers()).isEmpty();
+        assertThat(changes.getAddedQueries()).containsExactly(query("java.lang:type=Threading"));
+        assertThat(changes.getRemovedQueries()).isEmpty();
+    }
+
+    @Test
+    public void serversWithNewCredentialsAreReplaced() throws MalformedURLException {
+        RemoteServer server = remoteServer("host1", null, query("java.lang:type=Memory"));
+        LiveConfiguration live = new LiveConfiguration(configuration(server));
+
+        LiveConfiguration.Changes changes = live.update(
+                configuration(remoteServer("host1", "admin", query("java.lang:type=Memory"))));
+
+        assertThat(live.getServers().iterator().next()).isNotSameAs(server);
+        assertThat(changes.getDisconnectedServers()).containsExactly(server);
+    }
+
+    @Test
+    public void removedServersAndQueriesAreReported() throws MalformedURLException {
+        RemoteServer server1 = remoteServer("host1", null, query("java.lang:type=Memory"));
+        RemoteServer server2 = remoteServer("host2", null, query("java.lang:type=Threading"));
+        ModifiableConfiguration configuration = new ModifiableConfiguration();
+        configuration.addServer(server1);
+        configuration.addServer(server2);
+        LiveConfiguration live = new LiveConfiguration(configuration);
+
+        LiveConfiguration.Changes changes = live.update(configuration(remoteServer("host1", null, query("java.lang:type=Memory"))));
+
+        assertThat(live.getServers()).containsExactly(server1);
+        assertThat(changes.getRemovedServers()).containsExactly(server2);
+        assertThat(changes.getDisconnectedServers()).containsExactly(server2);
+        assertThat(changes.getRemovedQueries()).containsExactly(query("java.lang:type=Threading"));
+    }
+
+    @Test
+    public void inProcessServerIsKeptWhenQueriesAreUnchanged() {
+        InProcessServer server = new InProcessServer(Collections.singletonList(query("java.lang:type=Memory")));
+        LiveConfiguration live = new LiveConfiguration(configuration(server));
+
+        live.update(configuration(new InProcessServer(Collections.singletonList(query("java.lang:type=Memory")))));
+
+        assertThat(live.getServers()).containsExactly(server);
+    }
+
+    @Test
+    public void otherServersAreKeptWhenEqual() {
+        PerfDataServer server = new PerfDataServer(new File("/tmp/hsperfdata_jmxtrans/42"), Collections.singletonList(query("perfdata:name=*")));
+        LiveConfiguration live = new LiveConfiguration(configuration(server));
+
+        LiveConfiguration.Changes changes = live.update(configuration(
+                new PerfDataServer(new File("/tmp/hsperfdata_jmxtrans/42"), Collections.singletonList(query("perfdata:name=*")))));
+
+        assertThat(live.getServers()).containsExactly(server);
+        assertThat(changes.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void outputWritersAreAddedAndRemovedByInstance() {
+        OutputWriter kept = new DevNullOutputWriter();
+        OutputWriter removed = new DevNullOutputWriter();
+        OutputWriter added = new DevNullOutputWriter();
+        ModifiableConfiguration configuration = new ModifiableConfiguration();
+        configuration.getOutputWriters().addAll(Arrays.asList(kept, removed));
+        LiveConfiguration live = new LiveConfiguration(configuration);
+
+        ModifiableConfiguration updated = new ModifiableConfiguration();
+        updated.getOutputWriters().addAll(Arrays.asList(kept, added));
+        LiveConfiguration.Changes changes = live.update(updated);
+
+        assertThat(live.getOutputWriters()).containsExactly(kept, added);
+        assertThat(changes.getAddedOutputWriters()).containsExactly(added);
+        assertThat(changes.getRemovedOutputWriters()).containsExactly(removed);
+    }
+
+    @Test
+    public void iterablesFollowUpdates() throws MalformedURLException {
+        LiveConfiguration live = new LiveConfiguration(configuration(remoteServer("host1", null)));
+        Iterable<Server> servers = live.getServers();
+
+        live.update(configuration(remoteServer("host2", null)));
+
+        assertThat(servers.iterator().next().getHost()).isEqualTo("host2");
+    }
+
+    @Test
+    public void periodIsNotUpdated() {
+        LiveConfiguration live = new LiveConfiguration(new ModifiableConfiguration());
+        ModifiableConfiguration updated = new ModifiableConfiguration();
+        updated.setPeriod(new Interval(42, SECONDS));
+
+        LiveConfiguration.Changes changes = live.update(updated);
+
+        assertThat(changes.isPeriodChanged()).isTrue();
+        assertThat(live.getPeriod()).isNotEqualTo(new Interval(42, SECONDS));
+    }
+
+    @Test
+    public void overloadThresholdsAreOnlyReportedWhenTheyChange() {
+        ConfigurationMerger merger = new ConfigurationMerger();
+        ModifiableConfiguration initial = new ModifiableConfiguration();
+        initial.setMaxPeriodStretch(4);
+        LiveConfiguration live = new LiveConfiguration(merger.merge(Collections.<Configuration>singletonList(initial)));
+
+        assertThat(live.update(merger.merge(Collections.<Configuration>singletonList(initial)))
+                .isOverloadThresholdsChanged()).isFalse();
+
+        ModifiableConfiguration updated = new ModifiableConfiguration();
+        updated.setMaxPeriodStretch(2);
+        assertThat(live.update(merger.merge(Collections.<Configuration>singletonList(updated)))
+                .isOverloadThresholdsChanged()).isTrue();
+        assertThat(live.getMaxPeriodStretch()).isEqualTo(4);
+    }
+
+    @Nonnull
+    private static Configuration configuration(@Nonnull Server server) {
+        ModifiableConfiguration configuration = new ModifiableConfiguration();
+        configuration.addServer(server);
+        return configuration;
+    }
+
+    @Nonnull
+    private static RemoteServer remoteServer(@Nonnull String host, String username, @Nonnull Query... queries) throws MalformedURLException {
+        return RemoteServer.builder()
+                .withHost(host)
+                .withPort(1099)
+                .withUsername(username)
+                .withPassword(username)
+                .withQueries(Arrays.asList(queries))
+                .build();
+    }
+
+    @Nonnull
+    private static Query query(@Nonnull String objectName) {
+        return Query.builder().withObjectName(objectName).addAttribute("attribute").build();
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nonnull;
+
+import org.jmxtrans.core.monitoring.MBeanRegistry;
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.query.CollectionMonitor;
+import org.jmxtrans.core.query.RemoteServer;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.SlowQueryLog;
+import org.jmxtrans.utils.PropertyPlaceholderResolver;
+import org.jmxtrans.utils.io.FileResource;
+import org.jmxtrans.utils.io.Resource;
+import org.jmxtrans.utils.io.TemporaryFolder;
+import org.jmxtrans.utils.time.SystemClock;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+public class LocalJvmDiscoveryTest {
+
+    private TemporaryFolder folder;
+    private LiveConfiguration liveConfiguration;
+    private FakeLocalJvms localJvms;
+    private LocalJvmDiscovery discovery;
+
+    @BeforeMethod
+    public void createDiscovery() throws Exception {
+        folder = new TemporaryFolder();
+        File configFile = new File(folder.newFolder(), "config.xml");
+        Files.write(configFile.toPath(), ("<jmxtrans xmlns='http://jmxtrans.org/config/2.0'>"
+                + "<querySets><querySet name='jvm'><query objectName='java.lang:type=Memory'/></querySet></querySets>"
+                + "</jmxtrans>").getBytes(UTF_8));
+
+        OutputWriterLoader outputWriterLoader = new OutputWriterLoader(new SystemClock(), new ObjectNameFactory("outputWriter"));
+        ConfigParser parser = new StaxConfigParser(new PropertyPlaceholderResolver(), outputWriterLoader);
+        Map<Resource, Configuration> configurations = new LinkedHashMap<>();
+        Resource resource = new FileResource(configFile);
+        configurations.put(resource, parser.parseConfiguration(resource));
+        liveConfiguration = new LiveConfiguration(new ConfigurationMerger().merge(configurations.values()));
+        ConfigurationReloader reloader = new ConfigurationReloader(
+                new SystemClock(),
+                Collections.singleton(parser),
+                configurations,
+                liveConfiguration,
+                new MBeanRegistry(getPlatformMBeanServer()),
+                new CollectionMonitor(new SlowQueryLog(10, 1000), 16),
+                outputWriterLoader,
+                50);
+
+        localJvms = new FakeLocalJvms();
+        discovery = new LocalJvmDiscovery(
+                localJvms,
+                Arrays.asList(LocalJvmRule.parse("jvm:com\\.example\\..*"), LocalJvmRule.parse("jvm:-Dcollect=true")),
+                reloader,
+                Executors.newSingleThreadScheduledExecutor(),
+                20,
+                "1");
+    }
+
+    @AfterMethod
+    public void destroyFolder() throws IOException {
+        discovery.stop();
+        folder.destroy();
+    }
+
+    @Test
+    public void matchingJvmsAreCollectedThroughTheirLocalConnector() {
+        localJvms.running.add(new LocalJvm("42", "com.example.Main"));
+        localJvms.running.add(new LocalJvm("43", "org.other.Main"));
+
+        discovery.start();
+
+        assertThat(liveConfiguration.getServers()).hasSize(1);
+        RemoteServer server = (RemoteServer) liveConfiguration.getServers().iterator().next();
+        assertThat(server.getUrl().toString()).isEqualTo(address("42"));
+        assertThat(server.getName()).isEqualTo("com.example.Main-42");
+        assertThat(localJvms.attached).containsExactly("42", "43");
+    }
+
+    @Test(timeOut = 20000)
+    public void jvmsAreListedPeriodically() throws InterruptedException {
+        discovery.start();
+
+        localJvms.running.add(new LocalJvm("42", "com.example.Main"));
+
+        while (!liveConfiguration.getServers().iterator().hasNext()) Thread.sleep(20);
+    }
+
+    @Test
+    public void jvmsAreMatchedOnSystemProperties() {
+        localJvms.running.add(new LocalJvm("44", "org.other.Main"));
+        localJvms.properties.put("44", "true");
+
+        discovery.refresh();
+
+        assertThat(liveConfiguration.getServers()).hasSize(1);
+    }
+
+    @Test
+    public void jvmsAreOnlyAttachedOnce() {
+        localJvms.running.add(new LocalJvm("42", "com.example.Main"));
+        localJvms.running.add(new LocalJvm("43", "org.other.Main"));
+        discovery.refresh();
+        Server server = liveConfiguration.getServers().iterator().next();
+        localJvms.attached.clear();
+
+        discovery.refresh();
+
+        assertThat(localJvms.attached).isEmpty();
+        assertThat(liveConfiguration.getServers()).containsExactly(server);
+    }
+
+    @Test
+    public void jvmsAreAttachedAgainAfterAFailure() {
+        localJvms.running.add(new LocalJvm("42", "com.example.Main"));
+        localJvms.failing.add("42");
+        discovery.refresh();
+        assertThat(liveConfiguration.getServers()).isEmpty();
+
+        localJvms.failing.clear();
+        discovery.refresh();
+
+        assertThat(liveConfiguration.getServers()).hasSize(1);
+    }
+
+    @Test
+    public void attachingIsRetriedALimitedNumberOfTimes() {
+        localJvms.running.add(new LocalJvm("42", "com.example.Main"));
+        localJvms.failing.add("42");
+        for (int i = 0; i < LocalJvmDiscovery.MAX_ATTACH_ATTEMPTS + 2; i++) discovery.refresh();
+
+        assertThat(localJvms.attached).hasSize(LocalJvmDiscovery.MAX_ATTACH_ATTEMPTS);
+        assertThat(liveConfiguration.getServers()).isEmpty();
+    }
+
+    @Test
+    public void exitedJvmsAreRemoved() {
+        localJvms.running.add(new LocalJvm("42", "com.example.Main"));
+        discovery.refresh();
+
+        localJvms.running.clear();
+        discovery.refresh();
+
+        assertThat(liveConfiguration.getServers()).isEmpty();
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void serversOfExitedJvmsAreClosed() throws Exception {
+        localJvms.running.add(new LocalJvm("42", "com.example.Main"));
+        discovery.refresh();
+        Server server = liveConfiguration.getServers().iterator().next();
+
+        localJvms.running.clear();
+        discovery.refresh();
+
+        server.getServerConnection();
+    }
+
+    @Test
+    public void jvmsWithUnknownMainClassAreNamedAfterTheirPid() {
+        localJvms.running.add(new LocalJvm("44", ""));
+        localJvms.properties.put("44", "true");
+
+        discovery.refresh();
+
+        assertThat(liveConfiguration.getServers().iterator().next().getName()).isEqualTo("44");
+    }
+
+    @Test
+    public void selfIsSkipped() {
+        localJvms.running.add(new LocalJvm("1", "com.example.Main"));
+
+        discovery.refresh();
+
+        assertThat(liveConfiguration.getServers()).isEmpty();
+        assertThat(localJvms.attached).isEmpty();
+    }
+
+    @Nonnull
+    private static String address(@Nonnull String id) {
+        return "service:jmx:rmi://127.0.0.1/stub/" + id;
+    }
+
+    private static final class FakeLocalJvms implements LocalJvms {
+        private final List<LocalJvm> running = new CopyOnWriteArrayList<>();
+        private final Map<String, String> properties = new ConcurrentHashMap<>();
+        private final List<String> attached = new CopyOnWriteArrayList<>();
+        private final List<String> failing = new CopyOnWriteArrayList<>();
+
+        @Nonnull
+        @Override
+        public List<LocalJvm> list() {
+            return new ArrayList<>(running);
+        }
+
+        @Nonnull
+        @Override
+        public Properties systemProperties(@Nonnull String id) {
+            attached.add(id);
+            Properties systemProperties = new Properties();
+            if (properties.containsKey(id)) systemProperties.setProperty("collect", properties.get(id));
+            return systemProperties;
+        }
+
+        @Nonnull
+        @Override
+        public String connectorAddress(@Nonnull String id) throws IOException {
+            attached.add(id);
+            if (failing.contains(id)) throw new IOException("Could not attach to " + id);
+            return address(id);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalJvmRuleTest {
+
+    @Test
+    public void mainClassIsMatched() {
+        LocalJvmRule rule = LocalJvmRule.parse("tomcat:org\\.apache\\.catalina\\..*");
+
+        assertThat(rule.getQuerySet()).isEqualTo("tomcat");
+        assertThat(rule.needsSystemProperties()).isFalse();
+        assertThat(rule.matches("org.apache.catalina.startup.Bootstrap", null)).isTrue();
+        assertThat(rule.matches("org.apache.kafka.Kafka", null)).isFalse();
+    }
+
+    @Test
+    public void systemPropertyIsMatched() {
+        LocalJvmRule rule = LocalJvmRule.parse("kafka:-Dapp.name=kafka-.*");
+        Properties properties = new Properties();
+        properties.setProperty("app.name", "kafka-broker");
+
+        assertThat(rule.needsSystemProperties()).isTrue();
+        assertThat(rule.matches("kafka.Kafka", properties)).isTrue();
+        assertThat(rule.matches("kafka.Kafka", new Properties())).isFalse();
+        assertThat(rule.matches("kafka.Kafka", null)).isFalse();
+    }
+
+    @Test
+    public void patternsMatchWholeValues() {
+        assertThat(LocalJvmRule.parse("jvm:Main").matches("com.example.Main", null)).isFalse();
+    }
+
+    @Test(expectedExceptions = JmxtransConfigurationException.class)
+    public void querySetIsRequired() {
+        LocalJvmRule.parse(":Main");
+    }
+
+    @Test(expectedExceptions = JmxtransConfigurationException.class)
+    public void propertyNameIsRequired() {
+        LocalJvmRule.parse("jvm:-D=value");
+    }
+
+    @Test(expectedExceptions = JmxtransConfigurationException.class)
+    public void invalidPatternsAreRejected() {
+        LocalJvmRule.parse("jvm:[Main");
+    }
+}
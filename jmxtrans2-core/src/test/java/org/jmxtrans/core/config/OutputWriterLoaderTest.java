@@ -0,0 +1,127 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.output.OutputWriterFactory;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.time.SystemClock;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OutputWriterLoaderTest {
+
+    private final OutputWriterLoader loader = new OutputWriterLoader(new SystemClock(), new ObjectNameFactory("outputWriter"));
+
+    @Test
+    public void outputWritersWithSameClassAndSettingsAreLoadedOnce() throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("key", "value");
+
+        OutputWriter outputWriter = loader.load(DummyOutputWriter.class.getName(), settings);
+
+        assertThat(loader.load(DummyOutputWriter.class.getName(), new HashMap<>(settings))).isSameAs(outputWriter);
+    }
+
+    @Test
+    public void outputWritersWithDifferentSettingsAreDifferent() throws Exception {
+        OutputWriter outputWriter = loader.load(DummyOutputWriter.class.getName(), Collections.singletonMap("key", "value"));
+
+        assertThat(loader.load(DummyOutputWriter.class.getName(), Collections.singletonMap("key", "other")))
+                .isNotSameAs(outputWriter);
+    }
+
+    @Test
+    public void instanceNameIsDerivedFromSettings() {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("host", "graphite");
+        settings.put("port", "2003");
+        Map<String, String> sameSettings = new LinkedHashMap<>();
+        sameSettings.put("port", "2003");
+        sameSettings.put("host", "graphite");
+
+        assertThat(OutputWriterLoader.instanceName(sameSettings)).isEqualTo(OutputWriterLoader.instanceName(settings));
+        assertThat(OutputWriterLoader.instanceName(Collections.singletonMap("host", "other")))
+                .isNotEqualTo(OutputWriterLoader.instanceName(settings));
+    }
+
+    @Test
+    public void releasedOutputWritersAreCreatedAgain() throws Exception {
+        OutputWriter outputWriter = loader.load(DummyOutputWriter.class.getName(), Collections.singletonMap("key", "value"));
+
+        loader.release(Collections.singleton(outputWriter));
+
+        assertThat(loader.load(DummyOutputWriter.class.getName(), Collections.singletonMap("key", "value")))
+                .isNotSameAs(outputWriter);
+    }
+
+    @Test
+    public void releasedOutputWritersAreClosed() throws Exception {
+        OutputWriter outputWriter = loader.load(ClosingOutputWriter.class.getName(), Collections.<String, String>emptyMap());
+        int closedBefore = ClosingOutputWriter.CLOSED.get();
+
+        loader.release(Collections.singleton(outputWriter));
+
+        assertThat(ClosingOutputWriter.CLOSED.get()).isEqualTo(closedBefore + 1);
+    }
+
+    @Test(expectedExceptions = JmxtransConfigurationException.class)
+    public void unknownClassesAreRejected() throws Exception {
+        loader.load("org.jmxtrans.core.config.NotAnOutputWriter", Collections.<String, String>emptyMap());
+    }
+
+    public static final class ClosingOutputWriter implements OutputWriter, Closeable {
+        private static final AtomicInteger CLOSED = new AtomicInteger();
+
+        @Override
+        public int write(QueryResult result) throws IOException {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+            CLOSED.incrementAndGet();
+        }
+
+        public static final class Factory implements OutputWriterFactory<ClosingOutputWriter> {
+            @Nonnull
+            @Override
+            public ClosingOutputWriter create(@Nonnull Map<String, String> settings) {
+                return new ClosingOutputWriter();
+            }
+        }
+    }
+}
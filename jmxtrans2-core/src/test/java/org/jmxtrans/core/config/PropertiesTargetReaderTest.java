@@ -0,0 +1,98 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.jmxtrans.utils.io.FileResource;
+import org.jmxtrans.utils.io.Resource;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+public class PropertiesTargetReaderTest {
+
+    private final PropertiesTargetReader reader = new PropertiesTargetReader();
+
+    @Test
+    public void targetsAreRead() throws Exception {
+        List<Target> targets = reader.readTargets(properties(
+                "web-1.example.com.host=web-1.example.com\n"
+                        + "web-1.example.com.port=9999\n"
+                        + "web-1.example.com.querySet=tomcat\n"
+                        + "web-1.example.com.labels.datacenter=eu-west\n"
+                        + "db.host=db.example.com\n"
+                        + "db.port=1099\n"
+                        + "db.querySet=jvm\n"));
+
+        assertThat(targets).containsExactly(
+                new Target("db.example.com", 1099, "jvm", Collections.<String, String>emptyMap()),
+                new Target("web-1.example.com", 9999, "tomcat", Collections.singletonMap("datacenter", "eu-west")));
+    }
+
+    @Test(expectedExceptions = JmxtransConfigurationException.class, expectedExceptionsMessageRegExp = "Property 'db.querySet' .* is missing")
+    public void querySetIsRequired() throws Exception {
+        reader.readTargets(properties("db.host=db.example.com\ndb.port=1099\n"));
+    }
+
+    @Test(expectedExceptions = JmxtransConfigurationException.class, expectedExceptionsMessageRegExp = ".*should be an integer.*")
+    public void portIsAnInteger() throws Exception {
+        reader.readTargets(properties("db.host=db.example.com\ndb.port=http\ndb.querySet=jvm\n"));
+    }
+
+    @Test(expectedExceptions = JmxtransConfigurationException.class, expectedExceptionsMessageRegExp = ".*is not a known target property")
+    public void unknownPropertiesAreRejected() throws Exception {
+        reader.readTargets(properties("db.host=db.example.com\ndb.port=1099\ndb.querySet=jvm\ndb.user=admin\n"));
+    }
+
+    @Test
+    public void onlyPropertiesFilesAreSupported() {
+        assertThat(reader.supports(properties(""))).isTrue();
+        assertThat(reader.supports(new FileResource(new File("targets.json")))).isFalse();
+    }
+
+    @Nonnull
+    private static Resource properties(@Nonnull final String content) {
+        return new Resource() {
+            @Nonnull
+            @Override
+            public String getPath() {
+                return "targets.properties";
+            }
+
+            @Nonnull
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(content.getBytes(UTF_8));
+            }
+        };
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.monitoring.ObjectNameFactory;
+import org.jmxtrans.core.query.Invocation;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.perfdata.PerfDataServer;
+import org.jmxtrans.utils.PropertyPlaceholderResolver;
+import org.jmxtrans.utils.io.Resource;
+import org.jmxtrans.utils.io.StandardResource;
+import org.jmxtrans.utils.time.Interval;
+import org.jmxtrans.utils.time.SystemClock;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXParseException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+public class StaxConfigParserTest {
+
+    private StaxConfigParser parser;
+
+    @BeforeMethod
+    public void createConfigurationParser() {
+        parser = new StaxConfigParser(
+                new PropertyPlaceholderResolver(),
+                new SystemClock(),
+                new ObjectNameFactory("outputWriter"));
+    }
+
+    @Test
+    public void queriesAreParsed() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.xml"));
+        assertThat(configuration.getServers()).hasSize(1);
+        Server server = configuration.getServers().iterator().next();
+        assertThat(server.getQueries()).hasSize(3);
+        assertThat(configuration.getPeriod()).isEqualTo(new Interval(10, SECONDS));
+    }
+
+    @Test
+    public void queriesAreTheSameAsWithJaxb() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.xml");
+        Configuration configuration = parser.parseConfiguration(resource);
+        Configuration jaxbConfiguration = XmlConfigParser.newInstance(
+                new PropertyPlaceholderResolverXmlPreprocessor(new PropertyPlaceholderResolver()),
+                new SystemClock(),
+                new ObjectNameFactory("outputWriter")).parseConfiguration(resource);
+
+        assertThat(configuration.getServers().iterator().next().getQueries())
+                .containsExactlyElementsOf(jaxbConfiguration.getServers().iterator().next().getQueries());
+        assertThat(configuration.getInvocations()).containsExactlyElementsOf(jaxbConfiguration.getInvocations());
+    }
+
+    @Test
+    public void maxResultIsSetForQueries() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/max-result-query.xml"));
+        Iterator<Query> queries = configuration.getServers().iterator().next().getQueries().iterator();
+        assertThat(queries.next().getMaxResults()).isEqualTo(50);
+        assertThat(queries.next().getMaxResults()).isEqualTo(10);
+    }
+
+    @Test
+    public void serversAreParsed() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/with-servers.xml"));
+        assertThat(configuration.getServers()).hasSize(1);
+        Server server = configuration.getServers().iterator().next();
+        assertThat(server.getHost()).isEqualTo("host.test.net");
+        assertThat(server.getQueries()).hasSize(1);
+        assertThat(configuration.getSelfMetricsPrefix()).isEqualTo("jmxtrans");
+    }
+
+    @Test
+    public void overloadThresholdsAreParsed() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/with-servers.xml"));
+        assertThat(configuration.getMaxPeriodStretch()).isEqualTo(4);
+        assertThat(configuration.getOverloadRecoveryCycles()).isNull();
+        assertThat(configuration.getMinCompletionRatio()).isEqualTo(0.75);
+    }
+
+    @Test
+    public void perfDataUrlsCollectPerformanceCounters() throws Exception {
+        Configuration configuration = parser.parseConfiguration(xml("<jmxtrans xmlns='http://jmxtrans.org/config/2.0'><servers>"
+                + "<server jmxUrl='perfdata:/tmp/hsperfdata_jmxtrans/42'><queries>"
+                + "<query objectName='perfdata:name=sun.gc.collector.*'><queryAttribute name='value'/></query>"
+                + "</queries></server></servers></jmxtrans>"));
+
+        Server server = configuration.getServers().iterator().next();
+        assertThat(server).isInstanceOf(PerfDataServer.class);
+        assertThat(((PerfDataServer) server).getFile()).isEqualTo(new File("/tmp/hsperfdata_jmxtrans/42"));
+    }
+
+    @Test
+    public void invocationsAreParsed() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.xml"));
+        Iterator<Invocation> invocations = configuration.getInvocations().iterator();
+        invocations.next();
+        assertThat(invocations.next()).isEqualTo(new Invocation(
+                new ObjectName("java.lang:type=Threading"),
+                "getThreadCpuTime",
+                new Object[] { "1" },
+                new String[] { "long" },
+                "jvm.thread.cpu", new SystemClock()
+        ));
+    }
+
+    @Test
+    public void outputWritersAreParsed() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.xml"));
+        assertThat(configuration.getOutputWriters()).hasSize(2);
+    }
+
+    @Test
+    public void defaultCollectIntervalIfNotConfigured() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/no-collection-interval.xml"));
+        assertThat(configuration.getPeriod()).isEqualTo(new Interval(60, SECONDS));
+    }
+
+    @Test
+    public void placeholdersAreResolved() throws Exception {
+        Configuration configuration = parser.parseConfiguration(xml(
+                "<jmxtrans xmlns='http://jmxtrans.org/config/2.0' collectIntervalInSeconds='${stax.test.interval:15}'>"
+                        + "<servers><server host='${stax.test.host:host.test.net}' port='${stax.test.port:1234}'/></servers>"
+                        + "</jmxtrans>"));
+        assertThat(configuration.getPeriod()).isEqualTo(new Interval(15, SECONDS));
+        assertThat(configuration.getServers().iterator().next().getHost()).isEqualTo("host.test.net");
+    }
+
+    @Test(expectedExceptions = SAXParseException.class)
+    public void invalidConfigurationThrowsException() throws Exception {
+        parser.parseConfiguration(new StandardResource("classpath:org/jmxtrans/core/config/invalid-configuration.xml"));
+    }
+
+    @Test
+    public void errorsAreLocated() throws Exception {
+        try {
+            parser.parseConfiguration(xml(
+                    "<jmxtrans xmlns='http://jmxtrans.org/config/2.0'>\n"
+                            + "<servers>\n"
+                            + "<server host='localhost' port='not-a-port'/>\n"
+                            + "</servers>\n"
+                            + "</jmxtrans>"));
+        } catch (SAXParseException e) {
+            assertThat(e.getMessage()).contains("port").contains("not-a-port");
+            assertThat(e.getLineNumber()).isEqualTo(3);
+            return;
+        }
+        throw new AssertionError("Invalid port should be rejected");
+    }
+
+    @Test(expectedExceptions = SAXParseException.class, expectedExceptionsMessageRegExp = "Unexpected element <query>")
+    public void unexpectedElementsAreRejected() throws Exception {
+        parser.parseConfiguration(xml(
+                "<jmxtrans xmlns='http://jmxtrans.org/config/2.0'><query objectName='java.lang:type=Memory'/></jmxtrans>"));
+    }
+
+    @Test(expectedExceptions = SAXParseException.class, expectedExceptionsMessageRegExp = "Missing attribute 'operationName'.*")
+    public void requiredAttributesAreChecked() throws Exception {
+        parser.parseConfiguration(xml(
+                "<jmxtrans xmlns='http://jmxtrans.org/config/2.0'>"
+                        + "<invocations><invocation objectName='java.lang:type=Memory'/></invocations>"
+                        + "</jmxtrans>"));
+    }
+
+    @Test(expectedExceptions = SAXParseException.class, expectedExceptionsMessageRegExp = ".*can only appear once")
+    public void sectionsCannotBeRepeated() throws Exception {
+        parser.parseConfiguration(xml(
+                "<jmxtrans xmlns='http://jmxtrans.org/config/2.0'>"
+                        + "<queries><query objectName='java.lang:type=Memory'/></queries>"
+                        + "<queries><query objectName='java.lang:type=Threading'/></queries>"
+                        + "</jmxtrans>"));
+    }
+
+    @Test(expectedExceptions = SAXParseException.class, expectedExceptionsMessageRegExp = ".*should be in namespace.*")
+    public void namespaceIsChecked() throws Exception {
+        parser.parseConfiguration(xml("<jmxtrans collectIntervalInSeconds='10'/>"));
+    }
+
+    @Test(expectedExceptions = SAXParseException.class, expectedExceptionsMessageRegExp = ".*is not a valid class name")
+    public void outputWriterClassNamesAreChecked() throws Exception {
+        parser.parseConfiguration(xml(
+                "<jmxtrans xmlns='http://jmxtrans.org/config/2.0'>"
+                        + "<outputWriters><outputWriter class='not a class'/></outputWriters>"
+                        + "</jmxtrans>"));
+    }
+
+    @Test
+    public void querySetsAreSharedBetweenServers() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/with-query-sets.xml"));
+        Iterator<Server> servers = configuration.getServers().iterator();
+        List<Query> host1 = new ArrayList<>();
+        for (Query query : servers.next().getQueries()) host1.add(query);
+        List<Query> host2 = new ArrayList<>();
+        for (Query query : servers.next().getQueries()) host2.add(query);
+
+        assertThat(host1).hasSize(3);
+        assertThat(host2).hasSize(2);
+        assertThat(host2.get(0)).isSameAs(host1.get(1));
+        assertThat(host2.get(1)).isSameAs(host1.get(2));
+        assertThat(configuration.getQuerySets().get("jvm")).containsExactlyElementsOf(host2);
+    }
+
+    @Test(expectedExceptions = SAXParseException.class, expectedExceptionsMessageRegExp = "Unknown query set 'jvm'")
+    public void unknownQuerySetsAreRejected() throws Exception {
+        parser.parseConfiguration(xml(
+                "<jmxtrans xmlns='http://jmxtrans.org/config/2.0'>"
+                        + "<servers><server host='localhost' port='1099'><include querySet='jvm'/></server></servers>"
+                        + "</jmxtrans>"));
+    }
+
+    @Nonnull
+    private static Resource xml(@Nonnull final String content) {
+        return new Resource() {
+            @Nonnull
+            @Override
+            public String getPath() {
+                return "test.xml";
+            }
+
+            @Nonnull
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(content.getBytes(UTF_8));
+            }
+        };
+    }
+}
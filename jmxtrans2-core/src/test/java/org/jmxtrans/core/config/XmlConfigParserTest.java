@@ -23,7 +23,9 @@
 package org.jmxtrans.core.config;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
@@ -41,6 +43,7 @@ import org.jmxtrans.utils.io.StandardResource;
 import org.jmxtrans.utils.time.Interval;
 import org.jmxtrans.utils.time.SystemClock;
 
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import org.xml.sax.SAXException;
@@ -52,6 +55,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class XmlConfigParserTest {
 
     private XmlConfigParser parser;
+    private XmlConfigParser sharedParser;
+
+    @BeforeClass
+    public void createSharedConfigurationParser() throws JAXBException, ParserConfigurationException, IOException, SAXException {
+        sharedParser = XmlConfigParser.newInstance(
+                new PropertyPlaceholderResolverXmlPreprocessor(new PropertyPlaceholderResolver()),
+                new SystemClock(),
+                new ObjectNameFactory("outputWriter"));
+    }
 
     @BeforeMethod
     public void createConfigurationParser() throws JAXBException, ParserConfigurationException, IOException, SAXException {
@@ -143,4 +155,61 @@ public class XmlConfigParserTest {
         assertThat(configuration.getPeriod()).isNotNull();
         assertThat(configuration.getPeriod()).isEqualTo(new Interval(60, SECONDS));
     }
+
+    @Test
+    public void selfMetricsPrefixIsParsed() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/with-servers.xml");
+        Configuration configuration = parser.parseConfiguration(resource);
+        assertThat(configuration.getSelfMetricsPrefix()).isEqualTo("jmxtrans");
+    }
+
+    @Test
+    public void overloadThresholdsAreParsed() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/with-servers.xml"));
+        assertThat(configuration.getMaxPeriodStretch()).isEqualTo(4);
+        assertThat(configuration.getOverloadRecoveryCycles()).isNull();
+        assertThat(configuration.getMinCompletionRatio()).isEqualTo(0.75);
+    }
+
+    @Test
+    public void undeclaredOverloadThresholdsAreUnset() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.xml");
+        Configuration configuration = parser.parseConfiguration(resource);
+        assertThat(configuration.getMaxPeriodStretch()).isNull();
+        assertThat(configuration.getOverloadRecoveryCycles()).isNull();
+        assertThat(configuration.getMinCompletionRatio()).isNull();
+    }
+
+    @Test
+    public void noSelfMetricsIfNotConfigured() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/simple-configuration.xml");
+        Configuration configuration = parser.parseConfiguration(resource);
+        assertThat(configuration.getSelfMetricsPrefix()).isNull();
+    }
+
+    @Test(threadPoolSize = 4, invocationCount = 16)
+    public void configurationsCanBeParsedConcurrently() throws Exception {
+        Resource resource = new StandardResource("classpath:org/jmxtrans/core/config/with-servers.xml");
+        Configuration configuration = sharedParser.parseConfiguration(resource);
+        assertThat(configuration.getServers()).hasSize(1);
+        assertThat(configuration.getSelfMetricsPrefix()).isEqualTo("jmxtrans");
+    }
+
+    @Test
+    public void querySetsAreSharedBetweenServers() throws Exception {
+        Configuration configuration = parser.parseConfiguration(
+                new StandardResource("classpath:org/jmxtrans/core/config/with-query-sets.xml"));
+        Iterator<Server> servers = configuration.getServers().iterator();
+        List<Query> host1 = new ArrayList<>();
+        for (Query query : servers.next().getQueries()) host1.add(query);
+        List<Query> host2 = new ArrayList<>();
+        for (Query query : servers.next().getQueries()) host2.add(query);
+
+        assertThat(host1).hasSize(3);
+        assertThat(host2).hasSize(2);
+        assertThat(host2.get(0)).isSameAs(host1.get(1));
+        assertThat(host2.get(1)).isSameAs(host1.get(2));
+        assertThat(configuration.getQuerySets().get("jvm")).containsExactlyElementsOf(host2);
+    }
 }
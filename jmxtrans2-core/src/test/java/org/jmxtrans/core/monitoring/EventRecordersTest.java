@@ -0,0 +1,58 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventRecordersTest {
+
+    @Test
+    public void recordingIsDisabledWithoutImplementation() {
+        assertThat(EventRecorders.get()).isSameAs(EventRecorder.NONE);
+    }
+
+    @Test
+    public void brokenImplementationsAreIgnored() throws IOException {
+        Path root = Files.createTempDirectory("recorders");
+        Path services = Files.createDirectories(root.resolve("META-INF/services"));
+        Files.write(services.resolve(EventRecorder.class.getName()), "org.jmxtrans.DoesNotExist".getBytes(UTF_8));
+        File rootFile = root.toFile();
+        rootFile.deleteOnExit();
+
+        ClassLoader classLoader = new URLClassLoader(new URL[]{rootFile.toURI().toURL()}, getClass().getClassLoader());
+
+        assertThat(EventRecorders.load(classLoader)).isSameAs(EventRecorder.NONE);
+    }
+
+}
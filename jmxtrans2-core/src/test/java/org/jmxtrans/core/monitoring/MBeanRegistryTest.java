@@ -22,6 +22,8 @@
  */
 package org.jmxtrans.core.monitoring;
 
+import java.util.Arrays;
+
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
 import javax.management.MBeanRegistrationException;
@@ -87,6 +89,37 @@ public class MBeanRegistryTest {
         registry.start();
     }
     
+    @Test
+    public void mBeanRegisteredAfterStartIsRegisteredImmediately() throws Exception {
+        registry.start();
+        Counter counter = new Counter();
+
+        registry.register(counter);
+
+        assertThat(getPlatformMBeanServer().isRegistered(counter.getObjectName())).isTrue();
+    }
+
+    @Test
+    public void mBeanCanBeUnregisteredWhileRunning() throws Exception {
+        Counter counter = new Counter();
+        registry.register(counter);
+        registry.start();
+
+        registry.unregister(counter);
+
+        assertThat(getPlatformMBeanServer().isRegistered(counter.getObjectName())).isFalse();
+        assertThat(registry.getMBeans()).doesNotContainKey(counter);
+    }
+
+    @Test
+    public void objectsThatAreNotMBeansAreIgnored() throws Exception {
+        Counter counter = new Counter();
+
+        registry.registerAll(Arrays.asList(new Object(), counter));
+
+        assertThat(registry.getMBeans()).containsOnlyKeys(counter);
+    }
+
     @AfterMethod
     public void stopRegistry() throws MBeanRegistrationException {
         registry.stop();
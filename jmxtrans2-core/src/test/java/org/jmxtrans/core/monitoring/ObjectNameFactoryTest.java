@@ -49,10 +49,38 @@ public class ObjectNameFactoryTest {
         assertThat(objectNameFactory.create("myOtherQuery").getKeyProperty("id")).isEqualTo("query-1");
     }
     
+    @Test
+    public void instanceIsAddedToObjectName() throws MalformedObjectNameException {
+        ObjectName objectName = new ObjectNameFactory("outputWriter").create("myWriter", "host=graphite:2003");
+
+        assertThat(objectName.getKeyProperty("instance")).isEqualTo("host-graphite|2003");
+        assertThat(objectName.getKeyProperty("name")).isEqualTo("myWriter");
+        assertThat(objectName.getKeyProperty("id")).isEqualTo("outputWriter-0");
+    }
+
     @Test
     public void objectNameIsAValidName() throws MalformedObjectNameException {
         ObjectNameFactory objectNameFactory = new ObjectNameFactory("query");
         
         objectNameFactory.create("test:type=*,name=PS Eden Space");
     }
+
+    @Test
+    public void wildcardsDoNotCreatePatterns() throws MalformedObjectNameException {
+        ObjectName objectName = new ObjectNameFactory("query").create("java.lang:type=GarbageCollector,name=*");
+
+        assertThat(objectName.isPattern()).isFalse();
+    }
+
+    @Test
+    public void nestedObjectNameKeepsParentProperties() throws MalformedObjectNameException {
+        ObjectName parent = new ObjectNameFactory("outputWriter").create("myWriter");
+
+        ObjectName nested = ObjectNameFactory.createNested(parent, "endpoint-localhost:2003");
+
+        assertThat(nested.getDomain()).isEqualTo("org.jmxtrans");
+        assertThat(nested.getKeyProperty("id")).isEqualTo("outputWriter-0");
+        assertThat(nested.getKeyProperty("name")).isEqualTo("myWriter");
+        assertThat(nested.getKeyProperty("component")).isEqualTo("endpoint-localhost|2003");
+    }
 }
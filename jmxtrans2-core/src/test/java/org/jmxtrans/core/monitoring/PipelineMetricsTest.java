@@ -0,0 +1,68 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import javax.management.MalformedObjectNameException;
+
+import org.jmxtrans.core.results.PipelineStage;
+import org.jmxtrans.utils.time.ManualClock;
+
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PipelineMetricsTest {
+
+    @Test
+    public void latenciesAreAggregatedPerStage() {
+        PipelineMetrics metrics = new PipelineMetrics(new ManualClock());
+
+        metrics.onStage(PipelineStage.ENCODED, MILLISECONDS.toNanos(2));
+        metrics.onStage(PipelineStage.ACKED, MILLISECONDS.toNanos(40));
+
+        assertThat(metrics.snapshot(PipelineStage.ENCODED).getCount()).isEqualTo(1);
+        assertThat(metrics.getAckedLatencyMaxMicros()).isBetween(39000L, 41000L);
+        assertThat(metrics.getCollectedLatencyMaxMicros()).isEqualTo(0);
+    }
+
+    @Test
+    public void objectNameIsStable() throws MalformedObjectNameException {
+        PipelineMetrics metrics = new PipelineMetrics(new ManualClock());
+
+        assertThat(metrics.getObjectName()).isEqualTo(metrics.getObjectName());
+    }
+
+    @Test
+    public void dispatchIsNotAStageLatency() {
+        PipelineMetrics metrics = new PipelineMetrics(new ManualClock());
+
+        metrics.onStage(PipelineStage.DISPATCHED, 10);
+
+        for (PipelineStage stage : PipelineStage.values()) {
+            if (stage == PipelineStage.DISPATCHED) continue;
+            assertThat(metrics.snapshot(stage).getCount()).isEqualTo(0);
+        }
+    }
+}
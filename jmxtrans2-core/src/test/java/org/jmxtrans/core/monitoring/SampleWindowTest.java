@@ -0,0 +1,62 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SampleWindowTest {
+
+    @Test
+    public void emptyWindowReturnsZero() {
+        SampleWindow window = new SampleWindow(4);
+
+        assertThat(window.getCount()).isEqualTo(0);
+        assertThat(window.getValueAtPercentile(50)).isEqualTo(0);
+        assertThat(window.getMax()).isEqualTo(0);
+    }
+
+    @Test
+    public void percentilesAreComputedOnRecordedValues() {
+        SampleWindow window = new SampleWindow(10);
+        for (int i = 1; i <= 10; i++) window.record(i * 10);
+
+        assertThat(window.getValueAtPercentile(50)).isEqualTo(50);
+        assertThat(window.getValueAtPercentile(90)).isEqualTo(90);
+        assertThat(window.getValueAtPercentile(99)).isEqualTo(100);
+        assertThat(window.getMax()).isEqualTo(100);
+    }
+
+    @Test
+    public void oldestValuesAreEvicted() {
+        SampleWindow window = new SampleWindow(3);
+        window.record(1000);
+        window.record(1);
+        window.record(2);
+        window.record(3);
+
+        assertThat(window.getCount()).isEqualTo(3);
+        assertThat(window.getMax()).isEqualTo(3);
+    }
+}
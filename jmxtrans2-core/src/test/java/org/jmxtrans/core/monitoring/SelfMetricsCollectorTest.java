@@ -0,0 +1,180 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.time.ManualClock;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class SelfMetricsCollectorTest {
+
+    private final ManualClock clock = new ManualClock();
+    private MBeanRegistry registry;
+    private Total total;
+    private SelfMetricsCollector collector;
+
+    @BeforeMethod
+    public void createCollector() throws MalformedObjectNameException {
+        clock.setTime(10, SECONDS);
+        registry = new MBeanRegistry(getPlatformMBeanServer());
+        total = new Total();
+        registry.register(new ObjectName("org.jmxtrans:type=outputWriter,name=graphite,component=batches"), total);
+        collector = new SelfMetricsCollector(clock, registry, "jmxtrans");
+    }
+
+    @Test
+    public void numericAttributesAreCollectedUnderPrefix() {
+        total.total = 5;
+        total.size = 3;
+
+        Map<String, QueryResult> results = collect();
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get("jmxtrans.outputWriter.graphite.batches.total").getValue()).isEqualTo(5L);
+        assertThat(results.get("jmxtrans.outputWriter.graphite.batches.total").getType()).isEqualTo("counter");
+        assertThat(results.get("jmxtrans.outputWriter.graphite.batches.size").getValue()).isEqualTo(3);
+        assertThat(results.get("jmxtrans.outputWriter.graphite.batches.size").getType()).isEqualTo("gauge");
+        assertThat(results.get("jmxtrans.outputWriter.graphite.batches.total").getEpoch(SECONDS)).isEqualTo(10);
+        assertThat(results.get("jmxtrans.outputWriter.graphite.batches.active").getValue()).isEqualTo(1);
+    }
+
+    @Test
+    public void rateIsComputedFromPreviousSample() {
+        total.total = 5;
+        collect();
+
+        total.total = 25;
+        clock.setTime(20, SECONDS);
+        Map<String, QueryResult> results = collect();
+
+        assertThat(results.get("jmxtrans.outputWriter.graphite.batches.total").getValue()).isEqualTo(25L);
+        assertThat((Double) results.get("jmxtrans.outputWriter.graphite.batches.total.rate").getValue()).isEqualTo(2.0, offset(0.001));
+    }
+
+    @Test
+    public void noRateIsPublishedWhenCounterIsReset() {
+        total.total = 25;
+        collect();
+
+        total.total = 5;
+        clock.setTime(20, SECONDS);
+
+        assertThat(collect()).doesNotContainKey("jmxtrans.outputWriter.graphite.batches.total.rate");
+    }
+
+    @Test
+    public void metricPathIsSanitized() throws MalformedObjectNameException {
+        ObjectName objectName = new ObjectName("org.jmxtrans:id=query-1,type=query,name=java.lang|type-Memory");
+
+        assertThat(SelfMetricsCollector.metricPath(objectName)).isEqualTo("query.java_lang_type-Memory");
+    }
+
+    @Test
+    public void collidingMetricPathsArePreferablySuffixedWithInstance() throws MalformedObjectNameException {
+        Object first = new Object();
+        Object second = new Object();
+        Map<Object, ObjectName> mBeans = new HashMap<>();
+        mBeans.put(first, new ObjectName("org.jmxtrans:id=outputWriter-3,instance=0a1b2c3d,type=outputWriter,name=graphite"));
+        mBeans.put(second, new ObjectName("org.jmxtrans:id=outputWriter-7,instance=4e5f6a7b,type=outputWriter,name=graphite"));
+
+        Map<Object, String> paths = SelfMetricsCollector.metricPaths(mBeans);
+
+        assertThat(paths.get(first)).isEqualTo("outputWriter.graphite.0a1b2c3d");
+        assertThat(paths.get(second)).isEqualTo("outputWriter.graphite.4e5f6a7b");
+    }
+
+    @Test
+    public void collidingMetricPathsAreSuffixedWithId() throws MalformedObjectNameException {
+        Object first = new Object();
+        Object second = new Object();
+        Object unique = new Object();
+        Map<Object, ObjectName> mBeans = new HashMap<>();
+        mBeans.put(first, new ObjectName("org.jmxtrans:id=query-1,type=query,name=memory"));
+        mBeans.put(second, new ObjectName("org.jmxtrans:id=query-2,type=query,name=memory"));
+        mBeans.put(unique, new ObjectName("org.jmxtrans:id=query-3,type=query,name=threads"));
+
+        Map<Object, String> paths = SelfMetricsCollector.metricPaths(mBeans);
+
+        assertThat(paths.get(first)).isEqualTo("query.memory.query-1");
+        assertThat(paths.get(second)).isEqualTo("query.memory.query-2");
+        assertThat(paths.get(unique)).isEqualTo("query.threads");
+    }
+
+    private Map<String, QueryResult> collect() {
+        Map<String, QueryResult> results = new HashMap<>();
+        for (QueryResult result : collector.collect()) {
+            results.put(result.getName(), result);
+        }
+        return results;
+    }
+
+    public interface TotalMBean {
+        @MonotonicCounter
+        long getTotal();
+
+        int getSize();
+
+        String getLabel();
+
+        boolean isActive();
+    }
+
+    private static final class Total implements TotalMBean {
+        private volatile long total;
+        private volatile int size;
+
+        @Override
+        public long getTotal() {
+            return total;
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String getLabel() {
+            return "label";
+        }
+
+        @Override
+        public boolean isActive() {
+            return true;
+        }
+    }
+}
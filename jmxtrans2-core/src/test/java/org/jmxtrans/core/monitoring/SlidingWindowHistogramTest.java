@@ -0,0 +1,144 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.monitoring;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.jmxtrans.core.monitoring.SlidingWindowHistogram.HistogramSnapshot;
+import org.jmxtrans.utils.time.ManualClock;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+public class SlidingWindowHistogramTest {
+
+    private final ManualClock clock = new ManualClock();
+    private SlidingWindowHistogram histogram;
+
+    @BeforeMethod
+    public void createHistogram() {
+        clock.setTime(1000, SECONDS);
+        histogram = new SlidingWindowHistogram(clock, 6, 10000);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (int i = 1; i <= 10; i++) histogram.record(i);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(10);
+        assertThat(snapshot.getMax()).isEqualTo(10);
+        assertThat(snapshot.getMean()).isEqualTo(5.5);
+        assertThat(snapshot.getValueAtPercentile(50)).isEqualTo(5);
+        assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(10);
+    }
+
+    @Test
+    public void largeValuesAreWithinPrecision() {
+        for (int i = 1; i <= 1000; i++) histogram.record(i * 1000L);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertThat((double) snapshot.getValueAtPercentile(50)).isEqualTo(500000.0, offset(500000 * 0.04));
+        assertThat((double) snapshot.getValueAtPercentile(99)).isEqualTo(990000.0, offset(990000 * 0.04));
+        assertThat(snapshot.getValueAtPercentile(99.9)).isLessThanOrEqualTo(1000000);
+    }
+
+    @Test
+    public void oldValuesLeaveTheWindow() {
+        histogram.record(1000);
+        clock.waitFor(30, SECONDS);
+        histogram.record(10);
+
+        assertThat(histogram.snapshot().getCount()).isEqualTo(2);
+
+        clock.waitFor(35, SECONDS);
+
+        assertThat(histogram.snapshot().getCount()).isEqualTo(1);
+        assertThat(histogram.snapshot().getMax()).isEqualTo(10);
+    }
+
+    @Test
+    public void reusedSlotsAreReset() {
+        histogram.record(1000);
+        clock.waitFor(60, SECONDS);
+        histogram.record(10);
+
+        assertThat(histogram.snapshot().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void recordingsRacingASlotResetAreNotLost() throws InterruptedException {
+        histogram.record(1000);
+        clock.waitFor(60, SECONDS);
+        final int threadCount = 4;
+        final int recordsPerThread = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int j = 0; j < recordsPerThread; j++) histogram.record(10);
+                }
+            });
+            threads[i].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+
+        assertThat(histogram.snapshot().getCount()).isEqualTo(threadCount * recordsPerThread);
+        assertThat(histogram.snapshot().getMax()).isEqualTo(10);
+    }
+
+    @Test
+    public void bucketBoundsAreConsistent() {
+        for (long value : new long[]{0, 1, 31, 32, 33, 63, 64, 1000, 123456789L, 1L << 40}) {
+            int index = SlidingWindowHistogram.bucketIndex(value);
+            assertThat(SlidingWindowHistogram.bucketUpperBound(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) {
+                assertThat(SlidingWindowHistogram.bucketUpperBound(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    public void emptyHistogramReturnsZero() {
+        assertThat(histogram.snapshot().getValueAtPercentile(99)).isZero();
+        assertThat(histogram.snapshot().getMean()).isZero();
+    }
+
+}
@@ -98,4 +98,43 @@ public class MetricCollectingOutputWriterTest {
             throw ioe;
         }
     }
+
+    @Test
+    public void errorsAreCounted() throws IOException {
+        when(outputWriter.write(result)).thenThrow(new IOException());
+
+        try {
+            metricCollectingOutputWriter.write(result);
+        } catch (IOException expected) {
+        }
+
+        assertThat(metricCollectingOutputWriter.getErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void writeLatencyIsRecorded() throws IOException {
+        when(outputWriter.write(result)).then(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                clock.waitFor(2, MILLISECONDS);
+                return 1;
+            }
+        });
+
+        metricCollectingOutputWriter.write(result);
+
+        assertThat(metricCollectingOutputWriter.getWriteLatencyMaxMicros()).isEqualTo(2000);
+        assertThat(metricCollectingOutputWriter.getWriteLatencyP99Micros()).isEqualTo(2000);
+        assertThat(metricCollectingOutputWriter.getProcessingTimeMillis()).isEqualTo(2);
+    }
+
+    @Test
+    public void processedCountDoesNotOverflow() throws IOException {
+        when(outputWriter.write(result)).thenReturn(Integer.MAX_VALUE);
+
+        metricCollectingOutputWriter.write(result);
+        metricCollectingOutputWriter.write(result);
+
+        assertThat(metricCollectingOutputWriter.getProcessedResultsCount()).isEqualTo(2L * Integer.MAX_VALUE);
+    }
 }
@@ -24,29 +24,57 @@ package org.jmxtrans.core.output.support;
 
 import java.io.IOException;
 
+import org.jmxtrans.core.monitoring.EventRecorder;
+import org.jmxtrans.core.monitoring.EventRecorders;
 import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.results.PipelineListener;
+import org.jmxtrans.core.results.PipelineStage;
+import org.jmxtrans.core.results.PipelineTrace;
 import org.jmxtrans.core.results.QueryResult;
 import org.jmxtrans.utils.mockito.MockitoTestNGListener;
+import org.jmxtrans.utils.time.ManualClock;
+import org.jmxtrans.utils.time.SimulatedExecutorService;
+import org.jmxtrans.utils.time.Simulation;
 
 import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 @Listeners(MockitoTestNGListener.class)
 public class BatchingOutputWriterTest {
 
     @Mock private BatchedOutputWriter targetOutputWriter;
     @Mock private QueryResult result;
+    @Mock private PipelineListener pipelineListener;
+
+    private Simulation simulation;
+    private SimulatedExecutorService retryExecutor;
+
+    @BeforeMethod
+    public void setupRetryExecutor() {
+        simulation = new Simulation(new ManualClock());
+        retryExecutor = new SimulatedExecutorService(simulation, 1, 0);
+    }
 
     @BeforeMethod
     public void setupBatchedOutputWriter() throws IOException {
@@ -117,4 +145,223 @@ public class BatchingOutputWriterTest {
         inOrder.verify(targetOutputWriter, never()).write(result2);
     }
 
+    @Test
+    public void batchIsRetriedWhenAfterBatchFails() throws IOException {
+        when(targetOutputWriter.afterBatch())
+                .thenThrow(new IOException())
+                .thenReturn(0);
+        RetryPolicy retryPolicy = retryPolicy();
+        OutputWriter batchingOutputWriter = retryingOutputWriter(1, retryPolicy);
+
+        batchingOutputWriter.write(result);
+        int processedResultCount = batchingOutputWriter.write(result);
+
+        assertThat(processedResultCount).isZero();
+        verify(targetOutputWriter, times(1)).beforeBatch();
+
+        simulation.runFor(1, SECONDS);
+
+        verify(targetOutputWriter, times(2)).beforeBatch();
+        verify(targetOutputWriter, times(2)).write(result);
+        assertThat(retryPolicy.getRetryCount()).isEqualTo(1);
+        assertThat(retryPolicy.getRecoveredBatchCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void onlyFailedResultsAreRetried() throws IOException {
+        QueryResult result1 = new QueryResult("my.result", 1, 1);
+        QueryResult result2 = new QueryResult("my.result", 1, 2);
+        when(targetOutputWriter.write(result2))
+                .thenThrow(new IOException())
+                .thenReturn(1);
+        OutputWriter batchingOutputWriter = retryingOutputWriter(2, retryPolicy());
+
+        batchingOutputWriter.write(result1);
+        batchingOutputWriter.write(result2);
+        int processedResultCount = batchingOutputWriter.write(result);
+        simulation.runFor(1, SECONDS);
+
+        assertThat(processedResultCount).isEqualTo(1);
+        verify(targetOutputWriter, times(1)).write(result1);
+        verify(targetOutputWriter, times(2)).write(result2);
+    }
+
+    @Test
+    public void onlyResultsNotAcceptedByWriterAreRetried() throws IOException {
+        QueryResult result1 = new QueryResult("my.result", 1, 1);
+        QueryResult result2 = new QueryResult("my.result", 1, 2);
+        when(targetOutputWriter.afterBatch())
+                .thenThrow(new PartialBatchFailureException("rejected", null, 1, singletonList(result2)))
+                .thenReturn(0);
+        RetryPolicy retryPolicy = retryPolicy();
+        OutputWriter batchingOutputWriter = retryingOutputWriter(2, retryPolicy);
+
+        batchingOutputWriter.write(result1);
+        batchingOutputWriter.write(result2);
+        int processedResultCount = batchingOutputWriter.write(result);
+        simulation.runFor(1, SECONDS);
+
+        assertThat(processedResultCount).isEqualTo(3);
+        verify(targetOutputWriter, times(1)).write(result1);
+        verify(targetOutputWriter, times(2)).write(result2);
+        assertThat(retryPolicy.getRecoveredBatchCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void retriesWaitForBackoffOnRetryExecutor() throws IOException {
+        when(targetOutputWriter.afterBatch())
+                .thenThrow(new IOException())
+                .thenReturn(0);
+        RetryPolicy retryPolicy = new RetryPolicy(2, new ExponentialBackoff(100, 100), new RetryBudget(1, 10));
+        OutputWriter batchingOutputWriter = retryingOutputWriter(1, retryPolicy);
+
+        batchingOutputWriter.write(result);
+        batchingOutputWriter.write(result);
+        simulation.runFor(49, MILLISECONDS);
+        verify(targetOutputWriter, times(1)).beforeBatch();
+
+        simulation.runFor(51, MILLISECONDS);
+        verify(targetOutputWriter, times(2)).beforeBatch();
+    }
+
+    @Test
+    public void retriesAreLimited() throws IOException {
+        when(targetOutputWriter.afterBatch()).thenThrow(new IOException());
+        RetryPolicy retryPolicy = retryPolicy();
+        OutputWriter batchingOutputWriter = retryingOutputWriter(1, retryPolicy);
+
+        batchingOutputWriter.write(result);
+        batchingOutputWriter.write(result);
+        simulation.runFor(1, SECONDS);
+
+        verify(targetOutputWriter, times(3)).beforeBatch();
+        assertThat(retryPolicy.getRetriesExhaustedCount()).isEqualTo(1);
+    }
+
+    @Test(expectedExceptions = UnexpectedResponseCodeException.class)
+    public void permanentFailuresAreNotRetried() throws IOException {
+        doThrow(new UnexpectedResponseCodeException(400)).when(targetOutputWriter).beforeBatch();
+        RetryPolicy retryPolicy = retryPolicy();
+        OutputWriter batchingOutputWriter = retryingOutputWriter(1, retryPolicy);
+
+        batchingOutputWriter.write(result);
+        try {
+            batchingOutputWriter.write(result);
+        } finally {
+            simulation.runFor(1, SECONDS);
+            verify(targetOutputWriter, times(1)).beforeBatch();
+            assertThat(retryPolicy.getPermanentFailureCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void batchMetricsAreCollected() throws IOException {
+        BatchingOutputWriter<BatchedOutputWriter> batchingOutputWriter = new BatchingOutputWriter<>(2, targetOutputWriter);
+        batchingOutputWriter.write(result);
+        batchingOutputWriter.write(result);
+        batchingOutputWriter.write(result);
+
+        BatchMetrics batchMetrics = batchingOutputWriter.getBatchMetrics();
+        assertThat(batchMetrics.getBatchCount()).isEqualTo(1);
+        assertThat(batchMetrics.getBatchSizeMax()).isEqualTo(2);
+        assertThat(batchMetrics.getFailedBatchCount()).isZero();
+        assertThat(batchingOutputWriter.getNestedMBeans()).containsEntry("batches", batchMetrics);
+    }
+
+    @Test
+    public void failedBatchesAreCounted() throws IOException {
+        when(targetOutputWriter.afterBatch()).thenThrow(new IOException());
+        BatchingOutputWriter<BatchedOutputWriter> batchingOutputWriter = new BatchingOutputWriter<>(1, targetOutputWriter);
+        batchingOutputWriter.write(result);
+        try {
+            batchingOutputWriter.write(result);
+        } catch (IOException expected) {
+        }
+
+        assertThat(batchingOutputWriter.getBatchMetrics().getFailedBatchCount()).isEqualTo(1);
+        assertThat(batchingOutputWriter.getBatchMetrics().getFailedResultCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void pipelineStagesAreReported() throws IOException {
+        final ManualClock clock = new ManualClock();
+        AcknowledgedOutputWriter acknowledgedOutputWriter = mock(AcknowledgedOutputWriter.class);
+        when(acknowledgedOutputWriter.write(any(QueryResult.class))).thenReturn(1);
+        when(acknowledgedOutputWriter.afterBatch()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                clock.waitFor(5, MILLISECONDS);
+                return 0;
+            }
+        });
+        when(acknowledgedOutputWriter.getLastAcknowledgementDelayNanos()).thenReturn(MILLISECONDS.toNanos(3));
+        PipelineTrace trace = new PipelineTrace(pipelineListener, 0);
+        trace.stamp(PipelineStage.DEQUEUED, MILLISECONDS.toNanos(1));
+        QueryResult tracedResult = new QueryResult("my.result", 1, 1).withTrace(trace);
+        OutputWriter batchingOutputWriter = new BatchingOutputWriter<>(1, acknowledgedOutputWriter, RetryPolicy.noRetry(), clock);
+
+        clock.setTime(10, MILLISECONDS);
+        batchingOutputWriter.write(tracedResult);
+        batchingOutputWriter.write(result);
+
+        verify(pipelineListener).onStage(PipelineStage.ENCODED, MILLISECONDS.toNanos(9));
+        verify(pipelineListener).onStage(PipelineStage.FLUSHED, MILLISECONDS.toNanos(2));
+        verify(pipelineListener).onStage(PipelineStage.ACKED, MILLISECONDS.toNanos(3));
+        verify(pipelineListener).onStage(PipelineStage.TOTAL, MILLISECONDS.toNanos(15));
+    }
+
+    @Test
+    public void flushesAreRecorded() throws IOException {
+        EventRecorder eventRecorder = mock(EventRecorder.class);
+        EventRecorder.Flush flush = mock(EventRecorder.Flush.class);
+        when(eventRecorder.flushStarted(anyString())).thenReturn(flush);
+        BatchedOutputWriter countingOutputWriter = mock(BatchedOutputWriter.class, withSettings().extraInterfaces(ByteCountingOutputWriter.class));
+        when(countingOutputWriter.write(any(QueryResult.class))).thenReturn(1);
+        when(((ByteCountingOutputWriter) countingOutputWriter).getBytesWritten()).thenReturn(100L, 142L);
+        OutputWriter batchingOutputWriter = new BatchingOutputWriter<>(
+                2, countingOutputWriter, RetryPolicy.noRetry(), new ManualClock(), eventRecorder);
+
+        batchingOutputWriter.write(result);
+        batchingOutputWriter.write(result);
+        batchingOutputWriter.write(result);
+
+        verify(flush).completed(2, 42, true);
+    }
+
+    @Test
+    public void failedFlushesAreRecorded() throws IOException {
+        when(targetOutputWriter.afterBatch()).thenThrow(new IOException());
+        EventRecorder eventRecorder = mock(EventRecorder.class);
+        EventRecorder.Flush flush = mock(EventRecorder.Flush.class);
+        when(eventRecorder.flushStarted(anyString())).thenReturn(flush);
+        OutputWriter batchingOutputWriter = new BatchingOutputWriter<>(
+                1, targetOutputWriter, RetryPolicy.noRetry(), new ManualClock(), eventRecorder);
+
+        batchingOutputWriter.write(result);
+        try {
+            batchingOutputWriter.write(result);
+        } catch (IOException expected) {
+        }
+
+        verify(flush).completed(1, 0, false);
+    }
+
+    @Test
+    public void closingWriterShutsDownRetryExecutor() throws IOException {
+        BatchingOutputWriter<BatchedOutputWriter> batchingOutputWriter = retryingOutputWriter(1, retryPolicy());
+
+        batchingOutputWriter.close();
+
+        assertThat(retryExecutor.isShutdown()).isTrue();
+    }
+
+    private BatchingOutputWriter<BatchedOutputWriter> retryingOutputWriter(int batchSize, RetryPolicy retryPolicy) {
+        return new BatchingOutputWriter<>(
+                batchSize, targetOutputWriter, retryPolicy, simulation.getClock(), EventRecorders.get(), retryExecutor);
+    }
+
+    private RetryPolicy retryPolicy() {
+        return new RetryPolicy(2, new ExponentialBackoff(0, 0), new RetryBudget(1, 10));
+    }
+
 }
@@ -0,0 +1,85 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsistentHashRingTest {
+
+    private ConsistentHashRing<String> ring;
+
+    @BeforeMethod
+    public void createRing() {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        nodes.put("('127.0.0.1', 'a')", "a");
+        nodes.put("('127.0.0.1', 'b')", "b");
+        nodes.put("('127.0.0.1', 'c')", "c");
+        ring = new ConsistentHashRing<>(nodes, 100);
+    }
+
+    @Test
+    public void ringPositionIsComputedLikeCarbon() {
+        assertThat(ConsistentHashRing.computeRingPosition("servers.host1.cpu.load")).isEqualTo(59757);
+        assertThat(ConsistentHashRing.computeRingPosition("foo")).isEqualTo(44221);
+        assertThat(ConsistentHashRing.computeRingPosition("bar.baz")).isEqualTo(13582);
+    }
+
+    @Test
+    public void nodesAreSelectedLikeCarbon() {
+        // expected values computed with carbon.hashing.ConsistentHashRing
+        assertThat(ring.getNode("servers.host3.cpu.load")).isEqualTo("a");
+        assertThat(ring.getNode("servers.host4.cpu.load")).isEqualTo("b");
+        assertThat(ring.getNode("servers.host7.cpu.load")).isEqualTo("c");
+        assertThat(ring.getNode("bar.baz")).isEqualTo("a");
+    }
+
+    @Test
+    public void failoverNodesFollowRingOrder() {
+        assertThat(ring.getNodes("servers.host5.cpu.load")).containsExactly("b", "a", "c");
+        assertThat(ring.getNodes("servers.host6.cpu.load")).containsExactly("b", "c", "a");
+        assertThat(ring.getNodes("foo")).containsExactly("c", "a", "b");
+    }
+
+    @Test
+    public void nodesWithoutInstanceAreSupported() {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        nodes.put("('graphite1', None)", "graphite1");
+        nodes.put("('graphite2', None)", "graphite2");
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes, 100);
+
+        assertThat(ring.getNode("servers.host1.cpu.load")).isEqualTo("graphite1");
+        assertThat(ring.getNode("foo")).isEqualTo("graphite2");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void ringCannotBeEmpty() {
+        new ConsistentHashRing<>(new LinkedHashMap<String, String>(), 100);
+    }
+
+}
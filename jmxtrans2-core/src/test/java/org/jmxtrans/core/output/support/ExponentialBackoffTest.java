@@ -0,0 +1,62 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.support;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExponentialBackoffTest {
+
+    @Test
+    public void capGrowsExponentially() {
+        ExponentialBackoff backoff = new ExponentialBackoff(100, 10000);
+
+        assertThat(backoff.getCap(1)).isEqualTo(100);
+        assertThat(backoff.getCap(2)).isEqualTo(200);
+        assertThat(backoff.getCap(3)).isEqualTo(400);
+    }
+
+    @Test
+    public void capIsLimitedToMaxDelay() {
+        ExponentialBackoff backoff = new ExponentialBackoff(100, 1000);
+
+        assertThat(backoff.getCap(10)).isEqualTo(1000);
+        assertThat(backoff.getCap(Integer.MAX_VALUE)).isEqualTo(1000);
+    }
+
+    @Test
+    public void delayIsJitteredBetweenHalfAndFullCap() {
+        ExponentialBackoff backoff = new ExponentialBackoff(100, 10000);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(backoff.getDelayMillis(3)).isBetween(200L, 400L);
+        }
+    }
+
+    @Test
+    public void zeroDelayIsNeverJittered() {
+        assertThat(new ExponentialBackoff(0, 0).getDelayMillis(5)).isZero();
+    }
+
+}
@@ -173,7 +173,7 @@ public class HttpOutputWriterTest {
                 .withRequestBody(equalTo("hello world")));
     }
 
-    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".*not OK.*404.*")
+    @Test(expectedExceptions = UnexpectedResponseCodeException.class, expectedExceptionsMessageRegExp = ".*not OK.*404.*")
     public void exceptionThrownIfResponseIsNotOk() throws IOException {
         stubFor(post(urlEqualTo("/"))
                 .willReturn(aResponse()
@@ -206,6 +206,35 @@ public class HttpOutputWriterTest {
         outputWriter.afterBatch();
     }
     
+    @Test
+    public void acknowledgementDelayIsResetWhenNoResponseIsRead() throws IOException {
+        stubFor(post(urlEqualTo("/"))
+                .willReturn(aResponse()
+                        .withStatus(200)));
+        HttpOutputWriter<DummyStreamWriter> outputWriter = HttpOutputWriter
+                .builder(new URL("http://localhost:" + wireMockServer.port()), appInfo, new DummyStreamWriter("hello world"))
+                .withTimeout(500, MILLISECONDS)
+                .build();
+        outputWriter.beforeBatch();
+        outputWriter.write(result);
+        outputWriter.afterBatch();
+        assertThat(outputWriter.getLastAcknowledgementDelayNanos()).isGreaterThan(0);
+
+        stubFor(post(urlEqualTo("/"))
+                .willReturn(aResponse()
+                        .withFixedDelay(1000)
+                        .withStatus(200)));
+        outputWriter.beforeBatch();
+        outputWriter.write(result);
+        try {
+            outputWriter.afterBatch();
+        } catch (SocketTimeoutException expected) {
+            assertThat(outputWriter.getLastAcknowledgementDelayNanos()).isEqualTo(0);
+            return;
+        }
+        throw new AssertionError("Second batch should have timed out");
+    }
+
     @AfterClass
     public void stopHttpServer() {
         wireMockServer.stop();
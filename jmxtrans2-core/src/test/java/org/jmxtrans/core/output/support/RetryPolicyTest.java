@@ -0,0 +1,104 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.support;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void serverErrorsAreRetryable() {
+        assertThat(RetryPolicy.isRetryable(new UnexpectedResponseCodeException(503))).isTrue();
+        assertThat(RetryPolicy.isRetryable(new UnexpectedResponseCodeException(429))).isTrue();
+        assertThat(RetryPolicy.isRetryable(new IOException())).isTrue();
+        assertThat(RetryPolicy.isRetryable(new SocketTimeoutException())).isTrue();
+    }
+
+    @Test
+    public void clientErrorsArePermanent() {
+        assertThat(RetryPolicy.isRetryable(new UnexpectedResponseCodeException(400))).isFalse();
+        assertThat(RetryPolicy.isRetryable(new UnknownHostException())).isFalse();
+        assertThat(RetryPolicy.isRetryable(new IllegalStateException())).isFalse();
+    }
+
+    @Test
+    public void retriesAreLimitedByMaxRetries() {
+        RetryPolicy retryPolicy = new RetryPolicy(2, new ExponentialBackoff(0, 0), new RetryBudget(1, 10));
+        retryPolicy.onFirstAttempt();
+
+        assertThat(retryPolicy.shouldRetry(new IOException(), 0)).isTrue();
+        assertThat(retryPolicy.shouldRetry(new IOException(), 1)).isTrue();
+        assertThat(retryPolicy.shouldRetry(new IOException(), 2)).isFalse();
+
+        assertThat(retryPolicy.getRetryCount()).isEqualTo(2);
+        assertThat(retryPolicy.getRetryableFailureCount()).isEqualTo(3);
+        assertThat(retryPolicy.getRetriesExhaustedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void retriesAreLimitedByBudget() {
+        RetryPolicy retryPolicy = new RetryPolicy(5, new ExponentialBackoff(0, 0), new RetryBudget(0, 1));
+
+        assertThat(retryPolicy.shouldRetry(new IOException(), 0)).isTrue();
+        assertThat(retryPolicy.shouldRetry(new IOException(), 0)).isFalse();
+
+        assertThat(retryPolicy.getBudgetExhaustedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void permanentFailuresAreCounted() {
+        RetryPolicy retryPolicy = new RetryPolicy(5, new ExponentialBackoff(0, 0), new RetryBudget(1, 10));
+
+        assertThat(retryPolicy.shouldRetry(new UnexpectedResponseCodeException(404), 0)).isFalse();
+
+        assertThat(retryPolicy.getPermanentFailureCount()).isEqualTo(1);
+        assertThat(retryPolicy.getRetryCount()).isZero();
+    }
+
+    @Test
+    public void retriesAreDisabledByDefault() {
+        RetryPolicy retryPolicy = RetryPolicy.fromSettings(ImmutableMap.<String, String>of());
+
+        assertThat(retryPolicy.shouldRetry(new IOException(), 0)).isFalse();
+        assertThat(retryPolicy.getRetriesExhaustedCount()).isZero();
+    }
+
+    @Test
+    public void retriesAreConfiguredFromSettings() {
+        RetryPolicy retryPolicy = RetryPolicy.fromSettings(ImmutableMap.of(
+                "maxRetries", "1",
+                "retryInitialBackoffMillis", "0",
+                "retryMaxBackoffMillis", "0"));
+
+        assertThat(retryPolicy.shouldRetry(new IOException(), 0)).isTrue();
+        assertThat(retryPolicy.shouldRetry(new IOException(), 1)).isFalse();
+    }
+
+}
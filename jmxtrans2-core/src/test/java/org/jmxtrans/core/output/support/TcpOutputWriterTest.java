@@ -71,6 +71,21 @@ public class TcpOutputWriterTest {
         await().until(server.hasReceived("test"));
     }
 
+    @Test
+    public void bytesWrittenAreCounted() throws IOException {
+        TcpOutputWriter tcpOutputWriter = new TcpOutputWriter(
+                server.getLocalSocketAddress(),
+                100,
+                charset,
+                new DummyWriter()
+        );
+        tcpOutputWriter.beforeBatch();
+        tcpOutputWriter.write(result);
+        tcpOutputWriter.afterBatch();
+
+        assertThat(tcpOutputWriter.getBytesWritten()).isEqualTo(4);
+    }
+
     @AfterMethod
     public void stopTcpServer() throws IOException {
         server.stop();
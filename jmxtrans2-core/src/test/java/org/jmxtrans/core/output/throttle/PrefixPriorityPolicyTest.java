@@ -0,0 +1,56 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.throttle;
+
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.time.ManualClock;
+
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrefixPriorityPolicyTest {
+
+    private final PrefixPriorityPolicy policy = new PrefixPriorityPolicy(asList("critical.", "important."));
+
+    @Test
+    public void higherPriorityNeedsSmallerReserve() {
+        assertThat(policy.getReserveFraction("critical.cpu")).isEqualTo(0);
+        assertThat(policy.getReserveFraction("important.cpu")).isEqualTo(1.0 / 3);
+        assertThat(policy.getReserveFraction("other.cpu")).isEqualTo(2.0 / 3);
+    }
+
+    @Test
+    public void lowPriorityResultsAreShedFirst() {
+        RateLimiter rateLimiter = new RateLimiter(new ManualClock(), 3, 0, 1);
+
+        assertThat(policy.admit(new QueryResult("other.cpu", 1, 0), 10, rateLimiter)).isTrue();
+        assertThat(policy.admit(new QueryResult("other.cpu", 1, 0), 10, rateLimiter)).isFalse();
+        assertThat(policy.admit(new QueryResult("important.cpu", 1, 0), 10, rateLimiter)).isTrue();
+        assertThat(policy.admit(new QueryResult("important.cpu", 1, 0), 10, rateLimiter)).isFalse();
+        assertThat(policy.admit(new QueryResult("critical.cpu", 1, 0), 10, rateLimiter)).isTrue();
+    }
+
+}
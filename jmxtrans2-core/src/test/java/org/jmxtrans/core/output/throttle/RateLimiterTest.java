@@ -0,0 +1,95 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.throttle;
+
+import org.jmxtrans.utils.time.ManualClock;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimiterTest {
+
+    private final ManualClock clock = new ManualClock();
+
+    @BeforeMethod
+    public void setTime() {
+        clock.setTime(100, SECONDS);
+    }
+
+    @Test
+    public void burstIsAccepted() {
+        RateLimiter rateLimiter = new RateLimiter(clock, 10, 0, 2);
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(rateLimiter.tryAcquire(100, 0)).isTrue();
+        }
+        assertThat(rateLimiter.tryAcquire(100, 0)).isFalse();
+    }
+
+    @Test
+    public void tokensAreRefilledOverTime() {
+        RateLimiter rateLimiter = new RateLimiter(clock, 10, 0, 1);
+        for (int i = 0; i < 10; i++) rateLimiter.tryAcquire(100, 0);
+        assertThat(rateLimiter.tryAcquire(100, 0)).isFalse();
+
+        clock.waitFor(100, MILLISECONDS);
+
+        assertThat(rateLimiter.tryAcquire(100, 0)).isTrue();
+        assertThat(rateLimiter.tryAcquire(100, 0)).isFalse();
+    }
+
+    @Test
+    public void bytesAreLimited() {
+        RateLimiter rateLimiter = new RateLimiter(clock, 0, 1000, 1);
+
+        assertThat(rateLimiter.tryAcquire(600, 0)).isTrue();
+        assertThat(rateLimiter.tryAcquire(600, 0)).isFalse();
+        assertThat(rateLimiter.tryAcquire(400, 0)).isTrue();
+    }
+
+    @Test
+    public void reserveIsKeptAvailable() {
+        RateLimiter rateLimiter = new RateLimiter(clock, 10, 0, 1);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(rateLimiter.tryAcquire(100, 0.5)).isTrue();
+        }
+        assertThat(rateLimiter.tryAcquire(100, 0.5)).isFalse();
+        assertThat(rateLimiter.tryAcquire(100, 0)).isTrue();
+    }
+
+    @Test
+    public void admissibleFractionIsComputedFromMostRestrictiveLimit() {
+        RateLimiter rateLimiter = new RateLimiter(clock, 100, 1000, 1);
+
+        assertThat(rateLimiter.getAdmissibleFraction(50, 2000, 1)).isEqualTo(0.5);
+        assertThat(rateLimiter.getAdmissibleFraction(400, 100, 1)).isEqualTo(0.25);
+        assertThat(rateLimiter.getAdmissibleFraction(10, 10, 1)).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.throttle;
+
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.time.ManualClock;
+
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SamplingPolicyTest {
+
+    @Test
+    public void probabilityIsAdjustedToOfferedTraffic() {
+        ManualClock clock = new ManualClock();
+        RateLimiter rateLimiter = new RateLimiter(clock, 100, 0, 1);
+        SamplingPolicy policy = new SamplingPolicy(clock);
+        QueryResult result = new QueryResult("my.metric", 1, 0);
+
+        for (int i = 0; i < 400; i++) {
+            policy.admit(result, 10, rateLimiter);
+        }
+        assertThat(policy.getProbability()).isEqualTo(1);
+
+        clock.waitFor(1000, MILLISECONDS);
+        policy.admit(result, 10, rateLimiter);
+
+        assertThat(policy.getProbability()).isEqualTo(0.25);
+    }
+
+    @Test
+    public void allResultsAreAdmittedBelowLimit() {
+        ManualClock clock = new ManualClock();
+        RateLimiter rateLimiter = new RateLimiter(clock, 100, 0, 1);
+        SamplingPolicy policy = new SamplingPolicy(clock);
+        QueryResult result = new QueryResult("my.metric", 1, 0);
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(policy.admit(result, 10, rateLimiter)).isTrue();
+        }
+    }
+
+}
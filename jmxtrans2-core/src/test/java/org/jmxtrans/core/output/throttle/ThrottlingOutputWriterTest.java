@@ -0,0 +1,133 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.throttle;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.mockito.MockitoTestNGListener;
+import org.jmxtrans.utils.time.ManualClock;
+
+import org.mockito.Mock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Listeners(MockitoTestNGListener.class)
+public class ThrottlingOutputWriterTest {
+
+    private final ManualClock clock = new ManualClock();
+    @Mock private OutputWriter outputWriter;
+    private final QueryResult result = new QueryResult("my.metric", 1, 0);
+
+    @BeforeMethod
+    public void setupOutputWriter() throws IOException {
+        when(outputWriter.write(any(QueryResult.class))).thenReturn(1);
+    }
+
+    @Test
+    public void resultsAboveLimitAreShedAndCounted() throws IOException {
+        ThrottlingOutputWriter throttlingOutputWriter = new ThrottlingOutputWriter(
+                outputWriter, new RateLimiter(clock, 2, 0, 1), new DropNewestPolicy(), clock);
+
+        assertThat(throttlingOutputWriter.write(result)).isEqualTo(1);
+        assertThat(throttlingOutputWriter.write(result)).isEqualTo(1);
+        assertThat(throttlingOutputWriter.write(result)).isEqualTo(0);
+
+        verify(outputWriter, times(2)).write(result);
+        assertThat(throttlingOutputWriter.getAdmittedCount()).isEqualTo(2);
+        assertThat(throttlingOutputWriter.getShedCount()).isEqualTo(1);
+        assertThat(throttlingOutputWriter.getShedBytes()).isEqualTo(ThrottlingOutputWriter.estimateSize(result));
+    }
+
+    @Test
+    public void sheddingEpisodeEndsAfterOneSecondWithoutShedding() throws IOException {
+        ThrottlingOutputWriter throttlingOutputWriter = new ThrottlingOutputWriter(
+                outputWriter, new RateLimiter(clock, 2, 0, 1), new DropNewestPolicy(), clock);
+
+        throttlingOutputWriter.write(result);
+        throttlingOutputWriter.write(result);
+        throttlingOutputWriter.write(result);
+        clock.waitFor(500, MILLISECONDS);
+        throttlingOutputWriter.write(result);
+        throttlingOutputWriter.write(result);
+        assertThat(throttlingOutputWriter.getShedCount()).isEqualTo(2);
+        assertThat(throttlingOutputWriter.getSheddingEpisodeCount()).isEqualTo(1);
+
+        clock.waitFor(1, SECONDS);
+        throttlingOutputWriter.write(result);
+        throttlingOutputWriter.write(result);
+        throttlingOutputWriter.write(result);
+        assertThat(throttlingOutputWriter.getSheddingEpisodeCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void writerIsNotWrappedWithoutLimit() {
+        OutputWriter throttled = ThrottlingOutputWriter.throttle(clock, outputWriter, new HashMap<String, String>());
+
+        assertThat(throttled).isSameAs(outputWriter);
+    }
+
+    @Test
+    public void sheddingPolicyIsConfiguredFromSettings() {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("maxPointsPerSecond", "1000");
+        settings.put("sheddingPolicy", "priority");
+        settings.put("priorityPrefixes", "critical., important.");
+
+        OutputWriter throttled = ThrottlingOutputWriter.throttle(clock, outputWriter, settings);
+
+        assertThat(throttled).isInstanceOf(ThrottlingOutputWriter.class);
+        assertThat(((ThrottlingOutputWriter) throttled).getSheddingPolicy()).isEqualTo("priority[critical., important.]");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void unknownSheddingPolicyIsRejected() {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("maxBytesPerSecond", "1000");
+        settings.put("sheddingPolicy", "random");
+
+        ThrottlingOutputWriter.throttle(clock, outputWriter, settings);
+    }
+
+    @Test
+    public void throttlingIsExposedAsNestedMBean() {
+        ThrottlingOutputWriter throttlingOutputWriter = new ThrottlingOutputWriter(
+                outputWriter, new RateLimiter(clock, 2, 0, 1), new DropNewestPolicy(), clock);
+
+        assertThat(throttlingOutputWriter.getNestedMBeans()).containsEntry("throttling", throttlingOutputWriter);
+    }
+
+}
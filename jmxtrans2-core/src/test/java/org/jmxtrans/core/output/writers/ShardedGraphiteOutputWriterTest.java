@@ -0,0 +1,158 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.output.writers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.output.support.TcpOutputWriter;
+import org.jmxtrans.core.output.support.TcpSinkServer;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.time.ManualClock;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.jmxtrans.utils.io.Charsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ShardedGraphiteOutputWriterTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final GraphiteOutputWriter graphiteOutputWriter = new GraphiteOutputWriter();
+    private TcpSinkServer server;
+
+    @BeforeMethod
+    public void startTcpServer() throws IOException {
+        server = new TcpSinkServer(UTF_8);
+        server.start();
+        clock.setTime(100, SECONDS);
+    }
+
+    @AfterMethod
+    public void stopTcpServer() {
+        server.stop();
+    }
+
+    @Test
+    public void resultsAreSentToAvailableEndpoint() throws IOException {
+        GraphiteEndpoint live = endpoint(server.getLocalSocketAddress(), "a");
+        ShardedGraphiteOutputWriter writer = new ShardedGraphiteOutputWriter(
+                graphiteOutputWriter, Collections.singletonList(live), 100);
+
+        writer.beforeBatch();
+        int count = writer.write(new QueryResult("my.metric", 1, 1000));
+        writer.afterBatch();
+
+        assertThat(count).isEqualTo(1);
+        assertThat(live.getSentCount()).isEqualTo(1);
+        assertThat(live.getFailoverCount()).isZero();
+    }
+
+    @Test
+    public void resultsFailOverWhenEndpointIsDown() throws IOException {
+        GraphiteEndpoint dead = endpoint(unusedAddress(), "a");
+        GraphiteEndpoint live = endpoint(server.getLocalSocketAddress(), "b");
+        ShardedGraphiteOutputWriter writer = new ShardedGraphiteOutputWriter(
+                graphiteOutputWriter, asList(dead, live), 100);
+
+        writer.beforeBatch();
+        int count = 0;
+        for (int i = 0; i < 20; i++) {
+            count += writer.write(new QueryResult("my.metric" + i, i, 1000));
+        }
+        writer.afterBatch();
+
+        assertThat(count).isEqualTo(20);
+        assertThat(live.getSentCount()).isEqualTo(20);
+        assertThat(live.getFailoverCount()).isGreaterThan(0);
+        assertThat(dead.getFailureCount()).isEqualTo(1);
+        assertThat(dead.isAvailable()).isFalse();
+    }
+
+    @Test
+    public void endpointIsAvailableAgainAfterDowntime() throws IOException {
+        GraphiteEndpoint dead = endpoint(unusedAddress(), "a");
+        try {
+            dead.write(new QueryResult("my.metric", 1, 1000), false);
+        } catch (IOException expected) {
+        }
+        assertThat(dead.isAvailable()).isFalse();
+
+        clock.waitFor(30, SECONDS);
+
+        assertThat(dead.isAvailable()).isTrue();
+    }
+
+    @Test
+    public void endpointsAreExposedAsNestedMBeans() {
+        GraphiteEndpoint endpoint = endpoint(server.getLocalSocketAddress(), "a");
+        ShardedGraphiteOutputWriter writer = new ShardedGraphiteOutputWriter(
+                graphiteOutputWriter, Collections.singletonList(endpoint), 100);
+
+        assertThat(writer.getNestedMBeans()).containsValue(endpoint);
+    }
+
+    @Test
+    public void canCreateShardedGraphiteOutputWriter() {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("endpoints", "localhost:2003:a, localhost:2004:b");
+        OutputWriter outputWriter = new ShardedGraphiteOutputWriter.Factory().create(settings);
+
+        assertThat(outputWriter).isNotNull();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void endpointsMustHaveAPort() {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("endpoints", "localhost");
+        new ShardedGraphiteOutputWriter.Factory().create(settings);
+    }
+
+    private GraphiteEndpoint endpoint(InetSocketAddress address, String instance) {
+        return new GraphiteEndpoint(
+                address.getHostName(),
+                address.getPort(),
+                instance,
+                new TcpOutputWriter<>(address, 100, UTF_8, graphiteOutputWriter),
+                clock,
+                30000);
+    }
+
+    private InetSocketAddress unusedAddress() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return new InetSocketAddress("localhost", socket.getLocalPort());
+        }
+    }
+
+}
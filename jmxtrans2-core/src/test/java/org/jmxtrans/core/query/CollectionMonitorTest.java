@@ -0,0 +1,196 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.rmi.ConnectException;
+import java.util.Arrays;
+
+import javax.management.ObjectName;
+
+import org.jmxtrans.utils.mockito.MockitoTestNGListener;
+
+import org.mockito.Mock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Listeners(MockitoTestNGListener.class)
+public class CollectionMonitorTest {
+
+    @Mock private Server server;
+    @Mock private Query query;
+    @Mock private Query otherQuery;
+    private CollectionMonitor monitor;
+
+    @BeforeMethod
+    public void createMonitor() {
+        when(server.getName()).thenReturn("host.test.net:1099");
+        when(server.getQueries()).thenReturn(Arrays.asList(query, otherQuery));
+        when(query.getResultAlias()).thenReturn("memory");
+        when(otherQuery.getResultAlias()).thenReturn("threads");
+        monitor = new CollectionMonitor(new SlowQueryLog(10, 1000), 16);
+    }
+
+    @Test
+    public void healthIsTrackedPerServer() {
+        TargetHealth health = monitor.getTargetHealth(server);
+
+        assertThat(monitor.getTargetHealth(server)).isSameAs(health);
+        assertThat(health.getServer()).isEqualTo("host.test.net:1099");
+        assertThat(health.getQueries()).containsExactly("memory", "threads");
+    }
+
+    @Test
+    public void objectNameIsComputedOnceFromServerName() throws Exception {
+        TargetHealth health = monitor.getTargetHealth(server);
+
+        ObjectName objectName = health.getObjectName();
+        assertThat(health.getObjectName()).isEqualTo(objectName);
+        assertThat(objectName.getKeyProperty("name")).isEqualTo("host.test.net|1099");
+        assertThat(objectName.getKeyProperty("component")).isNull();
+    }
+
+    @Test
+    public void successfulCollectionsAreRecorded() {
+        monitor.collected(server, query, MILLISECONDS.toNanos(20), 1000, 2000, 5);
+        monitor.collected(server, query, MILLISECONDS.toNanos(40), 1000, 2000, 5);
+
+        TargetHealth health = monitor.getTargetHealth(server);
+        assertThat(health.isUp()).isTrue();
+        assertThat(health.getCollectionCount()).isEqualTo(2);
+        assertThat(health.getLastDurationsMillis()).containsExactly(40, 0);
+        assertThat(health.getLatencyMaxMillis()).isEqualTo(40);
+        assertThat(health.getLatencyP50Millis()).isEqualTo(20);
+        assertThat(health.getLastSuccessEpochMillis()).isEqualTo(1000);
+        assertThat(health.getLastSuccessesEpochMillis()).containsExactly(1000, 0);
+        assertThat(monitor.getSlowQueryLog().getEntries()).isEmpty();
+    }
+
+    @Test
+    public void latenciesAreSampledPerQuery() {
+        monitor.collected(server, query, MILLISECONDS.toNanos(20), 1000, 2000, 5);
+        monitor.collected(server, query, MILLISECONDS.toNanos(30), 1000, 2000, 5);
+        monitor.collected(server, otherQuery, MILLISECONDS.toNanos(500), 1000, 2000, 5);
+
+        TargetHealth health = monitor.getTargetHealth(server);
+        assertThat(health.getLatencyP50sMillis()).containsExactly(20, 500);
+        assertThat(health.getLatencyP99sMillis()).containsExactly(30, 500);
+        assertThat(health.getLatencyMaxesMillis()).containsExactly(30, 500);
+        assertThat(health.getLatencyP50Millis()).isEqualTo(500);
+        assertThat(health.getLatencyP99Millis()).isEqualTo(500);
+    }
+
+    @Test
+    public void connectFailuresMarkTargetAsDown() {
+        monitor.connectFailed(server, query, MILLISECONDS.toNanos(20), 1000, 2000, new ConnectException("refused"));
+
+        TargetHealth health = monitor.getTargetHealth(server);
+        assertThat(health.isUp()).isFalse();
+        assertThat(health.getConnectFailureCount()).isEqualTo(1);
+        assertThat(health.getConsecutiveFailureCount()).isEqualTo(1);
+        assertThat(health.getTimeoutCount()).isEqualTo(0);
+        assertThat(health.getLastError()).contains("refused");
+    }
+
+    @Test
+    public void stateIsKeptPerQuery() {
+        monitor.collected(server, query, MILLISECONDS.toNanos(20), 1000, 2000, 5);
+        monitor.connectFailed(server, otherQuery, MILLISECONDS.toNanos(30), 1000, 2000, new ConnectException("refused"));
+
+        TargetHealth health = monitor.getTargetHealth(server);
+        assertThat(health.isUp()).isFalse();
+        assertThat(health.getDownQueries()).containsExactly("threads");
+        assertThat(health.getCollectionCount()).isEqualTo(2);
+        assertThat(health.getLastDurationsMillis()).containsExactly(20, 30);
+        assertThat(health.getLastErrors()[0]).isNull();
+        assertThat(health.getLastErrors()[1]).contains("refused");
+    }
+
+    @Test
+    public void queriesNotPartOfTheServerAreNotTracked() {
+        Query unknown = mock(Query.class);
+        monitor.collected(server, unknown, MILLISECONDS.toNanos(20), 1000, 2000, 5);
+
+        assertThat(monitor.getTargetHealth(server).getCollectionCount()).isEqualTo(0);
+        assertThat(monitor.getCompletedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void socketTimeoutsAreCountedAsTimeouts() {
+        monitor.collectionFailed(server, query, MILLISECONDS.toNanos(20), 1000, 2000,
+                new IOException("wrapped", new SocketTimeoutException("read timed out")));
+
+        TargetHealth health = monitor.getTargetHealth(server);
+        assertThat(health.getCollectionFailureCount()).isEqualTo(1);
+        assertThat(health.getTimeoutCount()).isEqualTo(1);
+        assertThat(monitor.getSlowQueryLog().getEntries()).hasSize(1);
+    }
+
+    @Test
+    public void recoveryResetsConsecutiveFailures() {
+        monitor.connectFailed(server, query, 0, 1000, 2000, new ConnectException("refused"));
+        monitor.collected(server, query, 0, 1000, 2000, 5);
+
+        TargetHealth health = monitor.getTargetHealth(server);
+        assertThat(health.isUp()).isTrue();
+        assertThat(health.getConsecutiveFailureCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void lateCollectionsAreTimeoutsAndSlowQueries() {
+        monitor.collected(server, query, MILLISECONDS.toNanos(20), 3000, 2000, 5);
+
+        assertThat(monitor.getTargetHealth(server).getTimeoutCount()).isEqualTo(1);
+        assertThat(monitor.getSlowQueryLog().getEntries()).hasSize(1);
+    }
+
+    @Test
+    public void droppedCollectionsDoNotChangeState() {
+        monitor.deadlineMissed(server, query, 3000);
+
+        TargetHealth health = monitor.getTargetHealth(server);
+        assertThat(health.isUp()).isTrue();
+        assertThat(health.getTimeoutCount()).isEqualTo(1);
+        assertThat(monitor.getSlowQueryLog().getEntries()[0]).contains("dropped");
+    }
+
+    @Test
+    public void completedAndDroppedCollectionsAreCounted() {
+        monitor.collected(server, query, 0, 1000, 2000, 5);
+        monitor.connectFailed(server, query, 0, 1000, 2000, new ConnectException("refused"));
+        monitor.collectionFailed(server, query, 0, 1000, 2000, new IOException());
+        monitor.deadlineMissed(server, query, 3000);
+
+        assertThat(monitor.getCompletedCount()).isEqualTo(3);
+        assertThat(monitor.getDroppedCount()).isEqualTo(1);
+    }
+
+}
@@ -28,6 +28,7 @@ import java.util.Iterator;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
+import org.jmxtrans.core.monitoring.EventRecorder;
 import org.jmxtrans.core.results.QueryResult;
 
 import org.testng.annotations.AfterClass;
@@ -37,6 +38,8 @@ import org.testng.annotations.Test;
 import static java.util.Arrays.asList;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 /**
  * @author <a href="mailto:cleclerc@xebia.fr">Cyrille Le Clerc</a>
@@ -90,6 +93,18 @@ public class QueryTest {
         assertThat(result.getName()).isEqualTo("memory.MemoryPool.CollectionUsageThreshold");
     }
 
+    @Test
+    public void matchingObjectNamesAreReported() throws Exception {
+        EventRecorder.QueryExecution execution = mock(EventRecorder.QueryExecution.class);
+        Query.builder()
+                .withObjectName("test:type=MemoryPool,name=*")
+                .addAttribute("CollectionUsageThreshold")
+                .build()
+                .collectMetrics(mbeanServer, new ResultNameStrategy(), execution);
+
+        verify(execution).matched(2);
+    }
+
     @Test
     public void test_composite_jmx_attribute() throws Exception {
         Query query = Query.builder()
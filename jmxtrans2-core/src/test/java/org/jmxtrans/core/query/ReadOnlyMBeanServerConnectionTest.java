@@ -0,0 +1,97 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReadOnlyMBeanServerConnectionTest {
+
+    private final ReadOnlyMBeanServerConnection connection = new SingleAttributeConnection();
+
+    @Test
+    public void readMethodsAreDerivedFromQueriesAndAttributes() throws Exception {
+        ObjectName memory = new ObjectName("java.lang:type=Memory");
+
+        assertThat(connection.isRegistered(memory)).isTrue();
+        assertThat(connection.isRegistered(new ObjectName("java.lang:type=Threading"))).isFalse();
+        assertThat(connection.getMBeanCount()).isEqualTo(2);
+        assertThat(connection.getDomains()).containsExactly("java.lang", "perfdata");
+        assertThat(connection.queryMBeans(null, null)).hasSize(2);
+        assertThat(connection.getObjectInstance(memory).getObjectName()).isEqualTo(memory);
+        assertThat(connection.getAttribute(memory, "value")).isEqualTo(42);
+    }
+
+    @Test(expectedExceptions = AttributeNotFoundException.class)
+    public void missingAttributesAreNotFound() throws Exception {
+        connection.getAttribute(new ObjectName("java.lang:type=Memory"), "other");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void writesAreNotSupported() throws Exception {
+        connection.setAttribute(new ObjectName("java.lang:type=Memory"), new Attribute("value", 0));
+    }
+
+    private static final class SingleAttributeConnection extends ReadOnlyMBeanServerConnection {
+        @Nonnull private final Set<ObjectName> names = new LinkedHashSet<>();
+
+        private SingleAttributeConnection() {
+            try {
+                names.add(new ObjectName("java.lang:type=Memory"));
+                names.add(new ObjectName("perfdata:name=java.cls.loadedClasses"));
+            } catch (MalformedObjectNameException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public Set<ObjectName> queryNames(@Nullable ObjectName name, @Nullable QueryExp query) {
+            Set<ObjectName> matching = new LinkedHashSet<>();
+            for (ObjectName candidate : names) {
+                if (name == null || name.apply(candidate)) matching.add(candidate);
+            }
+            return matching;
+        }
+
+        @Override
+        public AttributeList getAttributes(@Nonnull ObjectName name, @Nonnull String[] attributes) {
+            AttributeList values = new AttributeList();
+            if (Arrays.asList(attributes).contains("value")) values.add(new Attribute("value", 42));
+            return values;
+        }
+    }
+}
@@ -22,10 +22,18 @@
  */
 package org.jmxtrans.core.query;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
 import org.testng.annotations.Test;
 
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class RemoteServerTest {
@@ -41,6 +49,84 @@ public class RemoteServerTest {
         assertThat(server.getHost()).isEqualTo("host.test.net");
     }
 
+    @Test
+    public void serverBuiltFromHostAndPortIsNamedAfterThem() throws MalformedURLException {
+        RemoteServer server = RemoteServer.builder()
+                .withHost("host.test.net")
+                .withPort(7890)
+                .build();
+
+        assertThat(server.getName()).isEqualTo("host.test.net:7890");
+    }
+
+    @Test
+    public void serverBuiltFromUrlIsNamedAfterIt() throws MalformedURLException {
+        RemoteServer server = RemoteServer.builder()
+                .withUrl("service:jmx:rmi:///jndi/rmi://host.test.net:4321/jmxrmi")
+                .withPort(7890)
+                .build();
+
+        assertThat(server.getName()).isEqualTo("service:jmx:rmi:///jndi/rmi://host.test.net:4321/jmxrmi");
+    }
+
+    @Test
+    public void givenNameIsPreferred() throws MalformedURLException {
+        RemoteServer server = RemoteServer.builder()
+                .withName("com.example.Main-42")
+                .withUrl("service:jmx:rmi://127.0.0.1/stub/42")
+                .build();
+
+        assertThat(server.getName()).isEqualTo("com.example.Main-42");
+        assertThat(server.withQueries(server.getQueries()).getName()).isEqualTo("com.example.Main-42");
+    }
+
+    @Test
+    public void connectorIsSharedUntilServerIsClosed() throws Exception {
+        JMXConnectorServer connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(
+                new JMXServiceURL("service:jmx:rmi://"), null, getPlatformMBeanServer());
+        connectorServer.start();
+        try {
+            RemoteServer server = RemoteServer.builder().withUrl(connectorServer.getAddress().toString()).build();
+
+            MBeanServerConnection connection = server.getServerConnection();
+            assertThat(server.getServerConnection()).isSameAs(connection);
+            assertThat(connectorServer.getConnectionIds()).hasSize(1);
+
+            server.close();
+            assertThat(connectorServer.getConnectionIds()).isEmpty();
+        } finally {
+            connectorServer.stop();
+        }
+    }
+
+    @Test
+    public void copiesShareTheConnector() throws Exception {
+        JMXConnectorServer connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(
+                new JMXServiceURL("service:jmx:rmi://"), null, getPlatformMBeanServer());
+        connectorServer.start();
+        try {
+            RemoteServer server = RemoteServer.builder().withUrl(connectorServer.getAddress().toString()).build();
+            MBeanServerConnection connection = server.getServerConnection();
+
+            RemoteServer copy = server.withQueries(server.getQueries());
+            assertThat(copy.getServerConnection()).isSameAs(connection);
+            assertThat(connectorServer.getConnectionIds()).hasSize(1);
+
+            copy.close();
+            assertThat(connectorServer.getConnectionIds()).isEmpty();
+        } finally {
+            connectorServer.stop();
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void closedServersAreNotConnectedAgain() throws Exception {
+        RemoteServer server = RemoteServer.builder().withUrl("service:jmx:rmi://127.0.0.1/stub/42").build();
+        server.close();
+
+        server.getServerConnection();
+    }
+
     @Test
     public void weblogicSpecificEnvironmentIsUsedIfRequired() throws MalformedURLException {
         RemoteServer server = RemoteServer.builder()
@@ -13,11 +13,13 @@ import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
 
 @Listeners(MockitoTestNGListener.class)
 public class ResultNameStrategyTest {
 
     @Mock private Query query;
+    @Mock private Server server;
 
     private ResultNameStrategy resultNameStrategy;
 
@@ -48,4 +50,15 @@ public class ResultNameStrategyTest {
         assertThat(resultNameStrategy.getResultName(query, objectName, QueryAttribute.builder("Count").build()))
                 .isEqualTo("java.nio.BufferPool.direct.other__value.Count");
     }
+
+    @Test
+    public void serverExpressionsResolveToServerName() throws MalformedObjectNameException {
+        when(server.getName()).thenReturn("com.example.Main-42");
+        ObjectName objectName = new ObjectName("java.nio:type=BufferPool");
+
+        assertThat(resultNameStrategy.forServer(server).resolveExpression("#server#.%type%", objectName))
+                .isEqualTo("com.example.Main-42.BufferPool");
+        assertThat(resultNameStrategy.forServer(server).resolveExpression("#escaped_server#.%type%", objectName))
+                .isEqualTo("com_example_Main_42.BufferPool");
+    }
 }
@@ -0,0 +1,86 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query;
+
+import javax.management.MalformedObjectNameException;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SlowQueryLogTest {
+
+    @Test
+    public void fastCollectionsAreNotLogged() {
+        SlowQueryLog log = new SlowQueryLog(10, 1000);
+
+        log.record(0, "host", "query", 999, false, "ok");
+
+        assertThat(log.getEntries()).isEmpty();
+        assertThat(log.getSlowQueryCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void slowCollectionsAndDeadlineMissesAreLogged() {
+        SlowQueryLog log = new SlowQueryLog(10, 1000);
+
+        log.record(0, "host1", "query", 1500, false, "ok");
+        log.record(0, "host2", "query", 10, true, "ok");
+
+        assertThat(log.getEntries()).hasSize(2);
+        assertThat(log.getEntries()[0]).contains("server=host2");
+        assertThat(log.getEntries()[1]).contains("server=host1").contains("duration=1500ms");
+        assertThat(log.getSlowQueryCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void objectNameIsStable() throws MalformedObjectNameException {
+        SlowQueryLog log = new SlowQueryLog(10, 1000);
+
+        assertThat(log.getObjectName()).isEqualTo(log.getObjectName());
+    }
+
+    @Test
+    public void onlyMostRecentEntriesAreKept() {
+        SlowQueryLog log = new SlowQueryLog(2, 0);
+
+        log.record(0, "host1", "query", 1, false, "ok");
+        log.record(0, "host2", "query", 1, false, "ok");
+        log.record(0, "host3", "query", 1, false, "ok");
+
+        assertThat(log.getEntries()).hasSize(2);
+        assertThat(log.getEntries()[0]).contains("server=host3");
+        assertThat(log.getEntries()[1]).contains("server=host2");
+        assertThat(log.getSlowQueryCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void logCanBeCleared() {
+        SlowQueryLog log = new SlowQueryLog(2, 0);
+        log.record(0, "host1", "query", 1, false, "ok");
+
+        log.clear();
+
+        assertThat(log.getEntries()).isEmpty();
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.jolokia;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.utils.mockito.MockitoTestNGListener;
+import org.jmxtrans.utils.time.ManualClock;
+
+import org.mockito.Mock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.jmxtrans.core.query.jolokia.JolokiaClientTest.query;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Listeners(MockitoTestNGListener.class)
+public class JolokiaConnectionTest {
+
+    @Mock private JolokiaClient client;
+    private ManualClock clock;
+    private ObjectName runtime;
+    private ObjectName threading;
+    private List<Query> queries;
+    private JolokiaConnection connection;
+
+    @BeforeMethod
+    public void createConnection() throws Exception {
+        runtime = new ObjectName("java.lang:type=Runtime");
+        threading = new ObjectName("java.lang:type=Threading");
+        queries = Arrays.asList(query("java.lang:type=Runtime", "Uptime"), query("java.lang:type=Threading", "ThreadCount"));
+        Map<ObjectName, Map<String, Object>> values = new HashMap<>();
+        values.put(runtime, Collections.<String, Object>singletonMap("Uptime", 10L));
+        values.put(threading, Collections.<String, Object>singletonMap("ThreadCount", 42));
+        when(client.read(queries)).thenReturn(values);
+        clock = new ManualClock();
+        connection = new JolokiaConnection(client, queries, clock, 5000);
+    }
+
+    @Test
+    public void allQueriesOfACycleShareOneRead() throws Exception {
+        assertThat(connection.queryNames(runtime, null)).containsExactly(runtime);
+        assertThat(connection.queryNames(threading, null)).containsExactly(threading);
+        assertThat(connection.getAttributes(threading, new String[] { "ThreadCount", "Missing" }).asList()).hasSize(1);
+
+        verify(client, times(1)).read(queries);
+    }
+
+    @Test
+    public void queriesLookingUpTheirMBeansAgainStartANewRead() throws Exception {
+        connection.queryNames(runtime, null);
+        connection.queryNames(threading, null);
+        connection.queryNames(runtime, null);
+
+        verify(client, times(2)).read(queries);
+    }
+
+    @Test
+    public void oldValuesAreReadAgain() throws Exception {
+        connection.queryNames(runtime, null);
+        clock.waitFor(6, SECONDS);
+        connection.queryNames(threading, null);
+
+        verify(client, times(2)).read(queries);
+    }
+
+    @Test
+    public void failedReadsFailAllQueriesOfTheCycle() throws Exception {
+        IOException failure = new IOException("Connection refused");
+        when(client.read(queries)).thenThrow(failure);
+
+        try {
+            connection.queryNames(runtime, null);
+            fail("The read should have failed");
+        } catch (IOException e) {
+            assertThat(e).isSameAs(failure);
+        }
+        try {
+            connection.queryNames(threading, null);
+            fail("The read should have failed");
+        } catch (IOException e) {
+            assertThat(e.getCause()).isSameAs(failure);
+        }
+        verify(client, times(1)).read(queries);
+    }
+
+    @Test
+    public void unknownMBeansAreEmpty() throws Exception {
+        assertThat(connection.queryNames(new ObjectName("com.example:*"), null)).isEmpty();
+        assertThat(connection.getAttributes(new ObjectName("com.example:type=Missing"), new String[] { "Count" }).asList()).isEmpty();
+        assertThat(connection.getMBeanCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.perfdata;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.ResultNameStrategy;
+import org.jmxtrans.core.results.QueryResult;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.lang.management.ManagementFactory.getRuntimeMXBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PerfDataServerTest {
+
+    private String pid;
+
+    @BeforeMethod
+    public void findCurrentJvm() {
+        pid = getRuntimeMXBean().getName().split("@")[0];
+    }
+
+    @Test
+    public void countersOfTheCurrentJvmAreCollected() throws IOException {
+        Query query = query("perfdata:name=java.cls.loadedClasses");
+        PerfDataServer server = PerfDataServer.forUrl(PerfDataServer.SCHEME + pid, Collections.singletonList(query));
+
+        Iterable<QueryResult> results = query.collectMetrics(server.getServerConnection(), new ResultNameStrategy());
+
+        QueryResult result = results.iterator().next();
+        assertThat((Long) result.getValue()).isGreaterThan(0L);
+    }
+
+    @Test
+    public void countersAreSelectedWithPatterns() throws Exception {
+        PerfDataServer server = PerfDataServer.forUrl(PerfDataServer.SCHEME + pid, Collections.<Query>emptyList());
+        MBeanServerConnection connection = server.getServerConnection();
+
+        assertThat(connection.queryNames(ObjectName.WILDCARD, null).size())
+                .isGreaterThan(connection.queryNames(PerfData.objectName("sun.gc.collector.*"), null).size())
+                .isGreaterThan(1);
+        assertThat(connection.getAttribute(PerfData.objectName("java.property.java.vm.name"), "value")).isInstanceOf(String.class);
+    }
+
+    @Test
+    public void filesAreGivenByPidOrPath() {
+        List<Query> queries = Collections.emptyList();
+        File file = PerfDataServer.forUrl("perfdata:" + pid, queries).getFile();
+
+        assertThat(file.getName()).isEqualTo(pid);
+        assertThat(file.getParentFile().getName()).startsWith("hsperfdata_");
+        assertThat(PerfDataServer.forUrl("perfdata:/tmp/hsperfdata_jmxtrans/42", queries).getFile()).isEqualTo(new File("/tmp/hsperfdata_jmxtrans/42"));
+    }
+
+    @Test
+    public void hsperfdataFilesAreUnderTmpOnLinux() {
+        assertThat(PerfDataServer.perfDataDirectory("Linux", "/var/tmp/jmxtrans", "jmxtrans"))
+                .isEqualTo(new File("/tmp/hsperfdata_jmxtrans"));
+        assertThat(PerfDataServer.perfDataDirectory("Windows 10", "C:\\Temp", "jmxtrans"))
+                .isEqualTo(new File("C:\\Temp", "hsperfdata_jmxtrans"));
+    }
+
+    @Test
+    public void serversAreToldApartByPid() {
+        List<Query> queries = Collections.emptyList();
+        PerfDataServer server = PerfDataServer.forUrl("perfdata:42", queries);
+
+        assertThat(server.getPid()).isEqualTo("42");
+        assertThat(server.getName()).isEqualTo("perfdata:42");
+        assertThat(PerfDataServer.forUrl("perfdata:/tmp/hsperfdata_jmxtrans/43", queries).getName()).isEqualTo("perfdata:43");
+    }
+
+    @Test
+    public void serversOfTheSameFileAreEqual() {
+        List<Query> queries = Collections.singletonList(query("perfdata:name=*"));
+
+        assertThat(PerfDataServer.forUrl("perfdata:42", queries)).isEqualTo(PerfDataServer.forUrl("perfdata:42", queries));
+        assertThat(PerfDataServer.forUrl("perfdata:42", queries)).isNotEqualTo(PerfDataServer.forUrl("perfdata:43", queries));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void missingFilesCannotBeCollected() throws IOException {
+        new PerfDataServer(new File("/non-existing/hsperfdata"), Collections.<Query>emptyList()).getServerConnection();
+    }
+
+    @Nonnull
+    private static Query query(@Nonnull String objectName) {
+        return Query.builder().withObjectName(objectName).addAttribute("value").build();
+    }
+}
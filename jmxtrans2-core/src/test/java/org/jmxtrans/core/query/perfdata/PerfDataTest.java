@@ -0,0 +1,146 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.perfdata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.management.ObjectName;
+
+import org.testng.annotations.Test;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmxtrans.utils.io.Charsets.US_ASCII;
+
+public class PerfDataTest {
+
+    @Test
+    public void countersAreDecodedInBothByteOrders() throws Exception {
+        for (ByteOrder order : new ByteOrder[] { BIG_ENDIAN, LITTLE_ENDIAN }) {
+            PerfDataBuilder file = new PerfDataBuilder(order)
+                    .addLong("java.cls.loadedClasses", 1234)
+                    .addString("java.property.java.vm.name", "OpenJDK 64-Bit Server VM", 64);
+
+            Map<ObjectName, PerfData.Counter> counters = new PerfData(file.buffer).getCounters();
+
+            assertThat(counters).hasSize(2);
+            assertThat(counters.get(PerfData.objectName("java.cls.loadedClasses")).getValue()).isEqualTo(1234L);
+            assertThat(counters.get(PerfData.objectName("java.property.java.vm.name")).getValue()).isEqualTo("OpenJDK 64-Bit Server VM");
+        }
+    }
+
+    @Test
+    public void valuesFollowTheFile() throws Exception {
+        PerfDataBuilder file = new PerfDataBuilder(LITTLE_ENDIAN).addLong("sun.gc.collector.0.invocations", 1);
+        PerfData.Counter counter = new PerfData(file.buffer).getCounters().values().iterator().next();
+
+        file.buffer.putLong(file.lastDataOffset, 2);
+
+        assertThat(counter.getValue()).isEqualTo(2L);
+    }
+
+    @Test
+    public void entriesAddedByTheJvmAreIndexed() throws Exception {
+        PerfDataBuilder file = new PerfDataBuilder(LITTLE_ENDIAN).addLong("java.cls.loadedClasses", 1);
+        PerfData perfData = new PerfData(file.buffer);
+        assertThat(perfData.getCounters()).hasSize(1);
+
+        file.addLong("java.cls.unloadedClasses", 0);
+
+        assertThat(perfData.getCounters()).containsKey(PerfData.objectName("java.cls.unloadedClasses"));
+    }
+
+    @Test
+    public void unsupportedCountersAreSkipped() throws Exception {
+        PerfDataBuilder file = new PerfDataBuilder(LITTLE_ENDIAN)
+                .addEntry("sun.os.byteVector", (byte) 'B', 1, 8)
+                .addLong("java.cls.loadedClasses", 1);
+
+        assertThat(new PerfData(file.buffer).getCounters()).hasSize(1);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        new PerfData(ByteBuffer.wrap("not a perfdata file, definitely not".getBytes(US_ASCII)));
+    }
+
+    /**
+     * Writes performance data in the layout used by HotSpot.
+     */
+    static final class PerfDataBuilder {
+        private final ByteBuffer buffer;
+        private int entries;
+        private int nextEntry = 32;
+        private int lastDataOffset;
+
+        PerfDataBuilder(@Nonnull ByteOrder order) {
+            buffer = ByteBuffer.allocate(4096).order(BIG_ENDIAN);
+            buffer.putInt(0, 0xcafec0c0);
+            buffer.order(order);
+            buffer.put(4, (byte) (order == BIG_ENDIAN ? 0 : 1));
+            buffer.put(5, (byte) 2);
+            buffer.put(7, (byte) 1);
+            buffer.putInt(24, nextEntry);
+        }
+
+        @Nonnull
+        PerfDataBuilder addLong(@Nonnull String name, long value) {
+            addEntry(name, (byte) 'J', 0, 4);
+            buffer.putLong(lastDataOffset, value);
+            return this;
+        }
+
+        @Nonnull
+        PerfDataBuilder addString(@Nonnull String name, @Nonnull String value, int length) {
+            addEntry(name, (byte) 'B', length, 5);
+            byte[] bytes = value.getBytes(US_ASCII);
+            for (int i = 0; i < bytes.length; i++) buffer.put(lastDataOffset + i, bytes[i]);
+            return this;
+        }
+
+        @Nonnull
+        PerfDataBuilder addEntry(@Nonnull String name, byte type, int vectorLength, int units) {
+            byte[] nameBytes = name.getBytes(US_ASCII);
+            int dataOffset = (20 + nameBytes.length + 1 + 7) & ~7;
+            int entryLength = dataOffset + Math.max(vectorLength, 8);
+            buffer.putInt(nextEntry, entryLength);
+            buffer.putInt(nextEntry + 4, 20);
+            buffer.putInt(nextEntry + 8, vectorLength);
+            buffer.put(nextEntry + 12, type);
+            buffer.put(nextEntry + 14, (byte) units);
+            buffer.putInt(nextEntry + 16, dataOffset);
+            for (int i = 0; i < nameBytes.length; i++) buffer.put(nextEntry + 20 + i, nameBytes[i]);
+            lastDataOffset = nextEntry + dataOffset;
+            nextEntry += entryLength;
+            buffer.putInt(28, ++entries);
+            buffer.putInt(8, nextEntry);
+            return this;
+        }
+    }
+}
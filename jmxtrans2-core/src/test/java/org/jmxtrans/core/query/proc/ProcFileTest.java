@@ -0,0 +1,114 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.proc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.annotation.Nonnull;
+
+import org.jmxtrans.utils.io.TemporaryFolder;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmxtrans.utils.io.Charsets.US_ASCII;
+
+public class ProcFileTest {
+
+    private TemporaryFolder folder;
+    private ProcFile procFile;
+
+    @BeforeMethod
+    public void createFolder() throws IOException {
+        folder = new TemporaryFolder();
+        procFile = new ProcFile();
+    }
+
+    @AfterMethod
+    public void destroyFolder() throws IOException {
+        folder.destroy();
+    }
+
+    @Test
+    public void statFieldsAreParsedAfterTheCommand() throws IOException {
+        procFile.read(file("42 (my (weird) cmd) S 1 -2 3 4 5 6 7 8 9 10 11\n"));
+        long[] fields = new long[15];
+
+        procFile.parseStat(fields);
+
+        assertThat(fields[4]).isEqualTo(1);
+        assertThat(fields[5]).isEqualTo(-2);
+        assertThat(fields[14]).isEqualTo(11);
+        assertThat(procFile.parseCommand()).isEqualTo("my (weird) cmd");
+    }
+
+    @Test
+    public void statParsingStopsAtTheEndOfTheFile() throws IOException {
+        procFile.read(file("42 (java) R 1 2"));
+        long[] fields = new long[10];
+
+        procFile.parseStat(fields);
+
+        assertThat(fields[5]).isEqualTo(2);
+        assertThat(fields[6]).isEqualTo(0);
+    }
+
+    @Test
+    public void statusValuesAreParsedByKey() throws IOException {
+        procFile.read(file("Name:\tjava\nVmRSS:\t  1234 kB\nThreads:\t12\nVmRSSx:\t1 kB\n"));
+        byte[][] keys = { bytes("VmRSS"), bytes("Threads"), bytes("VmSwap") };
+        long[] values = new long[3];
+
+        procFile.parseStatus(keys, values);
+
+        assertThat(values).containsExactly(1234, 12, -1);
+    }
+
+    @Test
+    public void largeFilesAreReadEntirely() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) content.append("Key").append(i).append(":\t").append(i).append('\n');
+        procFile.read(file(content.toString()));
+        long[] values = new long[1];
+
+        procFile.parseStatus(new byte[][] { bytes("Key999") }, values);
+
+        assertThat(values[0]).isEqualTo(999);
+    }
+
+    @Nonnull
+    private File file(@Nonnull String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes(content));
+        return file;
+    }
+
+    @Nonnull
+    private static byte[] bytes(@Nonnull String value) {
+        return value.getBytes(US_ASCII);
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.query.proc;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.ResultNameStrategy;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.io.TemporaryFolder;
+
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmxtrans.utils.io.Charsets.US_ASCII;
+
+public class ProcServerTest {
+
+    private static final String STAT = " S 1 1 1 0 -1 4194560 100 0 3 0 25 7 0 0 20 0 12 0 500 4096 300 1844674407370955\n";
+
+    private TemporaryFolder folder;
+    private File directory;
+
+    @BeforeMethod
+    public void createProcessDirectory() throws IOException {
+        folder = new TemporaryFolder();
+        directory = folder.newFolder();
+        write(new File(directory, "stat"), "42 (java)" + STAT);
+        write(new File(directory, "status"), "Name:\tjava\nVmHWM:\t 2048 kB\nVmRSS:\t 1200 kB\nThreads:\t2\n");
+        assertThat(new File(directory, "fd").mkdir()).isTrue();
+        write(new File(directory, "fd/0"), "");
+        write(new File(directory, "fd/1"), "");
+        task("42", "main");
+        task("43", "GC Thread, #0");
+    }
+
+    @AfterMethod
+    public void destroyFolder() throws IOException {
+        folder.destroy();
+    }
+
+    @Test
+    public void statAndStatusAreCollected() throws IOException {
+        Query stat = query("proc:type=stat", "utime", "stime", "majflt", "rss");
+        Query status = query("proc:type=status", "VmRSS", "VmSwap");
+        ProcServer server = new ProcServer(directory, Collections.<Query>emptyList());
+
+        assertThat(values(stat.collectMetrics(server.getServerConnection(), new ResultNameStrategy()))).containsOnly(25L, 7L, 3L, 300L);
+        assertThat(values(status.collectMetrics(server.getServerConnection(), new ResultNameStrategy()))).containsOnly(1200L);
+    }
+
+    @Test
+    public void fileDescriptorsAreCounted() throws Exception {
+        MBeanServerConnection connection = new ProcServer(directory, Collections.<Query>emptyList()).getServerConnection();
+
+        assertThat(connection.getAttribute(new ObjectName("proc:type=fd"), "count")).isEqualTo(2L);
+    }
+
+    @Test
+    public void threadsAreNamedAfterTheirCommand() throws Exception {
+        MBeanServerConnection connection = new ProcServer(directory, Collections.<Query>emptyList()).getServerConnection();
+
+        Set<ObjectName> tasks = connection.queryNames(new ObjectName("proc:type=task,*"), null);
+
+        assertThat(tasks).containsOnly(
+                new ObjectName("proc:type=task,name=main,id=42"),
+                new ObjectName("proc:type=task,name=" + ObjectName.quote("GC Thread, #0") + ",id=43"));
+        assertThat(connection.getAttribute(new ObjectName("proc:type=task,name=main,id=42"), "utime")).isEqualTo(25L);
+        assertThat(connection.queryNames(ObjectName.WILDCARD, null)).hasSize(5);
+        assertThat(connection.queryNames(new ObjectName("proc:type=status"), null)).hasSize(1);
+    }
+
+    @Test
+    public void currentProcessIsCollected() throws Exception {
+        if (!new File("/proc/self/stat").isFile()) throw new SkipException("No /proc file system");
+        MBeanServerConnection connection = ProcServer.forUrl("proc:self", Collections.<Query>emptyList()).getServerConnection();
+
+        assertThat((Long) connection.getAttribute(new ObjectName("proc:type=stat"), "num_threads")).isGreaterThan(1L);
+        assertThat((Long) connection.getAttribute(new ObjectName("proc:type=status"), "VmRSS")).isGreaterThan(0L);
+        assertThat((Long) connection.getAttribute(new ObjectName("proc:type=fd"), "count")).isGreaterThan(0L);
+        assertThat(connection.queryNames(new ObjectName("proc:type=task,*"), null)).isNotEmpty();
+    }
+
+    @Test
+    public void serversOfTheSameProcessAreEqual() throws MalformedURLException {
+        List<Query> queries = Collections.singletonList(query("proc:type=stat", "utime"));
+
+        assertThat(ProcServer.forUrl("proc:42", queries)).isEqualTo(ProcServer.forUrl("proc:42", queries));
+        assertThat(ProcServer.forUrl("proc:42", queries)).isNotEqualTo(ProcServer.forUrl("proc:self", queries));
+        assertThat(ProcServer.forUrl("proc:self", queries).getDirectory()).isEqualTo(new File("/proc/self"));
+        assertThat(ProcServer.forUrl("proc:self", queries).getHost()).isNull();
+    }
+
+    @Test(expectedExceptions = MalformedURLException.class)
+    public void onlyProcessesCanBeCollected() throws MalformedURLException {
+        ProcServer.forUrl("proc:../etc", Collections.<Query>emptyList());
+    }
+
+    private void task(@Nonnull String id, @Nonnull String command) throws IOException {
+        File task = new File(directory, "task/" + id);
+        assertThat(task.mkdirs()).isTrue();
+        write(new File(task, "stat"), id + " (" + command + ")" + STAT);
+    }
+
+    @Nonnull
+    private static Object[] values(@Nonnull Iterable<QueryResult> results) {
+        List<Object> values = new ArrayList<>();
+        for (QueryResult result : results) values.add(result.getValue());
+        return values.toArray();
+    }
+
+    private static void write(@Nonnull File file, @Nonnull String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(US_ASCII));
+    }
+
+    @Nonnull
+    private static Query query(@Nonnull String objectName, @Nonnull String... attributes) {
+        Query.Builder query = Query.builder().withObjectName(objectName);
+        for (String attribute : attributes) query.addAttribute(attribute);
+        return query.build();
+    }
+}
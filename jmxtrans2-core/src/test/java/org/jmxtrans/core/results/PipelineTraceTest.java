@@ -0,0 +1,87 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.results;
+
+import org.jmxtrans.utils.mockito.MockitoTestNGListener;
+
+import org.mockito.Mock;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@Listeners(MockitoTestNGListener.class)
+public class PipelineTraceTest {
+
+    @Mock private PipelineListener listener;
+
+    @Test
+    public void latencyIsReportedSincePreviousStage() {
+        PipelineTrace trace = new PipelineTrace(listener, 0);
+
+        trace.stamp(PipelineStage.COLLECTED, 100);
+        trace.stamp(PipelineStage.DEQUEUED, 150);
+
+        verify(listener).onStage(PipelineStage.COLLECTED, 100);
+        verify(listener).onStage(PipelineStage.DEQUEUED, 50);
+        assertThat(trace.getStamp(PipelineStage.DISPATCHED)).isEqualTo(0);
+        assertThat(trace.getStamp(PipelineStage.DEQUEUED)).isEqualTo(150);
+    }
+
+    @Test
+    public void firstStampWins() {
+        PipelineTrace trace = new PipelineTrace(listener, 0);
+        trace.stamp(PipelineStage.COLLECTED, 100);
+
+        trace.stamp(PipelineStage.COLLECTED, 200);
+
+        verify(listener, never()).onStage(PipelineStage.COLLECTED, 200);
+        assertThat(trace.getStamp(PipelineStage.COLLECTED)).isEqualTo(100);
+    }
+
+    @Test
+    public void missingPreviousStageIsNotReported() {
+        PipelineTrace trace = new PipelineTrace(listener, 0);
+
+        trace.stamp(PipelineStage.DEQUEUED, 150);
+
+        verify(listener, never()).onStage(eq(PipelineStage.DEQUEUED), anyLong());
+        assertThat(trace.getStamp(PipelineStage.COLLECTED)).isEqualTo(PipelineTrace.NOT_STAMPED);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void writerStagesCannotBeStamped() {
+        new PipelineTrace(listener, 0).stamp(PipelineStage.FLUSHED, 100);
+    }
+
+    @Test
+    public void traceIsNotPartOfResultIdentity() {
+        QueryResult result = new QueryResult("name", 1, 0);
+
+        assertThat(result.withTrace(new PipelineTrace(listener, 0))).isEqualTo(result);
+    }
+}
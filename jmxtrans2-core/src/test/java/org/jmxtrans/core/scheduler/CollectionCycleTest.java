@@ -0,0 +1,64 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.scheduler;
+
+import org.jmxtrans.core.monitoring.EventRecorder;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class CollectionCycleTest {
+
+    private EventRecorder.Cycle event;
+    private CollectionCycle cycle;
+
+    @BeforeMethod
+    public void createCycle() {
+        event = mock(EventRecorder.Cycle.class);
+        cycle = new CollectionCycle(event);
+    }
+
+    @Test
+    public void cycleWithoutQueriesIsCompletedWhenDispatched() {
+        cycle.dispatched(0, 0);
+
+        verify(event).completed(0, 0);
+    }
+
+    @Test
+    public void cycleIsCompletedByItsLastQuery() {
+        cycle.queryDispatched();
+        cycle.queryDispatched();
+        cycle.queryCompleted();
+        cycle.dispatched(2, 0);
+        verify(event, never()).completed(anyInt(), anyInt());
+
+        cycle.queryCompleted();
+        verify(event).completed(2, 0);
+    }
+}
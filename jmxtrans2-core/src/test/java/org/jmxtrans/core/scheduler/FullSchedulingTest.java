@@ -34,8 +34,10 @@ import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
 
 import org.jmxtrans.core.lifecycle.LifecycleAware;
+import org.jmxtrans.core.monitoring.EventRecorder;
 import org.jmxtrans.core.output.OutputWriter;
 import org.jmxtrans.core.query.InProcessServer;
 import org.jmxtrans.core.query.Query;
@@ -66,7 +68,7 @@ public class FullSchedulingTest {
 
     @Mock private Query query;
     @Mock private OutputWriter outputWriter;
-    @Mock private QueryResult result;
+    private final QueryResult result = new QueryResult("name", 1, 0);
     private Collection<QueryResult> results;
     @Nonnull private final Clock clock = new SystemClock();
     @Nonnull private final Interval queryPeriod = new Interval(1, SECONDS);
@@ -78,7 +80,8 @@ public class FullSchedulingTest {
 
     @Test
     public void queriesAreFullyProcessed() throws Exception {
-        when(query.collectMetrics(any(MBeanServerConnection.class), any(ResultNameStrategy.class)))
+        when(query.getObjectNamePattern()).thenReturn(new ObjectName("test:type=Test"));
+        when(query.collectMetrics(any(MBeanServerConnection.class), any(ResultNameStrategy.class), any(EventRecorder.QueryExecution.class)))
                 .thenReturn(results);
 
         long shutdownTimerMillis = 1000;
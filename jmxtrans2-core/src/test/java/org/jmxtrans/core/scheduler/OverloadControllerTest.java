@@ -0,0 +1,139 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.scheduler;
+
+import org.jmxtrans.core.query.CollectionMonitor;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.SlowQueryLog;
+import org.jmxtrans.utils.time.Interval;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OverloadControllerTest {
+
+    private final Server server = mock(Server.class);
+    private final Query query = mock(Query.class);
+    private CollectionMonitor collectionMonitor;
+    private OverloadController controller;
+
+    @BeforeMethod
+    public void createController() {
+        when(server.getName()).thenReturn("host.test.net:1099");
+        when(server.getQueries()).thenReturn(singletonList(query));
+        collectionMonitor = new CollectionMonitor(new SlowQueryLog(10, 1000), 16);
+        controller = new OverloadController(new Interval(10, SECONDS), collectionMonitor, 4, 2, 0.9);
+    }
+
+    @Test
+    public void periodIsNotChangedWhenCyclesComplete() {
+        controller.cycleDispatched(10, 0);
+        complete(10);
+        controller.cycleDispatched(10, 0);
+
+        assertThat(controller.getState()).isEqualTo("NORMAL");
+        assertThat(controller.getEffectivePeriodMillis()).isEqualTo(10000);
+        assertThat(controller.getCompletionRatio()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void periodIsStretchedWhenQueriesAreRejected() {
+        controller.cycleDispatched(8, 2);
+
+        assertThat(controller.isOverloaded()).isTrue();
+        assertThat(controller.getStretchFactor()).isEqualTo(2);
+        assertThat(controller.getEffectivePeriodMillis()).isEqualTo(20000);
+        assertThat(controller.getRejectionRatio()).isEqualTo(0.2);
+        assertThat(controller.getOverloadedCycleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void periodIsStretchedWhenQueriesAreDropped() {
+        controller.cycleDispatched(10, 0);
+        complete(9);
+        collectionMonitor.deadlineMissed(server, query, 0);
+        controller.cycleDispatched(10, 0);
+
+        assertThat(controller.isOverloaded()).isTrue();
+        assertThat(controller.getDropRatio()).isEqualTo(0.1);
+    }
+
+    @Test
+    public void periodIsStretchedWhenCyclesDoNotComplete() {
+        controller.cycleDispatched(10, 0);
+        complete(5);
+        controller.cycleDispatched(10, 0);
+
+        assertThat(controller.isOverloaded()).isTrue();
+        assertThat(controller.getCompletionRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void stretchIsBounded() {
+        controller.cycleDispatched(0, 10);
+        controller.cycleDispatched(0, 10);
+        controller.cycleDispatched(0, 10);
+
+        assertThat(controller.getStretchFactor()).isEqualTo(4);
+        assertThat(controller.getOverloadedCycleCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void periodIsRestoredProgressivelyOnceThereIsHeadroom() {
+        controller.cycleDispatched(0, 10);
+        controller.cycleDispatched(0, 10);
+
+        controller.cycleDispatched(10, 0);
+        assertThat(controller.getState()).isEqualTo("RECOVERING");
+        complete(10);
+        controller.cycleDispatched(10, 0);
+        assertThat(controller.getStretchFactor()).isEqualTo(2);
+
+        complete(10);
+        controller.cycleDispatched(10, 0);
+        complete(10);
+        controller.cycleDispatched(10, 0);
+        assertThat(controller.getStretchFactor()).isEqualTo(1);
+        assertThat(controller.getState()).isEqualTo("NORMAL");
+    }
+
+    @Test
+    public void objectNameIsStable() {
+        assertThat(controller.getObjectName()).isSameAs(controller.getObjectName());
+    }
+
+    private void complete(int count) {
+        for (int i = 0; i < count; i++) {
+            collectionMonitor.collected(server, query, 0, 0, 0, 1);
+        }
+    }
+
+}
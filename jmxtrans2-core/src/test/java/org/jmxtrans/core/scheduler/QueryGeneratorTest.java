@@ -22,11 +22,16 @@
  */
 package org.jmxtrans.core.scheduler;
 
+import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.jmxtrans.core.monitoring.EventRecorder;
+import org.jmxtrans.core.monitoring.SelfMetricsCollector;
 import org.jmxtrans.core.query.Query;
 import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.results.QueryResult;
 import org.jmxtrans.utils.mockito.MockitoTestNGListener;
 import org.jmxtrans.utils.time.Interval;
 import org.jmxtrans.utils.time.ManualClock;
@@ -36,6 +41,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -44,6 +50,8 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -57,6 +65,8 @@ public class QueryGeneratorTest {
     @Mock private Query query;
     @Mock private QueryProcessor queryProcessor;
     @Mock private ScheduledExecutorService queryTimer;
+    @Mock private SelfMetricsCollector selfMetricsCollector;
+    @Mock private Collection<QueryResult> selfMetrics;
     private QueryGenerator queryGenerator;
 
     @BeforeMethod
@@ -69,7 +79,36 @@ public class QueryGeneratorTest {
     @Test
     public void queryAreEnqueued() {
         queryGenerator.run();
-        verify(queryProcessor).process(11000, server, query);
+        verify(queryProcessor).process(eq(11000L), eq(server), eq(query), any(CollectionCycle.class));
+    }
+
+    @Test
+    public void selfMetricsAreEnqueued() {
+        when(selfMetricsCollector.collect()).thenReturn(selfMetrics);
+        queryGenerator = new QueryGenerator(clock, queryPeriod, singletonList(server), queryProcessor, queryTimer, selfMetricsCollector);
+
+        queryGenerator.run();
+
+        verify(queryProcessor).process(eq(11000L), eq(server), eq(query), any(CollectionCycle.class));
+        verify(queryProcessor).process(11000, selfMetrics);
+    }
+
+    @Test
+    public void cyclesAreRecorded() {
+        EventRecorder eventRecorder = mock(EventRecorder.class);
+        EventRecorder.Cycle cycle = mock(EventRecorder.Cycle.class);
+        when(eventRecorder.cycleStarted()).thenReturn(cycle);
+        Server failingServer = mock(Server.class);
+        Query failingQuery = mock(Query.class);
+        when(failingServer.getQueries()).thenReturn(singleton(failingQuery));
+        doThrow(new RejectedExecutionException()).when(queryProcessor)
+                .process(anyLong(), eq(failingServer), eq(failingQuery), any(CollectionCycle.class));
+        queryGenerator = new QueryGenerator(
+                clock, queryPeriod, asList(server, failingServer), queryProcessor, queryTimer, null, eventRecorder);
+
+        queryGenerator.run();
+
+        verify(cycle).completed(1, 1);
     }
 
     @Test
@@ -78,6 +117,20 @@ public class QueryGeneratorTest {
         verify(queryTimer).schedule(any(Runnable.class), eq(10000L), eq(MILLISECONDS));
     }
 
+    @Test
+    public void periodIsStretchedWhenOverloaded() {
+        OverloadController overloadController = mock(OverloadController.class);
+        when(overloadController.getEffectivePeriodMillis()).thenReturn(20000L);
+        queryGenerator = new QueryGenerator(
+                clock, queryPeriod, singletonList(server), queryProcessor, queryTimer, null, EventRecorder.NONE, overloadController);
+
+        queryGenerator.start();
+
+        verify(queryProcessor).process(eq(21000L), eq(server), eq(query), any(CollectionCycle.class));
+        verify(overloadController).cycleDispatched(1, 0);
+        verify(queryTimer).schedule(any(Runnable.class), eq(20000L), eq(MILLISECONDS));
+    }
+
     @Test
     public void nextTaskIsNotScheduledIfGeneratorIsStopped() {
         queryGenerator.stop();
@@ -23,29 +23,48 @@
 package org.jmxtrans.core.scheduler;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Executor;
 
 import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
+import org.jmxtrans.core.monitoring.EventRecorder;
 import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.query.CollectionMonitor;
 import org.jmxtrans.core.query.InProcessServer;
 import org.jmxtrans.core.query.Query;
 import org.jmxtrans.core.query.ResultNameStrategy;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.results.PipelineListener;
+import org.jmxtrans.core.results.PipelineStage;
 import org.jmxtrans.core.results.QueryResult;
 import org.jmxtrans.utils.mockito.MockitoTestNGListener;
 import org.jmxtrans.utils.time.ManualClock;
 
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
 import static java.util.Collections.singleton;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -58,17 +77,21 @@ public class QueryProcessorTest {
     private Executor queryExecutor = directExecutor();
     @Mock private ResultProcessor resultProcessor;
     @Mock private Query query;
-    @Mock private QueryResult result;
+    private final QueryResult result = new QueryResult("name", 1, 0);
+    @Mock private Server server;
+    @Mock private CollectionMonitor collectionMonitor;
     private Collection<QueryResult> results;
 
     private QueryProcessor queryProcessor;
 
     @BeforeMethod
-    public void createQueryProcessor() throws IOException {
+    public void createQueryProcessor() throws IOException, MalformedObjectNameException {
         results = singleton(result);
         queryProcessor = new QueryProcessor(clock, singleton(outputWriter), queryExecutor, resultProcessor, new ResultNameStrategy());
 
-        when(query.collectMetrics(any(MBeanServer.class), any(ResultNameStrategy.class))).thenReturn(results);
+        when(server.getName()).thenReturn("localhost:1099");
+        when(query.getObjectNamePattern()).thenReturn(new ObjectName("test:type=Test,name=*"));
+        when(query.collectMetrics(any(MBeanServer.class), any(ResultNameStrategy.class), any(EventRecorder.QueryExecution.class))).thenReturn(results);
     }
 
     @Test
@@ -76,4 +99,121 @@ public class QueryProcessorTest {
         queryProcessor.process(1, new InProcessServer(Collections.<Query>emptyList()), query);
         verify(resultProcessor).writeResult(1, result, outputWriter);
     }
+
+    @Test
+    public void resultNameStrategyIsBuiltOncePerServer() throws Exception {
+        ResultNameStrategy resultNameStrategy = mock(ResultNameStrategy.class);
+        ResultNameStrategy serverResultNameStrategy = mock(ResultNameStrategy.class);
+        when(resultNameStrategy.forServer(server)).thenReturn(serverResultNameStrategy);
+        queryProcessor = new QueryProcessor(clock, singleton(outputWriter), queryExecutor, resultProcessor, resultNameStrategy);
+
+        queryProcessor.process(1, server, query);
+        queryProcessor.process(1, server, query);
+
+        verify(resultNameStrategy, times(1)).forServer(server);
+        verify(query, times(2)).collectMetrics(any(MBeanServer.class), eq(serverResultNameStrategy), any(EventRecorder.QueryExecution.class));
+    }
+
+    @Test
+    public void cycleIsCompletedOnceItsQueriesRan() {
+        final List<Runnable> queued = new ArrayList<>();
+        queryProcessor = new QueryProcessor(clock, singleton(outputWriter), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        }, resultProcessor, new ResultNameStrategy());
+        EventRecorder.Cycle event = mock(EventRecorder.Cycle.class);
+        CollectionCycle cycle = new CollectionCycle(event);
+
+        queryProcessor.process(1, new InProcessServer(Collections.<Query>emptyList()), query, cycle);
+        cycle.dispatched(1, 0);
+        verify(event, never()).completed(anyInt(), anyInt());
+
+        queued.get(0).run();
+        verify(event).completed(1, 0);
+    }
+
+    @Test
+    public void collectionsAreMonitored() {
+        queryProcessor = new QueryProcessor(clock, singleton(outputWriter), queryExecutor, resultProcessor, new ResultNameStrategy(), collectionMonitor, PipelineListener.NONE);
+
+        queryProcessor.process(1, new InProcessServer(Collections.<Query>emptyList()), query);
+
+        verify(collectionMonitor).collected(any(Server.class), eq(query), anyLong(), anyLong(), eq(1L), eq(1));
+    }
+
+    @Test
+    public void connectionFailuresAreMonitored() throws Exception {
+        Exception failure = new IOException("refused");
+        when(server.getServerConnection()).thenThrow(failure);
+        queryProcessor = new QueryProcessor(clock, singleton(outputWriter), queryExecutor, resultProcessor, new ResultNameStrategy(), collectionMonitor, PipelineListener.NONE);
+
+        queryProcessor.process(1, server, query);
+
+        verify(collectionMonitor).connectFailed(eq(server), eq(query), anyLong(), anyLong(), eq(1L), eq(failure));
+        verify(resultProcessor, never()).writeResult(anyLong(), any(QueryResult.class), any(OutputWriter.class));
+    }
+
+    @Test
+    public void droppedCollectionsAreMonitored() {
+        ManualClock lateClock = new ManualClock();
+        lateClock.setTime(10, SECONDS);
+        queryProcessor = new QueryProcessor(lateClock, singleton(outputWriter), queryExecutor, resultProcessor, new ResultNameStrategy(), collectionMonitor, PipelineListener.NONE);
+
+        queryProcessor.process(1, server, query);
+
+        verify(collectionMonitor).deadlineMissed(server, query, 10000);
+    }
+
+    @Test
+    public void collectionIsTraced() {
+        PipelineListener listener = mock(PipelineListener.class);
+        queryProcessor = new QueryProcessor(clock, singleton(outputWriter), queryExecutor, resultProcessor, new ResultNameStrategy(), collectionMonitor, listener);
+
+        queryProcessor.process(1, new InProcessServer(Collections.<Query>emptyList()), query);
+
+        verify(listener).onStage(PipelineStage.COLLECTED, 0);
+        verify(resultProcessor).writeResult(eq(1L), argThat(isTraced()), eq(outputWriter));
+    }
+
+    @Test
+    public void queryExecutionsAreRecorded() {
+        EventRecorder eventRecorder = mock(EventRecorder.class);
+        EventRecorder.QueryExecution execution = mock(EventRecorder.QueryExecution.class);
+        when(eventRecorder.queryStarted("localhost:1099", "test:type=Test,name=*")).thenReturn(execution);
+        queryProcessor = new QueryProcessor(clock, singleton(outputWriter), queryExecutor, resultProcessor, new ResultNameStrategy(), collectionMonitor, PipelineListener.NONE, eventRecorder);
+
+        queryProcessor.process(1, server, query);
+
+        verify(execution).completed(1, true);
+    }
+
+    @Test
+    public void failedQueryExecutionsAreRecorded() throws Exception {
+        EventRecorder eventRecorder = mock(EventRecorder.class);
+        EventRecorder.QueryExecution execution = mock(EventRecorder.QueryExecution.class);
+        when(eventRecorder.queryStarted(anyString(), anyString())).thenReturn(execution);
+        when(server.getServerConnection()).thenThrow(new IOException("refused"));
+        queryProcessor = new QueryProcessor(clock, singleton(outputWriter), queryExecutor, resultProcessor, new ResultNameStrategy(), collectionMonitor, PipelineListener.NONE, eventRecorder);
+
+        queryProcessor.process(1, server, query);
+
+        verify(execution).completed(0, false);
+    }
+
+    private static ArgumentMatcher<QueryResult> isTraced() {
+        return new ArgumentMatcher<QueryResult>() {
+            @Override
+            public boolean matches(Object argument) {
+                return ((QueryResult) argument).getTrace() != null;
+            }
+        };
+    }
+
+    @Test
+    public void resultsAreSentToWriters() {
+        queryProcessor.process(1, results);
+        verify(resultProcessor).writeResult(1, result, outputWriter);
+    }
 }
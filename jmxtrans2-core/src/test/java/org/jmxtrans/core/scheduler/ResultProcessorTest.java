@@ -23,11 +23,16 @@
 package org.jmxtrans.core.scheduler;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 
 import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.results.PipelineListener;
+import org.jmxtrans.core.results.PipelineStage;
+import org.jmxtrans.core.results.PipelineTrace;
 import org.jmxtrans.core.results.QueryResult;
 import org.jmxtrans.utils.mockito.MockitoTestNGListener;
 import org.jmxtrans.utils.time.ManualClock;
@@ -37,7 +42,10 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
@@ -65,6 +73,26 @@ public class ResultProcessorTest {
         verify(outputWriter).write(result);
     }
 
+    @Test
+    public void dequeuingIsStampedWhenProcessingStarts() {
+        PipelineTrace trace = new PipelineTrace(PipelineListener.NONE, 0);
+        ManualClock clock = new ManualClock();
+        clock.setTime(3, MILLISECONDS);
+        final List<Runnable> queue = new ArrayList<>();
+        Executor queuingExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queue.add(command);
+            }
+        };
+
+        new ResultProcessor(clock, queuingExecutor).writeResult(10, result.withTrace(trace), outputWriter);
+        clock.setTime(7, MILLISECONDS);
+        queue.get(0).run();
+
+        assertThat(trace.getStamp(PipelineStage.DEQUEUED)).isEqualTo(MILLISECONDS.toNanos(7));
+    }
+
     @Test
     public void exceptionsFromWriterAreManaged() throws IOException {
         doThrow(new IOException()).when(outputWriter).write(any(QueryResult.class));
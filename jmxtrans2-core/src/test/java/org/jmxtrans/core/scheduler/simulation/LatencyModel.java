@@ -0,0 +1,87 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.scheduler.simulation;
+
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Latency of a simulated server or writer. Random models are seeded so that simulations can be replayed.
+ */
+@NotThreadSafe
+public abstract class LatencyModel {
+
+    public abstract long nextMillis();
+
+    @Nonnull
+    public static LatencyModel constant(final long millis) {
+        return new LatencyModel() {
+            @Override
+            public long nextMillis() {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return millis + "ms";
+            }
+        };
+    }
+
+    @Nonnull
+    public static LatencyModel uniform(final long minMillis, final long maxMillis, long seed) {
+        final Random random = new Random(seed);
+        return new LatencyModel() {
+            @Override
+            public long nextMillis() {
+                return minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+            }
+
+            @Override
+            public String toString() {
+                return minMillis + "-" + maxMillis + "ms";
+            }
+        };
+    }
+
+    /**
+     * Usually {@code baseMillis}, but {@code spikeMillis} with the given probability (GC pauses, slow network, ...).
+     */
+    @Nonnull
+    public static LatencyModel spiky(final long baseMillis, final long spikeMillis, final double spikeProbability, long seed) {
+        final Random random = new Random(seed);
+        return new LatencyModel() {
+            @Override
+            public long nextMillis() {
+                return random.nextDouble() < spikeProbability ? spikeMillis : baseMillis;
+            }
+
+            @Override
+            public String toString() {
+                return baseMillis + "ms, " + spikeMillis + "ms spikes";
+            }
+        };
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.scheduler.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.management.MBeanServer;
+
+import org.jmxtrans.core.monitoring.EventRecorder;
+import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.query.CollectionMonitor;
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.QueryAttribute;
+import org.jmxtrans.core.query.ResultNameStrategy;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.core.query.SlowQueryLog;
+import org.jmxtrans.core.results.PipelineListener;
+import org.jmxtrans.core.scheduler.OverloadController;
+import org.jmxtrans.core.scheduler.QueryGenerator;
+import org.jmxtrans.core.scheduler.QueryProcessor;
+import org.jmxtrans.core.scheduler.ResultProcessor;
+import org.jmxtrans.utils.time.Interval;
+import org.jmxtrans.utils.time.ManualClock;
+import org.jmxtrans.utils.time.SimulatedExecutorService;
+import org.jmxtrans.utils.time.Simulation;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import static java.util.Collections.singleton;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Runs the real {@link QueryGenerator}, {@link QueryProcessor} and {@link ResultProcessor} in virtual time, against
+ * {@link SimulatedServer}s and a {@link SimulatedOutputWriter}, so that hours of collection cycles replay in seconds.
+ */
+public class SchedulerSimulation {
+
+    @Nonnull private final Builder config;
+
+    private SchedulerSimulation(@Nonnull Builder config) {
+        this.config = config;
+    }
+
+    @Nonnull
+    public Report run(long duration, @Nonnull TimeUnit unit) throws Exception {
+        ManualClock clock = new ManualClock();
+        Simulation simulation = new Simulation(clock);
+        SimulatedExecutorService queryExecutor = new SimulatedExecutorService(simulation, config.queryThreads, config.queryQueueCapacity);
+        SimulatedExecutorService resultExecutor = new SimulatedExecutorService(simulation, config.resultThreads, config.resultQueueCapacity);
+        SimulatedExecutorService queryTimer = new SimulatedExecutorService(simulation, 1, 0);
+        SimulatedOutputWriter outputWriter = new SimulatedOutputWriter(simulation, config.writeLatency);
+        CollectionMonitor collectionMonitor = new CollectionMonitor(new SlowQueryLog(10, Long.MAX_VALUE), 16);
+
+        MBeanServer mbeanServer = SimulatedServer.mbeanServer(config.mbeansPerServer);
+        List<Server> servers = new ArrayList<>();
+        for (int i = 0; i < config.servers; i++) {
+            Query query = Query.builder()
+                    .withObjectName("simulation:name=*")
+                    .addAttribute(QueryAttribute.builder("Value").build())
+                    .withMaxResults(config.mbeansPerServer)
+                    .build();
+            servers.add(new SimulatedServer(simulation, mbeanServer, "server" + i, config.connectLatency, config.requestLatency, singleton(query)));
+        }
+
+        OverloadController overloadController = null;
+        if (config.maxStretch > 1) {
+            overloadController = new OverloadController(config.period, collectionMonitor, config.maxStretch, config.recoveryCycles, 0.9);
+        }
+        CycleCounter cycleCounter = new CycleCounter();
+        QueryGenerator queryGenerator = new QueryGenerator(
+                clock,
+                config.period,
+                servers,
+                new QueryProcessor(
+                        clock,
+                        singleton((OutputWriter) outputWriter),
+                        queryExecutor,
+                        new ResultProcessor(clock, resultExecutor),
+                        new ResultNameStrategy(),
+                        collectionMonitor,
+                        PipelineListener.NONE),
+                queryTimer,
+                null,
+                cycleCounter,
+                overloadController);
+
+        long periodMillis = config.period.getDuration(MILLISECONDS);
+        QueueDepthSampler sampler = new QueueDepthSampler(simulation, queryExecutor, resultExecutor, periodMillis);
+        // sample half way through each period, when the queues are the most likely to be busy
+        simulation.schedule(periodMillis / 2, sampler);
+        queryGenerator.start();
+        simulation.runFor(duration, unit);
+        queryGenerator.stop();
+        sampler.stop();
+        // let the last cycle drain
+        simulation.runFor(2 * periodMillis * config.maxStretch, MILLISECONDS);
+
+        return new Report(
+                cycleCounter.cycles,
+                cycleCounter.dispatched,
+                cycleCounter.rejected,
+                collectionMonitor.getCompletedCount(),
+                collectionMonitor.getDroppedCount(),
+                queryExecutor.getMaxQueueDepth(),
+                sampler.getAverageQueryQueueDepth(),
+                resultExecutor.getMaxQueueDepth(),
+                sampler.getAverageResultQueueDepth(),
+                resultExecutor.getRejectedTaskCount(),
+                resultExecutor.getCompletedTaskCount() - outputWriter.getWrittenCount(),
+                outputWriter.getWrittenCount(),
+                outputWriter.getOutputDelayPercentileMillis(50),
+                outputWriter.getOutputDelayPercentileMillis(99),
+                overloadController == null ? 0 : overloadController.getOverloadedCycleCount());
+    }
+
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Getter
+    @ToString
+    public static final class Report {
+        private final long cycles;
+        private final long dispatchedQueries;
+        private final long rejectedQueries;
+        private final long completedQueries;
+        /** Queries dropped because they could not start before their deadline. */
+        private final long queryDeadlineMisses;
+        private final int maxQueryQueueDepth;
+        private final double averageQueryQueueDepth;
+        private final int maxResultQueueDepth;
+        private final double averageResultQueueDepth;
+        private final long rejectedResults;
+        /** Results dropped because they could not be written before their deadline. */
+        private final long resultDeadlineMisses;
+        private final long writtenResults;
+        private final long outputDelayP50Millis;
+        private final long outputDelayP99Millis;
+        private final long overloadedCycles;
+
+        private Report(
+                long cycles,
+                long dispatchedQueries,
+                long rejectedQueries,
+                long completedQueries,
+                long queryDeadlineMisses,
+                int maxQueryQueueDepth,
+                double averageQueryQueueDepth,
+                int maxResultQueueDepth,
+                double averageResultQueueDepth,
+                long rejectedResults,
+                long resultDeadlineMisses,
+                long writtenResults,
+                long outputDelayP50Millis,
+                long outputDelayP99Millis,
+                long overloadedCycles) {
+            this.cycles = cycles;
+            this.dispatchedQueries = dispatchedQueries;
+            this.rejectedQueries = rejectedQueries;
+            this.completedQueries = completedQueries;
+            this.queryDeadlineMisses = queryDeadlineMisses;
+            this.maxQueryQueueDepth = maxQueryQueueDepth;
+            this.averageQueryQueueDepth = averageQueryQueueDepth;
+            this.maxResultQueueDepth = maxResultQueueDepth;
+            this.averageResultQueueDepth = averageResultQueueDepth;
+            this.rejectedResults = rejectedResults;
+            this.resultDeadlineMisses = resultDeadlineMisses;
+            this.writtenResults = writtenResults;
+            this.outputDelayP50Millis = outputDelayP50Millis;
+            this.outputDelayP99Millis = outputDelayP99Millis;
+            this.overloadedCycles = overloadedCycles;
+        }
+    }
+
+    public static final class Builder {
+        private int servers = 10;
+        private int mbeansPerServer = 10;
+        @Nonnull private Interval period = new Interval(10, SECONDS);
+        @Nonnull private LatencyModel connectLatency = LatencyModel.constant(10);
+        @Nonnull private LatencyModel requestLatency = LatencyModel.constant(5);
+        @Nonnull private LatencyModel writeLatency = LatencyModel.constant(1);
+        private int queryThreads = 2;
+        private int queryQueueCapacity = 1000;
+        private int resultThreads = 2;
+        private int resultQueueCapacity = 10000;
+        private int maxStretch = 1;
+        private int recoveryCycles = 5;
+
+        private Builder() {
+        }
+
+        @Nonnull
+        public Builder withServers(int servers, int mbeansPerServer) {
+            this.servers = servers;
+            this.mbeansPerServer = mbeansPerServer;
+            return this;
+        }
+
+        @Nonnull
+        public Builder withPeriod(@Nonnull Interval period) {
+            this.period = period;
+            return this;
+        }
+
+        @Nonnull
+        public Builder withServerLatency(@Nonnull LatencyModel connectLatency, @Nonnull LatencyModel requestLatency) {
+            this.connectLatency = connectLatency;
+            this.requestLatency = requestLatency;
+            return this;
+        }
+
+        @Nonnull
+        public Builder withWriteLatency(@Nonnull LatencyModel writeLatency) {
+            this.writeLatency = writeLatency;
+            return this;
+        }
+
+        @Nonnull
+        public Builder withQueryExecutor(int threads, int queueCapacity) {
+            this.queryThreads = threads;
+            this.queryQueueCapacity = queueCapacity;
+            return this;
+        }
+
+        @Nonnull
+        public Builder withResultExecutor(int threads, int queueCapacity) {
+            this.resultThreads = threads;
+            this.resultQueueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Adapts the period with an {@link OverloadController}, the period is fixed by default.
+         */
+        @Nonnull
+        public Builder withOverloadControl(int maxStretch, int recoveryCycles) {
+            this.maxStretch = maxStretch;
+            this.recoveryCycles = recoveryCycles;
+            return this;
+        }
+
+        @Nonnull
+        public SchedulerSimulation build() {
+            return new SchedulerSimulation(this);
+        }
+    }
+
+    private static final class CycleCounter implements EventRecorder {
+        private long cycles;
+        private long dispatched;
+        private long rejected;
+
+        @Nonnull
+        @Override
+        public Cycle cycleStarted() {
+            cycles++;
+            return new Cycle() {
+                @Override
+                public void completed(int dispatchedQueries, int rejectedQueries) {
+                    dispatched += dispatchedQueries;
+                    rejected += rejectedQueries;
+                }
+            };
+        }
+
+        @Nonnull
+        @Override
+        public QueryExecution queryStarted(@Nonnull String server, @Nonnull String objectName) {
+            return QueryExecution.NONE;
+        }
+
+        @Nonnull
+        @Override
+        public Flush flushStarted(@Nonnull String writer) {
+            return Flush.NONE;
+        }
+    }
+
+    private static final class QueueDepthSampler implements Runnable {
+        @Nonnull private final Simulation simulation;
+        @Nonnull private final SimulatedExecutorService queryExecutor;
+        @Nonnull private final SimulatedExecutorService resultExecutor;
+        private final long periodMillis;
+        private boolean running = true;
+        private long samples;
+        private long queryQueueDepths;
+        private long resultQueueDepths;
+
+        private QueueDepthSampler(
+                @Nonnull Simulation simulation,
+                @Nonnull SimulatedExecutorService queryExecutor,
+                @Nonnull SimulatedExecutorService resultExecutor,
+                long periodMillis) {
+            this.simulation = simulation;
+            this.queryExecutor = queryExecutor;
+            this.resultExecutor = resultExecutor;
+            this.periodMillis = periodMillis;
+        }
+
+        @Override
+        public void run() {
+            if (!running) return;
+            samples++;
+            queryQueueDepths += queryExecutor.getQueueDepth();
+            resultQueueDepths += resultExecutor.getQueueDepth();
+            simulation.scheduleIn(periodMillis, MILLISECONDS, this);
+        }
+
+        private void stop() {
+            running = false;
+        }
+
+        private double getAverageQueryQueueDepth() {
+            return samples == 0 ? 0 : (double) queryQueueDepths / samples;
+        }
+
+        private double getAverageResultQueueDepth() {
+            return samples == 0 ? 0 : (double) resultQueueDepths / samples;
+        }
+    }
+}
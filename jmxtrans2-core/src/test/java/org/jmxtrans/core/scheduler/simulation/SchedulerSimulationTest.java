@@ -0,0 +1,102 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.scheduler.simulation;
+
+import org.jmxtrans.core.scheduler.simulation.SchedulerSimulation.Report;
+
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SchedulerSimulationTest {
+
+    @Test
+    public void fastServersKeepUpForADay() throws Exception {
+        Report report = SchedulerSimulation.builder()
+                .withServers(4, 5)
+                .build()
+                .run(24, HOURS);
+
+        assertThat(report.getCycles()).isGreaterThanOrEqualTo(24 * 360);
+        assertThat(report.getRejectedQueries()).isEqualTo(0);
+        assertThat(report.getQueryDeadlineMisses()).isEqualTo(0);
+        assertThat(report.getResultDeadlineMisses()).isEqualTo(0);
+        assertThat(report.getCompletedQueries()).isEqualTo(report.getDispatchedQueries());
+        assertThat(report.getWrittenResults()).isEqualTo(report.getDispatchedQueries() * 5);
+        assertThat(report.getOutputDelayP99Millis()).isLessThan(1000);
+    }
+
+    @Test
+    public void latencySpikesDelayOutput() throws Exception {
+        Report report = SchedulerSimulation.builder()
+                .withServers(4, 5)
+                .withServerLatency(LatencyModel.constant(10), LatencyModel.spiky(5, 2000, 0.01, 42))
+                .build()
+                .run(24, HOURS);
+
+        assertThat(report.getQueryDeadlineMisses()).isEqualTo(0);
+        assertThat(report.getOutputDelayP99Millis()).isGreaterThan(2000);
+        assertThat(report.getOutputDelayP50Millis()).isLessThan(1000);
+    }
+
+    @Test
+    public void overloadControlStretchesThePeriodToMissFewerDeadlines() throws Exception {
+        Report fixed = slowServers().build().run(30, MINUTES);
+        Report controlled = slowServers().withOverloadControl(4, 5).build().run(30, MINUTES);
+
+        assertThat(fixed.getQueryDeadlineMisses()).isGreaterThan(0);
+        assertThat(fixed.getCompletedQueries()).isLessThan(fixed.getDispatchedQueries());
+        assertThat(controlled.getOverloadedCycles()).isGreaterThan(0);
+        assertThat(controlled.getCycles()).isLessThan(fixed.getCycles());
+        assertThat(controlled.getQueryDeadlineMisses()).isLessThan(fixed.getQueryDeadlineMisses());
+        assertThat(controlled.getResultDeadlineMisses()).isLessThan(fixed.getResultDeadlineMisses());
+        assertThat(controlled.getAverageQueryQueueDepth()).isLessThan(fixed.getAverageQueryQueueDepth());
+    }
+
+    @Test
+    public void simulationsAreReproducible() throws Exception {
+        Report first = randomServers().build().run(1, HOURS);
+        Report second = randomServers().build().run(1, HOURS);
+
+        assertThat(first.toString()).isEqualTo(second.toString());
+    }
+
+    private SchedulerSimulation.Builder randomServers() {
+        return SchedulerSimulation.builder()
+                .withServers(2, 5)
+                .withServerLatency(LatencyModel.uniform(5, 50, 42), LatencyModel.uniform(1, 500, 42));
+    }
+
+    /**
+     * A single thread needs about 10.5 seconds to query all servers, slightly more than the period.
+     */
+    private SchedulerSimulation.Builder slowServers() {
+        return SchedulerSimulation.builder()
+                .withServers(5, 2)
+                .withServerLatency(LatencyModel.constant(10), LatencyModel.constant(700))
+                .withQueryExecutor(1, 100);
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.scheduler.simulation;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import org.jmxtrans.core.output.OutputWriter;
+import org.jmxtrans.core.results.PipelineStage;
+import org.jmxtrans.core.results.PipelineTrace;
+import org.jmxtrans.core.results.QueryResult;
+import org.jmxtrans.utils.time.Simulation;
+
+import lombok.Getter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * {@link OutputWriter} taking the virtual time given by its {@link LatencyModel} for each result, and recording the
+ * delay between the dispatch of the query and the end of the write.
+ */
+public class SimulatedOutputWriter implements OutputWriter {
+
+    @Nonnull private final Simulation simulation;
+    @Nonnull private final LatencyModel writeLatency;
+    /** Number of results written by output delay in milliseconds. */
+    @Nonnull private final TreeMap<Long, Long> outputDelays = new TreeMap<>();
+    @Getter private long writtenCount;
+
+    public SimulatedOutputWriter(@Nonnull Simulation simulation, @Nonnull LatencyModel writeLatency) {
+        this.simulation = simulation;
+        this.writeLatency = writeLatency;
+    }
+
+    @Override
+    public int write(@Nonnull QueryResult result) {
+        simulation.elapse(writeLatency.nextMillis(), MILLISECONDS);
+        writtenCount++;
+        PipelineTrace trace = result.getTrace();
+        if (trace != null) {
+            long delay = NANOSECONDS.toMillis(simulation.getClock().nanoTime() - trace.getStamp(PipelineStage.DISPATCHED));
+            Long count = outputDelays.get(delay);
+            outputDelays.put(delay, count == null ? 1 : count + 1);
+        }
+        return 1;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the output delay in milliseconds under which {@code percentile} percent of the traced results were written
+     */
+    public long getOutputDelayPercentileMillis(double percentile) {
+        long total = 0;
+        for (long count : outputDelays.values()) total += count;
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (Map.Entry<Long, Long> entry : outputDelays.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) return entry.getKey();
+        }
+        return 0;
+    }
+}
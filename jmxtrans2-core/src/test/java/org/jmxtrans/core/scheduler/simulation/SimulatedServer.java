@@ -0,0 +1,131 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.core.scheduler.simulation;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.annotation.Nonnull;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.jmxtrans.core.query.Query;
+import org.jmxtrans.core.query.Server;
+import org.jmxtrans.utils.time.Simulation;
+
+import lombok.Getter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * {@link Server} answering from a local {@link MBeanServer}, each connection and each request taking the virtual time
+ * given by its {@link LatencyModel}s.
+ */
+public class SimulatedServer implements Server {
+
+    @Nonnull private final Simulation simulation;
+    @Nonnull private final MBeanServer mbeanServer;
+    @Nonnull @Getter private final String host;
+    @Nonnull private final LatencyModel connectLatency;
+    @Nonnull private final LatencyModel requestLatency;
+    @Nonnull @Getter private final Iterable<Query> queries;
+
+    public SimulatedServer(
+            @Nonnull Simulation simulation,
+            @Nonnull MBeanServer mbeanServer,
+            @Nonnull String host,
+            @Nonnull LatencyModel connectLatency,
+            @Nonnull LatencyModel requestLatency,
+            @Nonnull Iterable<Query> queries) {
+        this.simulation = simulation;
+        this.mbeanServer = mbeanServer;
+        this.host = host;
+        this.connectLatency = connectLatency;
+        this.requestLatency = requestLatency;
+        this.queries = queries;
+    }
+
+    /**
+     * @return a new MBean server with {@code count} MBeans named {@code simulation:name=mbean<i>}.
+     */
+    @Nonnull
+    public static MBeanServer mbeanServer(int count) throws Exception {
+        MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+        for (int i = 0; i < count; i++) {
+            mbeanServer.registerMBean(new Gauge(i), new ObjectName("simulation:name=mbean" + i));
+        }
+        return mbeanServer;
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return host;
+    }
+
+    @Nonnull
+    @Override
+    public MBeanServerConnection getServerConnection() {
+        simulation.elapse(connectLatency.nextMillis(), MILLISECONDS);
+        return (MBeanServerConnection) Proxy.newProxyInstance(
+                MBeanServerConnection.class.getClassLoader(),
+                new Class<?>[]{MBeanServerConnection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        simulation.elapse(requestLatency.nextMillis(), MILLISECONDS);
+                        try {
+                            return method.invoke(mbeanServer, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public String toString() {
+        return host;
+    }
+
+    public interface GaugeMBean {
+        long getValue();
+    }
+
+    public static class Gauge implements GaugeMBean {
+        private final long value;
+
+        public Gauge(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public long getValue() {
+            return value;
+        }
+    }
+}
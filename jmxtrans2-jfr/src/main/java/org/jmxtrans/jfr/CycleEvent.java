@@ -0,0 +1,63 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.jfr;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.jmxtrans.core.monitoring.EventRecorder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.jmxtrans.Cycle")
+@Label("Collection Cycle")
+@Category("JmxTrans")
+@Description("Collection of all queries of a collection period, from their dispatch until the last one completed")
+@StackTrace(false)
+@NotThreadSafe
+public final class CycleEvent extends Event implements EventRecorder.Cycle {
+
+    @Nonnull static final EventType TYPE = EventType.getEventType(CycleEvent.class);
+
+    @Label("Dispatched Queries")
+    private int dispatchedQueries;
+
+    @Label("Rejected Queries")
+    @Description("Queries which could not be enqueued for collection")
+    private int rejectedQueries;
+
+    @Override
+    public void completed(int dispatchedQueries, int rejectedQueries) {
+        end();
+        if (!shouldCommit()) return;
+        this.dispatchedQueries = dispatchedQueries;
+        this.rejectedQueries = rejectedQueries;
+        commit();
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.jfr;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.jmxtrans.core.monitoring.EventRecorder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.jmxtrans.Flush")
+@Label("Writer Flush")
+@Category("JmxTrans")
+@Description("Write of a batch of results to an output writer, including retries")
+@StackTrace(false)
+@NotThreadSafe
+public final class FlushEvent extends Event implements EventRecorder.Flush {
+
+    @Nonnull static final EventType TYPE = EventType.getEventType(FlushEvent.class);
+
+    @Label("Writer")
+    @Nonnull private final String writer;
+
+    @Label("Results")
+    private int results;
+
+    @Label("Bytes")
+    @Description("Bytes sent to the backend, zero if the writer does not count them")
+    @DataAmount
+    private long bytes;
+
+    @Label("Success")
+    private boolean success;
+
+    FlushEvent(@Nonnull String writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void completed(int results, long bytes, boolean success) {
+        end();
+        if (!shouldCommit()) return;
+        this.results = results;
+        this.bytes = bytes;
+        this.success = success;
+        commit();
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.jfr;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.jmxtrans.core.monitoring.EventRecorder;
+
+/**
+ * Records JmxTrans activity as Flight Recorder events, so that collection stalls can be correlated with GC, I/O, ...
+ * in the same recording.
+ *
+ * Events are only instantiated when they are enabled in the running recording, a disabled event costs a single
+ * check.
+ */
+@ThreadSafe
+public class JfrEventRecorder implements EventRecorder {
+
+    @Nonnull
+    @Override
+    public Cycle cycleStarted() {
+        if (!CycleEvent.TYPE.isEnabled()) return Cycle.NONE;
+        CycleEvent event = new CycleEvent();
+        event.begin();
+        return event;
+    }
+
+    @Nonnull
+    @Override
+    public QueryExecution queryStarted(@Nonnull String server, @Nonnull String objectName) {
+        if (!QueryEvent.TYPE.isEnabled()) return QueryExecution.NONE;
+        QueryEvent event = new QueryEvent(server, objectName);
+        event.begin();
+        return event;
+    }
+
+    @Nonnull
+    @Override
+    public Flush flushStarted(@Nonnull String writer) {
+        if (!FlushEvent.TYPE.isEnabled()) return Flush.NONE;
+        FlushEvent event = new FlushEvent(writer);
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.jfr;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.jmxtrans.core.monitoring.EventRecorder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.jmxtrans.Query")
+@Label("Query Execution")
+@Category("JmxTrans")
+@Description("Collection of a query on a server, including connection")
+@StackTrace(false)
+@NotThreadSafe
+public final class QueryEvent extends Event implements EventRecorder.QueryExecution {
+
+    @Nonnull static final EventType TYPE = EventType.getEventType(QueryEvent.class);
+
+    @Label("Server")
+    @Nonnull private final String server;
+
+    @Label("ObjectName")
+    @Description("ObjectName, possibly a pattern, of the queried MBeans")
+    @Nonnull private final String objectName;
+
+    @Label("Matched ObjectNames")
+    private int matchedObjectNames;
+
+    @Label("Results")
+    private int results;
+
+    @Label("Success")
+    private boolean success;
+
+    QueryEvent(@Nonnull String server, @Nonnull String objectName) {
+        this.server = server;
+        this.objectName = objectName;
+    }
+
+    @Override
+    public void matched(int objectNames) {
+        this.matchedObjectNames = objectNames;
+    }
+
+    @Override
+    public void completed(int results, boolean success) {
+        end();
+        if (!shouldCommit()) return;
+        this.results = results;
+        this.success = success;
+        commit();
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.jfr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.jmxtrans.core.monitoring.EventRecorder;
+import org.jmxtrans.core.monitoring.EventRecorders;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JfrEventRecorderTest {
+
+    private Recording recording;
+    private final EventRecorder eventRecorder = new JfrEventRecorder();
+
+    @BeforeMethod
+    public void startRecording() {
+        recording = new Recording();
+        recording.enable(CycleEvent.class);
+        recording.enable(QueryEvent.class);
+        recording.enable(FlushEvent.class);
+        recording.start();
+    }
+
+    @AfterMethod
+    public void closeRecording() {
+        recording.close();
+    }
+
+    @Test
+    public void recorderIsDiscovered() {
+        assertThat(EventRecorders.get()).isInstanceOf(JfrEventRecorder.class);
+    }
+
+    @Test
+    public void cyclesAreRecorded() throws IOException {
+        eventRecorder.cycleStarted().completed(3, 1);
+
+        RecordedEvent event = singleEvent("org.jmxtrans.Cycle");
+        assertThat(event.getInt("dispatchedQueries")).isEqualTo(3);
+        assertThat(event.getInt("rejectedQueries")).isEqualTo(1);
+    }
+
+    @Test
+    public void queryExecutionsAreRecorded() throws IOException {
+        EventRecorder.QueryExecution execution = eventRecorder.queryStarted("localhost", "java.lang:type=*");
+        execution.matched(4);
+        execution.completed(12, true);
+
+        RecordedEvent event = singleEvent("org.jmxtrans.Query");
+        assertThat(event.getString("server")).isEqualTo("localhost");
+        assertThat(event.getString("objectName")).isEqualTo("java.lang:type=*");
+        assertThat(event.getInt("matchedObjectNames")).isEqualTo(4);
+        assertThat(event.getInt("results")).isEqualTo(12);
+        assertThat(event.getBoolean("success")).isTrue();
+    }
+
+    @Test
+    public void flushesAreRecorded() throws IOException {
+        eventRecorder.flushStarted("GraphiteWriter").completed(50, 2048, false);
+
+        RecordedEvent event = singleEvent("org.jmxtrans.Flush");
+        assertThat(event.getString("writer")).isEqualTo("GraphiteWriter");
+        assertThat(event.getInt("results")).isEqualTo(50);
+        assertThat(event.getLong("bytes")).isEqualTo(2048);
+        assertThat(event.getBoolean("success")).isFalse();
+    }
+
+    @Test
+    public void nothingIsRecordedWhenEventsAreDisabled() {
+        recording.disable(QueryEvent.class);
+
+        assertThat(eventRecorder.queryStarted(null, "java.lang:type=*")).isSameAs(EventRecorder.QueryExecution.NONE);
+    }
+
+    private RecordedEvent singleEvent(String name) throws IOException {
+        recording.stop();
+        Path dump = Files.createTempFile("jmxtrans", ".jfr");
+        try {
+            recording.dump(dump);
+            RecordedEvent found = null;
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            for (RecordedEvent event : events) {
+                if (event.getEventType().getName().equals(name)) {
+                    assertThat(found).isNull();
+                    found = event;
+                }
+            }
+            assertThat(found).isNotNull();
+            return found;
+        } finally {
+            Files.delete(dump);
+        }
+    }
+
+}
@@ -55,7 +55,10 @@ public class JmxTransformer {
 
         final NaiveScheduler scheduler = new JmxTransBuilder(
                 parameters.isIgnoringParsingErrors(),
-                parameters.getConfigResources())
+                parameters.getConfigResources(),
+                false,
+                parameters.getTargetDirectories(),
+                parameters.getLocalJvmRules())
                 .build();
         
         scheduler.start();
@@ -30,11 +30,13 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.jmxtrans.core.config.LocalJvmRule;
 import org.jmxtrans.utils.io.FileResource;
 import org.jmxtrans.utils.io.Resource;
 
@@ -60,6 +62,20 @@ public class JmxTransParameters {
             validateValueWith = ExistingDirectoryCollectionValidator.class)
     private List<File> configDirectories;
 
+    @Nullable
+    @Parameter(
+            names = { "--targetDirectories", "-t" },
+            description = "List of directories of target files (.properties or .json), watched for changes.",
+            validateValueWith = ExistingDirectoryCollectionValidator.class)
+    private List<File> targetDirectories;
+
+    @Nullable
+    @Parameter(
+            names = { "--localJvms", "-l" },
+            description = "List of rules selecting the local JVMs to collect from, "
+                    + "as querySet:mainClassPattern or querySet:-Dproperty=valuePattern.")
+    private List<String> localJvms;
+
     @Getter
     @Parameter(
             names = { "--ignoreParsingErrors", "-i" },
@@ -89,6 +105,21 @@ public class JmxTransParameters {
         return configurations;
     }
 
+    @Nonnull
+    public List<File> getTargetDirectories() {
+        if (targetDirectories == null) return Collections.emptyList();
+        return targetDirectories;
+    }
+
+    @Nonnull
+    public List<LocalJvmRule> getLocalJvmRules() {
+        List<LocalJvmRule> rules = new ArrayList<>();
+        if (localJvms != null) {
+            for (String rule : localJvms) rules.add(LocalJvmRule.parse(rule));
+        }
+        return rules;
+    }
+
     private void recursivelyFindFiles(@Nonnull File directory, @Nonnull final Collection<Resource> accumulator) throws IOException {
         walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
             @Override
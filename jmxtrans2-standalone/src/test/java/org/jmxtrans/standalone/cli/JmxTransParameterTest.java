@@ -83,6 +83,32 @@ public class JmxTransParameterTest {
                 .contains(new FileResource(configFileInConfigDir));
     }
 
+    @Test
+    public void targetDirectoriesAreOptional() {
+        JmxTransParameters parameters = new JmxTransParameters();
+        new JCommander(parameters, new String[0]);
+        assertThat(parameters.getTargetDirectories()).isEmpty();
+    }
+
+    @Test
+    public void targetDirectoriesAreParsed() throws IOException {
+        File targetDir = temporaryFolder.newFolder();
+
+        JmxTransParameters parameters = new JmxTransParameters();
+        new JCommander(parameters, new String[] { "--targetDirectories", targetDir.getAbsolutePath() });
+
+        assertThat(parameters.getTargetDirectories()).containsExactly(targetDir);
+    }
+
+    @Test
+    public void localJvmRulesAreParsed() {
+        JmxTransParameters parameters = new JmxTransParameters();
+        new JCommander(parameters, new String[] { "--localJvms", "tomcat:org.apache.catalina.startup.Bootstrap", "-l", "kafka:-Dapp=kafka" });
+
+        assertThat(parameters.getLocalJvmRules()).hasSize(2);
+        assertThat(parameters.getLocalJvmRules().get(1).getQuerySet()).isEqualTo("kafka");
+    }
+
     @AfterMethod
     public void destroyTempFolder() throws IOException {
         temporaryFolder.destroy();
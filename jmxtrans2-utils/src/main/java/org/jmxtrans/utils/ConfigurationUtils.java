@@ -100,6 +100,30 @@ public final class ConfigurationUtils {
         }
     }
 
+    /**
+     * Convert value of this setting to a Java <b>double</b>.
+     * <p/>
+     * If the property is not found, the <code>defaultValue</code> is returned. If the property is not a double, an exception is thrown.
+     *
+     * @param name         name of the property
+     * @param defaultValue default value if the property is not defined.
+     * @return double value of the property or <code>defaultValue</code> if the property is not defined.
+     * @throws IllegalArgumentException if setting is not is not a double.
+     */
+    public static double getDouble(@Nonnull Map<String, String> settings, @Nonnull String name, double defaultValue) throws IllegalArgumentException {
+        if (settings.containsKey(name)) {
+
+            String value = settings.get(name);
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Setting '" + name + "=" + value + "' is not a double on " + settings);
+            }
+        } else {
+            return defaultValue;
+        }
+    }
+
     /**
      * Convert value of this setting to a Java <b>boolean</b> (via {@link Boolean#parseBoolean(String)}).
      * <p/>
@@ -38,6 +38,11 @@ public class FileResource implements Resource {
         this.file = file;
     }
 
+    @Nonnull
+    public File getFile() {
+        return file;
+    }
+
     @Nonnull
     @Override
     public String getPath() {
@@ -32,4 +32,8 @@ public final class NullOutputStream extends OutputStream {
     @Override
     public void write(int b) throws IOException {
     }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+    }
 }
@@ -0,0 +1,310 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.utils.time;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * {@link ScheduledExecutorService} running in the virtual time of a {@link Simulation}.
+ *
+ * Mimics a fixed size thread pool in front of a bounded queue with an abort policy: a task keeps its (virtual)
+ * thread busy for the time it {@link Simulation#elapse(long, TimeUnit) elapses}, tasks submitted while all threads are
+ * busy wait in the queue, and tasks submitted while the queue is full are rejected. Delayed tasks are run directly by
+ * the simulation, as a single threaded timer would.
+ */
+@NotThreadSafe
+public class SimulatedExecutorService extends AbstractExecutorService implements ScheduledExecutorService {
+
+    @Nonnull private final Simulation simulation;
+    private final int threads;
+    private final int queueCapacity;
+    @Nonnull private final Queue<Submission> queue = new ArrayDeque<>();
+
+    private int busyThreads;
+    private boolean shutdown;
+    private int maxQueueDepth;
+    private long completedTaskCount;
+    private long failedTaskCount;
+    private long rejectedTaskCount;
+    private long busyMillis;
+
+    public SimulatedExecutorService(@Nonnull Simulation simulation, int threads, int queueCapacity) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        if (queueCapacity < 0) throw new IllegalArgumentException("queueCapacity must be positive");
+        this.simulation = simulation;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public void execute(@Nonnull Runnable command) {
+        if (shutdown) {
+            rejectedTaskCount++;
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        if (busyThreads < threads) {
+            busyThreads++;
+            simulation.schedule(simulation.getClock().currentTimeMillis(), new Worker(command));
+        } else if (queue.size() < queueCapacity) {
+            queue.add(new Submission(command, simulation.getClock().currentTimeMillis()));
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        } else {
+            rejectedTaskCount++;
+            throw new RejectedExecutionException("Queue is full (" + queueCapacity + " tasks)");
+        }
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledFuture<?> schedule(@Nonnull final Runnable command, long delay, @Nonnull TimeUnit unit) {
+        return schedule(new Callable<Void>() {
+            @Override
+            public Void call() {
+                command.run();
+                return null;
+            }
+        }, delay, unit);
+    }
+
+    @Nonnull
+    @Override
+    public <V> ScheduledFuture<V> schedule(@Nonnull Callable<V> callable, long delay, @Nonnull TimeUnit unit) {
+        if (shutdown) throw new RejectedExecutionException("Executor has been shut down");
+        SimulatedFuture<V> future = new SimulatedFuture<>(callable, simulation.getClock().currentTimeMillis() + MILLISECONDS.convert(delay, unit));
+        simulation.schedule(future.time, future);
+        return future;
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(@Nonnull Runnable command, long initialDelay, long period, @Nonnull TimeUnit unit) {
+        throw new UnsupportedOperationException("Periodic tasks are not simulated, tasks should reschedule themselves");
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(@Nonnull Runnable command, long initialDelay, long delay, @Nonnull TimeUnit unit) {
+        throw new UnsupportedOperationException("Periodic tasks are not simulated, tasks should reschedule themselves");
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Nonnull
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<>();
+        for (Submission submission : queue) pending.add(submission.command);
+        queue.clear();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && busyThreads == 0 && queue.isEmpty();
+    }
+
+    /**
+     * Virtual time cannot pass while the caller waits, so this only reports whether the executor is terminated.
+     */
+    @Override
+    public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) {
+        return isTerminated();
+    }
+
+    public int getActiveCount() {
+        return busyThreads;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getCompletedTaskCount() {
+        return completedTaskCount;
+    }
+
+    public long getFailedTaskCount() {
+        return failedTaskCount;
+    }
+
+    public long getRejectedTaskCount() {
+        return rejectedTaskCount;
+    }
+
+    /**
+     * @return the virtual time spent running tasks, summed over all threads.
+     */
+    public long getBusyMillis() {
+        return busyMillis;
+    }
+
+    private final class Worker implements Runnable {
+        @Nonnull private final Runnable task;
+
+        private Worker(@Nonnull Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long start = simulation.getClock().currentTimeMillis();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                failedTaskCount++;
+            }
+            long end = simulation.getClock().currentTimeMillis();
+            busyMillis += end - start;
+            completedTaskCount++;
+            simulation.schedule(end, new Runnable() {
+                @Override
+                public void run() {
+                    // a task submitted from within a longer task may be queued before this thread was freed in virtual
+                    // time, it cannot start before it was submitted
+                    Submission next = queue.poll();
+                    if (next != null) {
+                        simulation.schedule(next.time, new Worker(next.command));
+                    } else {
+                        busyThreads--;
+                    }
+                }
+            });
+        }
+    }
+
+    private static final class Submission {
+        @Nonnull private final Runnable command;
+        private final long time;
+
+        private Submission(@Nonnull Runnable command, long time) {
+            this.command = command;
+            this.time = time;
+        }
+    }
+
+    private final class SimulatedFuture<V> implements ScheduledFuture<V>, Runnable {
+        @Nonnull private final Callable<V> callable;
+        private final long time;
+        private boolean cancelled;
+        private boolean done;
+        private V result;
+        private Exception failure;
+
+        private SimulatedFuture(@Nonnull Callable<V> callable, long time) {
+            this.callable = callable;
+            this.time = time;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+            try {
+                result = callable.call();
+            } catch (Exception e) {
+                failure = e;
+                failedTaskCount++;
+            }
+            done = true;
+            completedTaskCount++;
+        }
+
+        @Override
+        public long getDelay(@Nonnull TimeUnit unit) {
+            return unit.convert(time - simulation.getClock().currentTimeMillis(), MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(@Nonnull Delayed other) {
+            return Long.compare(getDelay(MILLISECONDS), other.getDelay(MILLISECONDS));
+        }
+
+        // futures are only ordered by delay, two of them are equal only if they are the same task
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (done) return false;
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+
+        @Override
+        public V get() throws ExecutionException {
+            if (!done) throw new IllegalStateException("Task has not run yet, waiting would block the simulation");
+            if (failure != null) throw new ExecutionException(failure);
+            return result;
+        }
+
+        @Override
+        public V get(long timeout, @Nonnull TimeUnit unit) throws ExecutionException {
+            return get();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.utils.time;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Discrete event simulation driving a {@link ManualClock}.
+ *
+ * Events run one after the other on the calling thread, ordered by time and then by order of scheduling, which makes
+ * runs fully deterministic. An event takes time by calling {@link #elapse(long, TimeUnit)}: the clock moves forward
+ * while the event runs and is set to the time of the next event once it completes.
+ */
+@NotThreadSafe
+public class Simulation {
+
+    @Nonnull private final ManualClock clock;
+    @Nonnull private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long sequence;
+    private long eventTime;
+
+    public Simulation(@Nonnull ManualClock clock) {
+        this.clock = clock;
+        this.eventTime = clock.currentTimeMillis();
+    }
+
+    @Nonnull
+    public ManualClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return the time at which the current event started, or the current time outside of events.
+     */
+    public long getEventTime() {
+        return eventTime;
+    }
+
+    public int getPendingEventCount() {
+        return events.size();
+    }
+
+    /**
+     * Schedules a task. Tasks scheduled in the past run at the time of the current event.
+     */
+    public void schedule(long epochMillis, @Nonnull Runnable task) {
+        events.add(new Event(Math.max(epochMillis, eventTime), sequence++, task));
+    }
+
+    public void scheduleIn(long delay, @Nonnull TimeUnit unit, @Nonnull Runnable task) {
+        schedule(clock.currentTimeMillis() + MILLISECONDS.convert(delay, unit), task);
+    }
+
+    /**
+     * Simulates work done by the current event.
+     */
+    public void elapse(long duration, @Nonnull TimeUnit unit) {
+        clock.waitFor(duration, unit);
+    }
+
+    /**
+     * Runs all events scheduled up to {@code epochMillis} (included) and leaves the clock at that time.
+     *
+     * @return the number of events run
+     */
+    public long runUntil(long epochMillis) {
+        long count = 0;
+        while (!events.isEmpty() && events.peek().time <= epochMillis) {
+            Event event = events.poll();
+            eventTime = event.time;
+            clock.setTime(eventTime, MILLISECONDS);
+            event.task.run();
+            count++;
+        }
+        eventTime = Math.max(eventTime, epochMillis);
+        clock.setTime(eventTime, MILLISECONDS);
+        return count;
+    }
+
+    public long runFor(long duration, @Nonnull TimeUnit unit) {
+        return runUntil(eventTime + MILLISECONDS.convert(duration, unit));
+    }
+
+    private static final class Event implements Comparable<Event> {
+        private final long time;
+        private final long sequence;
+        @Nonnull private final Runnable task;
+
+        private Event(long time, long sequence, @Nonnull Runnable task) {
+            this.time = time;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(@Nonnull Event other) {
+            if (time != other.time) return time < other.time ? -1 : 1;
+            if (sequence != other.sequence) return sequence < other.sequence ? -1 : 1;
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Event)) return false;
+            Event other = (Event) o;
+            return time == other.time && sequence == other.sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.valueOf(time).hashCode() + Long.valueOf(sequence).hashCode();
+        }
+    }
+}
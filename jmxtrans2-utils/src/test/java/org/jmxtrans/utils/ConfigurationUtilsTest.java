@@ -116,6 +116,32 @@ public class ConfigurationUtilsTest {
         assertThat(ConfigurationUtils.getLong(settings, "longKey", 1L)).isEqualTo(1L);
     }
 
+    @Test
+    public void validDoubleWithDefaultValueIsParsed() {
+        Map<String, String> settings = ImmutableMap.of("doubleKey", "0.5");
+        assertThat(ConfigurationUtils.getDouble(settings, "doubleKey", 2.0)).isEqualTo(0.5);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidDoubleWithDefaultValueThrowsException() {
+        Map<String, String> settings = ImmutableMap.of("doubleKey", "hello");
+        try {
+            ConfigurationUtils.getDouble(settings, "doubleKey", 1.0);
+        } catch (IllegalArgumentException e) {
+            assertThat(e)
+                    .hasMessageContaining("hello")
+                    .hasMessageContaining("doubleKey")
+                    .hasMessageContaining("is not a double");
+            throw e;
+        }
+    }
+
+    @Test
+    public void nonExistingDoubleReturnsDefaultValue() {
+        Map<String, String> settings = ImmutableMap.of();
+        assertThat(ConfigurationUtils.getDouble(settings, "doubleKey", 1.5)).isEqualTo(1.5);
+    }
+
     @Test
     public void validBooleanWithDefaultValueIsParsed() {
         Map<String, String> settings = ImmutableMap.of("booleanKey", "true");
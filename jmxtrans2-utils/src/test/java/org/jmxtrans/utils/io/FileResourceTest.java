@@ -57,6 +57,12 @@ public class FileResourceTest {
         }
     }
 
+    @Test
+    public void fileIsExposed() {
+        File file = new File("/tmp");
+        assertThat(new FileResource(file).getFile()).isEqualTo(file);
+    }
+
     @Test
     public void resourcesForSameFileAreEqual() {
         Resource resource1 = new FileResource(new File("/tmp"));
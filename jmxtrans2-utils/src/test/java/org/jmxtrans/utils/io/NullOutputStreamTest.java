@@ -33,6 +33,7 @@ public class NullOutputStreamTest {
         // yes, I know, stupid test ...
         try (NullOutputStream nullOutputStream = new NullOutputStream()) {
             nullOutputStream.write(0);
+            nullOutputStream.write(new byte[10], 2, 5);
         }
     }
 
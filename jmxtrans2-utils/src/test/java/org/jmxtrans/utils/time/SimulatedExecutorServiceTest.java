@@ -0,0 +1,176 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.utils.time;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SimulatedExecutorServiceTest {
+
+    private ManualClock clock;
+    private Simulation simulation;
+    private List<String> log;
+
+    @BeforeMethod
+    public void createSimulation() {
+        clock = new ManualClock();
+        simulation = new Simulation(clock);
+        log = new ArrayList<>();
+    }
+
+    @Test
+    public void tasksWaitForAFreeThread() {
+        SimulatedExecutorService executor = new SimulatedExecutorService(simulation, 2, 10);
+
+        executor.execute(new Work("a", 100));
+        executor.execute(new Work("b", 50));
+        executor.execute(new Work("c", 10));
+        assertThat(executor.getQueueDepth()).isEqualTo(1);
+
+        simulation.runUntil(1000);
+
+        assertThat(log).containsExactly("a@0", "b@0", "c@50");
+        assertThat(executor.getCompletedTaskCount()).isEqualTo(3);
+        assertThat(executor.getBusyMillis()).isEqualTo(160);
+        assertThat(executor.getMaxQueueDepth()).isEqualTo(1);
+        assertThat(executor.getActiveCount()).isEqualTo(0);
+    }
+
+    @Test(expectedExceptions = RejectedExecutionException.class)
+    public void tasksAreRejectedWhenQueueIsFull() {
+        SimulatedExecutorService executor = new SimulatedExecutorService(simulation, 1, 1);
+
+        executor.execute(new Work("a", 100));
+        executor.execute(new Work("b", 100));
+        try {
+            executor.execute(new Work("c", 100));
+        } finally {
+            assertThat(executor.getRejectedTaskCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void queuedTasksDoNotStartBeforeBeingSubmitted() {
+        final SimulatedExecutorService executor = new SimulatedExecutorService(simulation, 1, 10);
+        SimulatedExecutorService submitter = new SimulatedExecutorService(simulation, 1, 10);
+
+        executor.execute(new Work("short", 10));
+        submitter.execute(new Runnable() {
+            @Override
+            public void run() {
+                simulation.elapse(100, MILLISECONDS);
+                executor.execute(new Work("submitted", 10));
+            }
+        });
+
+        simulation.runUntil(1000);
+
+        assertThat(log).containsExactly("short@0", "submitted@100");
+    }
+
+    @Test
+    public void failingTasksAreCounted() {
+        SimulatedExecutorService executor = new SimulatedExecutorService(simulation, 1, 10);
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        });
+        executor.execute(new Work("a", 10));
+        simulation.runUntil(1000);
+
+        assertThat(executor.getFailedTaskCount()).isEqualTo(1);
+        assertThat(log).containsExactly("a@0");
+    }
+
+    @Test
+    public void delayedTasksRunAtTheirTime() throws Exception {
+        SimulatedExecutorService executor = new SimulatedExecutorService(simulation, 1, 10);
+
+        ScheduledFuture<String> future = executor.schedule(new Callable<String>() {
+            @Override
+            public String call() {
+                return "ran@" + clock.currentTimeMillis();
+            }
+        }, 300, MILLISECONDS);
+        assertThat(future.getDelay(MILLISECONDS)).isEqualTo(300);
+
+        simulation.runUntil(1000);
+
+        assertThat(future.isDone()).isTrue();
+        assertThat(future.get()).isEqualTo("ran@300");
+    }
+
+    @Test
+    public void cancelledTasksDoNotRun() {
+        SimulatedExecutorService executor = new SimulatedExecutorService(simulation, 1, 10);
+
+        ScheduledFuture<?> future = executor.schedule(new Work("a", 0), 300, MILLISECONDS);
+        future.cancel(false);
+        simulation.runUntil(1000);
+
+        assertThat(future.isCancelled()).isTrue();
+        assertThat(log).isEmpty();
+    }
+
+    @Test
+    public void shutdownRejectsNewTasksAndReturnsQueuedOnes() {
+        SimulatedExecutorService executor = new SimulatedExecutorService(simulation, 1, 10);
+        executor.execute(new Work("a", 10));
+        executor.execute(new Work("b", 10));
+
+        assertThat(executor.shutdownNow()).hasSize(1);
+        simulation.runUntil(1000);
+
+        assertThat(log).containsExactly("a@0");
+        assertThat(executor.isTerminated()).isTrue();
+    }
+
+    private final class Work implements Runnable {
+        private final String name;
+        private final long durationMillis;
+
+        private Work(String name, long durationMillis) {
+            this.name = name;
+            this.durationMillis = durationMillis;
+        }
+
+        @Override
+        public void run() {
+            log.add(name + "@" + clock.currentTimeMillis());
+            simulation.elapse(durationMillis, MILLISECONDS);
+        }
+    }
+}
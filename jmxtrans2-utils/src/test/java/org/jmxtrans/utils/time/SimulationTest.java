@@ -0,0 +1,134 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 JMXTrans Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jmxtrans.utils.time;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SimulationTest {
+
+    private ManualClock clock;
+    private Simulation simulation;
+    private List<String> log;
+
+    @BeforeMethod
+    public void createSimulation() {
+        clock = new ManualClock();
+        simulation = new Simulation(clock);
+        log = new ArrayList<>();
+    }
+
+    @Test
+    public void eventsRunInTimeOrderThenInSchedulingOrder() {
+        simulation.schedule(20, new Record("c"));
+        simulation.schedule(10, new Record("a"));
+        simulation.schedule(10, new Record("b"));
+
+        long count = simulation.runUntil(100);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(log).containsExactly("a@10", "b@10", "c@20");
+        assertThat(clock.currentTimeMillis()).isEqualTo(100);
+    }
+
+    @Test
+    public void eventsAfterTheEndAreKept() {
+        simulation.schedule(10, new Record("a"));
+        simulation.schedule(200, new Record("b"));
+
+        simulation.runUntil(100);
+
+        assertThat(log).containsExactly("a@10");
+        assertThat(simulation.getPendingEventCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void elapsedTimeIsVisibleWithinTheEventOnly() {
+        simulation.schedule(10, new Runnable() {
+            @Override
+            public void run() {
+                simulation.elapse(50, MILLISECONDS);
+                log.add("done@" + clock.currentTimeMillis());
+            }
+        });
+        simulation.schedule(20, new Record("next"));
+
+        simulation.runUntil(100);
+
+        assertThat(log).containsExactly("done@60", "next@20");
+    }
+
+    @Test
+    public void eventsScheduledInThePastRunNow() {
+        simulation.schedule(10, new Runnable() {
+            @Override
+            public void run() {
+                simulation.schedule(0, new Record("late"));
+            }
+        });
+
+        simulation.runUntil(100);
+
+        assertThat(log).containsExactly("late@10");
+    }
+
+    @Test
+    public void selfReschedulingTaskRunsEveryPeriod() {
+        simulation.schedule(0, new Runnable() {
+            private int runs;
+
+            @Override
+            public void run() {
+                runs++;
+                log.add(String.valueOf(runs));
+                simulation.scheduleIn(1, HOURS, this);
+            }
+        });
+
+        simulation.runFor(24, HOURS);
+
+        assertThat(log).hasSize(25);
+        assertThat(clock.currentTimeMillis()).isEqualTo(HOURS.toMillis(24));
+    }
+
+    private final class Record implements Runnable {
+        private final String name;
+
+        private Record(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            log.add(name + "@" + clock.currentTimeMillis());
+        }
+    }
+}